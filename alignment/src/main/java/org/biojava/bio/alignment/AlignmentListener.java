@@ -0,0 +1,61 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import org.biojava.bio.seq.Sequence;
+
+/**
+ * Receives the results of a <code>BatchAligner</code> as soon as each
+ * pairwise alignment is finished. The calls are made from the worker
+ * threads, but never concurrently, so implementations do not need to be
+ * thread-safe. Results arrive in no particular order.
+ *
+ * @see BatchAligner
+ * @since 1.9.8
+ */
+public interface AlignmentListener {
+
+	/**
+	 * Called when an alignment has been computed.
+	 *
+	 * @param query
+	 *            the query sequence
+	 * @param subject
+	 *            the subject sequence
+	 * @param pair
+	 *            the alignment of query and subject
+	 */
+	public void alignmentDone(Sequence query, Sequence subject,
+			AlignmentPair pair);
+
+	/**
+	 * Called when the alignment algorithm threw an exception.
+	 *
+	 * @param query
+	 *            the query sequence
+	 * @param subject
+	 *            the subject sequence
+	 * @param exc
+	 *            the exception thrown by the alignment algorithm
+	 */
+	public void alignmentFailed(Sequence query, Sequence subject,
+			Exception exc);
+}
@@ -0,0 +1,428 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.SimpleAnnotation;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.impl.SimpleGappedSequence;
+import org.biojava.bio.seq.impl.SimpleSequence;
+import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojava.bio.symbol.SimpleSymbolList;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * <p>
+ * A global alignment that only fills a diagonal band of the dynamic
+ * programming matrix. This is meant for sequences that are known to be very
+ * similar, such as alleles or two assemblies of the same locus, and differ
+ * only by a few short indels. The band contains all cells whose diagonal
+ * <code>j - i</code> lies within <code>bandWidth</code> of both the main
+ * diagonal and the diagonal through the last cell, so the optimal alignment
+ * is found whenever it never strays further than <code>bandWidth</code> from
+ * these diagonals. Time and memory grow with
+ * <code>length * bandWidth</code> instead of the product of the lengths.
+ * </p>
+ * <p>
+ * In addition, an X-drop criterion can be set: a cell whose score is more
+ * than <code>xDrop</code> below the best score seen so far is discarded, and
+ * cells that can only be reached through discarded cells are not computed.
+ * On similar sequences this shrinks the band to a few cells around the
+ * optimal path. If the last cell can not be reached, the sequences are too
+ * different for the band and X-drop settings and a <code>BioException</code>
+ * is thrown.
+ * </p>
+ * <p>
+ * Costs and gap penalties are treated exactly as in
+ * <code>NeedlemanWunsch</code>, so both give the same alignment score if the
+ * optimal alignment lies within the band.
+ * </p>
+ *
+ * @see NeedlemanWunsch
+ * @since 1.9.8
+ */
+public class BandedNeedlemanWunsch extends NeedlemanWunsch {
+
+	/**
+	 * Value for <code>xDrop</code> that disables the X-drop criterion.
+	 */
+	public static final int NO_X_DROP = -1;
+
+	/**
+	 * A cost that can not be reached but does not overflow when penalties
+	 * are added to it.
+	 */
+	private static final int INF = Integer.MAX_VALUE / 4;
+
+	/*
+	 * Traceback flags. The lowest two bits tell where the cost of a cell
+	 * comes from, the others whether a gap was extended.
+	 */
+	private static final byte FROM_DIAG = 0, FROM_E = 1, FROM_F = 2,
+			SOURCE = 3, E_EXT = 4, F_EXT = 8;
+
+	private int bandWidth;
+
+	private int xDrop;
+
+	private int editDistance;
+
+	/**
+	 * Constructs a new banded alignment object without an X-drop criterion.
+	 * The cost parameters are the same as for
+	 * <code>NeedlemanWunsch</code>.
+	 *
+	 * @param match
+	 *            costs for a match operation, if the substitution matrix has
+	 *            no entry.
+	 * @param replace
+	 *            costs for a replace operation, if the substitution matrix has
+	 *            no entry.
+	 * @param insert
+	 *            costs of a single insert operation.
+	 * @param delete
+	 *            costs of a single delete operation.
+	 * @param gapExtend
+	 *            costs of the extension of an existing gap.
+	 * @param subMat
+	 *            the substitution matrix.
+	 * @param bandWidth
+	 *            the number of diagonals on each side of the band.
+	 */
+	public BandedNeedlemanWunsch(short match, short replace, short insert,
+			short delete, short gapExtend, SubstitutionMatrix subMat,
+			int bandWidth) {
+		this(match, replace, insert, delete, gapExtend, subMat, bandWidth,
+				NO_X_DROP);
+	}
+
+	/**
+	 * Constructs a new banded alignment object with an X-drop criterion.
+	 *
+	 * @param match
+	 *            costs for a match operation, if the substitution matrix has
+	 *            no entry.
+	 * @param replace
+	 *            costs for a replace operation, if the substitution matrix has
+	 *            no entry.
+	 * @param insert
+	 *            costs of a single insert operation.
+	 * @param delete
+	 *            costs of a single delete operation.
+	 * @param gapExtend
+	 *            costs of the extension of an existing gap.
+	 * @param subMat
+	 *            the substitution matrix.
+	 * @param bandWidth
+	 *            the number of diagonals on each side of the band.
+	 * @param xDrop
+	 *            cells scoring more than this below the best score so far are
+	 *            discarded, or <code>NO_X_DROP</code>.
+	 */
+	public BandedNeedlemanWunsch(short match, short replace, short insert,
+			short delete, short gapExtend, SubstitutionMatrix subMat,
+			int bandWidth, int xDrop) {
+		super(match, replace, insert, delete, gapExtend, subMat);
+		setBandWidth(bandWidth);
+		setXDrop(xDrop);
+	}
+
+	/**
+	 * Returns the number of diagonals on each side of the band.
+	 *
+	 * @return bandWidth
+	 */
+	public int getBandWidth() {
+		return bandWidth;
+	}
+
+	/**
+	 * Sets the number of diagonals on each side of the band.
+	 *
+	 * @param bandWidth
+	 *            a number of diagonals, not negative.
+	 */
+	public void setBandWidth(int bandWidth) {
+		if (bandWidth < 0)
+			throw new IllegalArgumentException(
+					"The band width must not be negative: " + bandWidth);
+		this.bandWidth = bandWidth;
+	}
+
+	/**
+	 * Returns the X-drop value, or <code>NO_X_DROP</code>.
+	 *
+	 * @return xDrop
+	 */
+	public int getXDrop() {
+		return xDrop;
+	}
+
+	/**
+	 * Sets the X-drop value. Cells that score more than this below the best
+	 * score so far are discarded.
+	 *
+	 * @param xDrop
+	 *            a score difference, or <code>NO_X_DROP</code> to fill the
+	 *            whole band.
+	 */
+	public void setXDrop(int xDrop) {
+		if (xDrop < 0 && xDrop != NO_X_DROP)
+			throw new IllegalArgumentException(
+					"The X-drop value must not be negative: " + xDrop);
+		this.xDrop = xDrop;
+	}
+
+	/**
+	 * Global pairwise alignment of two sequences within the band.
+	 *
+	 * @throws BioException
+	 *             if the alphabets do not agree, or the end of the sequences
+	 *             could not be reached within the band and X-drop limits.
+	 * @see org.biojava.bio.alignment.AlignmentAlgorithm#pairwiseAlignment(org.biojava.bio.symbol.SymbolList,
+	 *      org.biojava.bio.symbol.SymbolList)
+	 */
+	@Override
+	public AlignmentPair pairwiseAlignment(SymbolList query, SymbolList subject)
+			throws BioException {
+		Sequence squery = null;
+		Sequence ssubject = null;
+
+		if (query instanceof Sequence) {
+			squery = (Sequence) query;
+		} else {
+			// make it a sequence
+			squery = new SimpleSequence(query, "", "query",
+					new SimpleAnnotation());
+		}
+		if (subject instanceof Sequence) {
+			ssubject = (Sequence) subject;
+		} else {
+			// make it a sequence
+			ssubject = new SimpleSequence(subject, "", "subject",
+					new SimpleAnnotation());
+		}
+
+		if (!squery.getAlphabet().equals(ssubject.getAlphabet())
+				|| !squery.getAlphabet().equals(subMatrix.getAlphabet()))
+			throw new BioException(
+					"Alphabet missmatch occured: sequences with different alphabet cannot be aligned.");
+
+		SymbolTokenization st = subMatrix.getAlphabet().getTokenization(
+				"default");
+		long time = System.currentTimeMillis();
+
+		int[] q = toInts(subMatrix.encode(squery));
+		int[] s = toInts(subMatrix.encode(ssubject));
+		short[][] matrix = subMatrix.getIndexedMatrix();
+		int[][] cost = new int[matrix.length][matrix.length];
+		for (int x = 0; x < matrix.length; x++)
+			for (int y = 0; y < matrix.length; y++)
+				cost[x][y] = -matrix[x][y];
+
+		final int m = q.length, n = s.length;
+		final boolean affine = (getGapExt() != getDelete())
+				|| (getGapExt() != getInsert());
+		final int ins = affine ? getInsert() : 0;
+		final int del = affine ? getDelete() : 0;
+		final int ext = getGapExt();
+		final int lo = Math.min(0, n - m) - bandWidth;
+		final int hi = Math.max(0, n - m) + bandWidth;
+
+		/*
+		 * Costs of the previous and the current row, indexed by column. Only
+		 * the columns from first to last of a row are valid.
+		 */
+		int[] prevC = new int[n + 1], prevF = new int[n + 1];
+		int[] curC = new int[n + 1], curF = new int[n + 1];
+		byte[][] trace = new byte[m + 1][];
+		int[] traceStart = new int[m + 1];
+
+		int minCost = 0;
+		int first = 0, last = Math.min(n, hi);
+		trace[0] = new byte[last + 1];
+		for (int j = 0; j <= last; j++) {
+			prevC[j] = (j == 0) ? 0 : ins + j * ext;
+			prevF[j] = INF;
+			trace[0][j] = (j == 0) ? FROM_DIAG : (byte) (FROM_E | E_EXT);
+			if (xDrop != NO_X_DROP && prevC[j] > minCost + xDrop) {
+				last = j - 1;
+				break;
+			}
+		}
+
+		for (int i = 1; i <= m; i++) {
+			final int[] row = cost[q[i - 1]];
+			final int pFirst = first, pLast = last;
+			final int bandFirst = Math.max(0, i + lo);
+			final int bandLast = Math.min(n, i + hi);
+			int a = Math.max(bandFirst, pFirst);
+			if (a > pLast + 1 || a > bandLast)
+				break;
+
+			byte[] tr = new byte[bandLast - a + 1];
+			trace[i] = tr;
+			traceStart[i] = a;
+			int rowMin = INF;
+			first = -1;
+			last = -1;
+			int c = INF, e = INF;
+			for (int j = a; j <= bandLast; j++) {
+				byte flags = 0;
+
+				// insert: gap in the query, from the left
+				if (j == a) {
+					e = INF;
+				} else if (e < c + ins) {
+					e += ext;
+					flags |= E_EXT;
+				} else {
+					e = c + ins + ext;
+				}
+
+				// delete: gap in the subject, from above
+				int f;
+				if (j >= pFirst && j <= pLast) {
+					int fOpen = prevC[j] + del;
+					if (prevF[j] < fOpen) {
+						f = prevF[j] + ext;
+						flags |= F_EXT;
+					} else {
+						f = fOpen + ext;
+					}
+				} else {
+					f = INF;
+				}
+
+				if (j == 0) {
+					c = f;
+					flags |= FROM_F;
+				} else {
+					c = (j - 1 >= pFirst && j - 1 <= pLast) ? prevC[j - 1]
+							+ row[s[j - 1]] : INF;
+					if (e < c) {
+						c = e;
+						flags = (byte) ((flags & ~SOURCE) | FROM_E);
+					}
+					if (f < c) {
+						c = f;
+						flags = (byte) ((flags & ~SOURCE) | FROM_F);
+					}
+				}
+
+				if (c >= INF
+						|| (xDrop != NO_X_DROP && c > minCost + xDrop)) {
+					// discarded
+					c = e = f = INF;
+					if (j > pLast)
+						break;
+				} else {
+					if (first < 0)
+						first = j;
+					last = j;
+					if (c < rowMin)
+						rowMin = c;
+				}
+				curC[j] = c;
+				curF[j] = f;
+				tr[j - a] = flags;
+			}
+			if (first < 0)
+				break;
+			if (rowMin < minCost)
+				minCost = rowMin;
+
+			int[] tmp = prevC;
+			prevC = curC;
+			curC = tmp;
+			tmp = prevF;
+			prevF = curF;
+			curF = tmp;
+		}
+
+		if (trace[m] == null || first < 0 || last < n)
+			throw new BioException("The end of the sequences was not reached "
+					+ "within band width " + bandWidth
+					+ (xDrop != NO_X_DROP ? " and X-drop " + xDrop : ""));
+
+		this.editDistance = prevC[n];
+
+		/*
+		 * Traceback.
+		 */
+		StringBuilder[] align = { new StringBuilder(), new StringBuilder() };
+		int i = m, j = n;
+		byte state = (byte) (trace[i][j - traceStart[i]] & SOURCE);
+		while (i > 0 || j > 0) {
+			byte flags = trace[i][j - traceStart[i]];
+			if (state == FROM_DIAG) {
+				align[0].append(st.tokenizeSymbol(squery.symbolAt(i--)));
+				align[1].append(st.tokenizeSymbol(ssubject.symbolAt(j--)));
+				if (i > 0 || j > 0)
+					state = (byte) (trace[i][j - traceStart[i]] & SOURCE);
+			} else if (state == FROM_E) {
+				align[0].append('-');
+				align[1].append(st.tokenizeSymbol(ssubject.symbolAt(j--)));
+				if ((flags & E_EXT) == 0 && (i > 0 || j > 0))
+					state = (byte) (trace[i][j - traceStart[i]] & SOURCE);
+			} else {
+				align[0].append(st.tokenizeSymbol(squery.symbolAt(i--)));
+				align[1].append('-');
+				if ((flags & F_EXT) == 0 && (i > 0 || j > 0))
+					state = (byte) (trace[i][j - traceStart[i]] & SOURCE);
+			}
+		}
+		align[0].reverse();
+		align[1].reverse();
+
+		squery = new SimpleGappedSequence(new SimpleSequence(
+				new SimpleSymbolList(squery.getAlphabet().getTokenization(
+						"token"), align[0].toString()), squery.getURN(),
+				squery.getName(), squery.getAnnotation()));
+		ssubject = new SimpleGappedSequence(new SimpleSequence(
+				new SimpleSymbolList(ssubject.getAlphabet().getTokenization(
+						"token"), align[1].toString()), ssubject.getURN(),
+				ssubject.getName(), ssubject.getAnnotation()));
+		AlignmentPair pairalign = new AlignmentPair(squery, ssubject, 1,
+				squery.length(), 1, ssubject.length(), subMatrix);
+		pairalign.setComputationTime(System.currentTimeMillis() - time);
+		pairalign.setScore((-1) * getEditDistance());
+		return pairalign;
+	}
+
+	/**
+	 * Returns the costs of the last alignment. Only a band of the cost
+	 * matrix is computed and it is not kept, so the inherited
+	 * <code>CostMatrix</code> stays <code>null</code>.
+	 *
+	 * @return the edit distance of the last alignment.
+	 */
+	public int getEditDistance() {
+		return editDistance;
+	}
+
+	private static int[] toInts(byte[] bytes) {
+		int[] ints = new int[bytes.length];
+		for (int i = 0; i < bytes.length; i++)
+			ints[i] = bytes[i] & 0xff;
+		return ints;
+	}
+}
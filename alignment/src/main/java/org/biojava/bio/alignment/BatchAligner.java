@@ -0,0 +1,462 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.SequenceIterator;
+import org.biojava.bio.seq.db.SequenceDB;
+
+/**
+ * <p>
+ * Aligns every sequence of a set of queries with every sequence of a set of
+ * targets using all processors. The pairwise alignments are scheduled on a
+ * work-stealing <code>ForkJoinPool</code>, and each result is passed to an
+ * <code>AlignmentListener</code> as soon as it is available, so the results
+ * never have to be held in memory all at once.
+ * </p>
+ * <p>
+ * Alignment algorithms keep state between calls (for example the work
+ * vectors of <code>StripedSmithWaterman</code>) and are not thread-safe.
+ * Each worker thread therefore gets its own algorithm from an
+ * <code>AlgorithmFactory</code>, which it reuses for all of its alignments.
+ * </p>
+ * <p>
+ * Queries are read from their iterator while the alignments run, and only a
+ * few queries per worker are in progress at any time. Targets given as a
+ * <code>SequenceDB</code> are fetched by ID for each alignment, so only the
+ * IDs and the targets being aligned are held in memory, and each target is
+ * fetched once per query. This suits databases with cheap random access such
+ * as <code>PackedSequenceDB</code> or <code>HashSequenceDB</code>. Targets
+ * given as a <code>SequenceIterator</code> are all read into memory first,
+ * so their total size is limited by the heap.
+ * </p>
+ *
+ * <h2>Example Usage</h2>
+ *
+ * <pre>
+ * BatchAligner aligner = new BatchAligner(new BatchAligner.AlgorithmFactory() {
+ * 	public AlignmentAlgorithm createAlgorithm() {
+ * 		return new StripedSmithWaterman(match, replace, insert, delete, gapExt, matrix);
+ * 	}
+ * });
+ * aligner.alignAll(queries, targetDB, listener);
+ * for (BatchAligner.WorkerStatistics stats : aligner.getWorkerStatistics())
+ * 	System.out.println(stats);
+ * aligner.shutdown();
+ * </pre>
+ *
+ * @see AlignmentAlgorithm#alignAll(SequenceIterator, SequenceDB)
+ * @since 1.9.8
+ */
+public class BatchAligner {
+
+	/**
+	 * Creates the alignment algorithm used by one worker thread.
+	 */
+	public interface AlgorithmFactory {
+		/**
+		 * @return a new alignment algorithm, which will only be used by a
+		 *         single thread.
+		 */
+		public AlignmentAlgorithm createAlgorithm();
+	}
+
+	/**
+	 * Counts the work done by one worker thread.
+	 */
+	public static final class WorkerStatistics {
+		private final String name;
+		private long alignments, failures, cells, nanos;
+
+		private WorkerStatistics(String name) {
+			this.name = name;
+		}
+
+		private synchronized void add(long cells, long nanos, boolean failed) {
+			this.alignments++;
+			if (failed)
+				this.failures++;
+			this.cells += cells;
+			this.nanos += nanos;
+		}
+
+		private synchronized void reset() {
+			alignments = failures = cells = nanos = 0;
+		}
+
+		/**
+		 * @return the name of the worker thread.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the number of alignments computed, including failed ones.
+		 */
+		public synchronized long getAlignments() {
+			return alignments;
+		}
+
+		/**
+		 * @return the number of alignments that threw an exception.
+		 */
+		public synchronized long getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return the sum of the products of the sequence lengths, that is
+		 *         the number of dynamic programming cells of a full matrix.
+		 */
+		public synchronized long getCells() {
+			return cells;
+		}
+
+		/**
+		 * @return the time spent in the alignment algorithm in nanoseconds.
+		 */
+		public synchronized long getTime() {
+			return nanos;
+		}
+
+		/**
+		 * @return the throughput in cells per second.
+		 */
+		public synchronized double getCellsPerSecond() {
+			return (nanos == 0) ? 0 : cells * 1e9 / nanos;
+		}
+
+		public synchronized String toString() {
+			return String.format("%s: %d alignments, %d failed, %.3g cells/s",
+					name, alignments, failures, getCellsPerSecond());
+		}
+	}
+
+	/**
+	 * The per-thread state of a worker.
+	 */
+	private static final class Worker {
+		final AlignmentAlgorithm algorithm;
+		final WorkerStatistics stats;
+
+		Worker(AlignmentAlgorithm algorithm, WorkerStatistics stats) {
+			this.algorithm = algorithm;
+			this.stats = stats;
+		}
+	}
+
+	/**
+	 * Targets per task below which a task is not split any further.
+	 */
+	private static final int SPLIT_THRESHOLD = 4;
+
+	private final AlgorithmFactory factory;
+
+	private final ForkJoinPool pool;
+
+	private final int maxPendingQueries;
+
+	private final List<WorkerStatistics> statistics = new ArrayList<WorkerStatistics>();
+
+	private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+		protected Worker initialValue() {
+			AlignmentAlgorithm algorithm = factory.createAlgorithm();
+			WorkerStatistics stats = new WorkerStatistics(Thread
+					.currentThread().getName());
+			synchronized (statistics) {
+				statistics.add(stats);
+			}
+			return new Worker(algorithm, stats);
+		}
+	};
+
+	/**
+	 * Creates a batch aligner with one worker per available processor.
+	 *
+	 * @param factory
+	 *            creates the alignment algorithm of each worker.
+	 */
+	public BatchAligner(AlgorithmFactory factory) {
+		this(factory, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a batch aligner with the given number of workers.
+	 *
+	 * @param factory
+	 *            creates the alignment algorithm of each worker.
+	 * @param parallelism
+	 *            the number of worker threads.
+	 */
+	public BatchAligner(AlgorithmFactory factory, int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException(
+					"At least one worker is needed: " + parallelism);
+		this.factory = factory;
+		this.pool = new ForkJoinPool(parallelism);
+		this.maxPendingQueries = 2 * parallelism;
+	}
+
+	/**
+	 * Aligns every query with every sequence of the target database. Only
+	 * the IDs of the targets are read up front; each target is fetched from
+	 * the database when it is aligned. This method returns when all
+	 * alignments have been passed to the listener.
+	 *
+	 * @param queries
+	 *            the query sequences.
+	 * @param targets
+	 *            the target sequences.
+	 * @param listener
+	 *            receives the results.
+	 * @throws BioException
+	 *             if the sequences could not be read, the algorithm could not
+	 *             be created, or the listener threw an exception.
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted while waiting.
+	 */
+	public void alignAll(SequenceIterator queries, final SequenceDB targets,
+			AlignmentListener listener) throws BioException,
+			InterruptedException {
+		final List<String> ids = new ArrayList<String>();
+		for (Object id : targets.ids())
+			ids.add((String) id);
+		alignAll(queries, new Targets() {
+			public int size() {
+				return ids.size();
+			}
+
+			public Sequence get(int i) throws BioException {
+				return targets.getSequence(ids.get(i));
+			}
+		}, listener);
+	}
+
+	/**
+	 * Aligns every query with every target. This method returns when all
+	 * alignments have been passed to the listener.
+	 *
+	 * @param queries
+	 *            the query sequences.
+	 * @param targets
+	 *            the target sequences, which are all read into memory.
+	 * @param listener
+	 *            receives the results.
+	 * @throws BioException
+	 *             if the sequences could not be read, the algorithm could not
+	 *             be created, or the listener threw an exception.
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted while waiting.
+	 */
+	public void alignAll(SequenceIterator queries, SequenceIterator targets,
+			AlignmentListener listener) throws BioException,
+			InterruptedException {
+		final List<Sequence> targetList = new ArrayList<Sequence>();
+		while (targets.hasNext())
+			targetList.add(targets.nextSequence());
+		alignAll(queries, new Targets() {
+			public int size() {
+				return targetList.size();
+			}
+
+			public Sequence get(int i) {
+				return targetList.get(i);
+			}
+		}, listener);
+	}
+
+	private void alignAll(SequenceIterator queries, Targets targets,
+			AlignmentListener listener) throws BioException,
+			InterruptedException {
+		Batch batch = new Batch(targets, listener);
+		try {
+			while (queries.hasNext() && batch.error == null) {
+				Sequence query = queries.nextSequence();
+				batch.pending.acquire();
+				try {
+					pool.execute(batch.new QueryTask(query));
+				} catch (RuntimeException exc) {
+					batch.pending.release();
+					throw exc;
+				}
+			}
+		} finally {
+			// wait for the alignments that have been started
+			batch.pending.acquire(maxPendingQueries);
+			batch.pending.release(maxPendingQueries);
+		}
+		if (batch.error != null)
+			throw new BioException(batch.error, batch.errorMessage);
+	}
+
+	/**
+	 * Returns the statistics of all workers that have been used so far.
+	 *
+	 * @return a list with one entry per worker thread.
+	 */
+	public List<WorkerStatistics> getWorkerStatistics() {
+		synchronized (statistics) {
+			return Collections
+					.unmodifiableList(new ArrayList<WorkerStatistics>(
+							statistics));
+		}
+	}
+
+	/**
+	 * Sets the counters of all workers back to zero.
+	 */
+	public void resetStatistics() {
+		synchronized (statistics) {
+			for (WorkerStatistics stats : statistics)
+				stats.reset();
+		}
+	}
+
+	/**
+	 * Stops the worker threads. The aligner can not be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * The targets of one call of <code>alignAll</code>, by index.
+	 */
+	private interface Targets {
+		int size();
+
+		Sequence get(int i) throws BioException;
+	}
+
+	/**
+	 * The state of one call of <code>alignAll</code>.
+	 */
+	private final class Batch {
+		final Targets targets;
+		final AlignmentListener listener;
+		final Semaphore pending = new Semaphore(maxPendingQueries);
+		volatile Throwable error;
+		volatile String errorMessage;
+
+		Batch(Targets targets, AlignmentListener listener) {
+			this.targets = targets;
+			this.listener = listener;
+		}
+
+		/**
+		 * Records the first error, which stops the batch.
+		 */
+		synchronized void fail(Throwable t, String message) {
+			if (error == null) {
+				errorMessage = message;
+				error = t;
+			}
+		}
+
+		/**
+		 * Aligns one query with all targets.
+		 */
+		final class QueryTask extends RecursiveAction {
+			private static final long serialVersionUID = 1L;
+			private final Sequence query;
+
+			QueryTask(Sequence query) {
+				this.query = query;
+			}
+
+			protected void compute() {
+				try {
+					new RangeTask(query, 0, targets.size()).invoke();
+				} catch (Throwable t) {
+					// the pool would swallow it, so alignAll rethrows it
+					fail(t, "Could not align " + query.getName());
+				} finally {
+					pending.release();
+				}
+			}
+		}
+
+		/**
+		 * Aligns one query with a range of targets, splitting the range so
+		 * that idle workers can steal half of it.
+		 */
+		final class RangeTask extends RecursiveAction {
+			private static final long serialVersionUID = 1L;
+			private final Sequence query;
+			private final int from, to;
+
+			RangeTask(Sequence query, int from, int to) {
+				this.query = query;
+				this.from = from;
+				this.to = to;
+			}
+
+			protected void compute() {
+				if (to - from > SPLIT_THRESHOLD) {
+					int mid = (from + to) >>> 1;
+					invokeAll(new RangeTask(query, from, mid), new RangeTask(
+							query, mid, to));
+					return;
+				}
+				Worker worker = workers.get();
+				try {
+					for (int i = from; i < to && error == null; i++)
+						align(worker, query, targets.get(i));
+				} catch (BioException exc) {
+					fail(exc, "Could not read a target sequence");
+				}
+			}
+		}
+
+		private void align(Worker worker, Sequence query, Sequence subject) {
+			AlignmentPair pair = null;
+			Exception failure = null;
+			long time = System.nanoTime();
+			try {
+				pair = worker.algorithm.pairwiseAlignment(query, subject);
+			} catch (Exception exc) {
+				failure = exc;
+			}
+			worker.stats.add((long) query.length() * subject.length(),
+					System.nanoTime() - time, failure != null);
+
+			try {
+				synchronized (listener) {
+					if (failure == null)
+						listener.alignmentDone(query, subject, pair);
+					else
+						listener.alignmentFailed(query, subject, failure);
+				}
+			} catch (Throwable t) {
+				fail(t, "The alignment listener threw an exception");
+			}
+		}
+	}
+}
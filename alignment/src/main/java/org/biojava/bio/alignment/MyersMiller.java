@@ -0,0 +1,296 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+/**
+ * Global alignment with affine gap penalties in linear memory, following
+ * Myers and Miller (1988), "Optimal alignments in linear space". This is the
+ * affine gap version of Hirschberg's divide and conquer algorithm: it needs
+ * four integer vectors the length of the second sequence and about twice the
+ * time of a full matrix alignment.
+ *
+ * Sequences are given as arrays of symbol codes and scored with a code by
+ * code table. Scores are maximised; gap scores are expected to be negative
+ * or zero. A gap of length k scores <code>open + k * extend</code>. The
+ * alignment is written as a list of edit operations.
+ *
+ * Instances keep their work vectors between calls and are not thread-safe.
+ *
+ * @since 1.9.8
+ */
+class MyersMiller {
+
+	/**
+	 * Edit operation: a query symbol aligned to a subject symbol.
+	 */
+	static final byte MATCH = 0;
+
+	/**
+	 * Edit operation: a subject symbol aligned to a gap in the query.
+	 */
+	static final byte INSERT = 1;
+
+	/**
+	 * Edit operation: a query symbol aligned to a gap in the subject.
+	 */
+	static final byte DELETE = 2;
+
+	private final int insert, delete, gapExt;
+
+	private int[][] score;
+
+	private int[] a, b;
+
+	private int[] cc, dd, rr, ss;
+
+	private byte[] ops = new byte[64];
+
+	private int nOps;
+
+	/**
+	 * @param insert
+	 *            score for opening a gap in the query
+	 * @param delete
+	 *            score for opening a gap in the subject
+	 * @param gapExt
+	 *            score for every position of a gap
+	 */
+	MyersMiller(int insert, int delete, int gapExt) {
+		this.insert = insert;
+		this.delete = delete;
+		this.gapExt = gapExt;
+	}
+
+	/**
+	 * Aligns <code>a[aStart..aEnd)</code> globally to
+	 * <code>b[bStart..bEnd)</code>. The operations can be read with
+	 * <code>getOps()</code> and <code>getOpCount()</code> afterwards.
+	 *
+	 * @param score
+	 *            the substitution scores indexed by symbol code
+	 * @param a
+	 *            query symbol codes
+	 * @param aStart
+	 * @param aEnd
+	 * @param b
+	 *            subject symbol codes
+	 * @param bStart
+	 * @param bEnd
+	 */
+	void align(int[][] score, int[] a, int aStart, int aEnd, int[] b,
+			int bStart, int bEnd) {
+		this.score = score;
+		this.a = a;
+		this.b = b;
+		int n = bEnd - bStart;
+		if (cc == null || cc.length < n + 1) {
+			cc = new int[n + 1];
+			dd = new int[n + 1];
+			rr = new int[n + 1];
+			ss = new int[n + 1];
+		}
+		nOps = 0;
+		diff(aStart, bStart, aEnd - aStart, n, delete, delete);
+		this.score = null;
+		this.a = this.b = null;
+	}
+
+	/**
+	 * @return the edit operations of the last alignment. Only the first
+	 *         <code>getOpCount()</code> entries are valid.
+	 */
+	byte[] getOps() {
+		return ops;
+	}
+
+	/**
+	 * @return the number of edit operations of the last alignment.
+	 */
+	int getOpCount() {
+		return nOps;
+	}
+
+	private void emit(byte op, int count) {
+		if (nOps + count > ops.length) {
+			byte[] n = new byte[Math.max(ops.length * 2, nOps + count)];
+			System.arraycopy(ops, 0, n, 0, nOps);
+			ops = n;
+		}
+		for (int i = 0; i < count; i++)
+			ops[nOps++] = op;
+	}
+
+	private int gap(int open, int k) {
+		return (k <= 0) ? 0 : open + k * gapExt;
+	}
+
+	/**
+	 * Aligns the m symbols of a starting at ai with the n symbols of b
+	 * starting at bj. tb and te are the scores for opening a deletion at the
+	 * top and the bottom boundary respectively. They are zero if a deletion
+	 * that crosses the boundary has been opened already.
+	 */
+	private int diff(int ai, int bj, int m, int n, int tb, int te) {
+		int i, j, c, d, e, s, t;
+
+		if (n == 0) {
+			emit(DELETE, m);
+			return (m > 0) ? Math.max(tb, te) + m * gapExt : 0;
+		}
+		if (m <= 1) {
+			if (m == 0) {
+				emit(INSERT, n);
+				return gap(insert, n);
+			}
+			// Either delete the symbol and insert all of b, or align it
+			// against one of the symbols of b.
+			int midc = Math.max(tb, te) + gapExt + gap(insert, n);
+			int midj = 0;
+			int[] row = score[a[ai]];
+			for (j = 1; j <= n; j++) {
+				c = gap(insert, j - 1) + row[b[bj + j - 1]]
+						+ gap(insert, n - j);
+				if (c > midc) {
+					midc = c;
+					midj = j;
+				}
+			}
+			if (midj == 0) {
+				// join the deletion to the cheaper boundary
+				if (tb >= te) {
+					emit(DELETE, 1);
+					emit(INSERT, n);
+				} else {
+					emit(INSERT, n);
+					emit(DELETE, 1);
+				}
+			} else {
+				emit(INSERT, midj - 1);
+				emit(MATCH, 1);
+				emit(INSERT, n - midj);
+			}
+			return midc;
+		}
+
+		int midi = m / 2;
+
+		/*
+		 * Forward pass over the upper half.
+		 */
+		cc[0] = 0;
+		t = insert;
+		for (j = 1; j <= n; j++) {
+			t += gapExt;
+			cc[j] = t;
+			dd[j] = t + delete;
+		}
+		t = tb;
+		for (i = 1; i <= midi; i++) {
+			int[] row = score[a[ai + i - 1]];
+			s = cc[0];
+			t += gapExt;
+			c = t;
+			cc[0] = c;
+			e = t + insert;
+			for (j = 1; j <= n; j++) {
+				e = Math.max(c + insert, e) + gapExt;
+				d = Math.max(cc[j] + delete, dd[j]) + gapExt;
+				c = s + row[b[bj + j - 1]];
+				if (e > c)
+					c = e;
+				if (d > c)
+					c = d;
+				s = cc[j];
+				cc[j] = c;
+				dd[j] = d;
+			}
+		}
+		dd[0] = cc[0];
+
+		/*
+		 * Reverse pass over the lower half.
+		 */
+		rr[n] = 0;
+		t = insert;
+		for (j = n - 1; j >= 0; j--) {
+			t += gapExt;
+			rr[j] = t;
+			ss[j] = t + delete;
+		}
+		t = te;
+		for (i = m - 1; i >= midi; i--) {
+			int[] row = score[a[ai + i]];
+			s = rr[n];
+			t += gapExt;
+			c = t;
+			rr[n] = c;
+			e = t + insert;
+			for (j = n - 1; j >= 0; j--) {
+				e = Math.max(c + insert, e) + gapExt;
+				d = Math.max(rr[j] + delete, ss[j]) + gapExt;
+				c = s + row[b[bj + j]];
+				if (e > c)
+					c = e;
+				if (d > c)
+					c = d;
+				s = rr[j];
+				rr[j] = c;
+				ss[j] = d;
+			}
+		}
+		ss[n] = rr[n];
+
+		/*
+		 * Find the column where the optimal path crosses the middle row,
+		 * either through a match state (type 1) or inside a deletion that
+		 * spans the middle row (type 2).
+		 */
+		int midc = cc[0] + rr[0];
+		int midj = 0;
+		boolean type1 = true;
+		for (j = 0; j <= n; j++) {
+			c = cc[j] + rr[j];
+			if (c >= midc)
+				if (c > midc || (cc[j] != dd[j] && rr[j] != ss[j])) {
+					midc = c;
+					midj = j;
+				}
+		}
+		for (j = n; j >= 0; j--) {
+			c = dd[j] + ss[j] - delete;
+			if (c > midc) {
+				midc = c;
+				midj = j;
+				type1 = false;
+			}
+		}
+
+		if (type1) {
+			diff(ai, bj, midi, midj, tb, delete);
+			diff(ai + midi, bj + midj, m - midi, n - midj, delete, te);
+		} else {
+			diff(ai, bj, midi - 1, midj, tb, 0);
+			emit(DELETE, 2);
+			diff(ai + midi + 1, bj + midj, m - midi - 1, n - midj, 0, te);
+		}
+		return midc;
+	}
+}
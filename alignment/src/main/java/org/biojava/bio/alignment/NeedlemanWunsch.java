@@ -250,6 +250,8 @@ public class NeedlemanWunsch extends AlignmentAlgorithm {
 	 * This method computes the scores for the substitution of the i-th symbol
 	 * of query by the j-th symbol of subject.
 	 * 
+	 * @param scorer
+	 *            The encoded sequences
 	 * @param query
 	 *            The query sequence
 	 * @param subject
@@ -262,9 +264,10 @@ public class NeedlemanWunsch extends AlignmentAlgorithm {
 	 *            target sequence
 	 * @return The score for the given substitution.
 	 */
-	private int matchReplace(Sequence query, Sequence subject, int i, int j) {
+	private int matchReplace(PairScorer scorer, Sequence query,
+			Sequence subject, int i, int j) {
 		try {
-			return subMatrix.getValueAt(query.symbolAt(i), subject.symbolAt(j));
+			return scorer.score(i, j);
 		} catch (Exception exc) {
 			if (query.symbolAt(i).getMatches().contains(subject.symbolAt(j))
 					|| subject.symbolAt(j).getMatches().contains(
@@ -312,6 +315,8 @@ public class NeedlemanWunsch extends AlignmentAlgorithm {
 
 			long time = System.currentTimeMillis();
 			int i, j;
+			// encode the sequences once instead of looking up every cell
+			PairScorer scorer = new PairScorer(subMatrix, squery, ssubject);
 			this.CostMatrix = new int[squery.length() + 1][ssubject.length() + 1];
 
 			/*
@@ -354,7 +359,7 @@ public class NeedlemanWunsch extends AlignmentAlgorithm {
 								+ gapExt;
 						CostMatrix[i][j] = min(E[i][j], F[i][j],
 								CostMatrix[i - 1][j - 1]
-										- matchReplace(squery, ssubject, i, j));
+										- matchReplace(scorer, squery, ssubject, i, j));
 					}
 
 				/*
@@ -382,7 +387,7 @@ public class NeedlemanWunsch extends AlignmentAlgorithm {
 
 							// Match/Replace
 						} else if ((CostMatrix[i][j] == CostMatrix[i - 1][j - 1]
-								- matchReplace(squery, ssubject, i, j))
+								- matchReplace(scorer, squery, ssubject, i, j))
 								&& !(gap_extend[0] || gap_extend[1])) {
 							if (squery.symbolAt(i) == ssubject.symbolAt(j))
 								path.insert(0, '|');
@@ -438,7 +443,7 @@ public class NeedlemanWunsch extends AlignmentAlgorithm {
 						CostMatrix[i][j] = min(CostMatrix[i - 1][j] + delete,
 								CostMatrix[i][j - 1] + insert,
 								CostMatrix[i - 1][j - 1]
-										- matchReplace(squery, ssubject, i, j));
+										- matchReplace(scorer, squery, ssubject, i, j));
 					}
 
 				/*
@@ -468,7 +473,7 @@ public class NeedlemanWunsch extends AlignmentAlgorithm {
 
 							// Match/Replace
 						} else if (CostMatrix[i][j] == CostMatrix[i - 1][j - 1]
-								- matchReplace(squery, ssubject, i, j)) {
+								- matchReplace(scorer, squery, ssubject, i, j)) {
 
 							if (squery.symbolAt(i) == ssubject.symbolAt(j))
 								path.insert(0, '|');
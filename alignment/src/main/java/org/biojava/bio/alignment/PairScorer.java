@@ -0,0 +1,73 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Scores the positions of two symbol lists against each other with a
+ * substitution matrix. Both lists are encoded once, so that each score
+ * costs two array accesses instead of two map lookups in
+ * <code>SubstitutionMatrix.getValueAt</code>. The scores are the same.
+ *
+ * @since 1.9.8
+ */
+final class PairScorer {
+
+	private final byte[] query, subject;
+
+	private final int[] scores;
+
+	private final int size;
+
+	/**
+	 * @param matrix
+	 *            the substitution matrix
+	 * @param query
+	 *            the symbols indexed by the first argument of
+	 *            <code>score</code>
+	 * @param subject
+	 *            the symbols indexed by the second argument of
+	 *            <code>score</code>
+	 * @throws IllegalAlphabetException
+	 *             if the lists are not over the alphabet of the matrix.
+	 */
+	PairScorer(SubstitutionMatrix matrix, SymbolList query, SymbolList subject)
+			throws IllegalAlphabetException {
+		this.query = matrix.encode(query);
+		this.subject = (subject == query) ? this.query : matrix
+				.encode(subject);
+		this.scores = matrix.getIndexedScores();
+		this.size = matrix.getIndexSize();
+	}
+
+	/**
+	 * @param i
+	 *            a position in the query, starting from one
+	 * @param j
+	 *            a position in the subject, starting from one
+	 * @return the score for aligning the two symbols.
+	 */
+	int score(int i, int j) {
+		return scores[(query[i - 1] & 0xff) * size + (subject[j - 1] & 0xff)];
+	}
+}
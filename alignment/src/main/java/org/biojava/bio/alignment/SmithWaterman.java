@@ -138,6 +138,8 @@ public class SmithWaterman extends AlignmentAlgorithm {
 	 * This method computes the scores for the substitution of the i-th symbol
 	 * of query by the j-th symbol of subject.
 	 * 
+	 * @param scorer
+	 *            The encoded sequences, if there is a substitution matrix
 	 * @param query
 	 *            The query sequence
 	 * @param subject
@@ -150,7 +152,10 @@ public class SmithWaterman extends AlignmentAlgorithm {
 	 *            target sequence
 	 * @return The score for the given substitution.
 	 */
-	private short matchReplace(Sequence query, Sequence subject, int i, int j) {
+	private short matchReplace(PairScorer scorer, Sequence query,
+			Sequence subject, int i, int j) {
+		if (scorer != null)
+			return (short) scorer.score(i, j);
 		try {
 			if (subMatrix != null)
 				return subMatrix.getValueAt(query.symbolAt(i), subject
@@ -226,8 +231,12 @@ public class SmithWaterman extends AlignmentAlgorithm {
 			 */
 
 			SymbolTokenization st;
+			PairScorer scorer = null;
 			try {
 				st = squery.getAlphabet().getTokenization("default");
+				// encode the sequences once instead of looking up every cell
+				if (subMatrix != null)
+					scorer = new PairScorer(subMatrix, squery, ssubject);
 			} catch (BioException exc) {
 				throw new BioRuntimeException(exc);
 			}
@@ -260,7 +269,7 @@ public class SmithWaterman extends AlignmentAlgorithm {
 								+ gapExt;
 						scoreMatrix[i][j] = max(0, E[i][j], F[i][j],
 								scoreMatrix[i - 1][j - 1]
-										+ matchReplace(squery, ssubject, i, j));
+										+ matchReplace(scorer, squery, ssubject, i, j));
 
 						if (scoreMatrix[i][j] > scoreMatrix[maxI][maxJ]) {
 							maxI = i;
@@ -288,7 +297,7 @@ public class SmithWaterman extends AlignmentAlgorithm {
 
 								// Match/Replace
 							} else if ((scoreMatrix[i][j] == scoreMatrix[i - 1][j - 1]
-									+ matchReplace(squery, ssubject, i, j))
+									+ matchReplace(scorer, squery, ssubject, i, j))
 									&& !(gap_extend[0] || gap_extend[1])) {
 
 								align[0].insert(0, st.tokenizeSymbol(squery
@@ -342,7 +351,7 @@ public class SmithWaterman extends AlignmentAlgorithm {
 						scoreMatrix[i][j] = max(0, scoreMatrix[i - 1][j]
 								+ delete, scoreMatrix[i][j - 1] + insert,
 								scoreMatrix[i - 1][j - 1]
-										+ matchReplace(squery, ssubject, i, j));
+										+ matchReplace(scorer, squery, ssubject, i, j));
 
 						if (scoreMatrix[i][j] > scoreMatrix[maxI][maxJ]) {
 							maxI = i;
@@ -367,7 +376,7 @@ public class SmithWaterman extends AlignmentAlgorithm {
 
 								// Match/Replace
 							} else if (scoreMatrix[i][j] == scoreMatrix[i - 1][j - 1]
-									+ matchReplace(squery, ssubject, i, j)) {
+									+ matchReplace(scorer, squery, ssubject, i, j)) {
 
 								align[0].insert(0, st.tokenizeSymbol(squery
 										.symbolAt(i--)));
@@ -0,0 +1,666 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.BioRuntimeException;
+import org.biojava.bio.SimpleAnnotation;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.impl.SimpleGappedSequence;
+import org.biojava.bio.seq.impl.SimpleSequence;
+import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.SimpleSymbolList;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * <p>
+ * A local alignment algorithm that computes the same alignments as
+ * <code>SmithWaterman</code> but never holds more than a few vectors of the
+ * length of the sequences in memory. This makes it possible to align long
+ * reads against long references, where <code>SmithWaterman</code> would need
+ * three full score matrices.
+ * </p>
+ * <p>
+ * The alignment is computed in three steps:
+ * <ol>
+ * <li>The optimal score and the position where the alignment ends are found
+ * with Farrar's striped algorithm (Farrar 2007, "Striped Smith-Waterman speeds
+ * database searches six times over other SIMD implementations"). The query is
+ * split into a fixed number of lanes, and a query profile holding the
+ * substitution score of every query position against every symbol is laid
+ * out so that the lanes are adjacent in memory. The inner loops over the
+ * lanes are simple enough for the virtual machine to vectorise.</li>
+ * <li>The start of the alignment is found with a second pass that runs
+ * backwards from the end position, column by column, until the optimal score
+ * is reached again. This pass only visits the columns of the subject that
+ * are part of the alignment.</li>
+ * <li>The alignment between the start and the end position is reconstructed
+ * in linear space with the Myers and Miller version of Hirschberg's
+ * algorithm.</li>
+ * </ol>
+ * </p>
+ * <p>
+ * Scores and gap penalties are treated exactly as in
+ * <code>SmithWaterman</code>, so both algorithms report the same score. If
+ * there is more than one optimal alignment, the two algorithms may choose
+ * different ones. The work vectors are kept between calls, so a single
+ * instance should not be used by more than one thread at a time.
+ * </p>
+ *
+ * @see SmithWaterman
+ * @since 1.9.8
+ */
+public class StripedSmithWaterman extends AlignmentAlgorithm {
+
+	/**
+	 * Number of query positions processed together.
+	 */
+	private static final int LANES = 8;
+
+	/**
+	 * A score that cannot be reached but does not overflow when gap
+	 * penalties are added to it a few times.
+	 */
+	private static final int NEG_INF = Integer.MIN_VALUE / 4;
+
+	private short match, replace, insert, delete, gapExt;
+
+	private SubstitutionMatrix subMatrix;
+
+	/*
+	 * Work vectors, kept between calls.
+	 */
+	private int[] profile, hStore, hLoad, hE, vF, vH, colH, rowE;
+
+	/**
+	 * Default constructor.
+	 */
+	public StripedSmithWaterman() {
+		this.subMatrix = null;
+	}
+
+	/**
+	 * Constructs the new StripedSmithWaterman alignment object. The
+	 * parameters are the same as for <code>SmithWaterman</code>: they are
+	 * expenses and not scores. If the expenses for gap extension are equal to
+	 * the cost of starting a gap (delete or insert), no affine gap penalties
+	 * are used.
+	 *
+	 * @param match
+	 *            expenses for a match
+	 * @param replace
+	 *            expenses for a replace operation
+	 * @param insert
+	 *            expenses for a gap opening in the query sequence
+	 * @param delete
+	 *            expenses for a gap opening in the target sequence
+	 * @param gapExtend
+	 *            expenses for the extension of a gap which was started earlier.
+	 * @param matrix
+	 *            the <code>SubstitutionMatrix</code> object to use.
+	 */
+	public StripedSmithWaterman(short match, short replace, short insert,
+			short delete, short gapExtend, SubstitutionMatrix matrix) {
+		this.match = (short) -match;
+		this.replace = (short) -replace;
+		this.insert = (short) -insert;
+		this.delete = (short) -delete;
+		this.gapExt = (short) -gapExtend;
+		this.subMatrix = matrix;
+	}
+
+	/**
+	 * @return the delete
+	 */
+	public short getDelete() {
+		return delete;
+	}
+
+	/**
+	 * @return the gapExt
+	 */
+	public short getGapExt() {
+		return gapExt;
+	}
+
+	/**
+	 * @return the insert
+	 */
+	public short getInsert() {
+		return insert;
+	}
+
+	/**
+	 * @return the match
+	 */
+	public short getMatch() {
+		return match;
+	}
+
+	/**
+	 * @return the replace
+	 */
+	public short getReplace() {
+		return replace;
+	}
+
+	/**
+	 * @return the subMatrix
+	 */
+	public SubstitutionMatrix getSubMatrix() {
+		return subMatrix;
+	}
+
+	/**
+	 * Sets the penalty for a delete operation to the specified value.
+	 * Internally scores are used instead of penalties so that the value is
+	 * multiplied with -1.
+	 *
+	 * @param del
+	 *            costs for a single deletion operation
+	 */
+	public void setDelete(short del) {
+		this.delete = (short) -del;
+	}
+
+	/**
+	 * Sets the penalty for an extension of any gap (insert or delete) to the
+	 * specified value. Internally scores are used instead of penalties so
+	 * that the value is multiplied with -1.
+	 *
+	 * @param ge
+	 *            costs for any gap extension
+	 */
+	public void setGapExt(short ge) {
+		this.gapExt = (short) -ge;
+	}
+
+	/**
+	 * Sets the penalty for an insert operation to the specified value.
+	 * Internally scores are used instead of penalties so that the value is
+	 * multiplied with -1.
+	 *
+	 * @param ins
+	 *            costs for a single insert operation
+	 */
+	public void setInsert(short ins) {
+		this.insert = (short) -ins;
+	}
+
+	/**
+	 * Sets the penalty for a match operation to the specified value.
+	 * Internally scores are used instead of penalties so that the value is
+	 * multiplied with -1.
+	 *
+	 * @param ma
+	 *            costs for a single match operation
+	 */
+	public void setMatch(short ma) {
+		this.match = (short) -ma;
+	}
+
+	/**
+	 * Sets the penalty for a replace operation to the specified value.
+	 * Internally scores are used instead of penalties so that the value is
+	 * multiplied with -1.
+	 *
+	 * @param rep
+	 *            costs for a single replace operation
+	 */
+	public void setReplace(short rep) {
+		this.replace = (short) -rep;
+	}
+
+	/**
+	 * Sets the substitution matrix to be used to the specified one.
+	 *
+	 * @param matrix
+	 *            the substitution matrix to be used
+	 */
+	public void setSubMatrix(SubstitutionMatrix matrix) {
+		this.subMatrix = matrix;
+	}
+
+	/**
+	 * Computes only the optimal local alignment score of the two sequences.
+	 * This is the first of the three steps of
+	 * <code>pairwiseAlignment</code> and needs memory proportional to the
+	 * length of the query only.
+	 *
+	 * @param query
+	 * @param subject
+	 * @return the score of the optimal local alignment.
+	 * @throws BioRuntimeException
+	 *             if the alphabets do not agree.
+	 */
+	public int score(SymbolList query, SymbolList subject)
+			throws BioRuntimeException {
+		checkAlphabets(query, subject);
+		int[][] codes = new int[2][];
+		int[][] score = encode(query, subject, codes);
+		int[] q = codes[0], s = codes[1];
+		return stripedScore(q, s, score)[0];
+	}
+
+	/**
+	 * Performs a local alignment in linear memory.
+	 *
+	 * @see AlignmentAlgorithm#pairwiseAlignment(org.biojava.bio.symbol.SymbolList,
+	 *      org.biojava.bio.symbol.SymbolList)
+	 */
+	public AlignmentPair pairwiseAlignment(SymbolList query, SymbolList subject)
+			throws BioRuntimeException {
+		Sequence squery = null;
+		Sequence ssubject = null;
+
+		if (query instanceof Sequence) {
+			squery = (Sequence) query;
+		} else {
+			// make it a sequence
+			squery = new SimpleSequence(query, "", "query",
+					new SimpleAnnotation());
+		}
+		if (subject instanceof Sequence) {
+			ssubject = (Sequence) subject;
+		} else {
+			// make it a sequence
+			ssubject = new SimpleSequence(subject, "", "subject",
+					new SimpleAnnotation());
+		}
+		checkAlphabets(squery, ssubject);
+
+		long time = System.currentTimeMillis();
+		int[][] codes = new int[2][];
+		int[][] score = encode(squery, ssubject, codes);
+		int[] q = codes[0], s = codes[1];
+
+		/*
+		 * Step 1: score and end position.
+		 */
+		int[] end = stripedScore(q, s, score);
+		int best = end[0], maxI = end[1], maxJ = end[2];
+
+		/*
+		 * Step 2: start position.
+		 */
+		int queryStart = maxI, subjectStart = maxJ;
+		if (best > 0) {
+			int[] start = reverseStart(q, maxI, s, maxJ, score, best);
+			queryStart = start[0];
+			subjectStart = start[1];
+		}
+
+		/*
+		 * Step 3: the alignment in between.
+		 */
+		MyersMiller mm = new MyersMiller(affine() ? insert : 0,
+				affine() ? delete : 0, gapExt);
+		mm.align(score, q, queryStart, maxI, s, subjectStart, maxJ);
+
+		try {
+			SymbolTokenization st = squery.getAlphabet().getTokenization(
+					"default");
+			StringBuilder[] align = { new StringBuilder(),
+					new StringBuilder() };
+
+			/*
+			 * Make equal length alignments, padded in the same way as
+			 * SmithWaterman does.
+			 */
+			pad(align[0], queryStart);
+			pad(align[1], subjectStart);
+			byte[] ops = mm.getOps();
+			int i = queryStart, j = subjectStart;
+			for (int k = 0; k < mm.getOpCount(); k++) {
+				switch (ops[k]) {
+				case MyersMiller.MATCH:
+					align[0].append(st.tokenizeSymbol(squery.symbolAt(++i)));
+					align[1].append(st.tokenizeSymbol(ssubject.symbolAt(++j)));
+					break;
+				case MyersMiller.INSERT:
+					align[0].append('-');
+					align[1].append(st.tokenizeSymbol(ssubject.symbolAt(++j)));
+					break;
+				default:
+					align[0].append(st.tokenizeSymbol(squery.symbolAt(++i)));
+					align[1].append('-');
+				}
+			}
+			pad(align[0], Math.max(maxI, maxJ) - align[0].length());
+			pad(align[1], Math.max(maxJ, align[0].length())
+					- align[1].length());
+			pad(align[0], align[1].length() - align[0].length());
+
+			squery = new SimpleGappedSequence(
+					new SimpleSequence(new SimpleSymbolList(squery
+							.getAlphabet().getTokenization("token"),
+							align[0].toString()), squery.getURN(), squery
+							.getName(), squery.getAnnotation()));
+			ssubject = new SimpleGappedSequence(
+					new SimpleSequence(new SimpleSymbolList(ssubject
+							.getAlphabet().getTokenization("token"),
+							align[1].toString()), ssubject.getURN(),
+							ssubject.getName(), ssubject.getAnnotation()));
+
+			AlignmentPair pairalign = new AlignmentPair(squery, ssubject,
+					queryStart + 1, maxI, subjectStart + 1, maxJ, subMatrix);
+			pairalign.setComputationTime(System.currentTimeMillis() - time);
+			pairalign.setScore(best);
+			return pairalign;
+
+		} catch (BioException exc) {
+			throw new BioRuntimeException(exc);
+		}
+	}
+
+	private void checkAlphabets(SymbolList query, SymbolList subject)
+			throws BioRuntimeException {
+		if (!query.getAlphabet().equals(subject.getAlphabet())
+				|| (subMatrix != null && !query.getAlphabet().equals(
+						subMatrix.getAlphabet())))
+			throw new BioRuntimeException(
+					"The alphabets of the sequences and the substitution matrix have to be equal.");
+	}
+
+	/**
+	 * SmithWaterman only uses affine gap penalties if the gap opening and
+	 * extension expenses differ.
+	 */
+	private boolean affine() {
+		return (gapExt != delete) || (gapExt != insert);
+	}
+
+	private static void pad(StringBuilder sb, int count) {
+		for (int i = 0; i < count; i++)
+			sb.append('-');
+	}
+
+	/**
+	 * Replaces the symbols of both lists by small codes, which are stored in
+	 * <code>codes</code>, and returns the scores of every pair of codes. With
+	 * a substitution matrix the indices of the matrix are used, otherwise
+	 * every distinct symbol gets a code of its own.
+	 */
+	private int[][] encode(SymbolList query, SymbolList subject, int[][] codes)
+			throws BioRuntimeException {
+		if (subMatrix != null) {
+			try {
+				codes[0] = toInts(subMatrix.encode(query));
+				codes[1] = toInts(subMatrix.encode(subject));
+			} catch (IllegalAlphabetException exc) {
+				throw new BioRuntimeException(exc);
+			}
+			short[][] matrix = subMatrix.getIndexedMatrix();
+			int[][] score = new int[matrix.length][matrix.length];
+			for (int x = 0; x < matrix.length; x++)
+				for (int y = 0; y < matrix.length; y++)
+					score[x][y] = matrix[x][y];
+			return score;
+		}
+
+		Map<Symbol, Integer> symbols = new HashMap<Symbol, Integer>();
+		codes[0] = encode(query, symbols);
+		codes[1] = encode(subject, symbols);
+		Symbol[] syms = new Symbol[symbols.size()];
+		for (Map.Entry<Symbol, Integer> entry : symbols.entrySet())
+			syms[entry.getValue().intValue()] = entry.getKey();
+		int[][] score = new int[syms.length][syms.length];
+		for (int x = 0; x < syms.length; x++)
+			for (int y = 0; y < syms.length; y++)
+				score[x][y] = syms[x].equals(syms[y]) ? match : replace;
+		return score;
+	}
+
+	private static int[] toInts(byte[] bytes) {
+		int[] ints = new int[bytes.length];
+		for (int i = 0; i < bytes.length; i++)
+			ints[i] = bytes[i] & 0xff;
+		return ints;
+	}
+
+	private static int[] encode(SymbolList sl, Map<Symbol, Integer> codes) {
+		int[] enc = new int[sl.length()];
+		Symbol last = null;
+		int lastCode = -1;
+		for (int i = 0; i < enc.length; i++) {
+			Symbol sym = sl.symbolAt(i + 1);
+			if (sym != last) {
+				Integer code = codes.get(sym);
+				if (code == null) {
+					code = Integer.valueOf(codes.size());
+					codes.put(sym, code);
+				}
+				last = sym;
+				lastCode = code.intValue();
+			}
+			enc[i] = lastCode;
+		}
+		return enc;
+	}
+
+	private static int[] grow(int[] array, int size) {
+		return (array == null || array.length < size) ? new int[size] : array;
+	}
+
+	/**
+	 * Farrar's striped local alignment. The query position
+	 * <code>l * segLen + k</code> is kept in lane <code>l</code> of segment
+	 * <code>k</code>, so that a segment never depends on itself within a
+	 * column. Vertical gaps that cross from one lane to the next are fixed up
+	 * afterwards in the lazy F loop, which usually finishes after a few
+	 * segments.
+	 *
+	 * @return the best score, and the query and subject positions (starting
+	 *         from one) where it is reached.
+	 */
+	private int[] stripedScore(int[] q, int[] s, int[][] score) {
+		final int m = q.length;
+		final int segLen = Math.max(1, (m + LANES - 1) / LANES);
+		final int size = segLen * LANES;
+		final int ins = affine() ? insert + gapExt : gapExt;
+		final int del = affine() ? delete + gapExt : gapExt;
+		final int ext = gapExt;
+
+		/*
+		 * The query profile: for each symbol code, the score of every query
+		 * position in striped order. Padding positions can never score.
+		 */
+		profile = grow(profile, score.length * size);
+		for (int c = 0; c < score.length; c++) {
+			int off = c * size;
+			for (int k = 0; k < segLen; k++)
+				for (int l = 0; l < LANES; l++) {
+					int pos = l * segLen + k;
+					profile[off + k * LANES + l] = (pos < m) ? score[q[pos]][c]
+							: NEG_INF;
+				}
+		}
+
+		int[] hStore = grow(this.hStore, size);
+		int[] hLoad = grow(this.hLoad, size);
+		int[] hE = grow(this.hE, size);
+		int[] vF = grow(this.vF, LANES);
+		int[] vH = grow(this.vH, LANES);
+		for (int x = 0; x < size; x++) {
+			hStore[x] = 0;
+			hE[x] = NEG_INF;
+		}
+
+		int best = 0, maxI = 0, maxJ = 0;
+		final int last = (segLen - 1) * LANES;
+
+		for (int j = 0; j < s.length; j++) {
+			final int pOff = s[j] * size;
+
+			// the diagonal of the first segment comes from the previous lane
+			vH[0] = 0;
+			for (int l = 1; l < LANES; l++)
+				vH[l] = hStore[last + l - 1];
+			for (int l = 0; l < LANES; l++)
+				vF[l] = NEG_INF;
+
+			int[] tmp = hLoad;
+			hLoad = hStore;
+			hStore = tmp;
+
+			int colMax = 0;
+			for (int k = 0; k < segLen; k++) {
+				final int base = k * LANES;
+				for (int l = 0; l < LANES; l++) {
+					int h = vH[l] + profile[pOff + base + l];
+					int e = hE[base + l];
+					int f = vF[l];
+					if (e > h)
+						h = e;
+					if (f > h)
+						h = f;
+					if (h < 0)
+						h = 0;
+					hStore[base + l] = h;
+					if (h > colMax)
+						colMax = h;
+					hE[base + l] = Math.max(e + ext, h + ins);
+					vF[l] = Math.max(f + ext, h + del);
+					vH[l] = hLoad[base + l];
+				}
+			}
+
+			/*
+			 * Lazy F loop: carry vertical gaps over the lane boundaries
+			 * until they can no longer change any cell.
+			 */
+			for (int l = LANES - 1; l > 0; l--)
+				vF[l] = vF[l - 1];
+			vF[0] = NEG_INF;
+			int k = 0;
+			while (true) {
+				final int base = k * LANES;
+				boolean more = false;
+				for (int l = 0; l < LANES; l++) {
+					int f = vF[l];
+					int h = hStore[base + l];
+					if (f > h + del - ext) {
+						more = true;
+						if (f > h) {
+							hStore[base + l] = f;
+							if (f > colMax)
+								colMax = f;
+							if (f + ins > hE[base + l])
+								hE[base + l] = f + ins;
+						}
+					}
+					vF[l] = f + ext;
+				}
+				if (!more)
+					break;
+				if (++k == segLen) {
+					k = 0;
+					for (int l = LANES - 1; l > 0; l--)
+						vF[l] = vF[l - 1];
+					vF[0] = NEG_INF;
+				}
+			}
+
+			if (colMax > best) {
+				// find the first query position with a new best score
+				int row = -1, rowMax = best;
+				for (int l = 0; l < LANES; l++)
+					for (k = 0; k < segLen; k++) {
+						int pos = l * segLen + k;
+						if (pos >= m)
+							break;
+						int h = hStore[k * LANES + l];
+						if (h > rowMax) {
+							rowMax = h;
+							row = pos;
+						}
+					}
+				if (row >= 0) {
+					best = rowMax;
+					maxI = row + 1;
+					maxJ = j + 1;
+				}
+			}
+		}
+
+		this.hStore = hStore;
+		this.hLoad = hLoad;
+		this.hE = hE;
+		this.vF = vF;
+		this.vH = vH;
+		return new int[] { best, maxI, maxJ };
+	}
+
+	/**
+	 * Runs an alignment backwards from the end position that is anchored at
+	 * the end position, one subject column at a time, until the best score is
+	 * reached. The cell where that happens is the start of an optimal local
+	 * alignment ending at the end position.
+	 *
+	 * @return the query and subject positions (starting from zero) before
+	 *         the first aligned symbols.
+	 */
+	private int[] reverseStart(int[] q, int maxI, int[] s, int maxJ,
+			int[][] score, int best) {
+		final int ins = affine() ? insert : 0;
+		final int del = affine() ? delete : 0;
+		final int ext = gapExt;
+
+		int[] colH = grow(this.colH, maxI + 1);
+		int[] rowE = grow(this.rowE, maxI + 1);
+		this.colH = colH;
+		this.rowE = rowE;
+
+		colH[0] = 0;
+		for (int i = 1; i <= maxI; i++) {
+			colH[i] = del + i * ext;
+			rowE[i] = NEG_INF;
+		}
+
+		for (int j = 1; j <= maxJ; j++) {
+			final int sc = s[maxJ - j];
+			int diag = colH[0];
+			colH[0] = ins + j * ext;
+			int f = NEG_INF;
+			for (int i = 1; i <= maxI; i++) {
+				int e = Math.max(rowE[i], colH[i] + ins) + ext;
+				f = Math.max(f, colH[i - 1] + del) + ext;
+				int h = diag + score[q[maxI - i]][sc];
+				if (e > h)
+					h = e;
+				if (f > h)
+					h = f;
+				diag = colH[i];
+				colH[i] = h;
+				rowE[i] = e;
+				if (h == best)
+					return new int[] { maxI - i, maxJ - j };
+			}
+		}
+		throw new BioRuntimeException(
+				"Assertion failure: could not find the start of the alignment");
+	}
+}
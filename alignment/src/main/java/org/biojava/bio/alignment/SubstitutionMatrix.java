@@ -42,10 +42,14 @@ import org.biojava.bio.BioException;
 import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.seq.ProteinTools;
 import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojava.bio.symbol.AlphabetIndex;
 import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.ByteSymbolList;
 import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.IllegalAlphabetException;
 import org.biojava.bio.symbol.IllegalSymbolException;
 import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
 
 /**
  * <p>
@@ -76,6 +80,14 @@ public class SubstitutionMatrix implements Serializable {
 	 */
 	private short[][] matrix;
 
+	/**
+	 * The matrix indexed by symbol indices, and the symbol indices. Both are
+	 * built on first use.
+	 */
+	private transient volatile short[][] indexedMatrix;
+
+	private transient Map<Symbol, Integer> symbolIndex;
+
 	/**
 	 * Minimal and maximal entry in this matrix
 	 */
@@ -1320,6 +1332,157 @@ public class SubstitutionMatrix implements Serializable {
 				.intValue()];
 	}
 
+	/**
+	 * Gives the number of symbol indices used by <code>getIndex</code>,
+	 * <code>getIndexedMatrix</code> and <code>encode</code>. The last index
+	 * stands for all symbols that have no entry in this matrix.
+	 *
+	 * @return the number of rows and columns of the indexed matrix.
+	 */
+	public int getIndexSize() {
+		return getIndexedView().length;
+	}
+
+	/**
+	 * Gives the index of a symbol for use with the indexed view of this
+	 * matrix. The atomic symbols of the alphabet have the index given by the
+	 * <code>AlphabetIndex</code> of the alphabet, which is also the code they
+	 * get in a <code>ByteSymbolList</code>. Ambiguous symbols that appear in
+	 * this matrix follow, and all other symbols share the last index, which
+	 * scores zero like <code>getValueAt</code> does.
+	 *
+	 * @param sym
+	 *            a symbol
+	 * @return the index of the symbol.
+	 */
+	public int getIndex(Symbol sym) {
+		short[][] view = getIndexedView();
+		Integer index = symbolIndex.get(sym);
+		return (index == null) ? view.length - 1 : index.intValue();
+	}
+
+	/**
+	 * Gives a dense copy of this matrix, indexed by the symbol indices of
+	 * <code>getIndex</code> for both rows and columns. This allows scoring
+	 * without any map lookups.
+	 *
+	 * @return a square matrix with <code>getIndexSize()</code> rows.
+	 */
+	public short[][] getIndexedMatrix() {
+		short[][] view = getIndexedView();
+		short[][] copy = new short[view.length][];
+		for (int i = 0; i < view.length; i++)
+			copy[i] = view[i].clone();
+		return copy;
+	}
+
+	/**
+	 * Gives the indexed matrix as one array in row major order, so that the
+	 * score of the symbols with the indices <code>i</code> and
+	 * <code>j</code> is found at <code>i * getIndexSize() + j</code>.
+	 *
+	 * @return a new array of <code>getIndexSize()</code> squared scores.
+	 */
+	public int[] getIndexedScores() {
+		short[][] view = getIndexedView();
+		int[] scores = new int[view.length * view.length];
+		for (int i = 0; i < view.length; i++)
+			for (int j = 0; j < view.length; j++)
+				scores[i * view.length + j] = view[i][j];
+		return scores;
+	}
+
+	/**
+	 * Replaces each symbol of a symbol list by its index as given by
+	 * <code>getIndex</code>. Alignment algorithms can encode their sequences
+	 * once and then score every cell with two array accesses.
+	 *
+	 * @param symList
+	 *            a symbol list over the alphabet of this matrix.
+	 * @return the indices, one per symbol, in the order of the list.
+	 * @throws IllegalAlphabetException
+	 *             if there are more than 256 indices, or the symbol list is
+	 *             over a different alphabet.
+	 */
+	public byte[] encode(SymbolList symList) throws IllegalAlphabetException {
+		short[][] view = getIndexedView();
+		if (view.length > 256)
+			throw new IllegalAlphabetException("The matrix " + name
+					+ " has too many symbols to encode them as bytes.");
+		if (!symList.getAlphabet().equals(alphabet))
+			throw new IllegalAlphabetException("Can't encode symbols from "
+					+ symList.getAlphabet().getName() + " with a matrix for "
+					+ alphabet.getName());
+
+		byte[] indices = new byte[symList.length()];
+		if (symList instanceof ByteSymbolList) {
+			// the codes of atomic symbols are already alphabet indices
+			ByteSymbolList bsl = (ByteSymbolList) symList;
+			int atomic = alphabet.size();
+			for (int i = 0; i < indices.length; i++) {
+				int code = bsl.codeAt(i + 1);
+				indices[i] = (byte) ((code < atomic) ? code : getIndex(bsl
+						.symbolForCode(code)));
+			}
+			return indices;
+		}
+
+		Symbol last = null;
+		byte lastIndex = 0;
+		for (int i = 0; i < indices.length; i++) {
+			Symbol sym = symList.symbolAt(i + 1);
+			if (sym != last) {
+				last = sym;
+				lastIndex = (byte) getIndex(sym);
+			}
+			indices[i] = lastIndex;
+		}
+		return indices;
+	}
+
+	/**
+	 * Builds the indexed view of the matrix on first use.
+	 */
+	private short[][] getIndexedView() {
+		short[][] view = indexedMatrix;
+		if (view != null)
+			return view;
+		synchronized (this) {
+			if (indexedMatrix != null)
+				return indexedMatrix;
+
+			Map<Symbol, Integer> index = new HashMap<Symbol, Integer>();
+			AlphabetIndex alphaIndex = AlphabetManager
+					.getAlphabetIndex(alphabet);
+			for (int i = 0; i < alphabet.size(); i++)
+				index.put(alphaIndex.symbolForIndex(i), Integer.valueOf(i));
+			for (Symbol sym : rowSymbols.keySet())
+				if (!index.containsKey(sym))
+					index.put(sym, Integer.valueOf(index.size()));
+			for (Symbol sym : colSymbols.keySet())
+				if (!index.containsKey(sym))
+					index.put(sym, Integer.valueOf(index.size()));
+
+			// the last row and column stay zero for unknown symbols
+			view = new short[index.size() + 1][index.size() + 1];
+			for (Map.Entry<Symbol, Integer> row : index.entrySet()) {
+				Integer r = rowSymbols.get(row.getKey());
+				if (r == null)
+					continue;
+				for (Map.Entry<Symbol, Integer> col : index.entrySet()) {
+					Integer c = colSymbols.get(col.getKey());
+					if (c != null)
+						view[row.getValue().intValue()][col.getValue()
+								.intValue()] = matrix[r.intValue()][c
+								.intValue()];
+				}
+			}
+			symbolIndex = index;
+			indexedMatrix = view;
+			return view;
+		}
+	}
+
 	/**
 	 * This gives you the description of this matrix if there is one. Normally
 	 * substitution matrix files like BLOSUM contain some lines of description.
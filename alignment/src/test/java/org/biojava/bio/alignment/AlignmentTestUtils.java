@@ -0,0 +1,51 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import java.util.Random;
+
+/**
+ * Random sequences for the alignment tests and benchmarks.
+ *
+ * @since 1.9.8
+ */
+class AlignmentTestUtils {
+
+    private AlignmentTestUtils() {}
+
+    /**
+     * Returns <code>length</code> characters drawn uniformly from
+     * <code>alphabet</code>.
+     */
+    static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+
+    /**
+     * Returns a random DNA string of <code>length</code> lower case bases.
+     */
+    static String randomDNA(Random random, int length) {
+        return randomString(random, "acgt", length);
+    }
+}
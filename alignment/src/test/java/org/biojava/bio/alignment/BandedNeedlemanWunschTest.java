@@ -0,0 +1,126 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.Sequence;
+
+/**
+ * Unit test for BandedNeedlemanWunsch. NeedlemanWunsch is taken as the
+ * reference.
+ */
+public final class BandedNeedlemanWunschTest extends TestCase {
+
+    private final Random random = new Random(7);
+
+    public void testAffineWideBand() throws Exception {
+        compare((short) 5, (short) 2, 20, BandedNeedlemanWunsch.NO_X_DROP);
+    }
+
+    public void testLinearWideBand() throws Exception {
+        compare((short) 3, (short) 3, 20, BandedNeedlemanWunsch.NO_X_DROP);
+    }
+
+    public void testAffineXDrop() throws Exception {
+        compare((short) 5, (short) 2, 20, 100);
+    }
+
+    public void testNarrowBandIsNeverBetter() throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+        NeedlemanWunsch nw = new NeedlemanWunsch((short) 0, (short) 0, (short) 5, (short) 5, (short) 2, matrix);
+        BandedNeedlemanWunsch banded = new BandedNeedlemanWunsch((short) 0, (short) 0, (short) 5, (short) 5,
+                (short) 2, matrix, 0);
+        for (int n = 0; n < 20; n++) {
+            String q = AlignmentTestUtils.randomDNA(random, 1 + random.nextInt(80));
+            Sequence query = DNATools.createDNASequence(q, "query");
+            Sequence subject = DNATools.createDNASequence(mutate(q), "subject");
+            AlignmentPair pair = banded.pairwiseAlignment(query, subject);
+            assertTrue(pair.getScore() <= nw.pairwiseAlignment(query, subject).getScore());
+            assertEquals(query.seqString(), pair.getQuery().seqString().replaceAll("-", ""));
+            assertEquals(subject.seqString(), pair.getSubject().seqString().replaceAll("-", ""));
+        }
+    }
+
+    public void testXDropTerminates() throws Exception {
+        Sequence query = DNATools.createDNASequence("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", "query");
+        Sequence subject = DNATools.createDNASequence("cccccccccccccccccccccccccccccc", "subject");
+        BandedNeedlemanWunsch banded = new BandedNeedlemanWunsch((short) 0, (short) 0, (short) 5, (short) 5,
+                (short) 2, SubstitutionMatrix.getNuc4_4(), 5, 20);
+        try {
+            banded.pairwiseAlignment(query, subject);
+            fail("Expected X-drop termination");
+        } catch (BioException ex) {
+            // expected
+        }
+    }
+
+    public void testEmptySequence() throws Exception {
+        Sequence query = DNATools.createDNASequence("", "query");
+        Sequence subject = DNATools.createDNASequence("acgt", "subject");
+        BandedNeedlemanWunsch banded = new BandedNeedlemanWunsch((short) 0, (short) 0, (short) 5, (short) 5,
+                (short) 2, SubstitutionMatrix.getNuc4_4(), 0);
+        AlignmentPair pair = banded.pairwiseAlignment(query, subject);
+        assertEquals(-13, pair.getScore(), 0);
+        assertEquals("----", pair.getQuery().seqString());
+    }
+
+    private void compare(short open, short extend, int band, int xDrop) throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+        NeedlemanWunsch nw = new NeedlemanWunsch((short) 0, (short) 0, open, open, extend, matrix);
+        BandedNeedlemanWunsch banded = new BandedNeedlemanWunsch((short) 0, (short) 0, open, open, extend,
+                matrix, band, xDrop);
+        for (int n = 0; n < 30; n++) {
+            String q = AlignmentTestUtils.randomDNA(random, 1 + random.nextInt(120));
+            Sequence query = DNATools.createDNASequence(q, "query");
+            Sequence subject = DNATools.createDNASequence(mutate(q), "subject");
+            AlignmentPair expected = nw.pairwiseAlignment(query, subject);
+            AlignmentPair pair = banded.pairwiseAlignment(query, subject);
+            assertEquals(expected.getScore(), pair.getScore(), 0);
+            assertEquals(-banded.getEditDistance(), pair.getScore(), 0);
+            assertEquals(nw.getEditDistance(), banded.getEditDistance());
+            assertNull(banded.CostMatrix);
+            assertEquals(pair.getQuery().length(), pair.getSubject().length());
+            assertEquals(query.seqString(), pair.getQuery().seqString().replaceAll("-", ""));
+            assertEquals(subject.seqString(), pair.getSubject().seqString().replaceAll("-", ""));
+        }
+    }
+
+    /**
+     * Copies a string with a few substitutions and short indels.
+     */
+    private String mutate(String seq) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < seq.length(); i++) {
+            int r = random.nextInt(30);
+            if (r == 0)
+                continue;
+            if (r == 1)
+                sb.append(AlignmentTestUtils.randomDNA(random, 1 + random.nextInt(3)));
+            sb.append(r == 2 ? "acgt".charAt(random.nextInt(4)) : seq.charAt(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.db.HashSequenceDB;
+import org.biojava.bio.seq.db.SequenceDB;
+
+/**
+ * Unit test for BatchAligner.
+ */
+public final class BatchAlignerTest extends TestCase {
+
+    private final SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+
+    private final BatchAligner.AlgorithmFactory factory = new BatchAligner.AlgorithmFactory() {
+        public AlignmentAlgorithm createAlgorithm() {
+            return new StripedSmithWaterman((short) 0, (short) 0, (short) 5, (short) 5, (short) 2, matrix);
+        }
+    };
+
+    public void testAlignAll() throws Exception {
+        SequenceDB queries = randomDB("q", 12);
+        SequenceDB targets = randomDB("t", 17);
+        final Map<String, Integer> scores = new HashMap<String, Integer>();
+
+        BatchAligner aligner = new BatchAligner(factory, 3);
+        try {
+            aligner.alignAll(queries.sequenceIterator(), targets, new AlignmentListener() {
+                public void alignmentDone(Sequence query, Sequence subject, AlignmentPair pair) {
+                    Integer old = scores.put(query.getName() + "/" + subject.getName(), (int) pair.getScore());
+                    assertNull(old);
+                }
+
+                public void alignmentFailed(Sequence query, Sequence subject, Exception exc) {
+                    fail(exc.toString());
+                }
+            });
+
+            assertEquals(12 * 17, scores.size());
+            StripedSmithWaterman sw = (StripedSmithWaterman) factory.createAlgorithm();
+            Sequence query = queries.getSequence("q3");
+            Sequence target = targets.getSequence("t11");
+            assertEquals((int) sw.pairwiseAlignment(query, target).getScore(), scores.get("q3/t11").intValue());
+
+            long alignments = 0, cells = 0;
+            for (BatchAligner.WorkerStatistics stats : aligner.getWorkerStatistics()) {
+                alignments += stats.getAlignments();
+                cells += stats.getCells();
+                assertEquals(0, stats.getFailures());
+            }
+            assertEquals(12 * 17, alignments);
+            assertTrue(cells > 0);
+        } finally {
+            aligner.shutdown();
+        }
+    }
+
+    public void testListenerException() throws Exception {
+        BatchAligner aligner = new BatchAligner(factory, 2);
+        try {
+            aligner.alignAll(randomDB("q", 4).sequenceIterator(), randomDB("t", 4), new AlignmentListener() {
+                public void alignmentDone(Sequence query, Sequence subject, AlignmentPair pair) {
+                    throw new IllegalStateException("test");
+                }
+
+                public void alignmentFailed(Sequence query, Sequence subject, Exception exc) {
+                }
+            });
+            fail("Expected a BioException");
+        } catch (BioException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        } finally {
+            aligner.shutdown();
+        }
+    }
+
+    public void testFactoryException() throws Exception {
+        BatchAligner aligner = new BatchAligner(new BatchAligner.AlgorithmFactory() {
+            public AlignmentAlgorithm createAlgorithm() {
+                throw new IllegalStateException("test");
+            }
+        }, 2);
+        try {
+            aligner.alignAll(randomDB("q", 4).sequenceIterator(), randomDB("t", 4), new AlignmentListener() {
+                public void alignmentDone(Sequence query, Sequence subject, AlignmentPair pair) {
+                    fail("No algorithm to align with");
+                }
+
+                public void alignmentFailed(Sequence query, Sequence subject, Exception exc) {
+                    fail("No algorithm to align with");
+                }
+            });
+            fail("Expected a BioException");
+        } catch (BioException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+            assertTrue(aligner.getWorkerStatistics().isEmpty());
+        } finally {
+            aligner.shutdown();
+        }
+    }
+
+    private static SequenceDB randomDB(String prefix, int count) throws Exception {
+        Random random = new Random(prefix.hashCode());
+        HashSequenceDB db = new HashSequenceDB(prefix);
+        for (int i = 0; i < count; i++) {
+            String dna = AlignmentTestUtils.randomDNA(random, 20 + random.nextInt(100));
+            db.addSequence(DNATools.createDNASequence(dna, prefix + i));
+        }
+        return db;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import java.util.Random;
+
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.Sequence;
+
+/**
+ * Compares the run time of SmithWaterman and StripedSmithWaterman on random
+ * DNA. Usage: <code>SmithWatermanBenchmark [queryLength [subjectLength
+ * [rounds]]]</code>. The reported rate is in matrix cells per second.
+ */
+public class SmithWatermanBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int queryLength = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int subjectLength = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+        Random random = new Random(1);
+        Sequence query = DNATools.createDNASequence(AlignmentTestUtils.randomDNA(random, queryLength), "query");
+        Sequence subject = DNATools.createDNASequence(AlignmentTestUtils.randomDNA(random, subjectLength), "subject");
+        SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+
+        StripedSmithWaterman striped = new StripedSmithWaterman((short) 0, (short) 0, (short) 5, (short) 5, (short) 2, matrix);
+        SmithWaterman plain = new SmithWaterman((short) 0, (short) 0, (short) 5, (short) 5, (short) 2, matrix);
+        run("StripedSmithWaterman.score", striped, query, subject, rounds, true);
+        run("StripedSmithWaterman", striped, query, subject, rounds, false);
+        run("SmithWaterman", plain, query, subject, rounds, false);
+    }
+
+    private static void run(String name, AlignmentAlgorithm aligner, Sequence query, Sequence subject,
+            int rounds, boolean scoreOnly) throws Exception {
+        // warm up
+        for (int i = 0; i < rounds; i++)
+            align(aligner, query, subject, scoreOnly);
+        long time = System.nanoTime();
+        double score = 0;
+        for (int i = 0; i < rounds; i++)
+            score = align(aligner, query, subject, scoreOnly);
+        time = System.nanoTime() - time;
+        double cells = (double) query.length() * subject.length() * rounds;
+        System.out.printf("%-28s score %6.0f  %8.1f ms/alignment  %10.3g cells/s\n", name, score,
+                time / 1e6 / rounds, cells / (time / 1e9));
+    }
+
+    private static double align(AlignmentAlgorithm aligner, Sequence query, Sequence subject, boolean scoreOnly)
+            throws Exception {
+        if (scoreOnly)
+            return ((StripedSmithWaterman) aligner).score(query, subject);
+        return aligner.pairwiseAlignment(query, subject).getScore();
+    }
+}
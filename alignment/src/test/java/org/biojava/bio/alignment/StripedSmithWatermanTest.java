@@ -0,0 +1,176 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.alignment;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.ProteinTools;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.impl.SimpleSequence;
+import org.biojava.bio.symbol.SimpleSymbolList;
+import org.biojava.bio.symbol.Symbol;
+
+/**
+ * Unit test for StripedSmithWaterman. The scores are compared to those of
+ * SmithWaterman, which is taken as the reference.
+ */
+public final class StripedSmithWatermanTest extends TestCase {
+
+    private static final String DNA = "acgt";
+    private static final String PROTEIN = "ARNDCQEGHILKMFPSTWYV";
+
+    private final Random random = new Random(42);
+
+    public void testAffineDNA() throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+        compare(matrix, (short) 5, (short) 2, false);
+    }
+
+    public void testLinearDNA() throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+        compare(matrix, (short) 3, (short) 3, false);
+    }
+
+    public void testAffineProtein() throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.getBlosum62();
+        compare(matrix, (short) 10, (short) 1, true);
+    }
+
+    public void testWithoutMatrix() throws Exception {
+        for (int n = 0; n < 20; n++) {
+            Sequence query = dna(AlignmentTestUtils.randomString(random, DNA, 1 + random.nextInt(60)), "query");
+            Sequence subject = dna(mutate(query.seqString(), DNA), "subject");
+            SmithWaterman sw = new SmithWaterman((short) -2, (short) 1, (short) 3, (short) 3, (short) 1, null);
+            StripedSmithWaterman ssw = new StripedSmithWaterman((short) -2, (short) 1, (short) 3, (short) 3, (short) 1, null);
+            assertEquals(sw.pairwiseAlignment(query, subject).getScore(),
+                    ssw.pairwiseAlignment(query, subject).getScore(), 0);
+        }
+    }
+
+    public void testAlignmentCoordinates() throws Exception {
+        Sequence query = dna("ttttacgtacgtaaacgtacgtcccc", "query");
+        Sequence subject = dna("gggacgtacgtacgtacgtgg", "subject");
+        SmithWaterman sw = new SmithWaterman((short) -1, (short) 3, (short) 2, (short) 2, (short) 1, SubstitutionMatrix.getNuc4_4());
+        StripedSmithWaterman ssw = new StripedSmithWaterman((short) -1, (short) 3, (short) 2, (short) 2, (short) 1, SubstitutionMatrix.getNuc4_4());
+        AlignmentPair expected = sw.pairwiseAlignment(query, subject);
+        AlignmentPair pair = ssw.pairwiseAlignment(query, subject);
+        assertEquals(expected.getScore(), pair.getScore(), 0);
+        assertEquals(expected.getQueryEnd(), pair.getQueryEnd());
+        assertEquals(expected.getSubjectEnd(), pair.getSubjectEnd());
+        assertEquals(expected.getQueryStart(), pair.getQueryStart());
+        assertEquals(expected.getSubjectStart(), pair.getSubjectStart());
+        // the gap may be placed differently in an equally good alignment
+        assertEquals(expected.getScore(), rescore(pair, SubstitutionMatrix.getNuc4_4(), (short) 2, (short) 1), 0);
+    }
+
+    public void testNoSimilarity() throws Exception {
+        Sequence query = dna("aaaaaaaa", "query");
+        Sequence subject = dna("cccccccc", "subject");
+        StripedSmithWaterman ssw = new StripedSmithWaterman((short) -1, (short) 3, (short) 2, (short) 2, (short) 1, SubstitutionMatrix.getNuc4_4());
+        assertEquals(0, ssw.pairwiseAlignment(query, subject).getScore(), 0);
+    }
+
+    private void compare(SubstitutionMatrix matrix, short open, short extend, boolean protein)
+            throws Exception {
+        SmithWaterman sw = new SmithWaterman((short) 0, (short) 0, open, open, extend, matrix);
+        StripedSmithWaterman ssw = new StripedSmithWaterman((short) 0, (short) 0, open, open, extend, matrix);
+        String alphabet = protein ? PROTEIN : DNA;
+        for (int n = 0; n < 30; n++) {
+            // include lengths around the lane count to cover the padding
+            String q = AlignmentTestUtils.randomString(random, alphabet, 1 + random.nextInt(n < 10 ? 20 : 120));
+            String s = mutate(q, alphabet);
+            Sequence query = protein ? protein(q, "query") : dna(q, "query");
+            Sequence subject = protein ? protein(s, "subject") : dna(s, "subject");
+
+            AlignmentPair expected = sw.pairwiseAlignment(query, subject);
+            AlignmentPair pair = ssw.pairwiseAlignment(query, subject);
+            assertEquals(q + " / " + s, expected.getScore(), pair.getScore(), 0);
+            assertEquals((int) expected.getScore(), ssw.score(query, subject));
+            assertEquals(expected.getScore(), rescore(pair, matrix, open, extend), 0);
+        }
+    }
+
+    /**
+     * Scores the aligned region of a pair from the gapped sequences. Like
+     * SmithWaterman, the aligned region of each sequence starts at the
+     * column given by its start position.
+     */
+    private static int rescore(AlignmentPair pair, SubstitutionMatrix matrix, short open, short extend)
+            throws Exception {
+        int qLen = pair.getQueryEnd() - pair.getQueryStart() + 1;
+        int sLen = pair.getSubjectEnd() - pair.getSubjectStart() + 1;
+        if (qLen <= 0 || sLen <= 0)
+            return 0;
+        boolean affine = open != extend;
+        int score = 0, qi = 0, si = 0, prev = 0;
+        for (int k = 0; qi < qLen || si < sLen; k++) {
+            Symbol q = pair.getQuery().symbolAt(pair.getQueryStart() + k);
+            Symbol s = pair.getSubject().symbolAt(pair.getSubjectStart() + k);
+            boolean qGap = q == pair.getQuery().getAlphabet().getGapSymbol();
+            boolean sGap = s == pair.getSubject().getAlphabet().getGapSymbol();
+            if (!qGap && !sGap) {
+                score += matrix.getValueAt(q, s);
+                prev = 0;
+                qi++;
+                si++;
+            } else if (qGap) {
+                score -= extend + (affine && prev != 1 ? open : 0);
+                prev = 1;
+                si++;
+            } else {
+                score -= extend + (affine && prev != 2 ? open : 0);
+                prev = 2;
+                qi++;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Copies a string with random substitutions, insertions and deletions,
+     * and random flanks.
+     */
+    private String mutate(String seq, String alphabet) {
+        StringBuilder sb = new StringBuilder(AlignmentTestUtils.randomString(random, alphabet, random.nextInt(10)));
+        for (int i = 0; i < seq.length(); i++) {
+            int r = random.nextInt(20);
+            if (r == 0)
+                continue;
+            if (r == 1)
+                sb.append(AlignmentTestUtils.randomString(random, alphabet, 1 + random.nextInt(3)));
+            sb.append(r == 2 ? alphabet.charAt(random.nextInt(alphabet.length())) : seq.charAt(i));
+        }
+        sb.append(AlignmentTestUtils.randomString(random, alphabet, random.nextInt(10)));
+        return sb.toString();
+    }
+
+    private static Sequence dna(String seq, String name) throws Exception {
+        return DNATools.createDNASequence(seq, name);
+    }
+
+    private static Sequence protein(String seq, String name) throws Exception {
+        return new SimpleSequence(new SimpleSymbolList(ProteinTools.getTAlphabet().getTokenization("token"), seq),
+                name, name, null);
+    }
+}
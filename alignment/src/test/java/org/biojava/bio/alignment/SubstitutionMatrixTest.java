@@ -39,8 +39,11 @@ import junit.framework.TestCase;
 import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.seq.io.SymbolTokenization;
 import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.ByteSymbolList;
 import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.IllegalAlphabetException;
 import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
 
 public class SubstitutionMatrixTest extends TestCase {
 
@@ -506,4 +509,47 @@ public class SubstitutionMatrixTest extends TestCase {
 
         assertTrue(dest instanceof SubstitutionMatrix);
     }
+
+    public void testIndexedMatrix() throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+        FiniteAlphabet dna = DNATools.getDNA();
+        Symbol[] symbols = { DNATools.a(), DNATools.c(), DNATools.g(), DNATools.t(), DNATools.n(),
+                dna.getTokenization("token").parseToken("r") };
+        short[][] indexed = matrix.getIndexedMatrix();
+        int[] scores = matrix.getIndexedScores();
+        int size = matrix.getIndexSize();
+        assertEquals(size, indexed.length);
+        for (Symbol row : symbols) {
+            for (Symbol col : symbols) {
+                int r = matrix.getIndex(row);
+                int c = matrix.getIndex(col);
+                assertEquals(matrix.getValueAt(row, col), indexed[r][c]);
+                assertEquals(matrix.getValueAt(row, col), scores[r * size + c]);
+            }
+        }
+        // atomic symbols use the alphabet index
+        assertEquals(AlphabetManager.getAlphabetIndex(dna).indexForSymbol(DNATools.g()),
+                matrix.getIndex(DNATools.g()));
+        // symbols without an entry score zero
+        assertEquals(size - 1, matrix.getIndex(dna.getGapSymbol()));
+        assertEquals(0, indexed[size - 1][matrix.getIndex(DNATools.a())]);
+    }
+
+    public void testEncode() throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.getNuc4_4();
+        SymbolList seq = DNATools.createDNA("acgtnnacg");
+        byte[] plain = matrix.encode(seq);
+        byte[] bytes = matrix.encode(new ByteSymbolList(seq));
+        assertEquals(seq.length(), plain.length);
+        for (int i = 0; i < plain.length; i++) {
+            assertEquals(matrix.getIndex(seq.symbolAt(i + 1)), plain[i] & 0xff);
+            assertEquals(plain[i], bytes[i]);
+        }
+        try {
+            matrix.encode(DNATools.toRNA(seq));
+            fail("Expected IllegalAlphabetException");
+        } catch (IllegalAlphabetException ex) {
+            // expected
+        }
+    }
 }
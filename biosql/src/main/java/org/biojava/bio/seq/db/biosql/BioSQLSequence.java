@@ -50,6 +50,7 @@ import org.biojava.bio.symbol.SymbolList;
 import org.biojava.utils.ChangeListener;
 import org.biojava.utils.ChangeType;
 import org.biojava.utils.ChangeVetoException;
+import org.biojavax.bio.db.biosql.BioSQLSequencePageCache;
 
 /**
  * Sequence keyed off a BioSQL biosequence.
@@ -143,11 +144,27 @@ class BioSQLSequence
     }
 
     public Symbol symbolAt(int i) {
-	return getSymbols().symbolAt(i);
+	String symbol = pagedSubStr(i, i);
+	if (symbol == null) {
+	    return getSymbols().symbolAt(i);
+	}
+	try {
+	    return getAlphabet().getTokenization("token").parseToken(symbol);
+	} catch (Exception ex) {
+	    throw new BioRuntimeException("Couldn't parse tokenized symbols", ex);
+	}
     }
 
     public SymbolList subList(int start, int end) {
-	return getSymbols().subList(start, end);
+	String symbols = pagedSubStr(start, end);
+	if (symbols == null) {
+	    return getSymbols().subList(start, end);
+	}
+	try {
+	    return new SimpleSymbolList(getAlphabet().getTokenization("token"), symbols);
+	} catch (Exception ex) {
+	    throw new BioRuntimeException("Couldn't parse tokenized symbols", ex);
+	}
     }
 
     public List toList() {
@@ -163,7 +180,23 @@ class BioSQLSequence
     }
 
     public String subStr(int start, int end) {
-	return getSymbols().subStr(start, end);
+	String symbols = pagedSubStr(start, end);
+	return symbols == null ? getSymbols().subStr(start, end) : symbols;
+    }
+
+    /**
+     * Reads part of the sequence string through the pages of the database,
+     * if it pages sequences and the whole string isn't loaded already.
+     * Returns null when the symbols have to come from getSymbols instead.
+     */
+    private String pagedSubStr(int start, int end) {
+	BioSQLSequencePageCache pages = seqDB.getSequencePages();
+	synchronized (this) {
+	    if (pages == null || symbols != null || length < 0) {
+		return null;
+	    }
+	}
+	return pages.subStr(new Integer(bioentry_id), length, start, end);
     }
 
     public void edit(Edit e) 
@@ -61,11 +61,13 @@ import org.biojava.bio.taxa.Taxon;
 import org.biojava.ontology.Ontology;
 import org.biojava.utils.AbstractChangeable;
 import org.biojava.utils.ChangeEvent;
+import org.biojava.utils.ChangeSupport;
 import org.biojava.utils.ChangeVetoException;
 import org.biojava.utils.JDBCPooledDataSource;
 import org.biojava.utils.cache.Cache;
 import org.biojava.utils.cache.FixedSizeCache;
 import org.biojava.utils.cache.WeakValueHashMap;
+import org.biojavax.bio.db.biosql.BioSQLSequencePageCache;
 
 /**
  * SequenceDB keyed off a BioSQL database.  This is an almost-complete
@@ -102,6 +104,7 @@ public class BioSQLSequenceDB extends AbstractChangeable implements SequenceDB {
     private BioSQLFeatureAnnotationChangeHub featureAnnotationChangeHub;
     private WeakValueHashMap featuresByID = new WeakValueHashMap();
     private Cache tileCache = new FixedSizeCache(10);
+    private BioSQLSequencePageCache sequencePages;
 
     DataSource getDataSource() {
         return dataSource;
@@ -264,8 +267,8 @@ public class BioSQLSequenceDB extends AbstractChangeable implements SequenceDB {
                     createdb.executeUpdate();
                     conn.commit();
                     createdb.close();
-		    conn.close();
                     dbid = getDBHelper().getInsertID(conn, "biodatabase", "biodatabase_id");
+		    conn.close();
                 } else {
 		    conn.close();
                     throw new BioException("Biodatabase " + biodatabase + " doesn't exist");
@@ -1285,12 +1288,18 @@ public class BioSQLSequenceDB extends AbstractChangeable implements SequenceDB {
     void firePreChangeEvent(ChangeEvent cev)
         throws ChangeVetoException
     {
-        getChangeSupport(cev.getType()).firePreChangeEvent(cev);
+        ChangeSupport cs = getChangeSupport(cev.getType());
+        synchronized (cs) {
+            cs.firePreChangeEvent(cev);
+        }
     }
 
     void firePostChangeEvent(ChangeEvent cev)
     {
-        getChangeSupport(cev.getType()).firePostChangeEvent(cev);
+        ChangeSupport cs = getChangeSupport(cev.getType());
+        synchronized (cs) {
+            cs.firePostChangeEvent(cev);
+        }
     }
 
     //
@@ -1399,4 +1408,42 @@ public class BioSQLSequenceDB extends AbstractChangeable implements SequenceDB {
     Cache getTileCache() {
         return tileCache;
     }
+
+    /**
+     * Makes the sequences of this database read their symbols in pages of
+     * <code>pageSize</code> symbols, keeping the <code>maxPages</code> most
+     * recently used pages, instead of loading each whole sequence string
+     * the first time any symbol is asked for. Only the pages holding the
+     * symbols asked for by <code>symbolAt</code>, <code>subList</code> and
+     * <code>subStr</code> are read; the other methods still load whole
+     * sequences. A page size of zero turns paging off again.
+     *
+     * @param pageSize the number of symbols in a page, or zero.
+     * @param maxPages the number of pages kept.
+     * @since 1.9.8
+     */
+    public void setSequencePaging(int pageSize, int maxPages) {
+        if (pageSize <= 0) {
+            sequencePages = null;
+            return;
+        }
+        sequencePages = new BioSQLSequencePageCache(pageSize, maxPages) {
+            protected String readPage(Object bioentry_id, int start, int length) {
+                Connection conn = null;
+                try {
+                    conn = dataSource.getConnection();
+                    String seq = helper.getSubSequence(conn, ((Integer) bioentry_id).intValue(), start, length);
+                    conn.close();
+                    return seq;
+                } catch (SQLException ex) {
+                    if (conn!=null) try {conn.close();} catch (SQLException ex3) {}
+                    throw new BioRuntimeException("Error reading symbols from BioSQL", ex);
+                }
+            }
+        };
+    }
+
+    BioSQLSequencePageCache getSequencePages() {
+        return sequencePages;
+    }
 }
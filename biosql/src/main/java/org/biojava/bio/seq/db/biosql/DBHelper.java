@@ -24,6 +24,7 @@ package org.biojava.bio.seq.db.biosql;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import javax.sql.DataSource;
@@ -178,6 +179,34 @@ public abstract class DBHelper {
         return BIOSEQUENCE_GENERIC;
     }
 
+    /**
+     * Reads part of the sequence string of a biosequence. Unless overridden
+     * this uses the SUBSTRING function, so that only the symbols asked for
+     * are sent by the database.
+     *
+     * @param conn a connection to the database.
+     * @param bioentry_id the bioentry whose biosequence to read.
+     * @param start the position of the first symbol, from 1.
+     * @param length the number of symbols to read.
+     * @return the symbols, or null if there is no sequence string.
+     * @throws SQLException if the database could not be read.
+     * @since 1.9.8
+     */
+    public String getSubSequence(Connection conn, int bioentry_id, int start, int length) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("select substring(seq, ?, ?) from biosequence where bioentry_id = ?");
+        try {
+            ps.setInt(1, start);
+            ps.setInt(2, length);
+            ps.setInt(3, bioentry_id);
+            ResultSet rs = ps.executeQuery();
+            String seq = rs.next() ? rs.getString(1) : null;
+            rs.close();
+            return seq;
+        } finally {
+            ps.close();
+        }
+    }
+
     /**
      * Detects whether a particular table is present in the database.
      *
@@ -157,6 +157,41 @@ public class OracleDBHelper extends DBHelper {
         return mBseqStyle;
     }
     
+    /**
+     * {@inheritDoc}
+     * CLOBs are read through their locator, which only fetches the part
+     * asked for; other seq columns use SUBSTR.
+     */
+    public String getSubSequence(Connection conn, int bioentry_id, int start, int length) throws SQLException {
+        boolean clob = getBioSequenceStyle()==BIOSEQUENCE_ORACLECLOB;
+        PreparedStatement ps = conn.prepareStatement(clob ?
+            "select seq from biosequence where bioentry_id = ?" :
+            "select substr(seq, ?, ?) from biosequence where bioentry_id = ?");
+        try {
+            if (clob) {
+                ps.setInt(1, bioentry_id);
+            } else {
+                ps.setInt(1, start);
+                ps.setInt(2, length);
+                ps.setInt(3, bioentry_id);
+            }
+            ResultSet rs = ps.executeQuery();
+            String seq = null;
+            if (rs.next()) {
+                if (clob) {
+                    Clob seqclob = rs.getClob(1);
+                    if (seqclob!=null) seq = seqclob.getSubString(start, length);
+                } else {
+                    seq = rs.getString(1);
+                }
+            }
+            rs.close();
+            return seq;
+        } finally {
+            ps.close();
+        }
+    }
+    
     /*
      * Use this to retrieve a CLOB value.
      * @param conn a connection to an Oracle database.
@@ -0,0 +1,638 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojavax.bio.db.biosql;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.ProteinTools;
+import org.biojava.ontology.Term;
+import org.biojavax.Comment;
+import org.biojavax.CrossRef;
+import org.biojavax.DocRef;
+import org.biojavax.Namespace;
+import org.biojavax.Note;
+import org.biojavax.RankedCrossRef;
+import org.biojavax.RankedDocRef;
+import org.biojavax.bio.seq.RichFeature;
+import org.biojavax.bio.seq.RichFeatureRelationship;
+import org.biojavax.bio.seq.RichLocation;
+import org.biojavax.bio.seq.RichSequence;
+import org.biojavax.bio.seq.RichSequenceIterator;
+import org.biojavax.bio.taxa.NCBITaxon;
+import org.biojavax.ontology.ComparableTerm;
+
+
+/**
+ * Loads sequences into a BioSQL database over plain JDBC, for loads too
+ * large to save one object at a time through BioSQLRichSequenceDB. Rows
+ * are queued as JDBC batches and written a table at a time, parents
+ * before children, every few sequences, and each such batch is committed
+ * on its own. The surrogate keys of new rows are handed out by the loader
+ * itself, counting on from the largest key already in each table, so no
+ * row has to be read back after it is inserted. The keys of the
+ * namespaces, ontologies, terms, taxa, cross references and document
+ * references met along the way are remembered, so each of these is only
+ * looked up or inserted once.
+ * <p>
+ * Because it hands out keys itself the loader must be the only thing
+ * writing to the database while it runs. Databases that generate keys
+ * from sequences, such as PostgreSQL and Oracle, need those sequences
+ * moving past the loaded keys afterwards. Sequences are always inserted
+ * as new bioentries; loading one that is already in its namespace fails
+ * the batch it is in. Relationships between bioentries are not loaded,
+ * and a feature may only be related to features of the same sequence.
+ * <p>
+ * Optionally the non-unique indexes of the tables being filled are
+ * dropped for the duration of the load and rebuilt once it is over,
+ * which is faster than keeping them up to date row by row. Indexes the
+ * database won't drop, for instance those backing foreign keys, are left
+ * in place.
+ * @since 1.9.8
+ */
+public class BioSQLBulkLoader {
+
+    private static class Table {
+        private String name;
+        private String[] columns;
+        private int[] types;
+
+        private Table(String name, String columns, String types) {
+            this.name = name;
+            this.columns = columns.split(" ");
+            this.types = new int[this.columns.length];
+            for (int i = 0; i < this.types.length; i++) {
+                this.types[i] = types.charAt(i)=='I' ? Types.INTEGER : Types.VARCHAR;
+            }
+        }
+
+        private String insertSQL() {
+            StringBuffer sql = new StringBuffer("INSERT INTO "+this.name+" (");
+            StringBuffer values = new StringBuffer();
+            for (int i = 0; i < this.columns.length; i++) {
+                if (i>0) {
+                    sql.append(",");
+                    values.append(",");
+                }
+                sql.append(this.columns[i]);
+                values.append("?");
+            }
+            return sql.append(") VALUES (").append(values).append(")").toString();
+        }
+    }
+
+    private static final Table BIODATABASE = new Table("biodatabase", "biodatabase_id name authority description", "ISSS");
+    private static final Table ONTOLOGY = new Table("ontology", "ontology_id name definition", "ISS");
+    private static final Table TERM = new Table("term", "term_id name definition identifier is_obsolete ontology_id", "ISSSSI");
+    private static final Table TAXON = new Table("taxon", "taxon_id ncbi_taxon_id parent_taxon_id node_rank genetic_code mito_genetic_code left_value right_value", "IIISIIII");
+    private static final Table TAXON_NAME = new Table("taxon_name", "taxon_id name name_class", "ISS");
+    private static final Table DBXREF = new Table("dbxref", "dbxref_id dbname accession version", "ISSI");
+    private static final Table DBXREF_QUALIFIER_VALUE = new Table("dbxref_qualifier_value", "dbxref_id term_id rank value", "IIIS");
+    private static final Table REFERENCE = new Table("reference", "reference_id dbxref_id location title authors crc", "IISSSS");
+    private static final Table BIOENTRY = new Table("bioentry", "bioentry_id biodatabase_id taxon_id name accession identifier division description version", "IIISSSSSI");
+    private static final Table BIOSEQUENCE = new Table("biosequence", "bioentry_id version length alphabet seq", "IIISS");
+    private static final Table BIOENTRY_QUALIFIER_VALUE = new Table("bioentry_qualifier_value", "bioentry_id term_id value rank", "IISI");
+    private static final Table BIOENTRY_DBXREF = new Table("bioentry_dbxref", "bioentry_id dbxref_id rank", "III");
+    private static final Table BIOENTRY_REFERENCE = new Table("bioentry_reference", "bioentry_id reference_id start_pos end_pos rank", "IIIII");
+    private static final Table ANNCOMMENT = new Table("anncomment", "comment_id bioentry_id comment_text rank", "IISI");
+    private static final Table SEQFEATURE = new Table("seqfeature", "seqfeature_id bioentry_id type_term_id source_term_id display_name rank", "IIIISI");
+    private static final Table SEQFEATURE_QUALIFIER_VALUE = new Table("seqfeature_qualifier_value", "seqfeature_id term_id rank value", "IIIS");
+    private static final Table SEQFEATURE_DBXREF = new Table("seqfeature_dbxref", "seqfeature_id dbxref_id rank", "III");
+    private static final Table SEQFEATURE_RELATIONSHIP = new Table("seqfeature_relationship", "seqfeature_relationship_id object_seqfeature_id subject_seqfeature_id term_id rank", "IIIII");
+    private static final Table LOCATION = new Table("location", "location_id seqfeature_id dbxref_id term_id start_pos end_pos strand rank", "IIIIIIII");
+    private static final Table LOCATION_QUALIFIER_VALUE = new Table("location_qualifier_value", "location_id term_id value int_value", "IISI");
+
+    // the order in which batches are written, so that rows follow the rows they refer to
+    private static final Table[] TABLES = {
+        BIODATABASE, ONTOLOGY, TERM, TAXON, TAXON_NAME, DBXREF, DBXREF_QUALIFIER_VALUE, REFERENCE,
+        BIOENTRY, BIOSEQUENCE, BIOENTRY_QUALIFIER_VALUE, BIOENTRY_DBXREF, BIOENTRY_REFERENCE, ANNCOMMENT,
+        SEQFEATURE, SEQFEATURE_QUALIFIER_VALUE, SEQFEATURE_DBXREF, SEQFEATURE_RELATIONSHIP,
+        LOCATION, LOCATION_QUALIFIER_VALUE
+    };
+
+    // the tables whose indexes may be deferred; the rest are needed for lookups
+    private static final Table[] DEFERRABLE = {
+        DBXREF, DBXREF_QUALIFIER_VALUE, BIOENTRY, BIOSEQUENCE, BIOENTRY_QUALIFIER_VALUE, BIOENTRY_DBXREF,
+        BIOENTRY_REFERENCE, ANNCOMMENT, SEQFEATURE, SEQFEATURE_QUALIFIER_VALUE, SEQFEATURE_DBXREF,
+        SEQFEATURE_RELATIONSHIP, LOCATION, LOCATION_QUALIFIER_VALUE
+    };
+
+    // cross references and document references remembered before the caches are emptied
+    private static final int CACHE_LIMIT = 100000;
+
+    private Connection conn;
+
+    private int batchSize = 100;
+
+    private boolean deferIndexes = false;
+
+    // queued inserts and lookup queries, by table and by SQL
+    private Map inserts = new HashMap();
+    private Map queries = new HashMap();
+
+    // next free key, by table
+    private Map nextIDs = new HashMap();
+
+    // keys of rows already in the database or queued
+    private Map namespaceIDs = new HashMap();
+    private Map ontologyIDs = new HashMap();
+    private Map termIDs = new HashMap();
+    private Map taxonIDs = new HashMap();
+    private Map crossRefIDs = new HashMap();
+    private Map docRefIDs = new HashMap();
+
+    /**
+     * Creates a loader that writes to the given connection. The connection
+     * is left open once loading is over.
+     * @param conn a connection to a database with the BioSQL schema.
+     */
+    public BioSQLBulkLoader(Connection conn) {
+        if (conn==null) throw new IllegalArgumentException("Connection cannot be null");
+        this.conn = conn;
+    }
+
+    /**
+     * Sets the number of sequences written and committed together. The
+     * default is 100.
+     * @param batchSize the number of sequences in each batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize<1) throw new IllegalArgumentException("Batch size must be at least one, not "+batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the number of sequences written and committed together.
+     * @return the batch size.
+     */
+    public int getBatchSize() { return this.batchSize; }
+
+    /**
+     * Sets whether the non-unique indexes of the tables being filled are
+     * dropped while loading and rebuilt afterwards. Off by default.
+     * @param deferIndexes true to rebuild the indexes after loading.
+     */
+    public void setDeferIndexes(boolean deferIndexes) { this.deferIndexes = deferIndexes; }
+
+    /**
+     * Tells whether indexes are rebuilt after loading.
+     * @return true if they are.
+     */
+    public boolean getDeferIndexes() { return this.deferIndexes; }
+
+    /**
+     * Loads every sequence of the iterator into the namespace it belongs
+     * to. If anything goes wrong the batch being written is rolled back,
+     * but the batches committed before it stay in the database.
+     * @param seqs the sequences to load.
+     * @return the number of sequences loaded.
+     * @throws BioException if a sequence could not be read or written.
+     */
+    public int load(RichSequenceIterator seqs) throws BioException {
+        List deferred = new ArrayList();
+        boolean autoCommit = true;
+        int loaded = 0;
+        // the failure being thrown, if any, so a failure to restore the indexes doesn't hide it
+        Throwable failure = null;
+        try {
+            autoCommit = this.conn.getAutoCommit();
+            // indexes are changed outside of the load's transactions
+            if (this.deferIndexes) {
+                this.conn.setAutoCommit(true);
+                this.dropIndexes(deferred);
+            }
+            this.conn.setAutoCommit(false);
+            this.clear();
+            int queued = 0;
+            while (seqs.hasNext()) {
+                this.addSequence(seqs.nextRichSequence());
+                if (++queued==this.batchSize) {
+                    this.flush();
+                    loaded += queued;
+                    queued = 0;
+                }
+            }
+            this.flush();
+            loaded += queued;
+        } catch (SQLException e) {
+            this.rollback();
+            failure = new BioException("Could not load sequences after the first "+loaded, e);
+            throw (BioException)failure;
+        } catch (BioException e) {
+            this.rollback();
+            failure = e;
+            throw e;
+        } catch (RuntimeException e) {
+            this.rollback();
+            failure = e;
+            throw e;
+        } catch (Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            this.close();
+            try {
+                this.conn.setAutoCommit(true);
+                this.createIndexes(deferred);
+                this.conn.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                BioException restore = new BioException("Could not restore the indexes of the database", e);
+                if (failure==null) throw restore;
+                failure.addSuppressed(restore);
+            }
+        }
+        return loaded;
+    }
+
+    private void addSequence(RichSequence seq) throws SQLException, BioException {
+        Namespace ns = seq.getNamespace();
+        if (ns==null) throw new BioException("Sequence "+seq.getName()+" has no namespace");
+        Integer entryID = this.nextID(BIOENTRY, "bioentry_id");
+        Integer taxonID = seq.getTaxon()==null ? null : this.taxonID(seq.getTaxon());
+        this.insert(BIOENTRY, new Object[]{entryID, this.namespaceID(ns), taxonID, seq.getName(),
+                seq.getAccession(), seq.getIdentifier(), seq.getDivision(), seq.getDescription(),
+                new Integer(seq.getVersion())});
+        String alphabet = seq.getAlphabet().getName();
+        if (alphabet.equals(ProteinTools.getTAlphabet().getName())) alphabet = "protein";
+        this.insert(BIOSEQUENCE, new Object[]{entryID,
+                seq.getSeqVersion()==null ? null : new Integer(seq.getSeqVersion().intValue()),
+                new Integer(seq.length()), alphabet, seq.length()==0 ? null : seq.seqString()});
+        for (Iterator i = seq.getNoteSet().iterator(); i.hasNext(); ) {
+            Note n = (Note)i.next();
+            this.insert(BIOENTRY_QUALIFIER_VALUE, new Object[]{entryID, this.termID(n.getTerm()),
+                    n.getValue(), new Integer(n.getRank())});
+        }
+        for (Iterator i = seq.getRankedCrossRefs().iterator(); i.hasNext(); ) {
+            RankedCrossRef rcr = (RankedCrossRef)i.next();
+            this.insert(BIOENTRY_DBXREF, new Object[]{entryID, this.crossRefID(rcr.getCrossRef()),
+                    new Integer(rcr.getRank())});
+        }
+        for (Iterator i = seq.getRankedDocRefs().iterator(); i.hasNext(); ) {
+            RankedDocRef rdr = (RankedDocRef)i.next();
+            this.insert(BIOENTRY_REFERENCE, new Object[]{entryID, this.docRefID(rdr.getDocumentReference()),
+                    rdr.getStart(), rdr.getEnd(), new Integer(rdr.getRank())});
+        }
+        for (Iterator i = seq.getComments().iterator(); i.hasNext(); ) {
+            Comment c = (Comment)i.next();
+            this.insert(ANNCOMMENT, new Object[]{this.nextID(ANNCOMMENT, "comment_id"), entryID,
+                    c.getComment(), new Integer(c.getRank())});
+        }
+        // features, and the features inside them, get their keys first so
+        // that relationships can refer to them
+        Map featureIDs = new IdentityHashMap();
+        List features = new ArrayList();
+        for (Iterator i = seq.getFeatureSet().iterator(); i.hasNext(); ) {
+            this.collectFeature(seq, (RichFeature)i.next(), featureIDs, features);
+        }
+        for (Iterator i = features.iterator(); i.hasNext(); ) {
+            RichFeature f = (RichFeature)i.next();
+            this.addFeature(seq, entryID, f, featureIDs);
+        }
+    }
+
+    // gives a feature and the subjects of its relationships keys, as the Hibernate mapping cascades to them
+    private void collectFeature(RichSequence seq, RichFeature f, Map featureIDs, List features) throws SQLException, BioException {
+        if (featureIDs.containsKey(f)) return;
+        if (f.getSequence()!=seq) throw new BioException("Feature "+f+" is related to a feature of "+seq.getName()+" but belongs to another sequence");
+        featureIDs.put(f, this.nextID(SEQFEATURE, "seqfeature_id"));
+        features.add(f);
+        for (Iterator i = f.getFeatureRelationshipSet().iterator(); i.hasNext(); ) {
+            this.collectFeature(seq, ((RichFeatureRelationship)i.next()).getSubject(), featureIDs, features);
+        }
+    }
+
+    private void addFeature(RichSequence seq, Integer entryID, RichFeature f, Map featureIDs) throws SQLException, BioException {
+        Integer featureID = (Integer)featureIDs.get(f);
+        this.insert(SEQFEATURE, new Object[]{featureID, entryID, this.termID(f.getTypeTerm()),
+                this.termID(f.getSourceTerm()), f.getName(), new Integer(f.getRank())});
+        for (Iterator i = f.getNoteSet().iterator(); i.hasNext(); ) {
+            Note n = (Note)i.next();
+            this.insert(SEQFEATURE_QUALIFIER_VALUE, new Object[]{featureID, this.termID(n.getTerm()),
+                    new Integer(n.getRank()), n.getValue()});
+        }
+        for (Iterator i = f.getRankedCrossRefs().iterator(); i.hasNext(); ) {
+            RankedCrossRef rcr = (RankedCrossRef)i.next();
+            this.insert(SEQFEATURE_DBXREF, new Object[]{featureID, this.crossRefID(rcr.getCrossRef()),
+                    new Integer(rcr.getRank())});
+        }
+        for (Iterator i = f.getFeatureRelationshipSet().iterator(); i.hasNext(); ) {
+            RichFeatureRelationship r = (RichFeatureRelationship)i.next();
+            Integer subjectID = (Integer)featureIDs.get(r.getSubject());
+            this.insert(SEQFEATURE_RELATIONSHIP, new Object[]{this.nextID(SEQFEATURE_RELATIONSHIP, "seqfeature_relationship_id"),
+                    featureID, subjectID, this.termID(r.getTerm()), new Integer(r.getRank())});
+        }
+        // BioSQL keeps compound locations as their blocks, sharing the term of the whole
+        RichLocation loc = (RichLocation)f.getLocation();
+        if (loc==RichLocation.EMPTY_LOCATION) return;
+        Integer locTermID = loc.getTerm()==null ? null : this.termID(loc.getTerm());
+        for (Iterator i = RichLocation.Tools.flatten(loc).iterator(); i.hasNext(); ) {
+            RichLocation block = (RichLocation)i.next();
+            Integer locationID = this.nextID(LOCATION, "location_id");
+            this.insert(LOCATION, new Object[]{locationID, featureID,
+                    block.getCrossRef()==null ? null : this.crossRefID(block.getCrossRef()), locTermID,
+                    new Integer(block.getMin()), new Integer(block.getMax()),
+                    new Integer(block.getStrand().intValue()), new Integer(block.getRank())});
+            for (Iterator j = block.getNoteSet().iterator(); j.hasNext(); ) {
+                Note n = (Note)j.next();
+                this.insert(LOCATION_QUALIFIER_VALUE, new Object[]{locationID, this.termID(n.getTerm()), n.getValue(), null});
+            }
+        }
+    }
+
+    private Integer namespaceID(Namespace ns) throws SQLException {
+        Integer id = (Integer)this.namespaceIDs.get(ns.getName());
+        if (id!=null) return id;
+        id = this.selectID("SELECT biodatabase_id FROM biodatabase WHERE name = ?", new Object[]{ns.getName()});
+        if (id==null) {
+            id = this.nextID(BIODATABASE, "biodatabase_id");
+            this.insert(BIODATABASE, new Object[]{id, ns.getName(), ns.getAuthority(), ns.getDescription()});
+        }
+        this.namespaceIDs.put(ns.getName(), id);
+        return id;
+    }
+
+    private Integer termID(Term t) throws SQLException {
+        Integer ontologyID = (Integer)this.ontologyIDs.get(t.getOntology().getName());
+        if (ontologyID==null) {
+            ontologyID = this.selectID("SELECT ontology_id FROM ontology WHERE name = ?", new Object[]{t.getOntology().getName()});
+            if (ontologyID==null) {
+                ontologyID = this.nextID(ONTOLOGY, "ontology_id");
+                this.insert(ONTOLOGY, new Object[]{ontologyID, t.getOntology().getName(), t.getOntology().getDescription()});
+            }
+            this.ontologyIDs.put(t.getOntology().getName(), ontologyID);
+        }
+        List key = new ArrayList();
+        key.add(ontologyID);
+        key.add(t.getName());
+        Integer id = (Integer)this.termIDs.get(key);
+        if (id!=null) return id;
+        id = this.selectID("SELECT term_id FROM term WHERE name = ? AND ontology_id = ?", new Object[]{t.getName(), ontologyID});
+        if (id==null) {
+            id = this.nextID(TERM, "term_id");
+            String identifier = null;
+            String obsolete = null;
+            if (t instanceof ComparableTerm) {
+                identifier = ((ComparableTerm)t).getIdentifier();
+                obsolete = Boolean.TRUE.equals(((ComparableTerm)t).getObsolete()) ? "X" : null;
+            }
+            this.insert(TERM, new Object[]{id, t.getName(), t.getDescription(), identifier, obsolete, ontologyID});
+        }
+        this.termIDs.put(key, id);
+        return id;
+    }
+
+    private Integer taxonID(NCBITaxon tax) throws SQLException {
+        Integer ncbiID = new Integer(tax.getNCBITaxID());
+        Integer id = (Integer)this.taxonIDs.get(ncbiID);
+        if (id!=null) return id;
+        id = this.selectID("SELECT taxon_id FROM taxon WHERE ncbi_taxon_id = ?", new Object[]{ncbiID});
+        if (id==null) {
+            id = this.nextID(TAXON, "taxon_id");
+            // parent_taxon_id holds the NCBI number of the parent, as in the Hibernate mapping
+            this.insert(TAXON, new Object[]{id, ncbiID, tax.getParentNCBITaxID(), tax.getNodeRank(),
+                    tax.getGeneticCode(), tax.getMitoGeneticCode(), tax.getLeftValue(), tax.getRightValue()});
+            for (Iterator i = tax.getNameClasses().iterator(); i.hasNext(); ) {
+                String nameClass = (String)i.next();
+                for (Iterator j = tax.getNames(nameClass).iterator(); j.hasNext(); ) {
+                    this.insert(TAXON_NAME, new Object[]{id, j.next(), nameClass});
+                }
+            }
+        }
+        this.taxonIDs.put(ncbiID, id);
+        return id;
+    }
+
+    private Integer crossRefID(CrossRef cr) throws SQLException {
+        List key = new ArrayList();
+        key.add(cr.getDbname());
+        key.add(cr.getAccession());
+        key.add(new Integer(cr.getVersion()));
+        Integer id = (Integer)this.crossRefIDs.get(key);
+        if (id!=null) return id;
+        id = this.selectID("SELECT dbxref_id FROM dbxref WHERE dbname = ? AND accession = ? AND version = ?", key.toArray());
+        if (id==null) {
+            id = this.nextID(DBXREF, "dbxref_id");
+            this.insert(DBXREF, new Object[]{id, cr.getDbname(), cr.getAccession(), new Integer(cr.getVersion())});
+            for (Iterator i = cr.getNoteSet().iterator(); i.hasNext(); ) {
+                Note n = (Note)i.next();
+                this.insert(DBXREF_QUALIFIER_VALUE, new Object[]{id, this.termID(n.getTerm()),
+                        new Integer(n.getRank()), n.getValue()});
+            }
+        }
+        this.crossRefIDs.put(key, id);
+        return id;
+    }
+
+    private Integer docRefID(DocRef dr) throws SQLException {
+        // references are unique both by checksum and by cross reference
+        String crcKey = "crc:"+dr.getCRC();
+        Integer crossRefID = dr.getCrossref()==null ? null : this.crossRefID(dr.getCrossref());
+        String crossRefKey = crossRefID==null ? null : "dbxref:"+crossRefID;
+        Integer id = crossRefKey==null ? null : (Integer)this.docRefIDs.get(crossRefKey);
+        if (id==null) id = (Integer)this.docRefIDs.get(crcKey);
+        if (id!=null) return id;
+        if (crossRefID==null) {
+            id = this.selectID("SELECT reference_id FROM reference WHERE crc = ?", new Object[]{dr.getCRC()});
+        } else {
+            id = this.selectID("SELECT reference_id FROM reference WHERE dbxref_id = ? OR crc = ?", new Object[]{crossRefID, dr.getCRC()});
+        }
+        if (id==null) {
+            id = this.nextID(REFERENCE, "reference_id");
+            this.insert(REFERENCE, new Object[]{id, crossRefID, dr.getLocation(), dr.getTitle(), dr.getAuthors(), dr.getCRC()});
+        }
+        this.docRefIDs.put(crcKey, id);
+        if (crossRefKey!=null) this.docRefIDs.put(crossRefKey, id);
+        return id;
+    }
+
+    // hands out the next free key of a table, starting after the largest one in the database
+    private Integer nextID(Table table, String column) throws SQLException {
+        Integer id = (Integer)this.nextIDs.get(table);
+        if (id==null) {
+            Statement st = this.conn.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT MAX("+column+") FROM "+table.name);
+                rs.next();
+                id = new Integer(rs.getInt(1)+1);
+                rs.close();
+            } finally {
+                st.close();
+            }
+        }
+        this.nextIDs.put(table, new Integer(id.intValue()+1));
+        return id;
+    }
+
+    private Integer selectID(String sql, Object[] params) throws SQLException {
+        PreparedStatement ps = (PreparedStatement)this.queries.get(sql);
+        if (ps==null) {
+            ps = this.conn.prepareStatement(sql);
+            this.queries.put(sql, ps);
+        }
+        for (int i = 0; i < params.length; i++) ps.setObject(i+1, params[i]);
+        ResultSet rs = ps.executeQuery();
+        try {
+            return rs.next() ? new Integer(rs.getInt(1)) : null;
+        } finally {
+            rs.close();
+        }
+    }
+
+    private void insert(Table table, Object[] values) throws SQLException {
+        PreparedStatement ps = (PreparedStatement)this.inserts.get(table);
+        if (ps==null) {
+            ps = this.conn.prepareStatement(table.insertSQL());
+            this.inserts.put(table, ps);
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i]==null) ps.setNull(i+1, table.types[i]);
+            else if (table.types[i]==Types.INTEGER) ps.setInt(i+1, ((Integer)values[i]).intValue());
+            else ps.setString(i+1, values[i].toString());
+        }
+        ps.addBatch();
+    }
+
+    // writes the queued rows a table at a time and commits them
+    private void flush() throws SQLException {
+        for (int i = 0; i < TABLES.length; i++) {
+            PreparedStatement ps = (PreparedStatement)this.inserts.get(TABLES[i]);
+            if (ps!=null) ps.executeBatch();
+        }
+        this.conn.commit();
+        // everything cached is in the database now, so the caches can start over
+        if (this.crossRefIDs.size()>CACHE_LIMIT) this.crossRefIDs.clear();
+        if (this.docRefIDs.size()>CACHE_LIMIT) this.docRefIDs.clear();
+    }
+
+    private void clear() {
+        this.nextIDs.clear();
+        this.namespaceIDs.clear();
+        this.ontologyIDs.clear();
+        this.termIDs.clear();
+        this.taxonIDs.clear();
+        this.crossRefIDs.clear();
+        this.docRefIDs.clear();
+    }
+
+    private void rollback() {
+        try {
+            this.conn.rollback();
+        } catch (SQLException e) {
+            // the original failure is the one worth reporting
+        }
+        // keys handed out in the failed batch may now be unused or taken
+        this.clear();
+    }
+
+    private void close() {
+        List statements = new ArrayList(this.inserts.values());
+        statements.addAll(this.queries.values());
+        for (Iterator i = statements.iterator(); i.hasNext(); ) {
+            try {
+                ((Statement)i.next()).close();
+            } catch (SQLException e) {
+                // nothing left to do with it
+            }
+        }
+        this.inserts.clear();
+        this.queries.clear();
+    }
+
+    /**
+     * Drops the non-unique indexes of the deferrable tables, adding the
+     * name, table and columns of each one dropped to the list.
+     */
+    private void dropIndexes(List dropped) throws SQLException {
+        DatabaseMetaData meta = this.conn.getMetaData();
+        boolean mysql = meta.getDatabaseProductName().toLowerCase().indexOf("mysql")>=0;
+        for (int t = 0; t < DEFERRABLE.length; t++) {
+            String table = DEFERRABLE[t].name;
+            if (meta.storesUpperCaseIdentifiers()) table = table.toUpperCase();
+            // index name to its columns in order
+            Map indexes = new HashMap();
+            ResultSet rs = meta.getIndexInfo(null, null, table, false, false);
+            try {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    if (name==null || !rs.getBoolean("NON_UNIQUE") || rs.getShort("TYPE")==DatabaseMetaData.tableIndexStatistic) continue;
+                    List columns = (List)indexes.get(name);
+                    if (columns==null) {
+                        columns = new ArrayList();
+                        indexes.put(name, columns);
+                    }
+                    int position = rs.getShort("ORDINAL_POSITION");
+                    while (columns.size()<position) columns.add(null);
+                    columns.set(position-1, rs.getString("COLUMN_NAME"));
+                }
+            } finally {
+                rs.close();
+            }
+            for (Iterator i = indexes.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry index = (Map.Entry)i.next();
+                String name = (String)index.getKey();
+                Statement st = this.conn.createStatement();
+                try {
+                    st.executeUpdate(mysql ? "DROP INDEX "+name+" ON "+table : "DROP INDEX "+name);
+                    dropped.add(new Object[]{name, table, index.getValue()});
+                } catch (SQLException e) {
+                    // the database needs this one, so it stays
+                } finally {
+                    st.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the indexes dropped by dropIndexes again.
+     */
+    private void createIndexes(List dropped) throws SQLException {
+        for (Iterator i = dropped.iterator(); i.hasNext(); ) {
+            Object[] index = (Object[])i.next();
+            StringBuffer sql = new StringBuffer("CREATE INDEX "+index[0]+" ON "+index[1]+" (");
+            List columns = (List)index[2];
+            for (int j = 0; j < columns.size(); j++) {
+                if (j>0) sql.append(",");
+                sql.append(columns.get(j));
+            }
+            sql.append(")");
+            Statement st = this.conn.createStatement();
+            try {
+                st.executeUpdate(sql.toString());
+            } finally {
+                st.close();
+            }
+            i.remove();
+        }
+    }
+}
@@ -1214,7 +1214,7 @@ public interface BioSQLFeatureFilter extends FeatureFilter {
         
         public Map criterionAliasMap() {
             Map results = new HashMap();
-            results.put("noteSet","n");
+            results.put("rawNoteSet","n");
             return results;
         }
         
@@ -1280,7 +1280,7 @@ public interface BioSQLFeatureFilter extends FeatureFilter {
         
         public Map criterionAliasMap() {
             Map results = new HashMap();
-            results.put("noteSet","n");
+            results.put("rawNoteSet","n");
             return results;
         }
         
@@ -42,6 +42,8 @@ public class BioSQLRichSequenceHandler extends DummyRichSequenceHandler {
     private Method createQuery;
     private Method setParameter;
     private Method uniqueResult;
+    // pages of sequence strings, or null to query each substring as asked
+    private BioSQLSequencePageCache pages;
     
     /**
      * Requires a Hibernate session to work correctly. The session parameter
@@ -50,7 +52,26 @@ public class BioSQLRichSequenceHandler extends DummyRichSequenceHandler {
      * @see <a href="http://www.hibernate.org/hib_docs/v3/api/org/hibernate/Session.html"> org.hibernate.Session</a>
      */
     public BioSQLRichSequenceHandler(Object session) {
+        this(session, 0, 0);
+    }
+    
+    /**
+     * Requires a Hibernate session to work correctly, as above. Sequence
+     * strings are read in pages of pageSize symbols, of which the maxPages
+     * most recently used are kept, so that symbolAt and subList only fetch
+     * the pages they need. A page size of zero turns paging off.
+     * @param session the Hibernate session.
+     * @param pageSize the number of symbols in a page, or zero.
+     * @param maxPages the number of pages kept.
+     * @since 1.9.8
+     */
+    public BioSQLRichSequenceHandler(Object session, int pageSize, int maxPages) {
         super();
+        if (pageSize>0) this.pages = new BioSQLSequencePageCache(pageSize, maxPages) {
+            protected String readPage(Object seq, int start, int length) {
+                return querySubString((RichSequence)seq, start, length);
+            }
+        };
         try {
             // Lazy load the Session class from Hibernate.
             Class hibernateSession = session.getClass();
@@ -86,6 +107,15 @@ public class BioSQLRichSequenceHandler extends DummyRichSequenceHandler {
      */
     public Symbol symbolAt(RichSequence seq, int index) throws IndexOutOfBoundsException {
         if (seq instanceof SimpleRichSequence) return super.symbolAt(seq,index);
+        if (this.pages!=null) {
+            try {
+                return seq.getAlphabet().getTokenization("token").parseToken(this.subStr(seq, index, index));
+            } catch (IllegalSymbolException e) {
+                throw new BioError("Found bad symbols in sequence string!",e);
+            } catch (BioException e) {
+                throw new BioError("Found general exception in sequence string!",e);
+            }
+        }
         return this.subList(seq, index, index).symbolAt(1);
     }
     
@@ -172,14 +202,19 @@ public class BioSQLRichSequenceHandler extends DummyRichSequenceHandler {
     }
     
     private String seqSubString(RichSequence seq, int start, int end) {
-        // load whole stringSequence property from Sequence
+        if (this.pages!=null) return this.pages.subStr(seq, seq.length(), start, end);
+        return this.querySubString(seq, start, (end-start)+1);
+    }
+    
+    private String querySubString(RichSequence seq, int start, int length) {
+        // load part of the stringSequence property from Sequence
         try {
             // Build the query object
             String queryText = "select substring(s.stringSequence,?,?) from Sequence as s where s.namespace = ? and s.name = ?";
             Object query = this.createQuery.invoke(this.session, new Object[]{queryText});
             // Set the parameters
             query = this.setParameter.invoke(query, new Object[]{new Integer(0), new Integer(start)});
-            query = this.setParameter.invoke(query, new Object[]{new Integer(1), new Integer((end-start)+1)});
+            query = this.setParameter.invoke(query, new Object[]{new Integer(1), new Integer(length)});
             query = this.setParameter.invoke(query, new Object[]{new Integer(2), seq.getNamespace()});
             query = this.setParameter.invoke(query, new Object[]{new Integer(3), seq.getName()});
             // Get the results
@@ -0,0 +1,130 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojavax.bio.db.biosql;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.biojava.bio.BioRuntimeException;
+
+
+/**
+ * Serves parts of sequences stored in a BioSQL database from fixed-size
+ * pages of their sequence strings, so that reading a few symbols of a
+ * long sequence only fetches the pages that hold them rather than the
+ * whole string. Pages are read with readPage, which subclasses implement
+ * with a substring query, and the most recently used ones are kept, up
+ * to a fixed number of pages across all sequences. The last page of a
+ * sequence is shorter than the others when the length of the sequence is
+ * not a multiple of the page size.
+ * @since 1.9.8
+ */
+public abstract class BioSQLSequencePageCache {
+
+    private int pageSize;
+
+    private Map pages;
+
+    /**
+     * Creates a cache of at most maxPages pages of pageSize symbols each.
+     * @param pageSize the number of symbols in a page.
+     * @param maxPages the number of pages kept.
+     */
+    public BioSQLSequencePageCache(int pageSize, final int maxPages) {
+        if (pageSize<1) throw new IllegalArgumentException("Page size must be at least one, not "+pageSize);
+        if (maxPages<1) throw new IllegalArgumentException("Must keep at least one page, not "+maxPages);
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return this.size()>maxPages;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of symbols in a page.
+     * @return the page size.
+     */
+    public int getPageSize() { return this.pageSize; }
+
+    /**
+     * Reads part of the sequence string of a sequence from the database.
+     * @param seq the sequence, as given to subStr.
+     * @param start the position of the first symbol to read, from 1.
+     * @param length the number of symbols to read.
+     * @return the symbols, or null if the database holds no sequence
+     * string for the sequence.
+     */
+    protected abstract String readPage(Object seq, int start, int length);
+
+    /**
+     * Returns the symbols from start to end inclusive of the string of a
+     * sequence, reading the pages that hold them if they aren't cached.
+     * @param seq the sequence, which identifies it in the cache and is
+     * passed on to readPage.
+     * @param length the length of the sequence.
+     * @param start the position of the first symbol, from 1.
+     * @param end the position of the last symbol.
+     * @return the symbols, or null if the database holds no sequence
+     * string for the sequence.
+     * @throws IndexOutOfBoundsException if start or end fall outside the sequence.
+     */
+    public synchronized String subStr(Object seq, int length, int start, int end) throws IndexOutOfBoundsException {
+        if (start<1 || end>length || start>end+1) throw new IndexOutOfBoundsException("Can't read "+start+".."+end+" of a sequence of length "+length);
+        StringBuffer result = new StringBuffer(end-start+1);
+        for (int page = (start-1)/this.pageSize; start<=end; page++) {
+            String symbols = this.getPage(seq, length, page);
+            if (symbols==null) return null;
+            int pageStart = page*this.pageSize+1;
+            int pageEnd = Math.min(end, pageStart+symbols.length()-1);
+            result.append(symbols.substring(start-pageStart, pageEnd-pageStart+1));
+            start = pageEnd+1;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Forgets all the pages read so far.
+     */
+    public synchronized void clear() {
+        this.pages.clear();
+    }
+
+    private String getPage(Object seq, int length, int page) {
+        List key = new ArrayList(2);
+        key.add(seq);
+        key.add(new Integer(page));
+        String symbols = (String)this.pages.get(key);
+        if (symbols==null) {
+            int pageStart = page*this.pageSize+1;
+            int pageLength = Math.min(this.pageSize, length-pageStart+1);
+            symbols = this.readPage(seq, pageStart, pageLength);
+            if (symbols==null) return null;
+            if (symbols.length()!=pageLength) {
+                throw new BioRuntimeException("Expected "+pageLength+" symbols from position "+pageStart+" of "+seq+" but found "+symbols.length());
+            }
+            this.pages.put(key, symbols);
+        }
+        return symbols;
+    }
+}
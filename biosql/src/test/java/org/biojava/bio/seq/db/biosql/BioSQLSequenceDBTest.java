@@ -251,6 +251,33 @@ public class BioSQLSequenceDBTest extends AbstractSequenceDBTest {
     }
 
 
+    /**
+     * BioSQLSequenceDB won't remove a sequence that is still in use, so
+     * unlike the inherited test this drops its reference first.
+     */
+    public void testAddRemoveSequence() throws Exception {
+        String name = "dna_1";
+        assertTrue(!mSequenceDB.ids().contains(name));
+        mSequenceDB.addSequence(DNATools.createDNASequence("atgctgatgatgatg", name));
+        assertTrue(mSequenceDB.ids().contains(name));
+        assertNotNull(mSequenceDB.getSequence(name));
+
+        mSequenceDB.removeSequence(name);
+        assertTrue(!mSequenceDB.ids().contains(name));
+    }
+
+
+    public void testSequencePaging() throws Exception {
+        mSequenceDB.addSequence(getSequence());
+        ((BioSQLSequenceDB) mSequenceDB).setSequencePaging(4, 2);
+        Sequence seq = mSequenceDB.getSequence("test_seq");
+        assertEquals("gtgtacccca", seq.subStr(5, 14));
+        assertEquals("cccaatggga", seq.subList(11, 20).seqString());
+        assertEquals(DNATools.c(), seq.symbolAt(25));
+        assertEquals("actggtgtaccccaatgggaatatc", seq.seqString());
+    }
+
+
     public static Sequence getSequence() throws Exception {
         SymbolList sl = DNATools.createDNA("ACTGGTGTACCCCAATGGGAATATC") ;
         Sequence sequence = new SimpleSequence(sl, null, "test_seq", null);
@@ -0,0 +1,225 @@
+package org.biojavax.bio.db.biosql;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.biojava.bio.BioException;
+import org.biojavax.RichObjectFactory;
+import org.biojavax.SimpleRichAnnotation;
+import org.biojavax.bio.seq.RichFeature;
+import org.biojavax.bio.seq.RichSequence;
+import org.biojavax.bio.seq.RichSequenceIterator;
+import org.biojavax.bio.seq.SimplePosition;
+import org.biojavax.bio.seq.SimpleRichLocation;
+import org.biojavax.bio.seq.io.GenbankFormat;
+import org.biojavax.bio.seq.io.RichSequenceBuilderFactory;
+import org.biojavax.bio.seq.io.RichStreamReader;
+
+/**
+ * Tests for BioSQLBulkLoader against the HSQLDB schema. Skipped when the
+ * HSQLDB driver is not on the classpath.
+ *
+ * @since 1.9.8
+ */
+public class BioSQLBulkLoaderTest extends TestCase {
+
+    static final boolean HAVE_DB;
+    static {
+        boolean haveDB = false;
+        try {
+            Class.forName("org.hsqldb.jdbcDriver");
+            haveDB = true;
+        } catch (ClassNotFoundException e) {
+            System.err.println("No hsqldb driver found.");
+        }
+        HAVE_DB = haveDB;
+    }
+
+    private static final String DB_URL = "jdbc:hsqldb:.";
+    private static final String DB_CREATE_RESOURCE = "biosqldb-hsqldb.sql";
+    private static final String DB_DROP_RESOURCE = "drop-biosqldb-hsqldb.sql";
+
+    private static final String RECORD =
+        "LOCUS       TEST%1$s                  24 bp    DNA     linear   UNA 01-JAN-2000\n"
+        + "DEFINITION  Bulk loader test %1$s.\n"
+        + "ACCESSION   TEST%1$s\n"
+        + "VERSION     TEST%1$s.1\n"
+        + "SOURCE      Escherichia coli\n"
+        + "  ORGANISM  Escherichia coli\n"
+        + "            Bacteria.\n"
+        + "REFERENCE   1  (bases 1 to 24)\n"
+        + "  AUTHORS   Smith,J.\n"
+        + "  TITLE     A shared reference\n"
+        + "  JOURNAL   Unpublished\n"
+        + "COMMENT     Loaded in bulk.\n"
+        + "FEATURES             Location/Qualifiers\n"
+        + "     source          1..24\n"
+        + "                     /organism=\"Escherichia coli\"\n"
+        + "                     /db_xref=\"taxon:562\"\n"
+        + "     gene            join(1..6,10..24)\n"
+        + "                     /gene=\"abc%1$s\"\n"
+        + "                     /db_xref=\"GeneID:%1$s\"\n"
+        + "     CDS             complement(3..8)\n"
+        + "                     /note=\"shared\"\n"
+        + "ORIGIN\n"
+        + "        1 acgtacgtac gtacgtacgt acgt\n"
+        + "//\n";
+
+    private Connection conn;
+
+    protected void setUp() throws Exception {
+        this.conn = DriverManager.getConnection(DB_URL, "sa", "");
+        this.execute(DB_CREATE_RESOURCE);
+    }
+
+    protected void tearDown() throws Exception {
+        this.execute(DB_DROP_RESOURCE);
+        this.conn.close();
+    }
+
+    public void testLoad() throws Exception {
+        BioSQLBulkLoader loader = new BioSQLBulkLoader(this.conn);
+        loader.setBatchSize(2);
+        loader.setDeferIndexes(true);
+        int indexes = this.countIndexes();
+        assertEquals(3, loader.load(this.read(new String[]{"1", "2", "3"})));
+        assertEquals(indexes, this.countIndexes());
+
+        assertEquals(3, this.count("SELECT COUNT(*) FROM bioentry"));
+        assertEquals("acgtacgtacgtacgtacgtacgt", this.string("SELECT seq FROM biosequence s, bioentry e"
+            + " WHERE s.bioentry_id = e.bioentry_id AND e.accession = 'TEST2'"));
+        assertEquals(9, this.count("SELECT COUNT(*) FROM seqfeature"));
+        // the join is kept as its two blocks
+        assertEquals(12, this.count("SELECT COUNT(*) FROM location"));
+        assertEquals(3, this.count("SELECT COUNT(*) FROM location WHERE strand = -1 AND start_pos = 3 AND end_pos = 8"));
+        assertEquals(3, this.count("SELECT COUNT(*) FROM anncomment"));
+
+        // shared rows are only written once
+        assertEquals(1, this.count("SELECT COUNT(*) FROM taxon WHERE ncbi_taxon_id = 562"));
+        assertEquals(1, this.count("SELECT COUNT(*) FROM reference"));
+        assertEquals(3, this.count("SELECT COUNT(*) FROM bioentry_reference"));
+        assertEquals(1, this.count("SELECT COUNT(*) FROM term WHERE name = 'gene'"));
+        // taxon cross references become the taxon instead
+        assertEquals(3, this.count("SELECT COUNT(*) FROM dbxref"));
+
+        // keys carry on from what is already there
+        assertEquals(1, loader.load(this.read(new String[]{"4"})));
+        assertEquals(4, this.count("SELECT COUNT(DISTINCT bioentry_id) FROM bioentry"));
+        assertEquals(1, this.count("SELECT COUNT(*) FROM term WHERE name = 'gene'"));
+    }
+
+    public void testSubFeatures() throws Exception {
+        RichSequence seq = this.read(new String[]{"1"}).nextRichSequence();
+        RichFeature gene = null;
+        for (Iterator i = seq.getFeatureSet().iterator(); i.hasNext(); ) {
+            RichFeature f = (RichFeature)i.next();
+            if (f.getTypeTerm().getName().equals("gene")) gene = f;
+        }
+        RichFeature exon = (RichFeature)gene.createFeature(this.template("exon", 1, 6));
+        exon.createFeature(this.template("motif", 2, 4));
+
+        BioSQLBulkLoader loader = new BioSQLBulkLoader(this.conn);
+        assertEquals(1, loader.load(new RichSequence.IOTools.SingleRichSeqIterator(seq)));
+        assertEquals(5, this.count("SELECT COUNT(*) FROM seqfeature"));
+        assertEquals(2, this.count("SELECT COUNT(*) FROM seqfeature_relationship r, seqfeature o, seqfeature s"
+            + " WHERE r.object_seqfeature_id = o.seqfeature_id AND r.subject_seqfeature_id = s.seqfeature_id"));
+        assertEquals(1, this.count("SELECT COUNT(*) FROM location l, seqfeature f, term t"
+            + " WHERE l.seqfeature_id = f.seqfeature_id AND f.type_term_id = t.term_id"
+            + " AND t.name = 'motif' AND l.start_pos = 2 AND l.end_pos = 4"));
+    }
+
+    public void testLoadExisting() throws Exception {
+        BioSQLBulkLoader loader = new BioSQLBulkLoader(this.conn);
+        loader.load(this.read(new String[]{"1"}));
+        try {
+            loader.load(this.read(new String[]{"2", "1"}));
+            fail("TEST1 is already loaded");
+        } catch (BioException be) {
+        }
+        // the failed batch is rolled back as a whole
+        assertEquals(1, this.count("SELECT COUNT(*) FROM bioentry"));
+        assertTrue(this.conn.getAutoCommit());
+
+        try {
+            loader.setBatchSize(0);
+            fail("Batches need a sequence");
+        } catch (IllegalArgumentException iae) {
+        }
+    }
+
+    private RichFeature.Template template(String type, int start, int end) {
+        RichFeature.Template templ = new RichFeature.Template();
+        templ.location = new SimpleRichLocation(new SimplePosition(start), new SimplePosition(end), 0);
+        templ.typeTerm = RichObjectFactory.getDefaultOntology().getOrCreateTerm(type);
+        templ.sourceTerm = RichObjectFactory.getDefaultOntology().getOrCreateTerm("test");
+        templ.annotation = new SimpleRichAnnotation();
+        templ.featureRelationshipSet = new TreeSet();
+        templ.rankedCrossRefs = new TreeSet();
+        return templ;
+    }
+
+    private RichSequenceIterator read(String[] names) {
+        StringBuffer records = new StringBuffer();
+        for (int i = 0; i < names.length; i++) {
+            records.append(String.format(RECORD, new Object[]{names[i]}));
+        }
+        return new RichStreamReader(new BufferedReader(new StringReader(records.toString())), new GenbankFormat(),
+            RichSequence.IOTools.getDNAParser(), RichSequenceBuilderFactory.THRESHOLD, RichObjectFactory.getDefaultNamespace());
+    }
+
+    private int countIndexes() throws Exception {
+        ResultSet rs = this.conn.getMetaData().getIndexInfo(null, null, "SEQFEATURE", false, false);
+        int count = 0;
+        while (rs.next()) count++;
+        rs.close();
+        return count;
+    }
+
+    private int count(String sql) throws Exception {
+        Statement st = this.conn.createStatement();
+        ResultSet rs = st.executeQuery(sql);
+        rs.next();
+        int count = rs.getInt(1);
+        st.close();
+        return count;
+    }
+
+    private String string(String sql) throws Exception {
+        Statement st = this.conn.createStatement();
+        ResultSet rs = st.executeQuery(sql);
+        rs.next();
+        String value = rs.getString(1);
+        st.close();
+        return value;
+    }
+
+    private void execute(String resource) throws Exception {
+        InputStream res = getClass().getClassLoader().getResourceAsStream(resource);
+        assertNotNull("Resource " + resource + " could not be located", res);
+        BufferedReader br = new BufferedReader(new InputStreamReader(res));
+        StringBuffer sql = new StringBuffer();
+        for (String line = br.readLine(); line != null; line = br.readLine()) {
+            sql.append(line).append("\n");
+        }
+        br.close();
+        Statement st = this.conn.createStatement();
+        st.executeQuery(sql.toString());
+        st.close();
+    }
+
+    public static Test suite() {
+        return HAVE_DB ? new TestSuite(BioSQLBulkLoaderTest.class) : new TestSuite();
+    }
+}
@@ -0,0 +1,89 @@
+package org.biojavax.bio.db.biosql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.BioRuntimeException;
+
+/**
+ * Tests for BioSQLSequencePageCache, reading pages from strings.
+ *
+ * @since 1.9.8
+ */
+public class BioSQLSequencePageCacheTest extends TestCase {
+
+    private static final String SEQ = "acgtacgtnnggccttaa";
+
+    // the start of every page read
+    private List reads = new ArrayList();
+
+    private BioSQLSequencePageCache cache(int pageSize, int maxPages) {
+        return new BioSQLSequencePageCache(pageSize, maxPages) {
+            protected String readPage(Object seq, int start, int length) {
+                reads.add(seq + ":" + start);
+                if (seq.equals("empty")) return null;
+                if (seq.equals("short")) return SEQ.substring(start - 1, start - 1 + length - 1);
+                return SEQ.substring(start - 1, start - 1 + length);
+            }
+        };
+    }
+
+    public void testSubStr() {
+        BioSQLSequencePageCache pages = cache(4, 10);
+        for (int start = 1; start <= SEQ.length(); start++) {
+            for (int end = start - 1; end <= SEQ.length(); end++) {
+                assertEquals(SEQ.substring(start - 1, end), pages.subStr("seq", SEQ.length(), start, end));
+            }
+        }
+        // five pages, the last one of two symbols, each read once
+        assertEquals(5, reads.size());
+        assertEquals("seq:17", reads.get(4));
+    }
+
+    public void testLeastRecentlyUsed() {
+        BioSQLSequencePageCache pages = cache(4, 2);
+        assertEquals("a", pages.subStr("seq", SEQ.length(), 1, 1));
+        assertEquals("n", pages.subStr("seq", SEQ.length(), 9, 9));
+        assertEquals("c", pages.subStr("seq", SEQ.length(), 2, 2));
+        assertEquals(2, reads.size());
+        // page 1..4 was used last, so page 9..12 makes way, then page 1..4
+        assertEquals("ac", pages.subStr("seq", SEQ.length(), 5, 6));
+        assertEquals("nn", pages.subStr("seq", SEQ.length(), 9, 10));
+        assertEquals("a", pages.subStr("seq", SEQ.length(), 1, 1));
+        assertEquals("[seq:1, seq:9, seq:5, seq:9, seq:1]", reads.toString());
+
+        // other sequences have pages of their own
+        reads.clear();
+        pages.clear();
+        pages.subStr("seq", SEQ.length(), 1, 1);
+        pages.subStr("other", SEQ.length(), 1, 1);
+        assertEquals(2, reads.size());
+    }
+
+    public void testBadReads() {
+        BioSQLSequencePageCache pages = cache(4, 2);
+        assertNull(pages.subStr("empty", 10, 2, 3));
+        try {
+            pages.subStr("short", SEQ.length(), 1, 2);
+            fail("The page is short");
+        } catch (BioRuntimeException bre) {
+        }
+        try {
+            pages.subStr("seq", SEQ.length(), 0, 2);
+            fail("Positions start from one");
+        } catch (IndexOutOfBoundsException ioobe) {
+        }
+        try {
+            pages.subStr("seq", SEQ.length(), 17, 19);
+            fail("The sequence ends at 18");
+        } catch (IndexOutOfBoundsException ioobe) {
+        }
+        try {
+            cache(0, 2);
+            fail("Pages need symbols");
+        } catch (IllegalArgumentException iae) {
+        }
+    }
+}
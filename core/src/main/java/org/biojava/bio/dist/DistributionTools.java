@@ -24,17 +24,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import org.biojava.bio.Annotation;
 import org.biojava.bio.BioError;
 import org.biojava.bio.BioException;
 import org.biojava.bio.alignment.Alignment;
+import org.biojava.bio.alignment.SimpleAlignment;
 import org.biojava.bio.seq.Sequence;
 import org.biojava.bio.seq.SequenceFactory;
 import org.biojava.bio.seq.impl.SimpleSequenceFactory;
@@ -46,15 +49,11 @@ import org.biojava.bio.symbol.BasisSymbol;
 import org.biojava.bio.symbol.FiniteAlphabet;
 import org.biojava.bio.symbol.IllegalAlphabetException;
 import org.biojava.bio.symbol.IllegalSymbolException;
-import org.biojava.bio.symbol.Location;
-import org.biojava.bio.symbol.LocationTools;
 import org.biojava.bio.symbol.PackedSymbolListFactory;
-import org.biojava.bio.symbol.PointLocation;
 import org.biojava.bio.symbol.SimpleSymbolListFactory;
 import org.biojava.bio.symbol.Symbol;
 import org.biojava.bio.symbol.SymbolList;
 import org.biojava.bio.symbol.SymbolListFactory;
-import org.biojava.bio.symbol.SymbolListViews;
 import org.biojava.utils.AssertionFailure;
 import org.biojava.utils.ChangeVetoException;
 import org.xml.sax.SAXException;
@@ -342,43 +341,38 @@ public final class DistributionTools {
                                                  int[] cols)
   throws IllegalAlphabetException {
         List<String> seqs = a.getLabels();
-        FiniteAlphabet alpha =
-          (FiniteAlphabet)((SymbolList)a.symbolListForLabel(seqs.get(0))).getAlphabet();
-        for(int i = 1; i < seqs.size();i++){
-                FiniteAlphabet test = (FiniteAlphabet)((SymbolList)a.symbolListForLabel(seqs.get(i))).getAlphabet();
-                if(test != alpha){
-                        throw new IllegalAlphabetException("Cannot Calculate jointDistOverAlignment() for alignments with"+
-                        "mixed alphabets");
-                }
-        }
+        FiniteAlphabet alpha = alignmentAlphabet(a, seqs, "jointDistOverAlignment()");
         List<Alphabet> a_list = new ArrayList();
         for(int i=0; i<cols.length; i++){
                 a_list.add(alpha);
         }
         Distribution dist;
         DistributionTrainerContext dtc = new SimpleDistributionTrainerContext();
-        dist =
-          DistributionFactory.DEFAULT.
-          createDistribution(AlphabetManager.getCrossProductAlphabet(a_list));
+        FiniteAlphabet cross =
+          (FiniteAlphabet) AlphabetManager.getCrossProductAlphabet(a_list);
+        dist = DistributionFactory.DEFAULT.createDistribution(cross);
         dtc.setNullModelWeight(nullWeight);
     try{
 
         dtc.registerDistribution(dist);
-        Location loc= new PointLocation(cols[0]);
-        for (int j = 0; j < cols.length; j++)
-            {
-                Location lj = new PointLocation(cols[j]);
-                loc = LocationTools.union(loc, lj);
+        // the columns in alignment order, as they would be in a sub-alignment
+        int[] sorted = (int[]) cols.clone();
+        Arrays.sort(sorted);
+        Symbol gap = a.getAlphabet().getGapSymbol();
+        Symbol[] syms = new Symbol[sorted.length];
+        List symList = Arrays.asList(syms);
+        for(Iterator<String> j = seqs.iterator(); j.hasNext();){
+            String label = j.next();
+            SymbolList row = (a instanceof SimpleAlignment) ? a.symbolListForLabel(label) : null;
+            boolean hasGap = false;
+            for(int k = 0; k < sorted.length; k++){
+                syms[k] = (row != null) ? row.symbolAt(sorted[k]) : a.symbolAt(label, sorted[k]);
+                hasGap |= gap.equals(syms[k]);
             }
-            Alignment subalign = a.subAlignment(new HashSet(seqs), loc);
-            Iterator s_it = subalign.symbolListIterator();
-        while(s_it.hasNext()){
-            SymbolList syml = (SymbolList) s_it.next();
-            Symbol s= SymbolListViews.orderNSymbolList(syml,syml.length()).symbolAt(1);
-            if(countGaps == false && syml.toList().contains(a.getAlphabet().getGapSymbol())){
+            if(countGaps == false && hasGap){
                     //do nothing, not counting gaps
             }else{
-            dtc.addCount(dist,s,1.0);// count the symbol
+            dtc.addCount(dist,cross.getSymbol(symList),1.0);// count the symbol
             }
         }
         dtc.train();
@@ -387,8 +381,46 @@ public final class DistributionTools {
     }
     return dist;
 }
+
+  /**
+   * Counts the symbols in each column of an alignment, in one pass over the
+   * rows. An ambiguity symbol adds one to the count of each symbol it
+   * matches, and gaps are not counted.
+   *
+   * @param a the <code>Alignment</code> to count
+   * @return an <code>IndexedCount[]</code> with one count for each column
+   * @throws IllegalAlphabetException if all sequences don't use the same alphabet
+   * @throws IllegalSymbolException if the alignment contains a symbol that is
+   *         not in the alphabet of its sequences
+   * @since 1.9.8
+   */
+  public static IndexedCount[] countOverAlignment(Alignment a)
+  throws IllegalAlphabetException, IllegalSymbolException {
+    List<String> seqs = a.getLabels();
+    FiniteAlphabet alpha = alignmentAlphabet(a, seqs, "countOverAlignment()");
+    AlphabetIndex index = AlphabetManager.getAlphabetIndex(alpha);
+    int size = alpha.size();
+    double[] counts = new double[a.length() * size];
+    countColumns(a, seqs, alpha, index, counts, new double[a.length()], new double[a.length()]);
+
+    IndexedCount[] pos = new IndexedCount[a.length()];
+    try {
+      for(int i = 0; i < pos.length; i++){
+        pos[i] = new IndexedCount(index);
+        for(int k = 0; k < size; k++){
+          pos[i].increaseCount(k, counts[i * size + k]);
+        }
+      }
+    } catch (ChangeVetoException cve) {
+      throw new AssertionFailure("Assertion failure: new counts got locked.", cve);
+    }
+    return pos;
+  }
+
   /**
    * Creates an array of distributions, one for each column of the alignment.
+   * The alignment is counted in one pass over its rows, and each distribution
+   * is filled from the counts in one step.
    *
    * @throws IllegalAlphabetException if all sequences don't use the same alphabet
    * @param a the <code>Alignment </code>to build the <code>Distribution[]</code> over.
@@ -406,77 +438,134 @@ public final class DistributionTools {
   throws IllegalAlphabetException {
 
     List<String> seqs = a.getLabels();
-
-    FiniteAlphabet alpha = (FiniteAlphabet)((SymbolList)a.symbolListForLabel(seqs.get(0))).getAlphabet();
-    for(int i = 1; i < seqs.size();i++){
-        FiniteAlphabet test = (FiniteAlphabet)((SymbolList)a.symbolListForLabel(seqs.get(i))).getAlphabet();
-        if(test != alpha){
-          throw new IllegalAlphabetException("Cannot Calculate distOverAlignment() for alignments with"+
-          "mixed alphabets");
-        }
-    }
+    FiniteAlphabet alpha = alignmentAlphabet(a, seqs, "distOverAlignment()");
+    AlphabetIndex index = AlphabetManager.getAlphabetIndex(alpha);
+    int size = alpha.size();
 
     Distribution[] pos = new Distribution[a.length()];
-    DistributionTrainerContext dtc = new SimpleDistributionTrainerContext();
-    dtc.setNullModelWeight(nullWeight);
-
-    double[] adjRatios = null;
-    if(countGaps){
-      adjRatios = new double[a.length()];
-    }
+    double[] counts = new double[a.length() * size];
+    double[] gapCounts = new double[a.length()];
+    double[] totalCounts = new double[a.length()];
+    double[] weights = new double[size];
 
     try{
-      for(int i = 0; i < a.length(); i++){// For each position
-        double gapCount = 0.0;
-        double totalCount = 0.0;
+      countColumns(a, seqs, alpha, index, counts, gapCounts, totalCounts);
 
+      for(int i = 0; i < pos.length; i++){// For each position
         pos[i] = DistributionFactory.DEFAULT.createDistribution(alpha);
-        dtc.registerDistribution(pos[i]);
-
-        for(Iterator<String> j = seqs.iterator(); j.hasNext();){// of each sequence
-          String seqLabel = j.next();
-          Symbol s = a.symbolAt(seqLabel,i + 1);
-
-          /*If this is working over a flexible alignment there is a possibility
-          that s could be null if this Sequence is not really preset in this
-          region of the Alignment. In this case it will be skipped*/
-          if(s == null)
-            continue;
-
-          Symbol gap = alpha.getGapSymbol();
-          if(countGaps &&
-             s.equals(gap)){
-             gapCount++; totalCount++;
-          }else{
-            dtc.addCount(pos[i],s,1.0);// count the symbol
-            totalCount++;
-          }
+        Distribution nullModel = pos[i].getNullModel();
+        double sum = 0.0;
+        for(int k = 0; k < size; k++){
+          sum +=
+            weights[k] =
+              counts[i * size + k] +
+              nullModel.getWeight(index.symbolForIndex(k)) * nullWeight;
         }
-
-        if(countGaps){
-          adjRatios[i] = 1.0 - (gapCount / totalCount);
+        double sum_inv = 1.0 / sum;
+        for(int k = 0; k < size; k++){
+          weights[k] = weights[k] * sum_inv;
         }
-      }
 
-      dtc.train();
+        if(countGaps){//need to adjust counts for gaps
+          double adjRatio = 1.0 - (gapCounts[i] / totalCounts[i]);
+          for(int k = 0; k < size; k++){
+            weights[k] = weights[k] * adjRatio;
+          }
+        }
 
-      if(countGaps){//need to adjust counts for gaps
-        for (int i = 0; i < adjRatios.length; i++) {
-          Distribution d = pos[i];
-          for (Iterator iter = ((FiniteAlphabet)d.getAlphabet()).iterator();
-                            iter.hasNext(); ) {
-            Symbol sym = (Symbol)iter.next();
-            d.setWeight(sym, (d.getWeight(sym) * adjRatios[i]));
+        if(pos[i] instanceof SimpleDistribution){
+          ((SimpleDistribution) pos[i]).setWeights(weights);
+        }else{
+          for(int k = 0; k < size; k++){
+            pos[i].setWeight(index.symbolForIndex(k), weights[k]);
           }
         }
       }
-
     }catch(Exception e){
       e.printStackTrace(System.err);
     }
     return pos;
   }
 
+  /**
+   * Finds the alphabet shared by all sequences of an alignment.
+   */
+  private static FiniteAlphabet alignmentAlphabet(Alignment a,
+                                                  List<String> seqs,
+                                                  String method)
+  throws IllegalAlphabetException {
+    FiniteAlphabet alpha = (FiniteAlphabet)((SymbolList)a.symbolListForLabel(seqs.get(0))).getAlphabet();
+    for(int i = 1; i < seqs.size();i++){
+        FiniteAlphabet test = (FiniteAlphabet)((SymbolList)a.symbolListForLabel(seqs.get(i))).getAlphabet();
+        if(test != alpha){
+          throw new IllegalAlphabetException("Cannot Calculate " + method + " for alignments with"+
+          "mixed alphabets");
+        }
+    }
+    return alpha;
+  }
+
+  /**
+   * Counts every column of an alignment in one pass over its rows, into
+   * counts[column * alpha.size() + index]. Gaps are counted in gapCounts,
+   * and every symbol present in totalCounts.
+   */
+  private static void countColumns(Alignment a,
+                                   List<String> seqs,
+                                   FiniteAlphabet alpha,
+                                   AlphabetIndex index,
+                                   double[] counts,
+                                   double[] gapCounts,
+                                   double[] totalCounts)
+  throws IllegalSymbolException {
+    int size = alpha.size();
+    int length = a.length();
+    Symbol gap = alpha.getGapSymbol();
+    // the indices of the atomic symbols matched by each symbol seen
+    Map matches = new IdentityHashMap();
+
+    for(Iterator<String> j = seqs.iterator(); j.hasNext();){// of each sequence
+      String seqLabel = j.next();
+      SymbolList row = (a instanceof SimpleAlignment) ? a.symbolListForLabel(seqLabel) : null;
+      for(int i = 0; i < length; i++){// For each position
+        Symbol s = (row != null) ? row.symbolAt(i + 1) : a.symbolAt(seqLabel, i + 1);
+
+        /*If this is working over a flexible alignment there is a possibility
+        that s could be null if this Sequence is not really preset in this
+        region of the Alignment. In this case it will be skipped*/
+        if(s == null)
+          continue;
+
+        totalCounts[i]++;
+        if(s.equals(gap)){
+          gapCounts[i]++;
+          continue;
+        }
+        int[] indices = (int[]) matches.get(s);
+        if(indices == null){
+          matches.put(s, indices = matchIndices(s, index));
+        }
+        for(int k = 0; k < indices.length; k++){
+          counts[i * size + indices[k]] += 1.0;
+        }
+      }
+    }
+  }
+
+  private static int[] matchIndices(Symbol s, AlphabetIndex index)
+  throws IllegalSymbolException {
+    if(s instanceof AtomicSymbol){
+      return new int[] { index.indexForSymbol(s) };
+    }
+    FiniteAlphabet fa = (FiniteAlphabet) s.getMatches();
+    int[] indices = new int[fa.size()];
+    int k = 0;
+    for(Iterator i = fa.iterator(); i.hasNext(); ){
+      indices[k++] = index.indexForSymbol((Symbol) i.next());
+    }
+    return indices;
+  }
+
 
   /**
    * Creates an array of distributions, one for each column of the alignment.
@@ -114,6 +114,59 @@ public final class IndexedCount
     }
   }
 
+  /**
+   * Get the index that maps between symbols and the indices accepted by
+   * <code>getCount(int)</code> and <code>increaseCount(int, double)</code>.
+   *
+   * @return  the AlphabetIndex for this count
+   * @since 1.9.8
+   */
+  public AlphabetIndex getIndexer() {
+    return indexer;
+  }
+
+  /**
+   * Get the count of the atomic symbol with an index, without looking the
+   * symbol up.
+   *
+   * @param index  the index of the symbol
+   * @return  the count
+   * @since 1.9.8
+   */
+  public double getCount(int index) {
+    return counts[index];
+  }
+
+  /**
+   * Increase the count of the atomic symbol with an index, without looking
+   * the symbol up.
+   *
+   * @param index  the index of the symbol
+   * @param c  the amount to add
+   * @throws ChangeVetoException  if a listener vetoed the change
+   * @since 1.9.8
+   */
+  public void increaseCount(int index, double c)
+  throws ChangeVetoException {
+    if(!hasListeners()) {
+      counts[index] += c;
+    } else {
+      ChangeSupport changeSupport = getChangeSupport(COUNTS);
+      synchronized(changeSupport) {
+        double oc = counts[index];
+        double nc = oc + c;
+        ChangeEvent ce = new ChangeEvent(
+          this, COUNTS,
+          new Object[] { indexer.symbolForIndex(index), new Double(oc) },
+          new Object[] { indexer.symbolForIndex(index), new Double(nc) }
+        );
+        changeSupport.firePreChangeEvent(ce);
+        counts[index] = nc;
+        changeSupport.firePostChangeEvent(ce);
+      }
+    }
+  }
+
   public void setCounts(Count c)
   throws IllegalAlphabetException, ChangeVetoException {
     if(c.getAlphabet() != getAlphabet()) {
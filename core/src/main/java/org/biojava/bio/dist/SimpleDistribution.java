@@ -189,6 +189,71 @@ extends AbstractDistribution implements Serializable{
     weights[indexer.indexForSymbol(s)] = w;
   }
 
+  /**
+   * Get the index that maps between symbols and the indices accepted by
+   * <code>getWeight(int)</code> and <code>setWeights(double[])</code>. This is
+   * the index returned by <code>AlphabetManager.getAlphabetIndex()</code> for
+   * the alphabet.
+   *
+   * @return  the AlphabetIndex for this distribution
+   * @since 1.9.8
+   */
+  public AlphabetIndex getIndexer() {
+    return indexer;
+  }
+
+  /**
+   * Get the weight of the atomic symbol with an index, without looking the
+   * symbol up.
+   *
+   * @param index  the index of the symbol
+   * @return  the weight, or NaN if no weights have been set
+   * @since 1.9.8
+   */
+  public double getWeight(int index) {
+    if(!hasWeights()) {
+      return Double.NaN;
+    } else {
+      return weights[index];
+    }
+  }
+
+  /**
+   * Set the weights of all atomic symbols at once, in index order. The array
+   * is copied.
+   *
+   * @param w  the weights, one for each index
+   * @throws ChangeVetoException  if a listener vetoed the change
+   * @since 1.9.8
+   */
+  public void setWeights(double[] w)
+  throws ChangeVetoException {
+    if(w.length != alpha.size()) {
+      throw new IllegalArgumentException(
+        "Need " + alpha.size() + " weights, not " + w.length
+      );
+    }
+    for(int i = 0; i < w.length; i++) {
+      if(w[i] < 0.0) {
+        throw new IllegalArgumentException(
+          "Can't set weight to negative score: " +
+          indexer.symbolForIndex(i).getName() + " -> " + w[i]
+        );
+      }
+    }
+    if(!hasListeners()) {
+      System.arraycopy(w, 0, getWeights(), 0, w.length);
+    } else {
+      ChangeSupport changeSupport = getChangeSupport(Distribution.WEIGHTS);
+      synchronized(changeSupport) {
+        ChangeEvent ce = new ChangeEvent(this, Distribution.WEIGHTS);
+        changeSupport.firePreChangeEvent(ce);
+        System.arraycopy(w, 0, getWeights(), 0, w.length);
+        changeSupport.firePostChangeEvent(ce);
+      }
+    }
+  }
+
   private void initialise(FiniteAlphabet alphabet) {
     this.alpha = alphabet;
     this.indexer = AlphabetManager.getAlphabetIndex(alphabet);
@@ -235,8 +300,8 @@ extends AbstractDistribution implements Serializable{
     // now copy over weights
     int alfaSize = ((FiniteAlphabet)getAlphabet()).size();
 
+    weights = new double[alfaSize];
     for (int i = 0; i < alfaSize; i++) {
-      weights = new double[alfaSize];
       weights[i] = dist.getWeight(indexer.symbolForIndex(i));
     }
     }
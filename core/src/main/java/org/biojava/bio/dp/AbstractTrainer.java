@@ -22,6 +22,16 @@
 
 package org.biojava.bio.dp;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 import org.biojava.bio.BioException;
 import org.biojava.bio.seq.Sequence;
 import org.biojava.bio.seq.SequenceIterator;
@@ -88,8 +98,151 @@ public abstract class AbstractTrainer implements TrainingAlgorithm {
         trainer.train();
         trainer.clearCounts();
       } while(!stopper.isTrainingComplete(this));
+    } catch (BioException be) {
+      throw be;
+    } catch (Exception e) {
+      throw new BioException("Unable to train", e);
+    }
+  }
+
+  /**
+   * Trains the sequences in db until stopper says to finnish, running the
+   * per-sequence iterations on several threads.
+   * <p>
+   * Each cycle, the sequences are split into consecutive chunks of
+   * <code>CHUNK_SIZE</code>. Each chunk adds its expected counts to its own
+   * accumulator, and the accumulated counts and scores are added to a single
+   * model trainer in chunk order before the model is re-estimated. The result
+   * does not depend on the number of threads, and differs from that of
+   * <code>train(db, nullModelWeight, stopper)</code> only by rounding.
+   * </p>
+   * <p>
+   * singleSequenceIteration must be safe to call from several threads at once,
+   * as it is for BaumWelchTrainer and BaumWelchSampler.
+   * </p>
+   *
+   * @param db  the sequences to train on
+   * @param nullModelWeight  the weight of the null model
+   * @param stopper  decides when to stop training
+   * @param threads  the number of threads to use; with one thread or less this
+   *        is the same as <code>train(db, nullModelWeight, stopper)</code>
+   * @since 1.9.8
+   */
+  public void train(
+    SequenceDB db,
+    double nullModelWeight,
+    StoppingCriteria stopper,
+    int threads
+  ) throws IllegalSymbolException, BioException {
+    if(threads <= 1) {
+      train(db, nullModelWeight, stopper);
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      threads,
+      new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "AbstractTrainer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      }
+    );
+    try {
+      ModelTrainer trainer = new SimpleModelTrainer();
+      trainer.setNullModelWeight(nullModelWeight);
+      trainer.registerModel(dp.getModel());
+
+      List idle = new ArrayList();
+      LinkedList pending = new LinkedList();
+      int maxPending = threads * 2;
+
+      do {
+        cycle++;
+        lastScore = currentScore;
+        currentScore = 0.0;
+        SequenceIterator si = db.sequenceIterator();
+        while(si.hasNext() || !pending.isEmpty()) {
+          while(si.hasNext() && pending.size() < maxPending) {
+            List chunk = new ArrayList(CHUNK_SIZE);
+            while(si.hasNext() && chunk.size() < CHUNK_SIZE) {
+              chunk.add(si.nextSequence());
+            }
+            CountAccumulator counts = idle.isEmpty()
+              ? new CountAccumulator(trainer)
+              : (CountAccumulator) idle.remove(idle.size() - 1);
+            pending.add(new ChunkResult(
+              counts,
+              executor.submit(new ChunkIteration(counts, chunk))
+            ));
+          }
+          ChunkResult done = (ChunkResult) pending.removeFirst();
+          currentScore += ((Double) done.score.get()).doubleValue();
+          done.counts.flush();
+          idle.add(done.counts);
+        }
+        trainer.train();
+        trainer.clearCounts();
+      } while(!stopper.isTrainingComplete(this));
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new BioException("Interrupted while training", ie);
+    } catch (ExecutionException ee) {
+      if(ee.getCause() instanceof BioException) {
+        throw (BioException) ee.getCause();
+      }
+      if(ee.getCause() instanceof Error) {
+        throw (Error) ee.getCause();
+      }
+      throw new BioException("Unable to train", ee.getCause());
+    } catch (BioException be) {
+      throw be;
     } catch (Exception e) {
       throw new BioException("Unable to train", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The number of sequences handed to a thread at a time by
+   * <code>train(db, nullModelWeight, stopper, threads)</code>.
+   */
+  protected static final int CHUNK_SIZE = 16;
+
+  /**
+   * Runs singleSequenceIteration over a chunk of sequences, returning the
+   * summed score.
+   */
+  private class ChunkIteration implements Callable {
+    private final ModelTrainer counts;
+    private final List chunk;
+
+    ChunkIteration(ModelTrainer counts, List chunk) {
+      this.counts = counts;
+      this.chunk = chunk;
+    }
+
+    public Object call() throws Exception {
+      double score = 0.0;
+      for(int i = 0; i < chunk.size(); i++) {
+        score += singleSequenceIteration(counts, (SymbolList) chunk.get(i));
+      }
+      return new Double(score);
+    }
+  }
+
+  /**
+   * A chunk in progress and the accumulator it adds its counts to.
+   */
+  private static class ChunkResult {
+    final CountAccumulator counts;
+    final Future score;
+
+    ChunkResult(CountAccumulator counts, Future score) {
+      this.counts = counts;
+      this.score = score;
     }
   }
 
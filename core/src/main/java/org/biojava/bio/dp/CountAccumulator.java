@@ -0,0 +1,166 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojava.bio.dp;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.biojava.bio.BioError;
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.dist.DistributionTrainer;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.utils.ChangeVetoException;
+
+/**
+ * A ModelTrainer that holds back the counts it is given for another trainer,
+ * summed per distribution and symbol, until <code>flush</code> adds them to
+ * it. Everything else is passed straight on to that trainer.
+ * <p>
+ * Counts are kept exactly as passed to <code>addCount</code>, before any
+ * distribution trainer sees them, so distributions whose trainers forward
+ * counts to other distributions are handled by the trainer they are added
+ * to. Counts are linear, so adding the sums gives the same expected counts as
+ * adding each count, up to rounding.
+ * </p>
+ * <p>
+ * Each accumulator can be filled by a different thread while the trainer it
+ * feeds is left alone. Only <code>addCount</code>, <code>getCount</code> and
+ * <code>clearCounts</code> stay within the accumulator; the other methods
+ * change or read the shared trainer.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+class CountAccumulator implements ModelTrainer {
+  private final ModelTrainer target;
+  private final Map counts = new IdentityHashMap();
+
+  /**
+   * Creates an accumulator for the counts of a trainer.
+   *
+   * @param target  the trainer the counts are added to by <code>flush</code>
+   */
+  public CountAccumulator(ModelTrainer target) {
+    this.target = target;
+  }
+
+  public double getNullModelWeight() {
+    return target.getNullModelWeight();
+  }
+
+  public void setNullModelWeight(double nullModelWeight) {
+    target.setNullModelWeight(nullModelWeight);
+  }
+
+  public void registerModel(MarkovModel model) {
+    target.registerModel(model);
+  }
+
+  public void registerDistribution(Distribution dist) {
+    target.registerDistribution(dist);
+  }
+
+  public void registerTrainer(Distribution dist, DistributionTrainer trainer) {
+    target.registerTrainer(dist, trainer);
+  }
+
+  public DistributionTrainer getTrainer(Distribution dist) {
+    return target.getTrainer(dist);
+  }
+
+  public void addCount(Distribution dist, Symbol sym, double times) {
+    Map symCounts = (Map) counts.get(dist);
+    if(symCounts == null) {
+      counts.put(dist, symCounts = new IdentityHashMap());
+    }
+    double[] count = (double[]) symCounts.get(sym);
+    if(count == null) {
+      symCounts.put(sym, count = new double[1]);
+    }
+    count[0] += times;
+  }
+
+  /**
+   * Returns the sum of the counts held back for exactly this distribution and
+   * symbol.
+   */
+  public double getCount(Distribution dist, Symbol sym) {
+    Map symCounts = (Map) counts.get(dist);
+    if(symCounts == null) {
+      return 0.0;
+    }
+    double[] count = (double[]) symCounts.get(sym);
+    return (count == null) ? 0.0 : count[0];
+  }
+
+  /**
+   * Adds the counts held back to the trainer, then trains it.
+   *
+   * @throws BioError if the trainer rejects a symbol it was given counts for
+   */
+  public void train()
+  throws ChangeVetoException {
+    try {
+      flush();
+    } catch (IllegalSymbolException ise) {
+      throw new BioError("Trainer rejected a counted symbol", ise);
+    }
+    target.train();
+  }
+
+  /**
+   * Sets all counts held back to zero, keeping the entries so that they can
+   * be reused. The counts of the trainer are left alone.
+   */
+  public void clearCounts() {
+    for(Iterator i = counts.values().iterator(); i.hasNext(); ) {
+      Map symCounts = (Map) i.next();
+      for(Iterator j = symCounts.values().iterator(); j.hasNext(); ) {
+        ((double[]) j.next())[0] = 0.0;
+      }
+    }
+  }
+
+  /**
+   * Adds the non-zero counts held back to the trainer and clears them.
+   *
+   * @throws IllegalSymbolException if the trainer rejects a symbol
+   */
+  public void flush()
+  throws IllegalSymbolException {
+    for(Iterator i = counts.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry distEntry = (Map.Entry) i.next();
+      Distribution dist = (Distribution) distEntry.getKey();
+      Map symCounts = (Map) distEntry.getValue();
+      for(Iterator j = symCounts.entrySet().iterator(); j.hasNext(); ) {
+        Map.Entry symEntry = (Map.Entry) j.next();
+        double[] count = (double[]) symEntry.getValue();
+        if(count[0] != 0.0) {
+          target.addCount(dist, (Symbol) symEntry.getKey(), count[0]);
+          count[0] = 0.0;
+        }
+      }
+    }
+  }
+}
@@ -437,13 +437,15 @@ public abstract class DP {
   private Map backwardTransitionScores;
 
   public double[][] getForwardTransitionScores(ScoreType scoreType) {
-    double[][] ts = (double[][]) forwardTransitionScores.get(scoreType);
-    if (ts == null) {
-      forwardTransitionScores.put(scoreType, ts = forwardTransitionScores(
-              getModel(), getStates(), forwardTransitions, scoreType
-      ));
+    synchronized(forwardTransitionScores) {
+      double[][] ts = (double[][]) forwardTransitionScores.get(scoreType);
+      if (ts == null) {
+        forwardTransitionScores.put(scoreType, ts = forwardTransitionScores(
+                getModel(), getStates(), forwardTransitions, scoreType
+        ));
+      }
+      return ts;
     }
-    return ts;
   }
 
   public int[][] getBackwardTransitions() {
@@ -451,22 +453,24 @@ public abstract class DP {
   }
 
   public double[][] getBackwardTransitionScores(ScoreType scoreType) {
-    double[][] ts = (double[][]) backwardTransitionScores.get(scoreType);
-    if (ts == null) {
-      backwardTransitionScores.put(scoreType, ts = backwardTransitionScores(
-              getModel(), getStates(), backwardTransitions, scoreType
-      ));
+    synchronized(backwardTransitionScores) {
+      double[][] ts = (double[][]) backwardTransitionScores.get(scoreType);
+      if (ts == null) {
+        backwardTransitionScores.put(scoreType, ts = backwardTransitionScores(
+                getModel(), getStates(), backwardTransitions, scoreType
+        ));
+      }
+      return ts;
     }
-    return ts;
   }
 
-  public void lockModel() {
+  public synchronized void lockModel() {
     if (lockCount++ == 0) {
       getModel().addChangeListener(ChangeListener.ALWAYS_VETO, ChangeType.UNKNOWN);
     }
   }
 
-  public void unlockModel() {
+  public synchronized void unlockModel() {
     if (--lockCount == 0) {
       getModel().removeChangeListener(ChangeListener.ALWAYS_VETO, ChangeType.UNKNOWN);
     }
@@ -489,8 +493,12 @@ public abstract class DP {
         dotStatesIndex = i;
       }
 
-      this.forwardTransitionScores.clear();
-      this.backwardTransitionScores.clear();
+      synchronized(this.forwardTransitionScores) {
+        this.forwardTransitionScores.clear();
+      }
+      synchronized(this.backwardTransitionScores) {
+        this.backwardTransitionScores.clear();
+      }
     } catch (Exception e) {
       throw new BioError("Something is seriously wrong with the DP code", e);
     }
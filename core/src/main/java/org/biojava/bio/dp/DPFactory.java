@@ -23,6 +23,7 @@
 package org.biojava.bio.dp;
 
 import org.biojava.bio.BioException;
+import org.biojava.bio.dp.onehead.CompiledSingleDP;
 import org.biojava.bio.dp.onehead.SingleDP;
 import org.biojava.bio.dp.twohead.CellCalculatorFactoryMaker;
 import org.biojava.bio.dp.twohead.DPInterpreter;
@@ -38,12 +39,32 @@ public interface DPFactory {
   throws IllegalArgumentException, BioException;
   
   public static final DPFactory DEFAULT = new DefaultFactory(new DPInterpreter.Maker());
+
+  /**
+   * A factory that creates a CompiledSingleDP for single-head models, and
+   * the same DP as DEFAULT for two-head models.
+   *
+   * @since 1.9.8
+   */
+  public static final DPFactory COMPILED = new DefaultFactory(new DPInterpreter.Maker(), true);
   
   public static class DefaultFactory implements DPFactory {
     private final CellCalculatorFactoryMaker cfFacM;
+    private final boolean compileSingleHead;
     
     public DefaultFactory(CellCalculatorFactoryMaker cfFacM) {
+      this(cfFacM, false);
+    }
+
+    /**
+     * @param cfFacM  the maker for the cell calculators of two-head models
+     * @param compileSingleHead  if true, single-head models get a
+     *        CompiledSingleDP rather than a SingleDP
+     * @since 1.9.8
+     */
+    public DefaultFactory(CellCalculatorFactoryMaker cfFacM, boolean compileSingleHead) {
       this.cfFacM = cfFacM;
+      this.compileSingleHead = compileSingleHead;
     }
     
     public DP createDP(MarkovModel model)
@@ -51,7 +72,7 @@ public interface DPFactory {
       int heads = model.advance().length;
       MarkovModel flat = DP.flatView(model);
       if(heads == 1) {
-        return new SingleDP(flat);
+        return compileSingleHead ? new CompiledSingleDP(flat) : new SingleDP(flat);
       } else if(heads == 2) {
         return new PairwiseDP(flat, cfFacM);
       } else {
@@ -0,0 +1,335 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+
+package org.biojava.bio.dp;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.utils.ChangeEvent;
+import org.biojava.utils.ChangeListener;
+import org.biojava.utils.ChangeType;
+import org.biojava.utils.ChangeVetoException;
+
+/**
+ * A cache of log emission scores for the states of one model, which many DP
+ * objects can share, including DP objects running on several threads.
+ * <p>
+ * For each ScoreType and Symbol the cache holds the natural log of the score
+ * of every EmissionState of the model, computed together the first time any
+ * of them is asked for. The magical state scores 0 for the gap symbol and
+ * negative infinity for anything else, as it does in SingleDP. At most
+ * <code>capacity</code> of these rows are kept, dropping the least recently
+ * used first.
+ * </p>
+ * <p>
+ * The cache listens to the model, and any change to the model clears it and
+ * moves it on to a new version, so rows computed from the old parameters are
+ * never returned after the change. The number of hits and misses is counted
+ * so that the capacity can be tuned.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public class SharedEmissionCache {
+  private final MarkovModel model;
+  private final int capacity;
+  private final Map rows;
+
+  // guarded by rows
+  private Map stateIndex;
+  private EmissionState [] states;
+  private long version;
+  private long hits;
+  private long misses;
+
+  private final ChangeListener updater = new ChangeListener() {
+    public void preChange(ChangeEvent ce)
+    throws ChangeVetoException {
+    }
+
+    public void postChange(ChangeEvent ce) {
+      synchronized(rows) {
+        if(ce.getType().isMatchingType(MarkovModel.ARCHITECTURE)) {
+          indexStates();
+        }
+        version++;
+        rows.clear();
+      }
+    }
+  };
+
+  /**
+   * Creates a cache for a model.
+   *
+   * @param model  the model whose emission scores will be cached
+   * @param capacity  the largest number of (ScoreType, Symbol) rows to keep
+   */
+  public SharedEmissionCache(MarkovModel model, final int capacity) {
+    if(capacity < 1) {
+      throw new IllegalArgumentException(
+        "Capacity must be at least 1, not " + capacity
+      );
+    }
+    this.model = model;
+    this.capacity = capacity;
+    this.rows = new LinkedHashMap(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry eldest) {
+        return size() > capacity;
+      }
+    };
+    synchronized(rows) {
+      indexStates();
+    }
+    model.addChangeListener(updater, ChangeType.UNKNOWN);
+  }
+
+  public MarkovModel getModel() {
+    return model;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the version of the model parameters that the cache holds scores for.
+   * This goes up by one each time the model changes.
+   *
+   * @return the version
+   */
+  public long getVersion() {
+    synchronized(rows) {
+      return version;
+    }
+  }
+
+  /**
+   * Gets the log emission score of a single state.
+   *
+   * @param state  the state, which must be in the model
+   * @param sym  the symbol emitted
+   * @param scoreType  the ScoreType to score with
+   * @return the natural log of the score
+   * @throws IllegalSymbolException if the state is not in the model, or can
+   *         not score the symbol
+   */
+  public double getEmission(State state, Symbol sym, ScoreType scoreType)
+  throws IllegalSymbolException {
+    Row row = getRow(sym, scoreType);
+    return row.scores[row.indexOf(state)];
+  }
+
+  /**
+   * Gets the log emission scores of several states at once.
+   *
+   * @param sym  the symbol emitted
+   * @param scoreType  the ScoreType to score with
+   * @param states  the states, which must be emission states of the model
+   * @param scores  the array to fill with the score of each state
+   * @param count  the number of states, from the start of the array, to score
+   * @throws IllegalSymbolException if a state is not in the model, or can not
+   *         score the symbol
+   */
+  public void getEmissions(
+    Symbol sym,
+    ScoreType scoreType,
+    State [] states,
+    double [] scores,
+    int count
+  ) throws IllegalSymbolException {
+    Row row = getRow(sym, scoreType);
+    for(int i = 0; i < count; i++) {
+      scores[i] = row.scores[row.indexOf(states[i])];
+    }
+  }
+
+  /**
+   * Gets the number of lookups that found their scores in the cache.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    synchronized(rows) {
+      return hits;
+    }
+  }
+
+  /**
+   * Gets the number of lookups that had to compute their scores.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    synchronized(rows) {
+      return misses;
+    }
+  }
+
+  /**
+   * Gets the fraction of lookups that found their scores in the cache.
+   *
+   * @return the hit rate, or 0 if there have been no lookups
+   */
+  public double getHitRate() {
+    synchronized(rows) {
+      long total = hits + misses;
+      return total == 0 ? 0.0 : (double) hits / (double) total;
+    }
+  }
+
+  /**
+   * Sets the hit and miss counts back to zero.
+   */
+  public void resetStatistics() {
+    synchronized(rows) {
+      hits = 0;
+      misses = 0;
+    }
+  }
+
+  /**
+   * Drops all cached scores.
+   */
+  public void clear() {
+    synchronized(rows) {
+      rows.clear();
+    }
+  }
+
+  private Row getRow(Symbol sym, ScoreType scoreType)
+  throws IllegalSymbolException {
+    Key key = new Key(scoreType, sym);
+    Map index;
+    EmissionState [] states;
+    long rowVersion;
+    synchronized(rows) {
+      Row row = (Row) rows.get(key);
+      if(row != null) {
+        hits++;
+        return row;
+      }
+      misses++;
+      index = stateIndex;
+      states = this.states;
+      rowVersion = version;
+    }
+
+    // score outside the lock, so that other threads are not held up
+    double [] scores = new double[states.length];
+    for(int i = 0; i < states.length; i++) {
+      if(states[i] instanceof MagicalState) {
+        scores[i] = sym == AlphabetManager.getGapSymbol()
+          ? 0.0
+          : Double.NEGATIVE_INFINITY;
+      } else {
+        scores[i] = Math.log(
+          scoreType.calculateScore(states[i].getDistribution(), sym)
+        );
+      }
+    }
+    Row row = new Row(index, scores);
+
+    synchronized(rows) {
+      // don't keep scores from parameters that changed while we worked
+      if(rowVersion == version) {
+        rows.put(key, row);
+      }
+    }
+    return row;
+  }
+
+  private void indexStates() {
+    Map index = new IdentityHashMap();
+    int count = 0;
+    for(Iterator i = model.stateAlphabet().iterator(); i.hasNext(); ) {
+      Object state = i.next();
+      if(state instanceof EmissionState) {
+        count++;
+      }
+    }
+    EmissionState [] states = new EmissionState[count];
+    count = 0;
+    for(Iterator i = model.stateAlphabet().iterator(); i.hasNext(); ) {
+      Object state = i.next();
+      if(state instanceof EmissionState) {
+        index.put(state, new Integer(count));
+        states[count++] = (EmissionState) state;
+      }
+    }
+    this.stateIndex = index;
+    this.states = states;
+  }
+
+  /**
+   * The scores of all emission states for one ScoreType and Symbol, with the
+   * state index they were computed against.
+   */
+  private static final class Row {
+    final Map stateIndex;
+    final double [] scores;
+
+    Row(Map stateIndex, double [] scores) {
+      this.stateIndex = stateIndex;
+      this.scores = scores;
+    }
+
+    int indexOf(State state)
+    throws IllegalSymbolException {
+      Integer i = (Integer) stateIndex.get(state);
+      if(i == null) {
+        throw new IllegalSymbolException(
+          state, "No emission state " + state.getName() + " in the model"
+        );
+      }
+      return i.intValue();
+    }
+  }
+
+  private static final class Key {
+    private final ScoreType scoreType;
+    private final Symbol sym;
+
+    Key(ScoreType scoreType, Symbol sym) {
+      this.scoreType = scoreType;
+      this.sym = sym;
+    }
+
+    public boolean equals(Object o) {
+      if(!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return k.scoreType == scoreType && k.sym == sym;
+    }
+
+    public int hashCode() {
+      return System.identityHashCode(scoreType) * 31 +
+        System.identityHashCode(sym);
+    }
+  }
+}
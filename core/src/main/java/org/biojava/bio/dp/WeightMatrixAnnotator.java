@@ -1,12 +1,16 @@
 package org.biojava.bio.dp;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.biojava.bio.BioException;
 import org.biojava.bio.SimpleAnnotation;
 import org.biojava.bio.seq.Feature;
 import org.biojava.bio.seq.Sequence;
 import org.biojava.bio.seq.SequenceAnnotator;
+import org.biojava.bio.seq.StrandedFeature;
 import org.biojava.bio.seq.impl.ViewSequence;
 import org.biojava.bio.symbol.IllegalAlphabetException;
 import org.biojava.bio.symbol.RangeLocation;
@@ -39,11 +43,22 @@ public class WeightMatrixAnnotator implements SequenceAnnotator,
     Feature.Template template = new Feature.Template();
     template.source = "WeightMatrixAnnotator";
     template.type = wmID;
-    for (int offset = 1;
-         offset <= seq.length() - cols + 1;
-         offset++) {
-      double score = DP.scoreWeightMatrix(matrix, seq, scoreType, offset);
-      double q = Math.exp(score);
+
+    // collect the hits first, as adding features may veto
+    final List hits = new ArrayList();
+    new WeightMatrixScanner(matrix, scoreType).scan(
+      seq, Math.log(threshold), false,
+      new WeightMatrixScanner.HitListener() {
+        public void hit(WeightMatrixScanner scanner, int start,
+                        StrandedFeature.Strand strand, double score) {
+          hits.add(new Object[] { new Integer(start), new Double(score) });
+        }
+      }
+    );
+    for (Iterator i = hits.iterator(); i.hasNext(); ) {
+      Object[] hit = (Object[]) i.next();
+      int offset = ((Integer) hit[0]).intValue();
+      double q = Math.exp(((Double) hit[1]).doubleValue());
       if (q >= threshold) {
         template.location = new RangeLocation(offset, offset + cols - 1);
         SimpleAnnotation ann = new SimpleAnnotation();
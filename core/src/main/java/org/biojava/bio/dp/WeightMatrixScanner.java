@@ -0,0 +1,604 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+
+package org.biojava.bio.dp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.StrandedFeature;
+import org.biojava.bio.symbol.AlphabetIndex;
+import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Scans sequences for windows that score at least a threshold against a
+ * weight matrix.
+ * <p>
+ * The matrix is compiled once into a table of log scores indexed by column
+ * and symbol, and the sequence is encoded once per chunk as symbol indices,
+ * so scoring a window reads only primitive arrays. The columns are scored
+ * in order of decreasing spread of their scores, and a window is abandoned
+ * as soon as its score plus the best possible score of the remaining columns
+ * falls below the threshold, so most windows of a long sequence are rejected
+ * after a few columns. For DNA matrices the reverse strand is scored in the
+ * same pass with a reverse-complemented table.
+ * </p>
+ * <p>
+ * Reported scores are the sums of the log scores of each column, added in
+ * column order, so they equal <code>DP.scoreWeightMatrix</code> for the
+ * forward strand. Windows containing ambiguity symbols are scored directly
+ * from the matrix distributions.
+ * </p>
+ * <p>
+ * <code>scan(WeightMatrixScanner[], ...)</code> scans many matrices over a
+ * long sequence, sharing the encoding of each chunk between the matrices and
+ * scanning chunks on several threads.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public class WeightMatrixScanner {
+  /**
+   * The number of window start positions in each chunk of a sequence.
+   */
+  public static final int CHUNK_SIZE = 1 << 20;
+
+  /**
+   * Allowance for rounding when abandoning windows, so that pruning never
+   * drops a window that scores at the threshold when summed in column order.
+   */
+  private static final double SLACK = 1e-9;
+
+  private final WeightMatrix matrix;
+  private final ScoreType scoreType;
+  private final FiniteAlphabet alpha;
+  private final Map symbolIndex;
+  private final int size;
+  private final int cols;
+
+  // log scores, [column * size + symbol], in column order
+  private final double [] forward;
+  private final double [] reverse;
+
+  // scoring order, the same tables in that order, and the best score of the
+  // columns from each point in that order onwards
+  private final int [] forwardOrder;
+  private final double [] forwardOrdered;
+  private final double [] forwardBound;
+  private final int [] reverseOrder;
+  private final double [] reverseOrdered;
+  private final double [] reverseBound;
+
+  /**
+   * Compiles a weight matrix for scanning.
+   *
+   * @param matrix  the weight matrix
+   * @param scoreType  the score type used to score each column
+   * @throws IllegalAlphabetException if the matrix alphabet is not finite
+   * @throws IllegalSymbolException if a column can not score a symbol of the
+   *         alphabet
+   */
+  public WeightMatrixScanner(WeightMatrix matrix, ScoreType scoreType)
+  throws IllegalAlphabetException, IllegalSymbolException {
+    if(!(matrix.getAlphabet() instanceof FiniteAlphabet)) {
+      throw new IllegalAlphabetException(
+        "Can only scan weight matrices over finite alphabets, not " +
+        matrix.getAlphabet().getName()
+      );
+    }
+    this.matrix = matrix;
+    this.scoreType = scoreType;
+    this.alpha = (FiniteAlphabet) matrix.getAlphabet();
+    this.size = alpha.size();
+    this.cols = matrix.columns();
+
+    AlphabetIndex index = AlphabetManager.getAlphabetIndex(alpha);
+    this.symbolIndex = new IdentityHashMap();
+    for(int s = 0; s < size; s++) {
+      symbolIndex.put(index.symbolForIndex(s), new Integer(s));
+    }
+
+    forward = new double[cols * size];
+    for(int c = 0; c < cols; c++) {
+      Distribution column = matrix.getColumn(c);
+      for(int s = 0; s < size; s++) {
+        forward[c * size + s] = Math.log(
+          scoreType.calculateScore(column, index.symbolForIndex(s))
+        );
+      }
+    }
+    forwardOrder = order(forward);
+    forwardOrdered = reorder(forward, forwardOrder);
+    forwardBound = bound(forwardOrdered);
+
+    if(alpha == DNATools.getDNA()) {
+      // column c of the reverse table scores symbol c of the window with the
+      // complement of column (cols - 1 - c) of the matrix
+      reverse = new double[cols * size];
+      for(int s = 0; s < size; s++) {
+        Symbol comp = DNATools.complementTable().translate(index.symbolForIndex(s));
+        int cs = index.indexForSymbol(comp);
+        for(int c = 0; c < cols; c++) {
+          reverse[c * size + s] = forward[(cols - 1 - c) * size + cs];
+        }
+      }
+      reverseOrder = order(reverse);
+      reverseOrdered = reorder(reverse, reverseOrder);
+      reverseBound = bound(reverseOrdered);
+    } else {
+      reverse = null;
+      reverseOrder = null;
+      reverseOrdered = null;
+      reverseBound = null;
+    }
+  }
+
+  /**
+   * Returns the column indices sorted by decreasing difference between the
+   * best and the mean score of the column.
+   */
+  private int [] order(double [] table) {
+    final double [] spread = new double[cols];
+    Integer [] order = new Integer[cols];
+    for(int c = 0; c < cols; c++) {
+      double max = Double.NEGATIVE_INFINITY;
+      double sum = 0.0;
+      for(int s = 0; s < size; s++) {
+        max = Math.max(max, table[c * size + s]);
+        sum += table[c * size + s];
+      }
+      spread[c] = max - sum / size;
+      if(Double.isNaN(spread[c])) {
+        spread[c] = Double.POSITIVE_INFINITY;
+      }
+      order[c] = new Integer(c);
+    }
+    Arrays.sort(order, new Comparator() {
+      public int compare(Object a, Object b) {
+        return Double.compare(
+          spread[((Integer) b).intValue()],
+          spread[((Integer) a).intValue()]
+        );
+      }
+    });
+    int [] result = new int[cols];
+    for(int c = 0; c < cols; c++) {
+      result[c] = order[c].intValue();
+    }
+    return result;
+  }
+
+  private double [] reorder(double [] table, int [] order) {
+    double [] ordered = new double[table.length];
+    for(int k = 0; k < cols; k++) {
+      System.arraycopy(table, order[k] * size, ordered, k * size, size);
+    }
+    return ordered;
+  }
+
+  private double [] bound(double [] ordered) {
+    double [] bound = new double[cols + 1];
+    for(int k = cols - 1; k >= 0; k--) {
+      double max = Double.NEGATIVE_INFINITY;
+      for(int s = 0; s < size; s++) {
+        max = Math.max(max, ordered[k * size + s]);
+      }
+      bound[k] = bound[k + 1] + max;
+    }
+    return bound;
+  }
+
+  public WeightMatrix getMatrix() {
+    return matrix;
+  }
+
+  public ScoreType getScoreType() {
+    return scoreType;
+  }
+
+  /**
+   * Returns the highest score any window can get.
+   */
+  public double getMaxScore() {
+    return forwardBound[0];
+  }
+
+  /**
+   * Returns true if the reverse strand can be scanned, which is the case for
+   * DNA weight matrices.
+   */
+  public boolean canScanReverseStrand() {
+    return reverse != null;
+  }
+
+  /**
+   * Scans a sequence, calling listener with each window that scores at least
+   * threshold, in order of start position, with the forward strand before the
+   * reverse strand for windows at the same position.
+   *
+   * @param seq  the sequence to scan
+   * @param threshold  the lowest natural log score to report
+   * @param bothStrands  if true, also scan the reverse strand
+   * @param listener  the listener to call with each hit
+   * @throws IllegalAlphabetException if the sequence does not use the
+   *         alphabet of the matrix, or bothStrands is true and the matrix can
+   *         not scan the reverse strand
+   * @throws BioException if a symbol can not be scored, or the listener
+   *         throws it
+   */
+  public void scan(
+    SymbolList seq, double threshold, boolean bothStrands, HitListener listener
+  ) throws IllegalAlphabetException, BioException {
+    scan(seq, threshold, bothStrands, listener, CHUNK_SIZE);
+  }
+
+  void scan(
+    SymbolList seq, double threshold, boolean bothStrands, HitListener listener,
+    int chunkSize
+  ) throws IllegalAlphabetException, BioException {
+    checkSequence(seq, bothStrands);
+    int last = seq.length() - cols + 1;
+    int [] codes = null;
+    for(int start = 1; start <= last; start += chunkSize) {
+      int end = Math.min(start + chunkSize - 1, last);
+      codes = encode(seq, start, end + cols - 1, codes);
+      scan(seq, codes, start, start, end, threshold, bothStrands, listener);
+    }
+  }
+
+  /**
+   * Scans a sequence with several matrices at once, on several threads.
+   * <p>
+   * The sequence is split into chunks of <code>CHUNK_SIZE</code> window
+   * start positions. Each chunk is encoded once and scanned with every
+   * matrix on one thread, and the hits of each chunk are passed to listener
+   * on the calling thread, in chunk order, then scanner order, then start
+   * position order, so the order does not depend on the number of threads.
+   * </p>
+   *
+   * @param scanners  the scanners, which must all use the same alphabet
+   * @param thresholds  the lowest natural log score to report, for each
+   *        scanner
+   * @param seq  the sequence to scan
+   * @param bothStrands  if true, also scan the reverse strand
+   * @param threads  the number of threads to scan with
+   * @param listener  the listener to call with each hit
+   * @throws IllegalAlphabetException if the sequence or a scanner does not
+   *         use the alphabet of the first scanner, or bothStrands is true and
+   *         a matrix can not scan the reverse strand
+   * @throws BioException if a symbol can not be scored, or the listener
+   *         throws it
+   */
+  public static void scan(
+    final WeightMatrixScanner [] scanners,
+    final double [] thresholds,
+    final SymbolList seq,
+    final boolean bothStrands,
+    int threads,
+    HitListener listener
+  ) throws IllegalAlphabetException, BioException {
+    scan(scanners, thresholds, seq, bothStrands, threads, listener, CHUNK_SIZE);
+  }
+
+  static void scan(
+    final WeightMatrixScanner [] scanners,
+    final double [] thresholds,
+    final SymbolList seq,
+    final boolean bothStrands,
+    int threads,
+    HitListener listener,
+    int chunkSize
+  ) throws IllegalAlphabetException, BioException {
+    if(thresholds.length != scanners.length) {
+      throw new IllegalArgumentException(
+        "Need one threshold per scanner, not " + thresholds.length +
+        " for " + scanners.length
+      );
+    }
+    if(scanners.length == 0) {
+      return;
+    }
+    int maxCols = 0;
+    for(int i = 0; i < scanners.length; i++) {
+      if(scanners[i].alpha != scanners[0].alpha) {
+        throw new IllegalAlphabetException(
+          "All weight matrices must use the same alphabet"
+        );
+      }
+      scanners[i].checkSequence(seq, bothStrands);
+      maxCols = Math.max(maxCols, scanners[i].cols);
+    }
+    final int reach = maxCols;
+    final WeightMatrixScanner first = scanners[0];
+    int last = seq.length();
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.max(1, threads),
+      new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "WeightMatrixScanner");
+          thread.setDaemon(true);
+          return thread;
+        }
+      }
+    );
+    try {
+      LinkedList pending = new LinkedList();
+      int maxPending = Math.max(1, threads) * 2;
+      int start = 1;
+      while(start <= last || !pending.isEmpty()) {
+        while(start <= last && pending.size() < maxPending) {
+          final int chunkStart = start;
+          final int chunkEnd = Math.min(start + chunkSize - 1, last);
+          pending.add(executor.submit(new Callable() {
+            public Object call() throws Exception {
+              int [] codes = first.encode(
+                seq, chunkStart, Math.min(chunkEnd + reach - 1, seq.length()), null
+              );
+              HitCollector hits = new HitCollector();
+              for(int i = 0; i < scanners.length; i++) {
+                int end = Math.min(chunkEnd, seq.length() - scanners[i].cols + 1);
+                scanners[i].scan(
+                  seq, codes, chunkStart, chunkStart, end,
+                  thresholds[i], bothStrands, hits
+                );
+              }
+              return hits;
+            }
+          }));
+          start = chunkEnd + 1;
+        }
+        HitCollector hits = (HitCollector) ((Future) pending.removeFirst()).get();
+        hits.replay(listener);
+      }
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if(cause instanceof BioException) {
+        throw (BioException) cause;
+      }
+      throw new BioException("Unable to scan sequence", cause);
+    } catch (InterruptedException ie) {
+      throw new BioException("Interrupted while scanning sequence", ie);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void checkSequence(SymbolList seq, boolean bothStrands)
+  throws IllegalAlphabetException {
+    if(seq.getAlphabet() != alpha) {
+      throw new IllegalAlphabetException(
+        "Sequence alphabet " + seq.getAlphabet().getName() +
+        " does not match weight matrix alphabet " + alpha.getName()
+      );
+    }
+    if(bothStrands && reverse == null) {
+      throw new IllegalAlphabetException(
+        "Can not scan the reverse strand with a weight matrix over " +
+        alpha.getName()
+      );
+    }
+  }
+
+  /**
+   * Encodes symbols from to to of seq as symbol indices, with -1 for
+   * ambiguity symbols, reusing codes if it is long enough.
+   */
+  private int [] encode(SymbolList seq, int from, int to, int [] codes) {
+    int length = to - from + 1;
+    if(codes == null || codes.length < length) {
+      codes = new int[length];
+    }
+    for(int i = 0; i < length; i++) {
+      Integer s = (Integer) symbolIndex.get(seq.symbolAt(from + i));
+      codes[i] = (s == null) ? -1 : s.intValue();
+    }
+    return codes;
+  }
+
+  /**
+   * Scans the windows starting at first to last, where codes[0] encodes the
+   * symbol at offset.
+   */
+  private void scan(
+    SymbolList seq, int [] codes, int offset, int first, int last,
+    double threshold, boolean bothStrands, HitListener listener
+  ) throws BioException {
+    double limit = threshold - SLACK;
+    // codes[pos] up to codes[clean - 1] are known not to be ambiguity symbols
+    int clean = 0;
+    for(int start = first; start <= last; start++) {
+      int pos = start - offset;
+      if(clean < pos) {
+        clean = pos;
+      }
+      while(clean < pos + cols && codes[clean] >= 0) {
+        clean++;
+      }
+      // ambiguity symbols may score above the bounds, so are not pruned
+      boolean ambiguous = clean < pos + cols;
+
+      if(ambiguous) {
+        report(listener, start, StrandedFeature.POSITIVE,
+               slowScore(seq, start, false), threshold);
+      } else if(!prune(codes, pos, forwardOrder, forwardOrdered, forwardBound, limit)) {
+        report(listener, start, StrandedFeature.POSITIVE,
+               exactScore(forward, codes, pos), threshold);
+      }
+
+      if(bothStrands) {
+        if(ambiguous) {
+          report(listener, start, StrandedFeature.NEGATIVE,
+                 slowScore(seq, start, true), threshold);
+        } else if(!prune(codes, pos, reverseOrder, reverseOrdered, reverseBound, limit)) {
+          report(listener, start, StrandedFeature.NEGATIVE,
+                 exactScore(reverse, codes, pos), threshold);
+        }
+      }
+    }
+  }
+
+  private void report(
+    HitListener listener, int start, StrandedFeature.Strand strand,
+    double score, double threshold
+  ) throws BioException {
+    if(score >= threshold) {
+      listener.hit(this, start, strand, score);
+    }
+  }
+
+  /**
+   * Scores the window at pos in the given column order, returning true as
+   * soon as it can not reach limit.
+   */
+  private boolean prune(
+    int [] codes, int pos, int [] order, double [] ordered, double [] bound,
+    double limit
+  ) {
+    double score = 0.0;
+    for(int k = 0; k < cols; k++) {
+      score += ordered[k * size + codes[pos + order[k]]];
+      if(score + bound[k + 1] < limit) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Scores the window at pos summing the columns of the matrix in order.
+   */
+  private double exactScore(double [] table, int [] codes, int pos) {
+    double score = 0.0;
+    if(table == forward) {
+      for(int c = 0; c < cols; c++) {
+        score += table[c * size + codes[pos + c]];
+      }
+    } else {
+      for(int c = cols - 1; c >= 0; c--) {
+        score += table[c * size + codes[pos + c]];
+      }
+    }
+    return score;
+  }
+
+  /**
+   * Scores the window at start from the matrix distributions.
+   */
+  private double slowScore(SymbolList seq, int start, boolean reverseStrand)
+  throws IllegalSymbolException {
+    if(!reverseStrand) {
+      return DP.scoreWeightMatrix(matrix, seq, scoreType, start);
+    }
+    double score = 0.0;
+    for(int c = 0; c < cols; c++) {
+      Symbol sym = DNATools.complementTable().translate(
+        seq.symbolAt(start + cols - 1 - c)
+      );
+      score += Math.log(scoreType.calculateScore(matrix.getColumn(c), sym));
+    }
+    return score;
+  }
+
+  /**
+   * Receives the windows found by a WeightMatrixScanner.
+   *
+   * @since 1.9.8
+   */
+  public interface HitListener {
+    /**
+     * Called for each window that scores at least the threshold.
+     *
+     * @param scanner  the scanner that found the window
+     * @param start  the index of the first symbol of the window
+     * @param strand  POSITIVE if the window matched the matrix, NEGATIVE if
+     *        its reverse complement did
+     * @param score  the natural log score of the window
+     * @throws BioException to stop scanning
+     */
+    public void hit(
+      WeightMatrixScanner scanner,
+      int start,
+      StrandedFeature.Strand strand,
+      double score
+    ) throws BioException;
+  }
+
+  /**
+   * Keeps hits found on a worker thread until they can be passed on.
+   */
+  private static class HitCollector implements HitListener {
+    private final List scanners = new ArrayList();
+    private final List strands = new ArrayList();
+    private int [] starts = new int[16];
+    private double [] scores = new double[16];
+
+    public void hit(
+      WeightMatrixScanner scanner, int start,
+      StrandedFeature.Strand strand, double score
+    ) {
+      int n = scanners.size();
+      if(n == starts.length) {
+        int [] s = new int[n * 2];
+        System.arraycopy(starts, 0, s, 0, n);
+        starts = s;
+        double [] d = new double[n * 2];
+        System.arraycopy(scores, 0, d, 0, n);
+        scores = d;
+      }
+      scanners.add(scanner);
+      strands.add(strand);
+      starts[n] = start;
+      scores[n] = score;
+    }
+
+    void replay(HitListener listener) throws BioException {
+      for(int i = 0; i < scanners.size(); i++) {
+        listener.hit(
+          (WeightMatrixScanner) scanners.get(i),
+          starts[i],
+          (StrandedFeature.Strand) strands.get(i),
+          scores[i]
+        );
+      }
+    }
+  }
+}
@@ -0,0 +1,1015 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+
+package org.biojava.bio.dp.onehead;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.dp.DPMatrix;
+import org.biojava.bio.dp.IllegalTransitionException;
+import org.biojava.bio.dp.MarkovModel;
+import org.biojava.bio.dp.ScoreType;
+import org.biojava.bio.dp.SimpleStatePath;
+import org.biojava.bio.dp.State;
+import org.biojava.bio.dp.StatePath;
+import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.DoubleAlphabet;
+import org.biojava.bio.symbol.GappedSymbolList;
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.SimpleGappedSymbolList;
+import org.biojava.bio.symbol.SimpleSymbolList;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * A SingleDP that compiles the model into flat tables before running the
+ * dynamic programming recursions.
+ * <p>
+ * For each ScoreType, the transitions are packed into one int array of source
+ * (or destination) state indices and one double array of log scores, with an
+ * offset array giving the range used by each state. Each sequence is first
+ * encoded as an array of emission score rows, one per position, so the
+ * recursions only read primitive arrays and do not look up symbols or
+ * allocate per cell. Viterbi keeps its traceback as int state indices
+ * rather than BackPointer objects.
+ * </p>
+ * <p>
+ * The scores, matrices and paths are the same as those of SingleDP. The
+ * tables are rebuilt lazily when the model changes.
+ * </p>
+ * <p>
+ * For sequences too long to keep a full matrix, checkpointedViterbi and
+ * posteriorDecode keep only every <code>sqrt(length)</code>th column and
+ * recompute the columns in between when they are needed. Both can pass the
+ * path to a SegmentListener a segment at a time, so that memory grows with
+ * the square root of the sequence length rather than with the length.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public class CompiledSingleDP extends SingleDP {
+  private static final Symbol GAP = AlphabetManager.getGapSymbol();
+
+  private final Map tables;
+  private int magicalIndex;
+
+  public CompiledSingleDP(MarkovModel model)
+  throws IllegalSymbolException, IllegalTransitionException, BioException {
+    super(model);
+    tables = new HashMap();
+    magicalIndex = magicalIndex();
+  }
+
+  public void update() {
+    super.update();
+    // called from the DP constructor before the fields are assigned
+    if(tables != null) {
+      synchronized(tables) {
+        tables.clear();
+      }
+      magicalIndex = magicalIndex();
+    }
+  }
+
+  private int magicalIndex() {
+    State [] states = getStates();
+    int l = 0;
+    while(states[l] != getModel().magicalState()) {
+      l++;
+    }
+    return l;
+  }
+
+  private Tables getTables(ScoreType scoreType) {
+    synchronized(tables) {
+      Tables t = (Tables) tables.get(scoreType);
+      if(t == null) {
+        tables.put(scoreType, t = new Tables(
+          getForwardTransitions(),
+          getForwardTransitionScores(scoreType),
+          getBackwardTransitions(),
+          getBackwardTransitionScores(scoreType)
+        ));
+      }
+      return t;
+    }
+  }
+
+  /**
+   * Returns the emission scores for each column of a DP matrix over symList:
+   * entry <code>i</code> is used for symbol <code>i</code>, entry
+   * <code>length + 1</code> for the gap that ends the sequence, and entry
+   * <code>0</code> is not used.
+   */
+  private double [][] encode(SymbolList symList, ScoreType scoreType)
+  throws IllegalSymbolException {
+    int length = symList.length();
+    double [][] rows = new double[length + 2][];
+    int i = 1;
+    for(Iterator si = symList.iterator(); si.hasNext(); i++) {
+      rows[i] = getEmission((Symbol) si.next(), scoreType);
+    }
+    rows[length + 1] = getEmission(GAP, scoreType);
+    return rows;
+  }
+
+  private static void checkLength(SymbolList [] seq) {
+    if(seq.length != 1) {
+      throw new IllegalArgumentException("seq must be 1 long, not " + seq.length);
+    }
+  }
+
+  public double forward(SymbolList [] seq, ScoreType scoreType)
+  throws IllegalSymbolException, IllegalAlphabetException, IllegalSymbolException {
+    checkLength(seq);
+    lockModel();
+    try {
+      int n = getStates().length;
+      double [][] rows = encode(seq[0], scoreType);
+      double [] lastCol = new double[n];
+      double [] currentCol = new double[n];
+      Tables t = getTables(scoreType);
+      forwardInitialize(t, currentCol);
+      for(int i = 1; i < rows.length; i++) {
+        double [] v = lastCol;
+        lastCol = currentCol;
+        currentCol = v;
+        forwardColumn(t, rows[i], lastCol, currentCol);
+      }
+      return currentCol[magicalIndex];
+    } finally {
+      unlockModel();
+    }
+  }
+
+  public double backward(SymbolList [] seq, ScoreType scoreType)
+  throws IllegalSymbolException, IllegalAlphabetException, IllegalSymbolException {
+    checkLength(seq);
+    lockModel();
+    try {
+      int n = getStates().length;
+      double [][] rows = encode(seq[0], scoreType);
+      double [] lastCol = new double[n];
+      double [] currentCol = new double[n];
+      Tables t = getTables(scoreType);
+      backwardInitialize(currentCol);
+      for(int i = rows.length - 2; i >= 0; i--) {
+        double [] v = lastCol;
+        lastCol = currentCol;
+        currentCol = v;
+        backwardColumn(t, rows[i + 1], lastCol, currentCol);
+      }
+      return currentCol[magicalIndex];
+    } finally {
+      unlockModel();
+    }
+  }
+
+  public DPMatrix forwardMatrix(SymbolList [] seq, ScoreType scoreType)
+  throws IllegalSymbolException, IllegalAlphabetException, IllegalSymbolException {
+    checkLength(seq);
+    return forwardMatrix(seq, new SingleDPMatrix(this, seq[0]), scoreType);
+  }
+
+  public DPMatrix backwardMatrix(SymbolList [] seq, ScoreType scoreType)
+  throws IllegalSymbolException, IllegalAlphabetException, IllegalSymbolException {
+    checkLength(seq);
+    return backwardMatrix(seq, new SingleDPMatrix(this, seq[0]), scoreType);
+  }
+
+  public DPMatrix forwardMatrix(SymbolList [] seq, DPMatrix matrix, ScoreType scoreType)
+  throws IllegalArgumentException, IllegalSymbolException,
+  IllegalAlphabetException, IllegalSymbolException {
+    checkLength(seq);
+    lockModel();
+    try {
+      SingleDPMatrix sm = (SingleDPMatrix) matrix;
+      double [][] scores = sm.scores;
+      double [][] rows = encode(seq[0], scoreType);
+      Tables t = getTables(scoreType);
+      forwardInitialize(t, scores[0]);
+      for(int i = 1; i < rows.length; i++) {
+        forwardColumn(t, rows[i], scores[i - 1], scores[i]);
+      }
+      sm.setScore(scores[rows.length - 1][magicalIndex]);
+      return sm;
+    } finally {
+      unlockModel();
+    }
+  }
+
+  public DPMatrix backwardMatrix(SymbolList [] seq, DPMatrix matrix, ScoreType scoreType)
+  throws IllegalArgumentException, IllegalSymbolException,
+  IllegalAlphabetException, IllegalSymbolException {
+    checkLength(seq);
+    lockModel();
+    try {
+      SingleDPMatrix sm = (SingleDPMatrix) matrix;
+      double [][] scores = sm.scores;
+      double [][] rows = encode(seq[0], scoreType);
+      Tables t = getTables(scoreType);
+      backwardInitialize(scores[rows.length - 1]);
+      for(int i = rows.length - 2; i >= 0; i--) {
+        backwardColumn(t, rows[i + 1], scores[i + 1], scores[i]);
+      }
+      sm.setScore(scores[0][magicalIndex]);
+      return sm;
+    } finally {
+      unlockModel();
+    }
+  }
+
+  private void forwardInitialize(Tables t, double [] currentCol) {
+    int dsi = getDotStatesIndex();
+    for(int l = 0; l < dsi; l++) {
+      currentCol[l] = (l == magicalIndex) ? 0.0 : Double.NEGATIVE_INFINITY;
+    }
+    forwardDots(t, currentCol);
+  }
+
+  /**
+   * Fills currentCol from lastCol, emitting the symbol whose scores are in
+   * emissions.
+   */
+  private void forwardColumn(
+    Tables t, double [] emissions, double [] lastCol, double [] currentCol
+  ) {
+    int [] start = t.forwardStart;
+    int [] from = t.forwardStates;
+    double [] trs = t.forwardScores;
+    int dsi = getDotStatesIndex();
+    for(int l = 0; l < dsi; l++) { // any -> emission
+      double weight = emissions[l];
+      if(weight == Double.NEGATIVE_INFINITY) {
+        currentCol[l] = Double.NEGATIVE_INFINITY;
+        continue;
+      }
+      int end = start[l + 1];
+      int ci = start[l];
+      while(ci < end && isInfinite(lastCol[from[ci]])) {
+        ci++;
+      }
+      double constant = (ci < end) ? lastCol[from[ci]] : 0.0;
+      double score = 0.0;
+      for(int kc = start[l]; kc < end; kc++) {
+        double s = lastCol[from[kc]];
+        if(s != Double.NEGATIVE_INFINITY) {
+          score += Math.exp(trs[kc] + (s - constant));
+        }
+      }
+      currentCol[l] = (weight + Math.log(score)) + constant;
+    }
+    forwardDots(t, currentCol);
+  }
+
+  /**
+   * Fills in the dot states of currentCol from the states already in it.
+   */
+  private void forwardDots(Tables t, double [] currentCol) {
+    int [] start = t.forwardStart;
+    int [] from = t.forwardStates;
+    double [] trs = t.forwardScores;
+    for(int l = getDotStatesIndex(); l < currentCol.length; l++) {
+      int end = start[l + 1];
+      int ci = start[l];
+      while(ci < end && isInfinite(currentCol[from[ci]])) {
+        ci++;
+      }
+      double constant = (ci < end) ? currentCol[from[ci]] : 0.0;
+      double score = 0.0;
+      for(int kc = start[l]; kc < end; kc++) {
+        double s = currentCol[from[kc]];
+        if(!isInfinite(s)) {
+          score += Math.exp(trs[kc] + (s - constant));
+        }
+      }
+      currentCol[l] = Math.log(score) + constant;
+    }
+  }
+
+  private void backwardInitialize(double [] currentCol) {
+    for(int l = 0; l < currentCol.length; l++) {
+      currentCol[l] = (l == magicalIndex) ? 0.0 : Double.NEGATIVE_INFINITY;
+    }
+  }
+
+  /**
+   * Fills currentCol from lastCol, the column after it, which emitted the
+   * symbol whose scores are in emissions.
+   */
+  private void backwardColumn(
+    Tables t, double [] emissions, double [] lastCol, double [] currentCol
+  ) {
+    int [] start = t.backwardStart;
+    int [] to = t.backwardStates;
+    double [] trs = t.backwardScores;
+    int dsi = getDotStatesIndex();
+    for(int k = currentCol.length - 1; k >= 0; k--) {
+      int begin = start[k];
+      int end = start[k + 1];
+      int ci = begin;
+      while(ci < end && lastCol[to[ci]] == Double.NEGATIVE_INFINITY) {
+        ci++;
+      }
+      double constant = (ci < end) ? lastCol[to[ci]] : 0.0;
+      double score = 0.0;
+      for(int lc = end - 1; lc >= begin; lc--) { // any -> emission
+        int l = to[lc];
+        if(l >= dsi) {
+          continue;
+        }
+        double weight = emissions[l];
+        if(lastCol[l] != Double.NEGATIVE_INFINITY &&
+           weight != Double.NEGATIVE_INFINITY
+        ) {
+          score += Math.exp(trs[lc] + weight + (lastCol[l] - constant));
+        }
+      }
+      for(int lc = end - 1; lc >= begin; lc--) { // any -> dot
+        int l = to[lc];
+        if(l < dsi || l <= k) {
+          break;
+        }
+        if(currentCol[l] != Double.NEGATIVE_INFINITY) {
+          score += Math.exp(trs[lc] + (currentCol[l] - constant));
+        }
+      }
+      currentCol[k] = Math.log(score) + constant;
+    }
+  }
+
+  private static boolean isInfinite(double d) {
+    return d == Double.NEGATIVE_INFINITY || d == Double.POSITIVE_INFINITY;
+  }
+
+  public StatePath viterbi(SymbolList [] symList, ScoreType scoreType)
+  throws IllegalSymbolException {
+    SymbolList r = symList[0];
+    return viterbi(r, scoreType, r.length() + 2);
+  }
+
+  /**
+   * Finds the most likely path through the model for a sequence, storing
+   * back pointers for only about the square root of the sequence length
+   * columns at a time.
+   * <p>
+   * The path and its score are the same as those of <code>viterbi</code>.
+   * The working memory grows with the square root of the sequence length,
+   * but the returned StatePath holds a state and a score object for every
+   * position. For chromosome-length sequences use the variant that passes
+   * the path to a SegmentListener instead.
+   * </p>
+   *
+   * @param symList  an array containing the single sequence to decode
+   * @param scoreType  the type of score to use
+   * @return the most likely path
+   * @throws IllegalSymbolException if the sequence contains symbols the
+   *         model can not emit
+   * @since 1.9.8
+   */
+  public StatePath checkpointedViterbi(SymbolList [] symList, ScoreType scoreType)
+  throws IllegalSymbolException {
+    checkLength(symList);
+    SymbolList r = symList[0];
+    return viterbi(r, scoreType, checkpointInterval(r));
+  }
+
+  /**
+   * Finds the most likely path through the model for a sequence and passes
+   * it to a listener in segments, in sequence order, so that neither the
+   * back pointers nor the path are ever held for the whole sequence.
+   * <p>
+   * The forward pass keeps a copy of the score column every
+   * <code>sqrt(length)</code> positions. A traceback then works back one
+   * segment at a time, recomputing the back pointers of each segment from
+   * the checkpoint at its start, and notes the state the path is in at each
+   * checkpoint. Finally the back pointers of each segment are recomputed
+   * once more, in sequence order, and the part of the path within it is
+   * traced back and passed to the listener. The scores are computed three
+   * times in all, and the memory used grows with the square root of the
+   * sequence length.
+   * </p>
+   * <p>
+   * Each segment holds the states of the path from one checkpoint to the
+   * next, including those of dot states, with the step score of each
+   * state. The segment score is the sum of its step scores, and the scores
+   * of all segments add up to the score of the path.
+   * </p>
+   *
+   * @param symList  an array containing the single sequence to decode
+   * @param scoreType  the type of score to use
+   * @param listener  the listener to pass the segments to
+   * @return the score of the most likely path
+   * @throws IllegalSymbolException if the sequence contains symbols the
+   *         model can not emit
+   * @throws BioException if the listener throws it
+   * @since 1.9.8
+   */
+  public double checkpointedViterbi(
+    SymbolList [] symList, ScoreType scoreType, SegmentListener listener
+  ) throws IllegalSymbolException, BioException {
+    checkLength(symList);
+    if(listener == null) {
+      throw new IllegalArgumentException("listener must not be null");
+    }
+    SymbolList r = symList[0];
+    return viterbi(r, scoreType, checkpointInterval(r), listener);
+  }
+
+  /**
+   * Returns the number of columns between checkpoints for a sequence: the
+   * square root of the number of columns, rounded up.
+   */
+  static int checkpointInterval(SymbolList symList) {
+    return Math.max(1, (int) Math.ceil(Math.sqrt(symList.length() + 2)));
+  }
+
+  /**
+   * Returns the emission scores used by column <code>i</code> of a DP matrix
+   * over symList.
+   */
+  private double [] emissions(SymbolList symList, int i, ScoreType scoreType)
+  throws IllegalSymbolException {
+    return getEmission(
+      (i <= symList.length()) ? symList.symbolAt(i) : GAP,
+      scoreType
+    );
+  }
+
+  /**
+   * Viterbi with a score column checkpoint every interval columns. With an
+   * interval of at least <code>length + 2</code> the whole matrix of back
+   * pointers is kept and nothing is recomputed.
+   */
+  StatePath viterbi(SymbolList symList, ScoreType scoreType, int interval)
+  throws IllegalSymbolException {
+    lockModel();
+    try {
+      Tables t = getTables(scoreType);
+      int stateCount = getStates().length;
+      int last = symList.length() + 1;
+      int segments = segments(symList, interval);
+      double [][] checkpoints = new double[segments][];
+      double [][] cols = new double[2][stateCount];
+      double bestScore = viterbiCheckpoints(t, symList, scoreType, interval, checkpoints, cols);
+
+      // traceback, one segment at a time. back[i][l] is the state before
+      // state l in column base + i, which is in the column before for
+      // emission states and the same column for dot states
+      int size = Math.min(interval + 1, last) + 1;
+      int [][] back = new int[size][stateCount];
+      double [][] steps = new double[size][stateCount];
+      int [] pathStates = new int[last + 1];
+      double [] pathScores = new double[last + 1];
+      int len = 0;
+      int c = last;
+      int state = magicalIndex;
+      boolean first = true;
+      for(int seg = segments - 1; seg >= 0; seg--) {
+        int base = seg * interval;
+        viterbiSegment(t, symList, scoreType, checkpoints[seg], base,
+                       segmentEnd(seg, segments, interval, last), back, steps, cols);
+        checkpoints[seg] = null;
+
+        while(c > base || (seg == 0 && !(c == 0 && state == magicalIndex))) {
+          if(state < 0) {
+            throw new IllegalSymbolException(
+              "The sequence can not be emitted by the model"
+            );
+          }
+          if(!first) {
+            if(len == pathStates.length) {
+              pathStates = grow(pathStates);
+              pathScores = grow(pathScores);
+            }
+            pathStates[len] = state;
+            pathScores[len] = steps[c - base][state];
+            len++;
+          }
+          first = false;
+          int prev = back[c - base][state];
+          if(state < getDotStatesIndex()) {
+            c--;
+          }
+          state = prev;
+        }
+      }
+
+      return statePath(symList, bestScore, pathStates, pathScores, len);
+    } finally {
+      unlockModel();
+    }
+  }
+
+  /**
+   * Viterbi with a score column checkpoint every interval columns, passing
+   * the path to a listener one segment at a time.
+   */
+  double viterbi(
+    SymbolList symList, ScoreType scoreType, int interval, SegmentListener listener
+  ) throws IllegalSymbolException, BioException {
+    lockModel();
+    try {
+      Tables t = getTables(scoreType);
+      int stateCount = getStates().length;
+      int length = symList.length();
+      int last = length + 1;
+      int segments = segments(symList, interval);
+      double [][] checkpoints = new double[segments][];
+      double [][] cols = new double[2][stateCount];
+      double bestScore = viterbiCheckpoints(t, symList, scoreType, interval, checkpoints, cols);
+
+      int size = Math.min(interval + 1, last) + 1;
+      int [][] back = new int[size][stateCount];
+      double [][] steps = new double[size][stateCount];
+
+      // trace back through every segment to find the state the path is in
+      // at the end of each one
+      int [] ends = new int[segments];
+      int c = last;
+      int state = magicalIndex;
+      for(int seg = segments - 1; seg >= 0; seg--) {
+        int base = seg * interval;
+        ends[seg] = state;
+        viterbiSegment(t, symList, scoreType, checkpoints[seg], base,
+                       segmentEnd(seg, segments, interval, last), back, steps, cols);
+        while(c > base || (seg == 0 && !(c == 0 && state == magicalIndex))) {
+          if(state < 0) {
+            throw new IllegalSymbolException(
+              "The sequence can not be emitted by the model"
+            );
+          }
+          int prev = back[c - base][state];
+          if(state < getDotStatesIndex()) {
+            c--;
+          }
+          state = prev;
+        }
+      }
+
+      // trace each segment again in sequence order, passing it on. The
+      // back pointers of the first segment are still there
+      int [] pathStates = new int[size];
+      double [] pathScores = new double[size];
+      for(int seg = 0; seg < segments; seg++) {
+        int base = seg * interval;
+        int end = segmentEnd(seg, segments, interval, last);
+        if(seg > 0) {
+          viterbiSegment(t, symList, scoreType, checkpoints[seg], base, end, back, steps, cols);
+        }
+        checkpoints[seg] = null;
+
+        int len = 0;
+        double score = 0.0;
+        c = end;
+        state = ends[seg];
+        while(c > base || (seg == 0 && !(c == 0 && state == magicalIndex))) {
+          if(c == last && state == magicalIndex) {
+            // the step into the final magical state scores, but is not
+            // part of the path
+            score += steps[c - base][state];
+          } else {
+            if(len == pathStates.length) {
+              pathStates = grow(pathStates);
+              pathScores = grow(pathScores);
+            }
+            pathStates[len] = state;
+            pathScores[len] = steps[c - base][state];
+            score += pathScores[len];
+            len++;
+          }
+          int prev = back[c - base][state];
+          if(state < getDotStatesIndex()) {
+            c--;
+          }
+          state = prev;
+        }
+
+        // only an empty sequence has a segment with no symbols
+        SymbolList symbols = (length > 0)
+          ? symList.subList(base + 1, Math.min(end, length))
+          : new SimpleSymbolList(symList.getAlphabet());
+        listener.segment(base + 1, statePath(symbols, score, pathStates, pathScores, len));
+      }
+      return bestScore;
+    } finally {
+      unlockModel();
+    }
+  }
+
+  /**
+   * Returns the number of segments of interval columns that checkpointed
+   * Viterbi splits the columns after column 0 into. The final column, which
+   * holds no symbol, is part of the last segment rather than one of its own.
+   */
+  private static int segments(SymbolList symList, int interval) {
+    return Math.max(1, (symList.length() + interval - 1) / interval);
+  }
+
+  /**
+   * Returns the last column of a segment, which is one more than interval
+   * columns after its start for the last segment.
+   */
+  private static int segmentEnd(int seg, int segments, int interval, int last) {
+    return (seg == segments - 1) ? last : (seg + 1) * interval;
+  }
+
+  /**
+   * The forward pass of Viterbi, keeping a copy of the column at the start
+   * of each segment of interval columns in checkpoints.
+   *
+   * @return the score of the most likely path
+   */
+  private double viterbiCheckpoints(
+    Tables t, SymbolList symList, ScoreType scoreType, int interval,
+    double [][] checkpoints, double [][] cols
+  ) throws IllegalSymbolException {
+    int stateCount = getStates().length;
+    int last = symList.length() + 1;
+    double [] lastCol = cols[0];
+    double [] currentCol = cols[1];
+    int [] b = new int[stateCount];
+    double [] s = new double[stateCount];
+    viterbiInitialize(t, currentCol, b, s);
+    checkpoints[0] = (double []) currentCol.clone();
+    for(int i = 1; i <= last; i++) {
+      double [] v = lastCol;
+      lastCol = currentCol;
+      currentCol = v;
+      viterbiColumn(t, emissions(symList, i, scoreType), lastCol, currentCol, b, s);
+      if(i % interval == 0 && i / interval < checkpoints.length) {
+        checkpoints[i / interval] = (double []) currentCol.clone();
+      }
+    }
+    return currentCol[magicalIndex];
+  }
+
+  /**
+   * Recomputes the back pointers and step scores of the columns after base
+   * up to end from the checkpoint column at base, into back[i - base] and
+   * steps[i - base]. back[0] and steps[0] are only set for the first
+   * segment, whose column 0 holds dot states.
+   */
+  private void viterbiSegment(
+    Tables t, SymbolList symList, ScoreType scoreType, double [] checkpoint,
+    int base, int end, int [][] back, double [][] steps, double [][] cols
+  ) throws IllegalSymbolException {
+    double [] lastCol = cols[0];
+    double [] currentCol = cols[1];
+    System.arraycopy(checkpoint, 0, currentCol, 0, currentCol.length);
+    if(base == 0) {
+      viterbiInitialize(t, currentCol, back[0], steps[0]);
+    }
+    for(int i = base + 1; i <= end; i++) {
+      double [] v = lastCol;
+      lastCol = currentCol;
+      currentCol = v;
+      viterbiColumn(
+        t, emissions(symList, i, scoreType),
+        lastCol, currentCol, back[i - base], steps[i - base]
+      );
+    }
+  }
+
+  /**
+   * Finds the most probable state for each symbol of a sequence, given the
+   * whole sequence, and passes the results to a listener in segments, in
+   * sequence order.
+   * <p>
+   * A backward pass over the sequence keeps a copy of the score column every
+   * <code>sqrt(length)</code> positions. A forward pass then recomputes the
+   * backward columns of one segment at a time from these checkpoints, and
+   * combines them with the forward scores to choose the emission state with
+   * the highest posterior probability at each position. Each segment is
+   * passed to the listener as soon as it is decoded. The scores of a segment
+   * are the natural log posterior probabilities of its states, and its score
+   * is their sum. Working memory grows with the square root of the sequence
+   * length.
+   * </p>
+   *
+   * @param symList  an array containing the single sequence to decode
+   * @param scoreType  the type of score to use, normally
+   *        <code>ScoreType.PROBABILITY</code>
+   * @param listener  the listener to pass the segments to
+   * @throws IllegalSymbolException if the sequence contains symbols the
+   *         model can not emit
+   * @throws BioException if the listener throws it
+   * @since 1.9.8
+   */
+  public void posteriorDecode(
+    SymbolList [] symList, ScoreType scoreType, SegmentListener listener
+  ) throws IllegalSymbolException, BioException {
+    checkLength(symList);
+    if(listener == null) {
+      throw new IllegalArgumentException("listener must not be null");
+    }
+    posteriorDecode(symList[0], scoreType, checkpointInterval(symList[0]), listener);
+  }
+
+  /**
+   * Posterior decoding in segments of interval symbols.
+   */
+  void posteriorDecode(
+    SymbolList symList, ScoreType scoreType, int interval, SegmentListener listener
+  ) throws IllegalSymbolException, BioException {
+    lockModel();
+    try {
+      Tables t = getTables(scoreType);
+      State [] states = getStates();
+      int stateCount = states.length;
+      int dsi = getDotStatesIndex();
+      int length = symList.length();
+      // segment j holds symbols j * interval + 1 to (j + 1) * interval
+      int segments = (length + interval - 1) / interval;
+
+      // backward pass, keeping the column at the end of each segment
+      double [][] checkpoints = new double[segments][];
+      double [] lastCol = new double[stateCount];
+      double [] currentCol = new double[stateCount];
+      backwardInitialize(currentCol);
+      for(int i = length; i >= 0; i--) {
+        double [] v = lastCol;
+        lastCol = currentCol;
+        currentCol = v;
+        backwardColumn(t, emissions(symList, i + 1, scoreType), lastCol, currentCol);
+        if(i > 0 && (i % interval == 0 || i == length)) {
+          checkpoints[(i - 1) / interval] = (double []) currentCol.clone();
+        }
+      }
+      double total = currentCol[magicalIndex];
+      if(total == Double.NEGATIVE_INFINITY) {
+        throw new IllegalSymbolException(
+          "The sequence can not be emitted by the model"
+        );
+      }
+
+      // forward pass, decoding one segment at a time
+      double [][] backward = new double[Math.min(interval, length)][stateCount];
+      forwardInitialize(t, currentCol);
+      for(int seg = 0; seg < segments; seg++) {
+        int begin = seg * interval + 1;
+        int end = Math.min(begin + interval - 1, length);
+        System.arraycopy(checkpoints[seg], 0, backward[end - begin], 0, stateCount);
+        checkpoints[seg] = null;
+        for(int i = end - 1; i >= begin; i--) {
+          backwardColumn(
+            t, emissions(symList, i + 1, scoreType),
+            backward[i + 1 - begin], backward[i - begin]
+          );
+        }
+
+        List stateList = new ArrayList(end - begin + 1);
+        double [] scores = new double[end - begin + 1];
+        double score = 0.0;
+        for(int i = begin; i <= end; i++) {
+          double [] v = lastCol;
+          lastCol = currentCol;
+          currentCol = v;
+          forwardColumn(t, emissions(symList, i, scoreType), lastCol, currentCol);
+          double [] bc = backward[i - begin];
+          double best = Double.NEGATIVE_INFINITY;
+          int bestState = -1;
+          for(int l = 0; l < dsi; l++) {
+            double p = currentCol[l] + bc[l];
+            if(l != magicalIndex && p > best) {
+              best = p;
+              bestState = l;
+            }
+          }
+          if(bestState == -1) {
+            throw new IllegalSymbolException(
+              symList.symbolAt(i),
+              "The symbol at " + i + " can not be emitted by the model"
+            );
+          }
+          stateList.add(states[bestState]);
+          scores[i - begin] = best - total;
+          score += best - total;
+        }
+
+        listener.segment(begin, new SimpleStatePath(
+          score,
+          symList.subList(begin, end),
+          new SimpleSymbolList(getModel().stateAlphabet(), stateList),
+          DoubleAlphabet.fromArray(scores)
+        ));
+      }
+    } finally {
+      unlockModel();
+    }
+  }
+
+  /**
+   * Builds a StatePath from the states and step scores of a path, given from
+   * the last state back to the first. Magical states are left empty, as in
+   * SingleDP.
+   */
+  private StatePath statePath(
+    SymbolList symList, double score,
+    int [] pathStates, double [] pathScores, int len
+  ) throws IllegalSymbolException {
+    State [] states = getStates();
+    GappedSymbolList symView = new SimpleGappedSymbolList(symList);
+    double [] scores = new double[len];
+    List stateList = new ArrayList(len);
+    for(int j = 0; j < len; j++) {
+      stateList.add(null);
+    }
+
+    int ri = symList.length() + 1;
+    for(int j = 0; j < len; j++) {
+      int lc = len - 1 - j;
+      int l = pathStates[j];
+      if(l == magicalIndex) {
+        continue;
+      }
+      stateList.set(lc, states[l]);
+      if(l >= getDotStatesIndex()) {
+        symView.addGapInSource(ri);
+      } else {
+        ri--;
+      }
+      scores[lc] = pathScores[j];
+    }
+
+    return new SimpleStatePath(
+      score,
+      symView,
+      new SimpleSymbolList(getModel().stateAlphabet(), stateList),
+      DoubleAlphabet.fromArray(scores)
+    );
+  }
+
+  private static int [] grow(int [] a) {
+    int [] b = new int[a.length * 2];
+    System.arraycopy(a, 0, b, 0, a.length);
+    return b;
+  }
+
+  private static double [] grow(double [] a) {
+    double [] b = new double[a.length * 2];
+    System.arraycopy(a, 0, b, 0, a.length);
+    return b;
+  }
+
+  private void viterbiInitialize(Tables t, double [] currentCol, int [] b, double [] s) {
+    int dsi = getDotStatesIndex();
+    for(int l = 0; l < dsi; l++) {
+      currentCol[l] = (l == magicalIndex) ? 0.0 : Double.NEGATIVE_INFINITY;
+      b[l] = (l == magicalIndex) ? l : -1;
+    }
+    for(int l = dsi; l < currentCol.length; l++) {
+      viterbiCell(l, 0.0, t.forwardStart, t.forwardStates, t.forwardScores,
+                  currentCol, currentCol, b, s);
+    }
+  }
+
+  private void viterbiColumn(
+    Tables t, double [] emissions, double [] lastCol, double [] currentCol,
+    int [] b, double [] s
+  ) {
+    int [] start = t.forwardStart;
+    int [] from = t.forwardStates;
+    double [] trs = t.forwardScores;
+    int dsi = getDotStatesIndex();
+    for(int l = 0; l < dsi; l++) {
+      double emission = emissions[l];
+      if(emission == Double.NEGATIVE_INFINITY) {
+        currentCol[l] = Double.NEGATIVE_INFINITY;
+        b[l] = -1;
+      } else {
+        viterbiCell(l, emission, start, from, trs, lastCol, currentCol, b, s);
+      }
+    }
+    for(int l = dsi; l < currentCol.length; l++) {
+      viterbiCell(l, 0.0, start, from, trs, currentCol, currentCol, b, s);
+    }
+  }
+
+  /**
+   * Sets the viterbi score of state l in currentCol to the best score over
+   * the transitions into it from sourceCol plus emission, recording the best
+   * source state and step score in b and s.
+   */
+  private static void viterbiCell(
+    int l, double emission,
+    int [] start, int [] from, double [] trs,
+    double [] sourceCol, double [] currentCol,
+    int [] b, double [] s
+  ) {
+    double transProb = Double.NEGATIVE_INFINITY;
+    double trans = Double.NEGATIVE_INFINITY;
+    int prev = -1;
+    for(int kc = start[l], end = start[l + 1]; kc < end; kc++) {
+      double t = trs[kc];
+      double p = t + sourceCol[from[kc]];
+      if(p > transProb) {
+        transProb = p;
+        prev = from[kc];
+        trans = t;
+      }
+    }
+    if(prev != -1) {
+      currentCol[l] = transProb + emission;
+      b[l] = prev;
+      s[l] = trans + emission;
+    } else {
+      currentCol[l] = Double.NEGATIVE_INFINITY;
+      b[l] = -1;
+    }
+  }
+
+  /**
+   * Receives a decoded path one segment at a time, from checkpointedViterbi
+   * or posteriorDecode.
+   *
+   * @since 1.9.8
+   */
+  public interface SegmentListener {
+    /**
+     * Called with each decoded segment, in sequence order.
+     *
+     * @param start  the index in the sequence of the first symbol of the
+     *        segment
+     * @param segment  the most probable state for each symbol of the segment
+     * @throws BioException to stop decoding
+     */
+    public void segment(int start, StatePath segment)
+    throws BioException;
+  }
+
+  /**
+   * The transitions of a model for one ScoreType, packed into flat arrays.
+   * The transitions of state <code>l</code> are at indices
+   * <code>start[l]</code> up to <code>start[l + 1]</code>.
+   */
+  private static final class Tables {
+    final int [] forwardStart;
+    final int [] forwardStates;
+    final double [] forwardScores;
+    final int [] backwardStart;
+    final int [] backwardStates;
+    final double [] backwardScores;
+
+    Tables(
+      int [][] forwardTransitions, double [][] forwardTransitionScores,
+      int [][] backwardTransitions, double [][] backwardTransitionScores
+    ) {
+      forwardStart = start(forwardTransitions);
+      forwardStates = flatten(forwardTransitions, forwardStart);
+      forwardScores = flatten(forwardTransitionScores, forwardStart);
+      backwardStart = start(backwardTransitions);
+      backwardStates = flatten(backwardTransitions, backwardStart);
+      backwardScores = flatten(backwardTransitionScores, backwardStart);
+    }
+
+    private static int [] start(int [][] transitions) {
+      int [] start = new int[transitions.length + 1];
+      for(int l = 0; l < transitions.length; l++) {
+        start[l + 1] = start[l] + transitions[l].length;
+      }
+      return start;
+    }
+
+    private static int [] flatten(int [][] rows, int [] start) {
+      int [] flat = new int[start[rows.length]];
+      for(int l = 0; l < rows.length; l++) {
+        System.arraycopy(rows[l], 0, flat, start[l], rows[l].length);
+      }
+      return flat;
+    }
+
+    private static double [] flatten(double [][] rows, int [] start) {
+      double [] flat = new double[start[rows.length]];
+      for(int l = 0; l < rows.length; l++) {
+        System.arraycopy(rows[l], 0, flat, start[l], rows[l].length);
+      }
+      return flat;
+    }
+  }
+}
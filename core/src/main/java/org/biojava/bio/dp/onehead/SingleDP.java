@@ -28,10 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.biojava.bio.BioError;
 import org.biojava.bio.BioException;
-import org.biojava.bio.alignment.Alignment;
-import org.biojava.bio.alignment.SimpleAlignment;
 import org.biojava.bio.dist.Distribution;
 import org.biojava.bio.dp.BackPointer;
 import org.biojava.bio.dp.DP;
@@ -42,6 +39,7 @@ import org.biojava.bio.dp.IllegalTransitionException;
 import org.biojava.bio.dp.MagicalState;
 import org.biojava.bio.dp.MarkovModel;
 import org.biojava.bio.dp.ScoreType;
+import org.biojava.bio.dp.SharedEmissionCache;
 import org.biojava.bio.dp.SimpleStatePath;
 import org.biojava.bio.dp.State;
 import org.biojava.bio.dp.StatePath;
@@ -67,6 +65,9 @@ public class SingleDP extends DP implements Serializable {
   protected final HashMap emissionsProb;
   protected final HashMap emissionsOdds;
   protected final HashMap emissionsNull;
+  // emissions for any other ScoreType, by ScoreType
+  private final HashMap emissionsOther;
+  private transient SharedEmissionCache sharedEmissions;
 
   public SingleDP(MarkovModel model)
   throws IllegalSymbolException, IllegalTransitionException, BioException {
@@ -74,6 +75,7 @@ public class SingleDP extends DP implements Serializable {
     emissionsProb = new HashMap();
     emissionsOdds = new HashMap();
     emissionsNull = new HashMap();
+    emissionsOther = new HashMap();
   }
 
   public void update() {
@@ -81,14 +83,51 @@ public class SingleDP extends DP implements Serializable {
     super.update();
     // workaround for bug in vm
     if(emissionsProb != null) {
-      emissionsProb.clear();
+      synchronized(emissionsProb) {
+        emissionsProb.clear();
+      }
     }
     if(emissionsOdds != null) {
-      emissionsOdds.clear();
+      synchronized(emissionsOdds) {
+        emissionsOdds.clear();
+      }
     }
     if(emissionsNull != null) {
-      emissionsNull.clear();
+      synchronized(emissionsNull) {
+        emissionsNull.clear();
+      }
+    }
+    if(emissionsOther != null) {
+      synchronized(emissionsOther) {
+        emissionsOther.clear();
+      }
+    }
+  }
+
+  /**
+   * Share emission scores with other DP objects for the same model. Each
+   * emission vector that this DP has not yet cached is filled from the shared
+   * cache rather than computed from the distributions.
+   *
+   * @param cache  the cache to use, or null to compute emissions directly
+   * @throws IllegalArgumentException if the cache is for a different model
+   * @since 1.9.8
+   */
+  public void setEmissionCache(SharedEmissionCache cache) {
+    if(cache != null && cache.getModel() != getModel()) {
+      throw new IllegalArgumentException(
+        "The emission cache must be for the same model as this DP"
+      );
     }
+    this.sharedEmissions = cache;
+  }
+
+  /**
+   * @return the shared emission cache, or null if there is none
+   * @since 1.9.8
+   */
+  public SharedEmissionCache getEmissionCache() {
+    return sharedEmissions;
   }
   
     /**
@@ -107,24 +146,39 @@ public class SingleDP extends DP implements Serializable {
     } else if(scoreType == ScoreType.NULL_MODEL) {
       emissions = emissionsNull;
     } else {
-      throw new BioError("Unknown ScoreType object: " + scoreType);
+      synchronized(emissionsOther) {
+        emissions = (Map) emissionsOther.get(scoreType);
+        if(emissions == null) {
+          emissionsOther.put(scoreType, emissions = new HashMap());
+        }
+      }
+    }
+    double [] em;
+    synchronized(emissions) {
+      em = (double []) emissions.get(sym);
     }
-    double [] em = (double []) emissions.get(sym);
     if(em == null) {
       int dsi = getDotStatesIndex();
       em = new double[dsi];
       State [] states = getStates();
-      if(sym == AlphabetManager.getGapSymbol()) {
-        em[0] = 0;
+      SharedEmissionCache shared = sharedEmissions;
+      if(shared != null) {
+        shared.getEmissions(sym, scoreType, states, em, dsi);
       } else {
-        em[0] = Double.NEGATIVE_INFINITY;
+        if(sym == AlphabetManager.getGapSymbol()) {
+          em[0] = 0;
+        } else {
+          em[0] = Double.NEGATIVE_INFINITY;
+        }
+        for(int i = 1; i < dsi; i++) {
+          EmissionState es = (EmissionState) states[i];
+          Distribution dis = es.getDistribution();
+          em[i] = Math.log(scoreType.calculateScore(dis, sym));
+        }
       }
-      for(int i = 1; i < dsi; i++) {
-        EmissionState es = (EmissionState) states[i];
-        Distribution dis = es.getDistribution();
-        em[i] = Math.log(scoreType.calculateScore(dis, sym));
+      synchronized(emissions) {
+        emissions.put(sym, em);
       }
-      emissions.put(sym, em);
       /*System.out.println("Emissions for " + sym);
       for(int i = 0; i < em.length; i++) {
         System.out.println("\t" + states[i] + "\t-> " + em[i]);
@@ -666,10 +720,7 @@ public class SingleDP extends DP implements Serializable {
       b2 = b2.back;
     };
 
-    Map aMap = new HashMap();
-    aMap.put(dpCursor.symList(), dpCursor.symList());
-    Alignment ali = new SimpleAlignment(aMap);
-    GappedSymbolList symView = new SimpleGappedSymbolList(ali);
+    GappedSymbolList symView = new SimpleGappedSymbolList(dpCursor.symList());
     double [] scores = new double[len];
     List stateList = new ArrayList(len);
     for (int j = 0; j < len; j++) {
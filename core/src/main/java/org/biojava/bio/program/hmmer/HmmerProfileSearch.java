@@ -0,0 +1,477 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojava.bio.program.hmmer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.dp.DP;
+import org.biojava.bio.dp.DPFactory;
+import org.biojava.bio.dp.MarkovModel;
+import org.biojava.bio.dp.ProfileHMM;
+import org.biojava.bio.dp.ScoreType;
+import org.biojava.bio.dp.SimpleMarkovModel;
+import org.biojava.bio.dp.State;
+import org.biojava.bio.dp.StatePath;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.SequenceIterator;
+import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+import org.biojava.utils.ChangeVetoException;
+
+/**
+ * Searches sequences with a HMMER profile, in the manner of hmmsearch.
+ * <p>
+ * Each sequence is first given a cheap prefilter score: the best log-odds
+ * score of an ungapped local alignment to the match states of the profile,
+ * found along every diagonal in one pass over the sequence. Only sequences
+ * whose prefilter score reaches the prefilter threshold are aligned with
+ * Viterbi to the whole model, and those whose Viterbi score reaches the
+ * threshold are reported. All scores are natural log-odds against the null
+ * model of the match state distributions.
+ * </p>
+ * <p>
+ * Sequences are read from the iterator on the calling thread and scored in
+ * chunks on several threads. The hits are returned ranked by decreasing
+ * Viterbi score, with ties in the order the sequences were read, so the
+ * result does not depend on the number of threads.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public class HmmerProfileSearch {
+  /**
+   * The number of sequences scored by each task.
+   */
+  public static final int CHUNK_SIZE = 16;
+
+  private final ProfileHMM profile;
+  private final MarkovModel model;
+  private final DP dp;
+  private final FiniteAlphabet alpha;
+  private final int cols;
+
+  // log-odds of each atomic symbol for match states 1 to cols, indexed from 0
+  private final Map scores;
+
+  /**
+   * Creates a search of the core profile, which aligns the whole of each
+   * sequence to the model.
+   *
+   * @param profile  the profile to search with
+   * @throws BioException if the model can not be compiled for dynamic
+   *         programming
+   */
+  public HmmerProfileSearch(HmmerProfileHMM profile)
+  throws BioException {
+    this(profile, profile);
+  }
+
+  /**
+   * Creates a search of the full model, whose N, C and J states let hits
+   * cover only part of each sequence.
+   * <p>
+   * The dynamic programming code can not run a model nested in a state, so
+   * the full model is copied into a single model holding the N, C and J
+   * states and the states of the profile, with the transitions into and out
+   * of the profile multiplied through its begin and end. The emission
+   * distributions are shared with the full model, but its transition weights
+   * are read only here.
+   * </p>
+   *
+   * @param full  the full model to search with
+   * @throws BioException if the model can not be compiled for dynamic
+   *         programming
+   */
+  public HmmerProfileSearch(FullHmmerProfileHMM full)
+  throws BioException {
+    this((ProfileHMM) full.hmm().getModel(), localModel(full));
+  }
+
+  private HmmerProfileSearch(ProfileHMM profile, MarkovModel model)
+  throws BioException {
+    if(!(profile.emissionAlphabet() instanceof FiniteAlphabet)) {
+      throw new IllegalAlphabetException(
+        "Can only search with profiles over finite alphabets, not " +
+        profile.emissionAlphabet().getName()
+      );
+    }
+    this.profile = profile;
+    this.model = model;
+    this.alpha = (FiniteAlphabet) profile.emissionAlphabet();
+    this.cols = profile.columns();
+    this.dp = DPFactory.COMPILED.createDP(model);
+
+    scores = new IdentityHashMap();
+    for(Iterator i = alpha.iterator(); i.hasNext(); ) {
+      Symbol sym = (Symbol) i.next();
+      scores.put(sym, scoreSymbol(sym));
+    }
+  }
+
+  /**
+   * Gets the profile whose match states are used by the prefilter.
+   *
+   * @return the profile
+   */
+  public ProfileHMM getProfile() {
+    return profile;
+  }
+
+  /**
+   * Gets the model that sequences are aligned to with Viterbi. For a search
+   * of a full model, this is its local model with the profile copied in.
+   *
+   * @return the model
+   */
+  public MarkovModel getModel() {
+    return model;
+  }
+
+  /**
+   * Scores a sequence with the ungapped prefilter.
+   *
+   * @param seq  the sequence to score
+   * @return the best log-odds score of an ungapped alignment of part of the
+   *         sequence to consecutive match states, or negative infinity for
+   *         an empty sequence
+   * @throws IllegalSymbolException if the sequence contains symbols the
+   *         profile can not score
+   */
+  public double prefilterScore(SymbolList seq)
+  throws IllegalSymbolException {
+    return prefilterScore(seq, new IdentityHashMap());
+  }
+
+  /**
+   * Searches all sequences of an iterator.
+   *
+   * @param seqs  the sequences to search
+   * @param prefilterThreshold  the minimum prefilter score for a sequence to
+   *        be aligned with Viterbi
+   * @param threshold  the minimum Viterbi score of a reported hit
+   * @param threads  the number of threads to score sequences on
+   * @return a list of Hit instances, in order of decreasing score
+   * @throws BioException if a sequence could not be read or scored
+   */
+  public List search(
+    SequenceIterator seqs,
+    final double prefilterThreshold,
+    final double threshold,
+    int threads
+  ) throws BioException {
+    List hits = new ArrayList();
+    if(threads <= 1) {
+      while(seqs.hasNext()) {
+        search(seqs.nextSequence(), prefilterThreshold, threshold, hits);
+      }
+      return rank(hits);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      threads,
+      new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "HmmerProfileSearch");
+          thread.setDaemon(true);
+          return thread;
+        }
+      }
+    );
+    try {
+      LinkedList pending = new LinkedList();
+      int maxPending = threads * 2;
+      while(seqs.hasNext() || !pending.isEmpty()) {
+        while(seqs.hasNext() && pending.size() < maxPending) {
+          final List chunk = new ArrayList(CHUNK_SIZE);
+          while(seqs.hasNext() && chunk.size() < CHUNK_SIZE) {
+            chunk.add(seqs.nextSequence());
+          }
+          pending.add(executor.submit(new Callable() {
+            public Object call() throws Exception {
+              List chunkHits = new ArrayList();
+              for(Iterator i = chunk.iterator(); i.hasNext(); ) {
+                search((Sequence) i.next(), prefilterThreshold, threshold, chunkHits);
+              }
+              return chunkHits;
+            }
+          }));
+        }
+        hits.addAll((List) ((Future) pending.removeFirst()).get());
+      }
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if(cause instanceof BioException) {
+        throw (BioException) cause;
+      }
+      throw new BioException("Unable to search sequences", cause);
+    } catch (InterruptedException ie) {
+      throw new BioException("Interrupted while searching sequences", ie);
+    } finally {
+      executor.shutdownNow();
+    }
+    return rank(hits);
+  }
+
+  private void search(
+    Sequence seq,
+    double prefilterThreshold,
+    double threshold,
+    List hits
+  ) throws BioException {
+    double prefilter = prefilterScore(seq, new IdentityHashMap());
+    if(!(prefilter >= prefilterThreshold)) {
+      return;
+    }
+    StatePath path = dp.viterbi(new SymbolList[] { seq }, ScoreType.ODDS);
+    double score = path.getScore();
+    if(score >= threshold) {
+      hits.add(new Hit(seq, prefilter, score, path));
+    }
+  }
+
+  private static List rank(List hits) {
+    Collections.sort(hits, new Comparator() {
+      public int compare(Object a, Object b) {
+        return Double.compare(((Hit) b).getScore(), ((Hit) a).getScore());
+      }
+    });
+    return hits;
+  }
+
+  /**
+   * Runs the ungapped local alignment along all diagonals at once: best[k]
+   * is the best score of a segment ending at the current residue in match
+   * state k + 1.
+   */
+  private double prefilterScore(SymbolList seq, Map ambiguities)
+  throws IllegalSymbolException {
+    double [] best = new double[cols];
+    double [] last = new double[cols];
+    double max = Double.NEGATIVE_INFINITY;
+    for(int i = 1; i <= seq.length(); i++) {
+      double [] row = row(seq.symbolAt(i), ambiguities);
+      double [] tmp = last;
+      last = best;
+      best = tmp;
+      best[0] = row[0];
+      for(int k = 1; k < cols; k++) {
+        best[k] = Math.max(0.0, last[k - 1]) + row[k];
+      }
+      for(int k = 0; k < cols; k++) {
+        if(best[k] > max) {
+          max = best[k];
+        }
+      }
+    }
+    return max;
+  }
+
+  private double [] row(Symbol sym, Map ambiguities)
+  throws IllegalSymbolException {
+    double [] row = (double []) scores.get(sym);
+    if(row == null) {
+      row = (double []) ambiguities.get(sym);
+      if(row == null) {
+        alpha.validate(sym);
+        ambiguities.put(sym, row = scoreSymbol(sym));
+      }
+    }
+    return row;
+  }
+
+  private double [] scoreSymbol(Symbol sym)
+  throws IllegalSymbolException {
+    double [] row = new double[cols];
+    for(int k = 0; k < cols; k++) {
+      Distribution dist = profile.getMatch(k + 1).getDistribution();
+      row[k] = Math.log(ScoreType.ODDS.calculateScore(dist, sym));
+    }
+    return row;
+  }
+
+  /**
+   * Copies a full model into one model without nested states.
+   */
+  private static MarkovModel localModel(FullHmmerProfileHMM full)
+  throws BioException {
+    ProfileHMM profile = (ProfileHMM) full.hmm().getModel();
+    MarkovModel local = new SimpleMarkovModel(
+      1, full.emissionAlphabet(), full.stateAlphabet().getName()
+    );
+    // weights of the local transitions, by source and then destination
+    Map weights = new LinkedHashMap();
+    try {
+      for(Iterator i = full.stateAlphabet().iterator(); i.hasNext(); ) {
+        State from = (State) i.next();
+        if(from == full.hmm()) {
+          continue;
+        }
+        if(from != full.magicalState()) {
+          local.addState(from);
+        }
+        Distribution dist = full.getWeights(from);
+        for(Iterator j = full.transitionsFrom(from).iterator(); j.hasNext(); ) {
+          State to = (State) j.next();
+          addLocal(full, local, weights, from, to, dist.getWeight(to));
+        }
+      }
+      for(Iterator i = profile.stateAlphabet().iterator(); i.hasNext(); ) {
+        State from = (State) i.next();
+        if(from == profile.magicalState()) {
+          continue;
+        }
+        local.addState(from);
+        Distribution dist = profile.getWeights(from);
+        for(Iterator j = profile.transitionsFrom(from).iterator(); j.hasNext(); ) {
+          State to = (State) j.next();
+          if(to == profile.magicalState()) {
+            Distribution out = full.getWeights(full.hmm());
+            for(Iterator k = full.transitionsFrom(full.hmm()).iterator(); k.hasNext(); ) {
+              State next = (State) k.next();
+              addLocal(full, local, weights, from, next, dist.getWeight(to) * out.getWeight(next));
+            }
+          } else {
+            addLocal(full, local, weights, from, to, dist.getWeight(to));
+          }
+        }
+      }
+
+      for(Iterator i = weights.entrySet().iterator(); i.hasNext(); ) {
+        Map.Entry entry = (Map.Entry) i.next();
+        State from = (State) entry.getKey();
+        Map to = (Map) entry.getValue();
+        for(Iterator j = to.keySet().iterator(); j.hasNext(); ) {
+          local.createTransition(from, (State) j.next());
+        }
+        Distribution dist = local.getWeights(from);
+        for(Iterator j = to.entrySet().iterator(); j.hasNext(); ) {
+          Map.Entry e = (Map.Entry) j.next();
+          dist.setWeight((State) e.getKey(), ((Double) e.getValue()).doubleValue());
+        }
+      }
+    } catch (ChangeVetoException cve) {
+      throw new BioException("Unable to copy the full model", cve);
+    }
+    return local;
+  }
+
+  /**
+   * Records a transition of the local model, replacing a transition into the
+   * profile with transitions into the states its begin leads to.
+   */
+  private static void addLocal(
+    FullHmmerProfileHMM full,
+    MarkovModel local,
+    Map weights,
+    State from,
+    State to,
+    double weight
+  ) throws IllegalSymbolException {
+    if(to == full.hmm()) {
+      ProfileHMM profile = (ProfileHMM) full.hmm().getModel();
+      Distribution dist = profile.getWeights(profile.magicalState());
+      for(Iterator i = profile.transitionsFrom(profile.magicalState()).iterator(); i.hasNext(); ) {
+        State next = (State) i.next();
+        addLocal(full, local, weights, from, next, weight * dist.getWeight(next));
+      }
+      return;
+    }
+    if(from == full.magicalState()) {
+      from = local.magicalState();
+    }
+    if(to == full.magicalState()) {
+      to = local.magicalState();
+    }
+    Map to2weight = (Map) weights.get(from);
+    if(to2weight == null) {
+      weights.put(from, to2weight = new LinkedHashMap());
+    }
+    Double old = (Double) to2weight.get(to);
+    to2weight.put(to, new Double(old == null ? weight : old.doubleValue() + weight));
+  }
+
+  /**
+   * A sequence that scored at least the thresholds of a search.
+   *
+   * @since 1.9.8
+   */
+  public static final class Hit {
+    private final Sequence sequence;
+    private final double prefilterScore;
+    private final double score;
+    private final StatePath statePath;
+
+    Hit(Sequence sequence, double prefilterScore, double score, StatePath statePath) {
+      this.sequence = sequence;
+      this.prefilterScore = prefilterScore;
+      this.score = score;
+      this.statePath = statePath;
+    }
+
+    /**
+     * @return the sequence that was hit
+     */
+    public Sequence getSequence() {
+      return sequence;
+    }
+
+    /**
+     * @return the ungapped prefilter score of the sequence
+     */
+    public double getPrefilterScore() {
+      return prefilterScore;
+    }
+
+    /**
+     * @return the Viterbi log-odds score of the sequence
+     */
+    public double getScore() {
+      return score;
+    }
+
+    /**
+     * @return the Viterbi alignment of the sequence to the model
+     */
+    public StatePath getStatePath() {
+      return statePath;
+    }
+  }
+}
@@ -1,13 +1,33 @@
 package org.biojava.bio.program.ssaha;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.biojava.bio.BioException;
 import org.biojava.bio.BioRuntimeException;
@@ -72,11 +92,94 @@ import org.biojava.utils.Constants;
  * </pre>
  * </p>
  *
+ * <p>
+ * By default the store is built with two passes over the sequences, both in
+ * the calling thread. After <code>setThreads()</code> has been given a
+ * positive number of threads, it is instead built from a single pass: the
+ * k-mer space is split into partitions, the hits of each partition are
+ * buffered in memory up to a limit and spilled to disk as sorted runs on
+ * the worker threads, and the partitions of the hit table are then merged
+ * from their runs in parallel. This writes exactly the same file, with
+ * memory bounded by <code>setMaxHitsInMemory()</code> rather than by the
+ * size of the sequences.
+ * </p>
+ *
  * @author Matthew Pocock
  * @author Thomas Down
  */
 
 public class CompactedDataStoreFactory implements DataStoreFactory {
+  private static final int PARTITION_BITS = 6;
+  private static final int RADIX_BITS = 11;
+  private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+  private int threads = 0;
+  private int maxHitsInMemory = 1 << 24;
+  private File tempDirectory = null;
+
+  /**
+   * Set the number of threads to build stores with.
+   *
+   * @param threads  0 to build with two passes in the calling thread, or the
+   *        number of threads to build partitions with in a single pass
+   * @since 1.9.8
+   */
+  public void setThreads(int threads) {
+    if(threads < 0) {
+      throw new IllegalArgumentException(
+        "Threads can't be negative: " + threads
+      );
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * @since 1.9.8
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Set the number of hits that a partitioned build holds in memory before
+   * spilling them to disk. Each hit takes 8 bytes.
+   *
+   * @param maxHitsInMemory  the number of hits to buffer
+   * @since 1.9.8
+   */
+  public void setMaxHitsInMemory(int maxHitsInMemory) {
+    if(maxHitsInMemory < 1) {
+      throw new IllegalArgumentException(
+        "Must hold at least one hit in memory, not " + maxHitsInMemory
+      );
+    }
+    this.maxHitsInMemory = maxHitsInMemory;
+  }
+
+  /**
+   * @since 1.9.8
+   */
+  public int getMaxHitsInMemory() {
+    return maxHitsInMemory;
+  }
+
+  /**
+   * Set the directory that a partitioned build spills its sorted runs to.
+   *
+   * @param tempDirectory  the directory, or null for the system default
+   * @since 1.9.8
+   */
+  public void setTempDirectory(File tempDirectory) {
+    this.tempDirectory = tempDirectory;
+  }
+
+  /**
+   * @since 1.9.8
+   */
+  public File getTempDirectory() {
+    return tempDirectory;
+  }
+
   public DataStore getDataStore(File storeFile)
       throws IOException 
   {
@@ -114,6 +217,12 @@ public class CompactedDataStoreFactory implements DataStoreFactory {
     IOException,
     BioException
   { 
+    if(threads > 0) {
+      return buildPartitioned(
+        storeFile, streamer, packing, wordLength, stepSize, threshold
+      );
+    }
+
     ByteArrayOutputStream packingStream = new ByteArrayOutputStream();
     ObjectOutputStream packingSerializer = new ObjectOutputStream(packingStream);
     packingSerializer.writeObject(packing);
@@ -314,6 +423,217 @@ public class CompactedDataStoreFactory implements DataStoreFactory {
     return getDataStore(storeFile);
   }
   
+  private DataStore buildPartitioned(
+    File storeFile,
+    SequenceStreamer streamer,
+    Packing packing,
+    int wordLength,
+    int stepSize,
+    int threshold
+  ) throws
+    IllegalAlphabetException,
+    IOException,
+    BioException
+  {
+    ByteArrayOutputStream packingStream = new ByteArrayOutputStream();
+    ObjectOutputStream packingSerializer = new ObjectOutputStream(packingStream);
+    packingSerializer.writeObject(packing);
+    packingSerializer.flush();
+
+    final int structDataSize =
+      6 * Constants.BYTES_IN_INT +
+      packingStream.toByteArray().length;
+
+    storeFile.createNewFile();
+    final RandomAccessFile store = new RandomAccessFile(storeFile, "rw");
+    final FileChannel channel = store.getChannel();
+
+    int wordBits = (int) packing.wordSize() * wordLength;
+    int words = 1 << wordBits;
+    final int hashTablePos = structDataSize;
+    int hashTableSize =
+      (int) Constants.BYTES_IN_INT +
+      words * (int) Constants.BYTES_IN_INT;
+    if(hashTableSize < words) {
+      throw new AssertionFailure(
+        "Possible underflow. number of words: " + words +
+        "\tsize of hash table: " + hashTableSize +
+        "\tcompared to Integer.MAX_VALUE " + Integer.MAX_VALUE);
+    }
+
+    final MappedByteBuffer hashTable_MB = channel.map(
+      FileChannel.MapMode.READ_WRITE,
+      hashTablePos,
+      hashTableSize
+    );
+    final IntBuffer hashTable = hashTable_MB.asIntBuffer();
+    hashTable.put(0, hashTableSize);
+    for(int i = 0; i < words; i++) {
+      hashTable.put(i+1, 0);
+    }
+
+    // partitions are contiguous ranges of words, so that each one owns a
+    // contiguous block of the hit table
+    int partitionBits = Math.min(PARTITION_BITS, wordBits);
+    final int partitionShift = wordBits - partitionBits;
+    int partitionCount = 1 << partitionBits;
+    int runSize = Math.max(1, maxHitsInMemory / partitionCount);
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      threads,
+      new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "CompactedDataStoreFactory");
+          thread.setDaemon(true);
+          return thread;
+        }
+      }
+    );
+    PartitionListener pl = new PartitionListener(
+      packing,
+      wordLength,
+      stepSize,
+      hashTable,
+      partitionShift,
+      partitionCount,
+      runSize,
+      executor
+    );
+    try {
+      // the only pass over the sequences
+      // counts k-tuples, keeps the names and spills sorted runs of hits
+      streamer.reset();
+      while (streamer.hasNext()) {
+        streamer.streamNext(pl);
+      }
+      pl.finishRuns();
+
+      int seqCount = pl.names.size();
+      final int nameArrayPos = hashTablePos + hashTableSize;
+      int nameArraySize = ((seqCount * 2) + 1) * Constants.BYTES_IN_INT;
+      final MappedByteBuffer nameArray_MB = channel.map(
+        FileChannel.MapMode.READ_WRITE,
+        nameArrayPos,
+        nameArraySize
+      );
+      final IntBuffer nameArray = nameArray_MB.asIntBuffer();
+      nameArray.put(0, nameArraySize);
+
+      final int nameTablePos = nameArrayPos + nameArraySize;
+      int nameTableSize =
+        Constants.BYTES_IN_INT +
+        seqCount * Constants.BYTES_IN_INT +
+        pl.nameChars * Constants.BYTES_IN_CHAR;
+      final MappedByteBuffer nameTable = channel.map(
+        FileChannel.MapMode.READ_WRITE,
+        nameTablePos,
+        nameTableSize
+      );
+      nameTable.putInt(0, nameTableSize);
+      nameTable.position(Constants.BYTES_IN_INT);
+      for(int seqNumber = 0; seqNumber < seqCount; seqNumber++) {
+        String name = (String) pl.names.get(seqNumber);
+        nameArray.put((seqNumber * 2) + 1, nameTable.position()-Constants.BYTES_IN_INT);
+        nameArray.put((seqNumber * 2) + 2, ((Integer) pl.offsets.get(seqNumber)).intValue());
+        nameTable.putInt(name.length());
+        for(int j = 0; j < name.length(); j++) {
+          nameTable.putChar((char) name.charAt(j));
+        }
+      }
+
+      int kmersUsed = 0;
+      int hitCount = 0;
+      for(int i = 0; i < words; i++) {
+        int counts = hashTable.get(i + 1);
+        if(counts > 0 && counts < threshold) {
+          hitCount++;
+          kmersUsed += counts;
+        }
+      }
+
+      final int hitTablePos = nameTablePos + nameTableSize;
+      long hitTableSize =
+        (long) Constants.BYTES_IN_INT +
+        (long) kmersUsed * (Constants.BYTES_IN_INT) +
+        (long) hitCount * Constants.BYTES_IN_INT;
+      final MappedByteBuffer hitTable = channel.map(
+        FileChannel.MapMode.READ_WRITE,
+        hitTablePos,
+        (int) hitTableSize
+      );
+      hitTable.putInt(0, (int) hitTableSize);
+
+      // wire the hash table to the hit table, as the two pass build does
+      int hitOffset = 0;
+      for(int i = 0; i < words; i++) {
+        int counts = hashTable.get(i+1);
+        if(counts > 0 && counts < threshold) {
+          hashTable.put(i + 1, hitOffset);
+          hitTable.putInt(hitOffset + Constants.BYTES_IN_INT, 0);
+          hitOffset +=
+            Constants.BYTES_IN_INT +
+            counts * (Constants.BYTES_IN_INT);
+        } else if (counts == 0) {
+          hashTable.put(i + 1, -1);
+        } else {
+          hashTable.put(i + 1, -2);
+        }
+      }
+
+      // merge each partition's runs into its block of the hit table
+      // only absolute gets and puts are made on the shared buffers
+      List merges = new ArrayList();
+      for(int p = 0; p < partitionCount; p++) {
+        final List files = pl.runs[p];
+        final long [] memory = pl.buffers[p];
+        final int memoryCount = pl.fill[p];
+        merges.add(executor.submit(new Callable() {
+          public Object call()
+          throws IOException {
+            mergeRuns(hashTable, hitTable, files, memory, memoryCount, partitionShift);
+            return null;
+          }
+        }));
+      }
+      for(Iterator i = merges.iterator(); i.hasNext(); ) {
+        ((Future) i.next()).get();
+      }
+
+      final MappedByteBuffer rootBuffer = channel.map(
+        FileChannel.MapMode.READ_WRITE,
+        0,
+        structDataSize
+      );
+      rootBuffer.position(0);
+      rootBuffer.putInt(hashTablePos);
+      rootBuffer.putInt(hitTablePos);
+      rootBuffer.putInt(nameArrayPos);
+      rootBuffer.putInt(nameTablePos);
+      rootBuffer.putInt(wordLength);
+      rootBuffer.putInt(packingStream.toByteArray().length);
+      rootBuffer.put(packingStream.toByteArray());
+
+      rootBuffer.force();
+      hashTable_MB.force();
+      hitTable.force();
+      nameArray_MB.force();
+      nameTable.force();
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if(cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new BioException("Unable to build data store", cause);
+    } catch (InterruptedException ie) {
+      throw new BioException("Interrupted while building data store", ie);
+    } finally {
+      executor.shutdownNow();
+      pl.deleteRuns();
+    }
+
+    return getDataStore(storeFile);
+  }
+
     private abstract class PackingListener extends SeqIOAdapter {
 	private final Packing packing;
 	private final int wordLength;
@@ -513,6 +833,308 @@ public class CompactedDataStoreFactory implements DataStoreFactory {
 	}
     }
 
+    /**
+     * Counts k-tuples and names like FirstPassListener, and buffers hits by
+     * partition, spilling each full buffer to disk as a sorted run.
+     */
+    private class PartitionListener extends PackingListener {
+	private final IntBuffer hashTable;
+	private final int partitionShift;
+	private final int runSize;
+	private final ExecutorService executor;
+	private final LinkedList pending = new LinkedList();
+
+	final long [][] buffers;
+	final int [] fill;
+	final List [] runs;
+	final List names = new ArrayList();
+	final List offsets = new ArrayList();
+	int nameChars = 0;
+
+	private String name = "";
+	private int length = -1;
+	private int concatOffset = 0;
+
+	PartitionListener(Packing packing,
+			  int wordLength,
+			  int stepSize,
+			  IntBuffer hashTable,
+			  int partitionShift,
+			  int partitionCount,
+			  int runSize,
+			  ExecutorService executor)
+	{
+	    super(packing, wordLength, stepSize);
+	    this.hashTable = hashTable;
+	    this.partitionShift = partitionShift;
+	    this.runSize = runSize;
+	    this.executor = executor;
+	    this.buffers = new long[partitionCount][];
+	    this.fill = new int[partitionCount];
+	    this.runs = new List[partitionCount];
+	    for (int p = 0; p < partitionCount; p++) {
+		runs[p] = new ArrayList();
+	    }
+	}
+
+	public void setName(String name) {
+	    this.name = name;
+	}
+
+	public void foundLength(int length) {
+	    this.length = length;
+	}
+
+	public void endSequence()
+	    throws ParseException
+	{
+	    super.endSequence();
+
+	    names.add(name);
+	    offsets.add(new Integer(concatOffset));
+	    nameChars += name.length();
+	    concatOffset += (length + 100);
+	}
+
+	public void processWord(int word, int pos)
+	    throws ParseException
+	{
+	    if (pos < 1) {
+		throw new ParseException("pos < 1");
+	    }
+	    addCount(hashTable, word);
+
+	    int p = word >>> partitionShift;
+	    if (buffers[p] == null) {
+		buffers[p] = new long[runSize];
+	    }
+	    // sorting these sorts by word, then by offset
+	    buffers[p][fill[p]++] =
+		((long) word << 32) | ((pos + concatOffset) & 0xffffffffL);
+	    if (fill[p] == runSize) {
+		spill(p);
+	    }
+	}
+
+	private void spill(int p)
+	    throws ParseException
+	{
+	    final long [] hits = buffers[p];
+	    final int count = fill[p];
+	    buffers[p] = null;
+	    fill[p] = 0;
+	    try {
+		final File file = File.createTempFile("ssaha", ".run", tempDirectory);
+		file.deleteOnExit();
+		runs[p].add(file);
+		pending.addLast(executor.submit(new Callable() {
+		    public Object call()
+			throws IOException
+		    {
+			writeRun(hits, count, partitionShift, file);
+			return null;
+		    }
+		}));
+		// bound the buffers waiting to be written
+		if (pending.size() > threads * 2) {
+		    ((Future) pending.removeFirst()).get();
+		}
+	    } catch (IOException ioe) {
+		throw new ParseException(ioe, "Unable to spill hits to disk");
+	    } catch (ExecutionException ee) {
+		throw new ParseException(ee.getCause(), "Unable to spill hits to disk");
+	    } catch (InterruptedException ie) {
+		throw new ParseException(ie, "Interrupted while spilling hits to disk");
+	    }
+	}
+
+	void finishRuns()
+	    throws ExecutionException, InterruptedException
+	{
+	    while (!pending.isEmpty()) {
+		((Future) pending.removeFirst()).get();
+	    }
+	}
+
+	void deleteRuns() {
+	    for (int p = 0; p < runs.length; p++) {
+		for (Iterator i = runs[p].iterator(); i.hasNext(); ) {
+		    ((File) i.next()).delete();
+		}
+	    }
+	}
+    }
+
+  private static void writeRun(long [] hits, int count, int bits, File file)
+  throws IOException {
+    sortHits(hits, count, bits);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+      new FileOutputStream(file), 1 << 16
+    ));
+    try {
+      for(int i = 0; i < count; i++) {
+        out.writeLong(hits[i]);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Sorts hits by word and then offset. Hits are buffered in offset order,
+   * so a stable radix sort on the low bits of the word is enough; the high
+   * bits are the same throughout a partition.
+   */
+  private static void sortHits(long [] hits, int count, int bits) {
+    long [] from = hits;
+    long [] to = new long[count];
+    int [] counts = new int[1 << RADIX_BITS];
+    for(int shift = 32; shift < 32 + bits; shift += RADIX_BITS) {
+      Arrays.fill(counts, 0);
+      for(int i = 0; i < count; i++) {
+        counts[(int) (from[i] >>> shift) & RADIX_MASK]++;
+      }
+      int sum = 0;
+      for(int d = 0; d < counts.length; d++) {
+        int c = counts[d];
+        counts[d] = sum;
+        sum += c;
+      }
+      for(int i = 0; i < count; i++) {
+        to[counts[(int) (from[i] >>> shift) & RADIX_MASK]++] = from[i];
+      }
+      long [] swap = from;
+      from = to;
+      to = swap;
+    }
+    if(from != hits) {
+      System.arraycopy(from, 0, hits, 0, count);
+    }
+  }
+
+  private static void mergeRuns(
+    IntBuffer hashTable,
+    ByteBuffer hitTable,
+    List files,
+    long [] memory,
+    int memoryCount,
+    int bits
+  ) throws IOException {
+    PriorityQueue queue = new PriorityQueue(files.size() + 1, Run.BY_HEAD);
+    try {
+      for(Iterator i = files.iterator(); i.hasNext(); ) {
+        Run run = new Run((File) i.next());
+        if(run.next()) {
+          queue.add(run);
+        } else {
+          run.close();
+        }
+      }
+      if(memoryCount > 0) {
+        sortHits(memory, memoryCount, bits);
+        Run run = new Run(memory, memoryCount);
+        run.next();
+        queue.add(run);
+      }
+
+      if(queue.size() == 1) {
+        // nothing to merge
+        Run run = (Run) queue.peek();
+        do {
+          writeHit(hashTable, hitTable, run.head);
+        } while(run.next());
+      } else {
+        while(!queue.isEmpty()) {
+          Run run = (Run) queue.poll();
+          writeHit(hashTable, hitTable, run.head);
+          if(run.next()) {
+            queue.add(run);
+          } else {
+            run.close();
+          }
+        }
+      }
+    } finally {
+      for(Iterator i = queue.iterator(); i.hasNext(); ) {
+        ((Run) i.next()).close();
+      }
+    }
+  }
+
+  private static void writeHit(IntBuffer hashTable, ByteBuffer hitTable, long hit) {
+    int word = (int) (hit >>> 32);
+    int kmerPointer = hashTable.get(word+1);
+    if(kmerPointer >= 0) {
+      kmerPointer += Constants.BYTES_IN_INT;
+      int hitCount = hitTable.getInt(kmerPointer);
+      hitTable.putInt(
+        kmerPointer + hitCount * (Constants.BYTES_IN_INT) + Constants.BYTES_IN_INT,
+        (int) hit
+      );
+      hitTable.putInt(kmerPointer, hitCount + 1);
+    }
+  }
+
+  /**
+   * A sorted run of hits, read from disk or from memory.
+   */
+  private static final class Run {
+    static final Comparator BY_HEAD = new Comparator() {
+      public int compare(Object a, Object b) {
+        long ha = ((Run) a).head;
+        long hb = ((Run) b).head;
+        return ha < hb ? -1 : (ha == hb ? 0 : 1);
+      }
+    };
+
+    private final long [] hits;
+    private final int count;
+    private final DataInputStream in;
+    private int index;
+    private long remaining;
+    long head;
+
+    Run(long [] hits, int count) {
+      this.hits = hits;
+      this.count = count;
+      this.in = null;
+    }
+
+    Run(File file)
+    throws IOException {
+      this.hits = null;
+      this.count = 0;
+      this.remaining = file.length() / Constants.BYTES_IN_LONG;
+      this.in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(file), 1 << 16
+      ));
+    }
+
+    boolean next()
+    throws IOException {
+      if(in == null) {
+        if(index < count) {
+          head = hits[index++];
+          return true;
+        }
+        return false;
+      }
+      if(remaining > 0) {
+        head = in.readLong();
+        remaining--;
+        return true;
+      }
+      return false;
+    }
+
+    void close()
+    throws IOException {
+      if(in != null) {
+        in.close();
+      }
+    }
+  }
+
   private void addCount(IntBuffer buffer, int word) {
     int count = buffer.get(word+1);
     count++;
@@ -0,0 +1,1110 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojava.bio.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.SequenceIterator;
+import org.biojava.bio.symbol.AlphabetIndex;
+import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.AtomicSymbol;
+import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.SimpleSymbolList;
+import org.biojava.bio.symbol.SuffixArray;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * <p>
+ * An FM-index over a collection of sequences, for finding exact and
+ * near-exact matches to short patterns.
+ * </p>
+ *
+ * <p>
+ * The collection is split into partitions of whole sequences, each with an
+ * index of its own, so that neither building nor searching needs positions
+ * beyond the range of an int and a collection can be larger than 2^31
+ * symbols. Each partition holds the Burrows-Wheeler transform of its
+ * sequences, with occurrence counts every 64 symbols and the suffix array
+ * sampled at one text position in every <code>sampleRate</code>. For
+ * alphabets of up to four symbols, such as DNA, the transform is packed at
+ * two bits per symbol, with a bitmap marking the rows that hold breaks.
+ * With the default sample rate of 32 a DNA index takes about 1.1 bytes
+ * per base, and the sequences themselves are not needed to search it.
+ * </p>
+ *
+ * <p>
+ * Partitions are built one at a time. Building one needs its text as ints
+ * and its suffix array, about 9 bytes per symbol and up to about 13 at the
+ * peak of the SA-IS recursion, so with the default partition size of 2^27
+ * symbols the build stays under 2 GB of heap beyond the finished
+ * partitions. A partition is closed before the sequence that would take it
+ * past the partition size, and a longer sequence gets a partition of its
+ * own. <code>build()</code> writes each partition to a file as soon as it
+ * is built, so a whole genome can be indexed without holding the index in
+ * the heap, and <code>open()</code> maps such a file back into memory
+ * instead of rebuilding it. Instances only make absolute reads, so they are
+ * safe for concurrent queries.
+ * </p>
+ *
+ * <p>
+ * Patterns are matched by backward search in every partition, in time
+ * proportional to the pattern length rather than the size of the
+ * collection. Patterns with up to a given number of mismatches are found by
+ * backtracking over the alternative symbols, so this is best suited to
+ * short patterns and few mismatches. Ambiguity symbols in the pattern match
+ * any of the symbols they stand for. Ambiguity symbols in the sequences are
+ * indexed as breaks and never match, just like the ends of the sequences.
+ * </p>
+ *
+ * <p>
+ * Matches are returned through the BioMatcher interface, ordered by the
+ * position of the sequence in the collection and then by start.
+ * </p>
+ *
+ * <pre>
+ * FMIndex.build(db.sequenceIterator(), DNATools.getDNA(), FMIndex.DEFAULT_SAMPLE_RATE,
+ *   FMIndex.DEFAULT_PARTITION_SIZE, file);
+ * FMIndex index = FMIndex.open(file, DNATools.getDNA());
+ * FMIndex.Matcher m = index.matcher(new MaxMismatchPattern(read, 2));
+ * while (m.find()) {
+ *   System.out.println(m.getSequenceName() + " " + m.start() + " " + m.mismatchCount());
+ * }
+ * </pre>
+ *
+ * @see SuffixArray
+ * @since 1.9.8
+ */
+public class FMIndex {
+  /**
+   * The default spacing of the suffix array samples.
+   */
+  public static final int DEFAULT_SAMPLE_RATE = 32;
+
+  /**
+   * The default number of symbols, counting breaks, after which a new
+   * partition is started.
+   */
+  public static final int DEFAULT_PARTITION_SIZE = 1 << 27;
+
+  private static final int MAGIC = 0x424a464d;
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  // code 0 is the sentinel, 1 a break, symbols start at 2
+  private static final int BREAK = 1;
+  private static final int FIRST_SYMBOL = 2;
+  private static final int OCC_SHIFT = 6;
+
+  // the largest alphabet whose transform is packed at two bits per symbol
+  private static final int PACKED_SIZE = 4;
+
+  private final FiniteAlphabet alpha;
+  private final AlphabetIndex index;
+  private final int k;
+  private final String [] names;
+  private final int [] lengths;
+  private final Partition [] partitions;
+  private final int sampleRate;
+
+  /**
+   * Builds an FM-index with the default sample rate and partition size.
+   *
+   * @param seqs  the sequences to index
+   * @param alpha  the alphabet of the sequences
+   * @throws BioException if the sequences could not be read, or one holds
+   *         more than <code>Integer.MAX_VALUE - 10</code> symbols
+   * @throws IllegalAlphabetException if a sequence is not over the alphabet,
+   *         or the alphabet has more than 254 symbols
+   */
+  public FMIndex(SequenceIterator seqs, FiniteAlphabet alpha)
+  throws BioException, IllegalAlphabetException {
+    this(seqs, alpha, DEFAULT_SAMPLE_RATE);
+  }
+
+  /**
+   * Builds an FM-index with the default partition size.
+   *
+   * @param seqs  the sequences to index
+   * @param alpha  the alphabet of the sequences
+   * @param sampleRate  the spacing of the suffix array samples; larger
+   *        values save memory and make locating each match slower
+   * @throws BioException if the sequences could not be read, or one holds
+   *         more than <code>Integer.MAX_VALUE - 10</code> symbols
+   * @throws IllegalAlphabetException if a sequence is not over the alphabet,
+   *         or the alphabet has more than 254 symbols
+   */
+  public FMIndex(SequenceIterator seqs, FiniteAlphabet alpha, int sampleRate)
+  throws BioException, IllegalAlphabetException {
+    this(seqs, alpha, sampleRate, DEFAULT_PARTITION_SIZE);
+  }
+
+  /**
+   * Builds an FM-index.
+   *
+   * @param seqs  the sequences to index
+   * @param alpha  the alphabet of the sequences
+   * @param sampleRate  the spacing of the suffix array samples; larger
+   *        values save memory and make locating each match slower
+   * @param partitionSize  the number of symbols, counting one break after
+   *        each sequence, after which a new partition is started; larger
+   *        values need more memory to build and make searching faster
+   * @throws BioException if the sequences could not be read, or one holds
+   *         more than <code>Integer.MAX_VALUE - 10</code> symbols
+   * @throws IllegalAlphabetException if a sequence is not over the alphabet,
+   *         or the alphabet has more than 254 symbols
+   */
+  public FMIndex(SequenceIterator seqs, FiniteAlphabet alpha, int sampleRate, int partitionSize)
+  throws BioException, IllegalAlphabetException {
+    Builder builder = new Builder(seqs, alpha, sampleRate, partitionSize);
+    List partitions = new ArrayList();
+    for (Partition part = builder.next(); part != null; part = builder.next()) {
+      partitions.add(part);
+    }
+    this.alpha = alpha;
+    this.index = builder.index;
+    this.k = builder.k;
+    this.sampleRate = sampleRate;
+    this.names = (String []) builder.names.toArray(new String[builder.names.size()]);
+    this.partitions = (Partition []) partitions.toArray(new Partition[partitions.size()]);
+    this.lengths = lengths(this.partitions, names.length);
+  }
+
+  private FMIndex(FiniteAlphabet alpha, int sampleRate, String [] names, Partition [] partitions) {
+    this.alpha = alpha;
+    this.index = AlphabetManager.getAlphabetIndex(alpha);
+    this.k = alpha.size() + FIRST_SYMBOL;
+    this.sampleRate = sampleRate;
+    this.names = names;
+    this.partitions = partitions;
+    this.lengths = lengths(partitions, names.length);
+  }
+
+  /**
+   * Builds an FM-index straight into a file that can be mapped with
+   * <code>open()</code>. Each partition is written as soon as it is built
+   * and then dropped, so only one partition is ever held in memory.
+   *
+   * @param seqs  the sequences to index
+   * @param alpha  the alphabet of the sequences
+   * @param sampleRate  the spacing of the suffix array samples
+   * @param partitionSize  the number of symbols, counting one break after
+   *        each sequence, after which a new partition is started
+   * @param file  the file to write
+   * @throws BioException if the sequences could not be read, or one holds
+   *         more than <code>Integer.MAX_VALUE - 10</code> symbols
+   * @throws IllegalAlphabetException if a sequence is not over the alphabet,
+   *         or the alphabet has more than 254 symbols
+   * @throws IOException if the file could not be written
+   */
+  public static void build(
+    SequenceIterator seqs,
+    FiniteAlphabet alpha,
+    int sampleRate,
+    int partitionSize,
+    File file
+  ) throws BioException, IllegalAlphabetException, IOException {
+    Builder builder = new Builder(seqs, alpha, sampleRate, partitionSize);
+    FileOutputStream fos = new FileOutputStream(file);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+    try {
+      writeHeader(out, alpha, sampleRate);
+      List offsets = new ArrayList();
+      for (Partition part = builder.next(); part != null; part = builder.next()) {
+        out.flush();
+        offsets.add(new Long(fos.getChannel().position()));
+        part.write(out);
+      }
+      out.flush();
+      writeDirectory(out, fos.getChannel().position(), offsets, builder.names);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Maps an FM-index written by <code>write()</code> or
+   * <code>build()</code> back into memory. The file is not read into the
+   * heap, so an index too large for the heap can be searched, but each
+   * array of a partition must fit in a single mapping of at most 2
+   * gigabytes.
+   *
+   * @param file  the file to map
+   * @param alpha  the alphabet the index was built with
+   * @return the mapped FMIndex
+   * @throws IOException if the file could not be read or is not an FM-index
+   *         file
+   * @throws IllegalAlphabetException if the file was written for another
+   *         alphabet
+   */
+  public static FMIndex open(File file, FiniteAlphabet alpha)
+  throws IOException, IllegalAlphabetException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Channels.newInputStream(channel)
+      ));
+      if (channel.size() < 8 || in.readInt() != MAGIC) {
+        throw new IOException(file + " is not an FM-index file");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported FM-index file version " + version);
+      }
+      String alphaName = in.readUTF();
+      int alphaSize = in.readInt();
+      if (!alphaName.equals(alpha.getName()) || alphaSize != alpha.size()) {
+        throw new IllegalAlphabetException(
+          file + " was written for alphabet " + alphaName + ", not " + alpha.getName()
+        );
+      }
+      int sampleRate = in.readInt();
+      int k = alphaSize + FIRST_SYMBOL;
+
+      raf.seek(channel.size() - 8);
+      long directory = raf.readLong();
+      if (directory < 0 || directory > channel.size() - 8) {
+        throw new IOException(file + " is truncated");
+      }
+      channel.position(directory);
+      in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      long [] offsets = new long[in.readInt()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = in.readLong();
+      }
+      String [] names = new String[in.readInt()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = in.readUTF();
+      }
+
+      // mappings stay valid after the channel is closed
+      Partition [] partitions = new Partition[offsets.length];
+      for (int i = 0; i < partitions.length; i++) {
+        partitions[i] = Partition.map(channel, offsets[i], k, alphaSize <= PACKED_SIZE);
+      }
+      return new FMIndex(alpha, sampleRate, names, partitions);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Writes this FM-index to a file that can be mapped back with
+   * <code>open()</code>.
+   *
+   * @param file  the file to write
+   * @throws IOException if the file could not be written
+   */
+  public void write(File file)
+  throws IOException {
+    FileOutputStream fos = new FileOutputStream(file);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+    try {
+      writeHeader(out, alpha, sampleRate);
+      List offsets = new ArrayList();
+      for (int i = 0; i < partitions.length; i++) {
+        out.flush();
+        offsets.add(new Long(fos.getChannel().position()));
+        partitions[i].write(out);
+      }
+      out.flush();
+      writeDirectory(out, fos.getChannel().position(), offsets, Arrays.asList(names));
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void writeHeader(DataOutputStream out, FiniteAlphabet alpha, int sampleRate)
+  throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(alpha.getName());
+    out.writeInt(alpha.size());
+    out.writeInt(sampleRate);
+  }
+
+  // the partition offsets and sequence names, followed by where they start
+  private static void writeDirectory(DataOutputStream out, long offset, List offsets, List names)
+  throws IOException {
+    out.writeInt(offsets.size());
+    for (Iterator i = offsets.iterator(); i.hasNext(); ) {
+      out.writeLong(((Long) i.next()).longValue());
+    }
+    out.writeInt(names.size());
+    for (Iterator i = names.iterator(); i.hasNext(); ) {
+      out.writeUTF((String) i.next());
+    }
+    out.writeLong(offset);
+  }
+
+  private static int [] lengths(Partition [] partitions, int count) {
+    int [] lengths = new int[count];
+    for (int p = 0; p < partitions.length; p++) {
+      Partition part = partitions[p];
+      for (int i = 0; i < part.starts.length - 1; i++) {
+        lengths[part.firstSeq + i] = part.starts[i + 1] - part.starts[i] - 1;
+      }
+    }
+    return lengths;
+  }
+
+  public FiniteAlphabet getAlphabet() {
+    return alpha;
+  }
+
+  /**
+   * Gets the number of sequences in the index.
+   *
+   * @return the number of sequences
+   */
+  public int getSequenceCount() {
+    return names.length;
+  }
+
+  /**
+   * Gets the name of one of the indexed sequences.
+   *
+   * @param seq  the number of the sequence, from 0
+   * @return its name
+   */
+  public String getSequenceName(int seq) {
+    return names[seq];
+  }
+
+  /**
+   * Gets the length of one of the indexed sequences.
+   *
+   * @param seq  the number of the sequence, from 0
+   * @return its length
+   */
+  public int getSequenceLength(int seq) {
+    return lengths[seq];
+  }
+
+  /**
+   * Gets the number of symbols in the index, which is the total length of
+   * the sequences plus one break after each of them.
+   *
+   * @return the number of symbols
+   */
+  public long length() {
+    long length = 0;
+    for (int i = 0; i < partitions.length; i++) {
+      length += partitions[i].size - 1;
+    }
+    return length;
+  }
+
+  /**
+   * Gets the number of partitions the sequences were split into.
+   *
+   * @return the number of partitions
+   */
+  public int getPartitionCount() {
+    return partitions.length;
+  }
+
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Counts the exact matches to a pattern, without locating them.
+   *
+   * @param pattern  the pattern
+   * @return the number of matches
+   * @throws IllegalAlphabetException if the pattern is not over the alphabet
+   *         of the index
+   */
+  public long count(SymbolList pattern)
+  throws IllegalAlphabetException {
+    List ranges = new ArrayList();
+    search(pattern, 0, ranges);
+    long count = 0;
+    for (Iterator i = ranges.iterator(); i.hasNext(); ) {
+      Range range = (Range) i.next();
+      count += range.hi - range.lo;
+    }
+    return count;
+  }
+
+  /**
+   * Finds the exact matches to a pattern.
+   *
+   * @param pattern  the pattern
+   * @return a Matcher over the matches
+   * @throws IllegalAlphabetException if the pattern is not over the alphabet
+   *         of the index
+   */
+  public Matcher matcher(SymbolList pattern)
+  throws IllegalAlphabetException {
+    return locate(pattern, 0);
+  }
+
+  /**
+   * Finds the matches to a pattern with at most the pattern's number of
+   * mismatches.
+   *
+   * @param pattern  the pattern, with its mismatch limit
+   * @return a Matcher over the matches
+   * @throws IllegalAlphabetException if the pattern is not over the alphabet
+   *         of the index
+   */
+  public Matcher matcher(MaxMismatchPattern pattern)
+  throws IllegalAlphabetException {
+    if (pattern.getMismatches() < 0) {
+      throw new IllegalArgumentException(
+        "Mismatches can't be negative: " + pattern.getMismatches()
+      );
+    }
+    return locate(pattern.getPattern(), pattern.getMismatches());
+  }
+
+  private Matcher locate(SymbolList pattern, int mismatches)
+  throws IllegalAlphabetException {
+    List ranges = new ArrayList();
+    search(pattern, mismatches, ranges);
+
+    List hits = new ArrayList();
+    for (Iterator i = ranges.iterator(); i.hasNext(); ) {
+      Range range = (Range) i.next();
+      Partition part = range.part;
+      for (int row = range.lo; row < range.hi; row++) {
+        int pos = part.position(row);
+        int seq = Arrays.binarySearch(part.starts, pos);
+        if (seq < 0) {
+          seq = -seq - 2;
+        }
+        int start = pos - part.starts[seq] + 1;
+        hits.add(new Hit(part.firstSeq + seq, start, start + range.path.length - 1, range));
+      }
+    }
+    Collections.sort(hits, Hit.BY_POSITION);
+    return new Matcher(this, (Hit []) hits.toArray(new Hit[hits.size()]));
+  }
+
+  private void search(SymbolList pattern, int mismatches, List ranges)
+  throws IllegalAlphabetException {
+    if (pattern.getAlphabet() != alpha) {
+      throw new IllegalAlphabetException(
+        "Pattern is over " + pattern.getAlphabet().getName() + ", not " + alpha.getName()
+      );
+    }
+    int m = pattern.length();
+    if (m == 0) {
+      throw new IllegalArgumentException("Can't search for an empty pattern");
+    }
+
+    // the symbols of the index that each pattern position matches
+    boolean [][] matches = new boolean[m][k];
+    for (int j = 0; j < m; j++) {
+      Symbol sym = pattern.symbolAt(j + 1);
+      for (int s = FIRST_SYMBOL; s < k; s++) {
+        Symbol indexed = index.symbolForIndex(s - FIRST_SYMBOL);
+        matches[j][s] = sym == indexed || sym.getMatches().contains(indexed);
+      }
+    }
+    for (int p = 0; p < partitions.length; p++) {
+      Partition part = partitions[p];
+      search(part, matches, m - 1, 0, part.size, 0, mismatches, new byte[m], ranges);
+    }
+  }
+
+  private void search(
+    Partition part,
+    boolean [][] matches,
+    int j,
+    int lo,
+    int hi,
+    int mismatches,
+    int left,
+    byte [] path,
+    List ranges
+  ) {
+    if (j < 0) {
+      ranges.add(new Range(part, lo, hi, mismatches, (byte []) path.clone()));
+      return;
+    }
+    for (int s = FIRST_SYMBOL; s < k; s++) {
+      boolean match = matches[j][s];
+      if (!match && left == 0) {
+        continue;
+      }
+      int nlo = part.c[s] + part.occ(s, lo);
+      int nhi = part.c[s] + part.occ(s, hi);
+      if (nlo < nhi) {
+        path[j] = (byte) s;
+        if (match) {
+          search(part, matches, j - 1, nlo, nhi, mismatches, left, path, ranges);
+        } else {
+          search(part, matches, j - 1, nlo, nhi, mismatches + 1, left - 1, path, ranges);
+        }
+      }
+    }
+  }
+
+  private static byte [] grow(byte [] text, int needed) {
+    long size = text.length;
+    while (size < needed) {
+      size *= 2;
+    }
+    byte [] bigger = new byte[(int) Math.min(size, Integer.MAX_VALUE - 8)];
+    System.arraycopy(text, 0, bigger, 0, text.length);
+    return bigger;
+  }
+
+  /**
+   * Reads the sequences and builds the partitions one at a time.
+   */
+  private static final class Builder {
+    final AlphabetIndex index;
+    final int k;
+    final List names = new ArrayList();
+    private final SequenceIterator seqs;
+    private final FiniteAlphabet alpha;
+    private final int sampleRate;
+    private final int partitionSize;
+    private byte [] text = new byte[1 << 16];
+    private Sequence pending;
+
+    Builder(SequenceIterator seqs, FiniteAlphabet alpha, int sampleRate, int partitionSize)
+    throws IllegalAlphabetException {
+      if (sampleRate < 1) {
+        throw new IllegalArgumentException(
+          "Sample rate must be at least 1, not " + sampleRate
+        );
+      }
+      if (partitionSize < 1) {
+        throw new IllegalArgumentException(
+          "Partition size must be at least 1, not " + partitionSize
+        );
+      }
+      if (alpha.size() > 255 - FIRST_SYMBOL + 1) {
+        throw new IllegalAlphabetException(
+          "Can't index alphabet " + alpha.getName() + " of " + alpha.size() +
+          " symbols, the limit is " + (255 - FIRST_SYMBOL + 1)
+        );
+      }
+      this.seqs = seqs;
+      this.alpha = alpha;
+      this.index = AlphabetManager.getAlphabetIndex(alpha);
+      this.k = alpha.size() + FIRST_SYMBOL;
+      this.sampleRate = sampleRate;
+      this.partitionSize = partitionSize;
+    }
+
+    // the next partition, or null once all the sequences are indexed
+    Partition next()
+    throws BioException, IllegalAlphabetException {
+      if (pending == null && !seqs.hasNext()) {
+        return null;
+      }
+      int firstSeq = names.size();
+      List starts = new ArrayList();
+      int n = 0;
+      while (pending != null || seqs.hasNext()) {
+        Sequence seq = pending != null ? pending : seqs.nextSequence();
+        pending = null;
+        if (seq.getAlphabet() != alpha && seq.length() > 0) {
+          throw new IllegalAlphabetException(
+            "Sequence " + seq.getName() + " is over " + seq.getAlphabet().getName() +
+            ", not " + alpha.getName()
+          );
+        }
+        // each sequence is followed by a break
+        if (n > 0 && (long) n + seq.length() + 1 > partitionSize) {
+          pending = seq;
+          break;
+        }
+        if ((long) seq.length() + 2 > Integer.MAX_VALUE - 8) {
+          throw new BioException(
+            "Unable to index sequence " + seq.getName() + " of more than " +
+            (Integer.MAX_VALUE - 10) + " symbols"
+          );
+        }
+        if (n + seq.length() + 1 > text.length) {
+          text = grow(text, n + seq.length() + 1);
+        }
+        names.add(seq.getName());
+        starts.add(new Integer(n));
+        for (Iterator i = seq.iterator(); i.hasNext(); ) {
+          Symbol sym = (Symbol) i.next();
+          text[n++] = (byte) (sym instanceof AtomicSymbol
+            ? index.indexForSymbol(sym) + FIRST_SYMBOL
+            : BREAK);
+        }
+        text[n++] = (byte) BREAK;
+      }
+      int [] bounds = new int[starts.size() + 1];
+      for (int i = 0; i < starts.size(); i++) {
+        bounds[i] = ((Integer) starts.get(i)).intValue();
+      }
+      bounds[starts.size()] = n;
+      return Partition.build(text, n, firstSeq, bounds, k, sampleRate, alpha.size() <= PACKED_SIZE);
+    }
+  }
+
+  /**
+   * The index of one partition of the sequences. Rows and text positions
+   * are local to the partition.
+   */
+  private static final class Partition {
+    final int firstSeq;
+    final int [] starts;
+    final int size;
+    final int k;
+    final int [] c;
+    final int sentinelRow;
+    // one byte per row, or null if the transform is packed
+    final ByteBuffer bwt;
+    // two bits per row, 32 rows to a word, with breaks stored as 0
+    final LongBuffer packed;
+    // the rows of a packed transform that hold a break or the sentinel
+    final LongBuffer special;
+    // the count of each code before every 64th row
+    final IntBuffer occ;
+    final LongBuffer sampled;
+    final IntBuffer sampledRank;
+    final IntBuffer samples;
+
+    Partition(
+      int firstSeq,
+      int [] starts,
+      int k,
+      int [] c,
+      int sentinelRow,
+      ByteBuffer bwt,
+      LongBuffer packed,
+      LongBuffer special,
+      IntBuffer occ,
+      LongBuffer sampled,
+      IntBuffer sampledRank,
+      IntBuffer samples
+    ) {
+      this.firstSeq = firstSeq;
+      this.starts = starts;
+      this.size = starts[starts.length - 1] + 1;
+      this.k = k;
+      this.c = c;
+      this.sentinelRow = sentinelRow;
+      this.bwt = bwt;
+      this.packed = packed;
+      this.special = special;
+      this.occ = occ;
+      this.sampled = sampled;
+      this.sampledRank = sampledRank;
+      this.samples = samples;
+    }
+
+    // builds the partition of the first n codes of text
+    static Partition build(
+      byte [] text,
+      int n,
+      int firstSeq,
+      int [] starts,
+      int k,
+      int sampleRate,
+      boolean pack
+    ) {
+      int size = n + 1;
+      int [] codes = new int[size];
+      for (int i = 0; i < n; i++) {
+        codes[i] = text[i] & 0xff;
+      }
+      int [] sa = SuffixArray.sortSuffixes(codes, k);
+      codes = null;
+
+      // the transform, with the sentinel in the row of the whole text
+      int blocks = (size >>> OCC_SHIFT) + 1;
+      byte [] bwt = pack ? null : new byte[size];
+      long [] packed = pack ? new long[2 * blocks] : null;
+      long [] special = pack ? new long[blocks] : null;
+      int [] counts = new int[k];
+      int [] occ = new int[blocks * k];
+      int sentinelRow = 0;
+      for (int i = 0; i < size; i++) {
+        if ((i & ((1 << OCC_SHIFT) - 1)) == 0) {
+          System.arraycopy(counts, 0, occ, (i >>> OCC_SHIFT) * k, k);
+        }
+        int s = sa[i] == 0 ? 0 : text[sa[i] - 1] & 0xff;
+        counts[s]++;
+        if (s == 0) {
+          sentinelRow = i;
+        }
+        if (!pack) {
+          bwt[i] = (byte) s;
+        } else if (s < FIRST_SYMBOL) {
+          special[i >>> 6] |= 1L << (i & 63);
+        } else {
+          packed[i >>> 5] |= (long) (s - FIRST_SYMBOL) << ((i & 31) << 1);
+        }
+      }
+      if ((size & ((1 << OCC_SHIFT) - 1)) == 0) {
+        System.arraycopy(counts, 0, occ, (size >>> OCC_SHIFT) * k, k);
+      }
+      int [] c = new int[k];
+      for (int s = 1; s < k; s++) {
+        c[s] = c[s - 1] + counts[s - 1];
+      }
+
+      // sample every sampleRate'th text position, which includes position 0
+      long [] sampled = new long[blocks];
+      int [] sampledRank = new int[blocks + 1];
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        if (sa[i] % sampleRate == 0) {
+          sampled[i >>> 6] |= 1L << (i & 63);
+          count++;
+        }
+      }
+      for (int w = 0; w < blocks; w++) {
+        sampledRank[w + 1] = sampledRank[w] + Long.bitCount(sampled[w]);
+      }
+      int [] samples = new int[count];
+      for (int i = 0, j = 0; i < size; i++) {
+        if (sa[i] % sampleRate == 0) {
+          samples[j++] = sa[i];
+        }
+      }
+      return new Partition(
+        firstSeq, starts, k, c, sentinelRow,
+        pack ? null : ByteBuffer.wrap(bwt),
+        pack ? LongBuffer.wrap(packed) : null,
+        pack ? LongBuffer.wrap(special) : null,
+        IntBuffer.wrap(occ),
+        LongBuffer.wrap(sampled),
+        IntBuffer.wrap(sampledRank),
+        IntBuffer.wrap(samples)
+      );
+    }
+
+    // maps a partition written by write()
+    static Partition map(FileChannel channel, long offset, int k, boolean pack)
+    throws IOException {
+      channel.position(offset);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Channels.newInputStream(channel)
+      ));
+      int firstSeq = in.readInt();
+      int [] starts = new int[in.readInt() + 1];
+      for (int i = 0; i < starts.length; i++) {
+        starts[i] = in.readInt();
+      }
+      int [] c = new int[k];
+      for (int s = 0; s < k; s++) {
+        c[s] = in.readInt();
+      }
+      int sentinelRow = in.readInt();
+      int sampleCount = in.readInt();
+
+      int size = starts[starts.length - 1] + 1;
+      long blocks = (size >>> OCC_SHIFT) + 1;
+      long pos = offset + 4 * (starts.length + k + 4);
+      ByteBuffer bwt = null;
+      LongBuffer packed = null;
+      LongBuffer special = null;
+      if (pack) {
+        packed = map(channel, pos, 16 * blocks).asLongBuffer();
+        pos += 16 * blocks;
+        special = map(channel, pos, 8 * blocks).asLongBuffer();
+        pos += 8 * blocks;
+      } else {
+        bwt = map(channel, pos, size);
+        pos += size;
+      }
+      IntBuffer occ = map(channel, pos, 4 * blocks * k).asIntBuffer();
+      pos += 4 * blocks * k;
+      LongBuffer sampled = map(channel, pos, 8 * blocks).asLongBuffer();
+      pos += 8 * blocks;
+      IntBuffer sampledRank = map(channel, pos, 4 * (blocks + 1)).asIntBuffer();
+      pos += 4 * (blocks + 1);
+      IntBuffer samples = map(channel, pos, 4L * sampleCount).asIntBuffer();
+      return new Partition(
+        firstSeq, starts, k, c, sentinelRow, bwt, packed, special, occ, sampled, sampledRank, samples
+      );
+    }
+
+    private static ByteBuffer map(FileChannel channel, long pos, long length)
+    throws IOException {
+      if (length > Integer.MAX_VALUE || pos + length > channel.size()) {
+        throw new IOException(
+          "Can't map " + length + " bytes at " + pos + " of a file of " + channel.size()
+        );
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+    }
+
+    void write(DataOutputStream out)
+    throws IOException {
+      out.writeInt(firstSeq);
+      out.writeInt(starts.length - 1);
+      for (int i = 0; i < starts.length; i++) {
+        out.writeInt(starts[i]);
+      }
+      for (int s = 0; s < k; s++) {
+        out.writeInt(c[s]);
+      }
+      out.writeInt(sentinelRow);
+      out.writeInt(samples.limit());
+      if (bwt == null) {
+        write(out, packed);
+        write(out, special);
+      } else {
+        for (int i = 0; i < bwt.limit(); i++) {
+          out.writeByte(bwt.get(i));
+        }
+      }
+      write(out, occ);
+      write(out, sampled);
+      write(out, sampledRank);
+      write(out, samples);
+    }
+
+    private static void write(DataOutputStream out, LongBuffer buf)
+    throws IOException {
+      for (int i = 0; i < buf.limit(); i++) {
+        out.writeLong(buf.get(i));
+      }
+    }
+
+    private static void write(DataOutputStream out, IntBuffer buf)
+    throws IOException {
+      for (int i = 0; i < buf.limit(); i++) {
+        out.writeInt(buf.get(i));
+      }
+    }
+
+    // the code in a row of the transform
+    int symbolAt(int row) {
+      if (bwt != null) {
+        return bwt.get(row) & 0xff;
+      }
+      if ((special.get(row >>> 6) & (1L << (row & 63))) != 0) {
+        return row == sentinelRow ? 0 : BREAK;
+      }
+      return (int) ((packed.get(row >>> 5) >>> ((row & 31) << 1)) & 3) + FIRST_SYMBOL;
+    }
+
+    // the number of times s occurs in the transform before row i
+    int occ(int s, int i) {
+      int block = i >>> OCC_SHIFT;
+      int count = occ.get(block * k + s);
+      int from = block << OCC_SHIFT;
+      if (i == from) {
+        return count;
+      }
+      if (bwt != null) {
+        for (int j = from; j < i; j++) {
+          if ((bwt.get(j) & 0xff) == s) {
+            count++;
+          }
+        }
+        return count;
+      }
+      int m = i - from;
+      int specials = Long.bitCount(special.get(block) & ((1L << m) - 1));
+      int sentinel = sentinelRow >= from && sentinelRow < i ? 1 : 0;
+      if (s < FIRST_SYMBOL) {
+        return count + (s == BREAK ? specials - sentinel : sentinel);
+      }
+      count += countPacked(packed.get(2 * block), s - FIRST_SYMBOL, Math.min(m, 32));
+      if (m > 32) {
+        count += countPacked(packed.get(2 * block + 1), s - FIRST_SYMBOL, m - 32);
+      }
+      // breaks and the sentinel are stored as the first symbol
+      return s == FIRST_SYMBOL ? count - specials : count;
+    }
+
+    // the number of the first m two-bit fields of a word that equal code
+    private static int countPacked(long word, int code, int m) {
+      long x = word ^ (code * 0x5555555555555555L);
+      long equal = ~(x | (x >>> 1)) & 0x5555555555555555L;
+      if (m < 32) {
+        equal &= (1L << (m << 1)) - 1;
+      }
+      return Long.bitCount(equal);
+    }
+
+    // the text position of the suffix in a row, walking back to a sample
+    int position(int row) {
+      int steps = 0;
+      while ((sampled.get(row >>> 6) & (1L << (row & 63))) == 0) {
+        int s = symbolAt(row);
+        row = c[s] + occ(s, row);
+        steps++;
+      }
+      int rank = sampledRank.get(row >>> 6) +
+        Long.bitCount(sampled.get(row >>> 6) & ((1L << (row & 63)) - 1));
+      return samples.get(rank) + steps;
+    }
+  }
+
+  /**
+   * A range of rows of a partition that all match the pattern along the
+   * same path.
+   */
+  private static final class Range {
+    final Partition part;
+    final int lo;
+    final int hi;
+    final int mismatches;
+    final byte [] path;
+
+    Range(Partition part, int lo, int hi, int mismatches, byte [] path) {
+      this.part = part;
+      this.lo = lo;
+      this.hi = hi;
+      this.mismatches = mismatches;
+      this.path = path;
+    }
+  }
+
+  private static final class Hit {
+    static final Comparator BY_POSITION = new Comparator() {
+      public int compare(Object a, Object b) {
+        Hit ha = (Hit) a;
+        Hit hb = (Hit) b;
+        if (ha.seq != hb.seq) {
+          return ha.seq < hb.seq ? -1 : 1;
+        }
+        return ha.start < hb.start ? -1 : (ha.start == hb.start ? 0 : 1);
+      }
+    };
+
+    final int seq;
+    final int start;
+    final int end;
+    final Range range;
+
+    Hit(int seq, int start, int end, Range range) {
+      this.seq = seq;
+      this.start = start;
+      this.end = end;
+      this.range = range;
+    }
+  }
+
+  /**
+   * The BioMatcher returned by an FMIndex. Unlike most BioMatchers it walks
+   * over matches in many sequences, so it also reports which sequence the
+   * current match is in.
+   */
+  public static final class Matcher implements BioMatcher {
+    private final FMIndex fm;
+    private final Hit [] hits;
+    private int current = -1;
+
+    Matcher(FMIndex fm, Hit [] hits) {
+      this.fm = fm;
+      this.hits = hits;
+    }
+
+    public boolean find() {
+      if (current < hits.length) {
+        current++;
+      }
+      return current < hits.length;
+    }
+
+    public int start() {
+      return hit().start;
+    }
+
+    public int end() {
+      return hit().end;
+    }
+
+    public SymbolList group() {
+      byte [] path = hit().range.path;
+      Symbol [] symbols = new Symbol[path.length];
+      for (int i = 0; i < path.length; i++) {
+        symbols[i] = fm.index.symbolForIndex(path[i] - FIRST_SYMBOL);
+      }
+      return new SimpleSymbolList(symbols, symbols.length, fm.alpha);
+    }
+
+    /**
+     * Gets the number of the sequence the current match is in.
+     *
+     * @return the sequence number, from 0, in the order they were indexed
+     */
+    public int getSequenceIndex() {
+      return hit().seq;
+    }
+
+    /**
+     * Gets the name of the sequence the current match is in.
+     *
+     * @return the sequence name
+     */
+    public String getSequenceName() {
+      return fm.names[hit().seq];
+    }
+
+    /**
+     * Gets the number of mismatches in the current match.
+     *
+     * @return the number of mismatches
+     */
+    public int mismatchCount() {
+      return hit().range.mismatches;
+    }
+
+    /**
+     * Gets the total number of matches this matcher will return.
+     *
+     * @return the number of matches
+     */
+    public int matchCount() {
+      return hits.length;
+    }
+
+    private Hit hit() {
+      if (current < 0 || current >= hits.length) {
+        throw new IllegalStateException("No current match");
+      }
+      return hits[current];
+    }
+  }
+}
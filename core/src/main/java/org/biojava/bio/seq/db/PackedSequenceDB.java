@@ -0,0 +1,384 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojava.bio.seq.db;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.biojava.bio.Annotation;
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.SequenceIterator;
+import org.biojava.bio.seq.impl.SimpleSequence;
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.MappedPackedSymbolList;
+import org.biojava.bio.symbol.Packing;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * <p>
+ * A read-only SequenceDB backed by a file of bit-packed sequences that is
+ * mapped into memory using the NIO constructs.
+ * </p>
+ *
+ * <p>
+ * Opening a database only reads the index, so whole genomes are available
+ * in milliseconds. Each sequence is backed by a MappedPackedSymbolList, so
+ * symbols are paged in by the operating system as they are used and the
+ * pages are shared between all processes using the same file. Files are
+ * created with <code>write()</code> from any SequenceIterator.
+ * </p>
+ *
+ * <p>
+ * The file has the following structure.
+ * <pre>
+ * file: header, data, index
+ *
+ * header:
+ *   int magic,
+ *   int version,
+ *   long indexPos,    // byte offset in file
+ *   int serializedPackingLength,
+ *   byte[] serializedPacking
+ *
+ * data:
+ *   byte[] packedSymbols // one run per sequence, starting on a byte boundary
+ *
+ * index:
+ *   int sequenceCount,
+ *   indexRecord[sequenceCount] records
+ *
+ * indexRecord:
+ *   utf name,
+ *   long dataPos,     // byte offset in file
+ *   int length        // in symbols
+ * </pre>
+ * </p>
+ *
+ * <h2>Example Usage</h2>
+ * <pre>
+ * SequenceIterator seqI = SeqIOTools.readFastaDNA(br);
+ * PackedSequenceDB.write(file, PackingFactory.getPacking(DNATools.getDNA(), true), seqI);
+ *
+ * SequenceDB db = new PackedSequenceDB(file);
+ * SymbolList chr1 = db.getSequence("chr1");
+ * </pre>
+ *
+ * @since 1.9.8
+ */
+public class PackedSequenceDB extends AbstractSequenceDB {
+  private static final int MAGIC = 0x424a504b;
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final String name;
+  private final FileChannel channel;
+  private final Packing packing;
+  private final Map records;
+
+  /**
+   * Open a packed sequence file written by <code>write()</code>.
+   *
+   * @param dbFile the file to open
+   * @throws IOException if the file could not be read or is not a packed
+   *   sequence file
+   */
+  public PackedSequenceDB(File dbFile)
+  throws IOException {
+    this.name = dbFile.getName();
+    this.channel = new FileInputStream(dbFile).getChannel();
+    boolean opened = false;
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Channels.newInputStream(channel)
+      ));
+      if (in.readInt() != MAGIC) {
+        throw new IOException(dbFile + " is not a packed sequence file");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported packed sequence file version " + version);
+      }
+      long indexPos = in.readLong();
+
+      byte[] packingBuffer = new byte[in.readInt()];
+      in.readFully(packingBuffer);
+      ObjectInputStream packingSerializer = new ObjectInputStream(
+        new ByteArrayInputStream(packingBuffer)
+      );
+      try {
+        this.packing = (Packing) packingSerializer.readObject();
+      } catch (ClassNotFoundException cnfe) {
+        throw new IOException("Can't restore packing: " + cnfe.getMessage());
+      }
+
+      channel.position(indexPos);
+      in = new DataInputStream(new BufferedInputStream(
+        Channels.newInputStream(channel)
+      ));
+      int count = in.readInt();
+      Map records = new LinkedHashMap();
+      for (int i = 0; i < count; i++) {
+        String id = in.readUTF();
+        long dataPos = in.readLong();
+        int length = in.readInt();
+        records.put(id, new Record(dataPos, length));
+      }
+      this.records = Collections.unmodifiableMap(records);
+      opened = true;
+    } finally {
+      if (!opened) {
+        channel.close();
+      }
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Set ids() {
+    return records.keySet();
+  }
+
+  /**
+   * Get the packing that the sequences in this database are stored with.
+   *
+   * @return the Packing
+   */
+  public Packing getPacking() {
+    return packing;
+  }
+
+  public Sequence getSequence(String id)
+  throws IllegalIDException, BioException {
+    return new SimpleSequence(getSymbolList(id), id, id, Annotation.EMPTY_ANNOTATION);
+  }
+
+  /**
+   * Get the symbols of a sequence without wrapping them in a Sequence.
+   *
+   * @param id the ID of the sequence
+   * @return a MappedPackedSymbolList over the packed symbols
+   * @throws IllegalIDException if there is no sequence with that ID
+   * @throws BioException if the sequence could not be mapped
+   */
+  public SymbolList getSymbolList(String id)
+  throws IllegalIDException, BioException {
+    Record rec = (Record) records.get(id);
+    if (rec == null) {
+      throw new IllegalIDException("No sequence with ID " + id);
+    }
+
+    try {
+      ByteBuffer buffer = channel.map(
+        FileChannel.MapMode.READ_ONLY,
+        rec.dataPos,
+        MappedPackedSymbolList.packedSize(packing, rec.length)
+      );
+      return new MappedPackedSymbolList(packing, buffer, rec.length);
+    } catch (IOException ioe) {
+      throw new BioException(ioe, "Could not map sequence " + id);
+    }
+  }
+
+  /**
+   * Close the underlying file. Symbol lists that have already been mapped
+   * remain usable.
+   *
+   * @throws IOException if the file could not be closed
+   */
+  public void close()
+  throws IOException {
+    channel.close();
+  }
+
+  /**
+   * <p>
+   * Write the sequences from an iterator to a packed sequence file.
+   * </p>
+   *
+   * <p>
+   * Symbols are packed using packing. If the packing does not handle
+   * ambiguity, ambiguity symbols are stored however the packing chooses to
+   * represent them. Sequences are indexed by name, so names must be
+   * unique.
+   * </p>
+   *
+   * @param dbFile the file to write to, which will be overwritten
+   * @param packing the Packing to store the symbols with
+   * @param seqI the sequences to write
+   * @throws IOException if the file could not be written
+   * @throws IllegalAlphabetException if a sequence is not over the alphabet
+   *   of the packing
+   * @throws BioException if the sequences could not be read
+   */
+  public static void write(File dbFile, Packing packing, SequenceIterator seqI)
+  throws IOException, IllegalAlphabetException, BioException {
+    if (packing.wordSize() > 8 || 8 % packing.wordSize() != 0) {
+      throw new IllegalArgumentException(
+        "Packing word size must divide 8: " + packing.wordSize()
+      );
+    }
+
+    ByteArrayOutputStream packingStream = new ByteArrayOutputStream();
+    ObjectOutputStream packingSerializer = new ObjectOutputStream(packingStream);
+    packingSerializer.writeObject(packing);
+    packingSerializer.flush();
+    byte[] serializedPacking = packingStream.toByteArray();
+
+    RandomAccessFile raf = new RandomAccessFile(dbFile, "rw");
+    try {
+      raf.setLength(0);
+      FileChannel out = raf.getChannel();
+
+      ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 4 + serializedPacking.length);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putLong(-1L);
+      header.putInt(serializedPacking.length);
+      header.put(serializedPacking);
+      header.flip();
+      writeFully(out, header);
+
+      List ids = new ArrayList();
+      List recs = new ArrayList();
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      while (seqI.hasNext()) {
+        Sequence seq = seqI.nextSequence();
+        if (seq.getAlphabet() != packing.getAlphabet()) {
+          throw new IllegalAlphabetException(
+            "Can't pack with alphabet " + packing.getAlphabet().getName() +
+            " and sequence " + seq.getName() + " over " + seq.getAlphabet().getName()
+          );
+        }
+
+        ids.add(seq.getName());
+        recs.add(new Record(out.position(), seq.length()));
+        packSymbols(seq, packing, out, buffer);
+      }
+
+      long indexPos = out.position();
+      ByteArrayOutputStream indexStream = new ByteArrayOutputStream();
+      DataOutputStream index = new DataOutputStream(indexStream);
+      index.writeInt(ids.size());
+      for (int i = 0; i < ids.size(); i++) {
+        Record rec = (Record) recs.get(i);
+        index.writeUTF((String) ids.get(i));
+        index.writeLong(rec.dataPos);
+        index.writeInt(rec.length);
+      }
+      index.flush();
+      writeFully(out, ByteBuffer.wrap(indexStream.toByteArray()));
+
+      // now we know where the index starts, patch the header
+      ByteBuffer indexPosBuffer = ByteBuffer.allocate(8);
+      indexPosBuffer.putLong(indexPos);
+      indexPosBuffer.flip();
+      out.position(8);
+      writeFully(out, indexPosBuffer);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static void packSymbols(
+    SymbolList symList,
+    Packing packing,
+    FileChannel out,
+    ByteBuffer buffer
+  ) throws IOException, IllegalAlphabetException {
+    int wordSize = packing.wordSize();
+    int symsPerByte = 8 / wordSize;
+    int length = symList.length();
+
+    buffer.clear();
+    try {
+      int b = 0;
+      int j = 0;
+      for (int i = 1; i <= length; i++) {
+        b |= (packing.pack(symList.symbolAt(i)) & 0xff) << (j * wordSize);
+        if (++j == symsPerByte) {
+          if (!buffer.hasRemaining()) {
+            buffer.flip();
+            writeFully(out, buffer);
+            buffer.clear();
+          }
+          buffer.put((byte) b);
+          b = 0;
+          j = 0;
+        }
+      }
+
+      // pack the final partial byte
+      if (j != 0) {
+        if (!buffer.hasRemaining()) {
+          buffer.flip();
+          writeFully(out, buffer);
+          buffer.clear();
+        }
+        buffer.put((byte) b);
+      }
+    } catch (IllegalSymbolException ise) {
+      throw new IllegalAlphabetException(ise, "Could not pack symbol");
+    }
+
+    buffer.flip();
+    writeFully(out, buffer);
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buffer)
+  throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  private static final class Record {
+    final long dataPos;
+    final int length;
+
+    Record(long dataPos, int length) {
+      this.dataPos = dataPos;
+      this.length = length;
+    }
+  }
+}
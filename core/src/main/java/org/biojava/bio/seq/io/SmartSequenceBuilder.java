@@ -29,10 +29,12 @@ import org.biojava.bio.BioException;
 import org.biojava.bio.seq.Sequence;
 import org.biojava.bio.seq.impl.SimpleSequence;
 import org.biojava.bio.symbol.Alphabet;
+import org.biojava.bio.symbol.ByteSymbolListFactory;
 import org.biojava.bio.symbol.IllegalAlphabetException;
 import org.biojava.bio.symbol.PackedSymbolListFactory;
 import org.biojava.bio.symbol.Symbol;
 import org.biojava.bio.symbol.SymbolList;
+import org.biojava.bio.symbol.SymbolListFactory;
 import org.biojava.utils.StaticMemberPlaceHolder;
 
 /**
@@ -42,6 +44,10 @@ import org.biojava.utils.StaticMemberPlaceHolder;
  * the symbols (using PackedSymbolList), and may or may not store the
  * symbols in multiple fixed-length chunks (using ChunkedSymbolList).
  *
+ * <p>The BYTE_ENCODED factory stores large sequences at one byte per symbol
+ * (using ByteSymbolList) instead, which keeps ambiguity symbols cheap and
+ * avoids the bit-unpacking cost of PackedSymbolList.</p>
+ *
  * <p>More functionality is offered by {@link org.biojavax.bio.seq.io.SimpleRichSequenceBuilder SimpleRichSequenceBuilder},
  * Use of this class is prefered.</p>
  *
@@ -52,6 +58,10 @@ import org.biojava.utils.StaticMemberPlaceHolder;
 public class SmartSequenceBuilder extends SequenceBuilderBase {
   public final static SequenceBuilderFactory FACTORY = new SSBFactory(-1);
   public final static SequenceBuilderFactory BIT_PACKED = new SSBFactory(0);
+  /**
+   * @since 1.9.8
+   */
+  public final static SequenceBuilderFactory BYTE_ENCODED = new ByteSSBFactory(-1);
 
   private static class SSBFactory implements SequenceBuilderFactory, Serializable {
     private final int threshold;
@@ -61,7 +71,7 @@ public class SmartSequenceBuilder extends SequenceBuilderBase {
     }
 
     public SequenceBuilder makeSequenceBuilder() {
-      return new SmartSequenceBuilder(threshold);
+      return new SmartSequenceBuilder(new PackedSymbolListFactory(), threshold);
     }
 
     private Object writeReplace() throws ObjectStreamException {
@@ -73,11 +83,30 @@ public class SmartSequenceBuilder extends SequenceBuilderBase {
     }
   }
 
+  private static class ByteSSBFactory implements SequenceBuilderFactory, Serializable {
+    private final int threshold;
+
+    private ByteSSBFactory(int threshold) {
+      this.threshold = threshold;
+    }
+
+    public SequenceBuilder makeSequenceBuilder() {
+      return new SmartSequenceBuilder(new ByteSymbolListFactory(), threshold);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+      try {
+        return new StaticMemberPlaceHolder(SmartSequenceBuilder.class.getField("BYTE_ENCODED"));
+      } catch (NoSuchFieldException nsfe) {
+        throw new NotSerializableException(nsfe.getMessage());
+      }
+    }
+  }
+
   private ChunkedSymbolListFactory slFactory;
 
-  private SmartSequenceBuilder(int threshold) {
-    slFactory = new ChunkedSymbolListFactory(
-            new PackedSymbolListFactory(), threshold);
+  private SmartSequenceBuilder(SymbolListFactory chunkFactory, int threshold) {
+    slFactory = new ChunkedSymbolListFactory(chunkFactory, threshold);
   }
 
   //
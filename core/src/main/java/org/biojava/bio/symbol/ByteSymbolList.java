@@ -0,0 +1,332 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.symbol;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * A SymbolList that stores one byte per symbol.
+ * </p>
+ *
+ * <p>
+ * SimpleSymbolList keeps a reference to every Symbol, which costs 4 or 8
+ * bytes per position depending on the VM. This implementation stores a
+ * byte code for each position instead. Codes below
+ * <code>getAlphabet().size()</code> are the indices of the atomic symbols
+ * as given by the AlphabetIndex of the alphabet. Any other symbol that is
+ * encountered (ambiguity codes such as n, or the gap symbol) is assigned the
+ * next free code, so the list can hold at most 256 distinct symbols. This is
+ * ample for DNA, RNA and protein.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable. <code>subList()</code> returns a view that
+ * shares the backing byte array rather than copying it.
+ * </p>
+ *
+ * <h2>Example Usage</h2>
+ * <pre>
+ * SymbolList symL = ...;
+ * SymbolList bytes = new ByteSymbolList(symL);
+ * </pre>
+ *
+ * @since 1.9.8
+ */
+public class ByteSymbolList
+  extends
+    AbstractSymbolList
+  implements
+    Serializable
+{
+  /**
+   * The maximum number of distinct symbols a ByteSymbolList can hold.
+   */
+  public static final int MAX_CODES = 256;
+
+  private final FiniteAlphabet alphabet;
+  private final byte[] syms;
+  private final int offset;
+  private final int length;
+  private final Symbol[] codes;
+
+  /**
+   * <p>
+   * Create a new ByteSymbolList directly from an array of alphabet indices.
+   * </p>
+   *
+   * <p>
+   * <em>Warning:</em> This is a risky developer method. Every byte in
+   * <code>syms</code> must be a valid index in the AlphabetIndex of
+   * <code>alpha</code>, so only atomic symbols can be represented this way.
+   * The array is not copied.
+   * </p>
+   *
+   * @param alpha the alphabet the indices refer to
+   * @param syms a byte array of alphabet indices
+   * @param length the number of symbols to use from syms
+   * @throws IllegalAlphabetException if alpha has more than MAX_CODES symbols
+   */
+  public ByteSymbolList(FiniteAlphabet alpha, byte[] syms, int length)
+  throws IllegalAlphabetException {
+    if (syms.length < length) {
+      throw new IllegalArgumentException(
+        "Byte array size is too small to get " + length +
+        " symbols from."
+      );
+    }
+
+    this.alphabet = alpha;
+    this.codes = atomicCodes(alpha);
+    this.syms = syms;
+    this.offset = 0;
+    this.length = length;
+  }
+
+  /**
+   * <p>
+   * Create a new ByteSymbolList as a copy of another symbol list.
+   * </p>
+   *
+   * @param symList the SymbolList to copy
+   * @throws IllegalAlphabetException if the alphabet of symList is not
+   *   finite, is too large, or symList contains more than MAX_CODES distinct
+   *   symbols
+   */
+  public ByteSymbolList(SymbolList symList)
+  throws IllegalAlphabetException {
+    if (!(symList.getAlphabet() instanceof FiniteAlphabet)) {
+      throw new IllegalAlphabetException(
+        "Can't byte-encode symbols from the non-finite alphabet " +
+        symList.getAlphabet().getName()
+      );
+    }
+
+    this.alphabet = (FiniteAlphabet) symList.getAlphabet();
+    this.length = symList.length();
+    this.offset = 0;
+    this.syms = new byte[length];
+
+    Encoder enc = new Encoder(alphabet);
+    try {
+      for (int i = 0; i < length; i++) {
+        syms[i] = enc.encode(symList.symbolAt(i + 1));
+      }
+    } catch (IllegalSymbolException ise) {
+      throw new IllegalAlphabetException(ise, "Symbol got lost somewhere");
+    }
+    this.codes = enc.getCodes();
+  }
+
+  /**
+   * <p>
+   * Create a new ByteSymbolList from an array of Symbols.
+   * </p>
+   *
+   * <p>
+   * This will create a new and independent SymbolList formed from the
+   * the symbol array.
+   * </p>
+   *
+   * @param symbols an array of Symbols
+   * @param length the number of Symbols to process from symbols
+   * @param alpha the alphabet from which the Symbols are drawn
+   * @throws IllegalAlphabetException if the alphabet is too large, or the
+   *   array contains a symbol not in alpha or more than MAX_CODES distinct
+   *   symbols
+   */
+  public ByteSymbolList(Symbol[] symbols, int length, FiniteAlphabet alpha)
+  throws IllegalAlphabetException {
+    if (symbols.length < length) {
+      throw new IllegalArgumentException(
+        "Symbol array size is too small to get " + length +
+        " symbols from."
+      );
+    }
+
+    this.alphabet = alpha;
+    this.length = length;
+    this.offset = 0;
+    this.syms = new byte[length];
+
+    Encoder enc = new Encoder(alpha);
+    try {
+      for (int i = 0; i < length; i++) {
+        syms[i] = enc.encode(symbols[i]);
+      }
+    } catch (IllegalSymbolException ise) {
+      throw new IllegalAlphabetException(
+        ise, "Symbol array contains symbols not in " + alpha.getName()
+      );
+    }
+    this.codes = enc.getCodes();
+  }
+
+  private ByteSymbolList(ByteSymbolList orig, int start, int end) {
+    this.alphabet = orig.alphabet;
+    this.codes = orig.codes;
+    this.syms = orig.syms;
+    this.offset = orig.offset + start - 1;
+    this.length = end - start + 1;
+  }
+
+  public Alphabet getAlphabet() {
+    return alphabet;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public Symbol symbolAt(int indx) {
+    if (indx < 1 || indx > length) {
+      throw new IndexOutOfBoundsException(
+        "Index must be within [1.." + length + "] : " + indx
+      );
+    }
+
+    return codes[syms[offset + indx - 1] & 0xff];
+  }
+
+  public SymbolList subList(int start, int end) {
+    if (start < 1 || end > length) {
+      throw new IndexOutOfBoundsException(
+        "Sublist index out of bounds " + length + ":" + start + "," + end
+      );
+    }
+    if (end < start) {
+      throw new IllegalArgumentException(
+        "end must not be lower than start: start=" + start + ", end=" + end
+      );
+    }
+
+    return new ByteSymbolList(this, start, end);
+  }
+
+  /**
+   * <p>
+   * Return the byte code stored at a position.
+   * </p>
+   *
+   * <p>
+   * Codes below <code>getAlphabet().size()</code> are the AlphabetIndex
+   * indices of atomic symbols, so these can be used directly to address
+   * per-symbol arrays. Larger codes denote non-atomic symbols local to this
+   * list and should be resolved with <code>symbolForCode()</code>.
+   * </p>
+   *
+   * @param indx the position, counting from 1
+   * @return the code at that position, between 0 and MAX_CODES - 1
+   */
+  public int codeAt(int indx) {
+    if (indx < 1 || indx > length) {
+      throw new IndexOutOfBoundsException(
+        "Index must be within [1.." + length + "] : " + indx
+      );
+    }
+
+    return syms[offset + indx - 1] & 0xff;
+  }
+
+  /**
+   * Return the symbol for a code as returned by <code>codeAt()</code>.
+   *
+   * @param code the code
+   * @return the Symbol it stands for in this list
+   */
+  public Symbol symbolForCode(int code) {
+    return codes[code];
+  }
+
+  private static Symbol[] atomicCodes(FiniteAlphabet alpha)
+  throws IllegalAlphabetException {
+    int size = alpha.size();
+    if (size > MAX_CODES) {
+      throw new IllegalAlphabetException(
+        "Alphabet " + alpha.getName() + " has " + size +
+        " symbols, more than can be byte-encoded"
+      );
+    }
+
+    AlphabetIndex index = AlphabetManager.getAlphabetIndex(alpha);
+    Symbol[] codes = new Symbol[size];
+    for (int i = 0; i < size; i++) {
+      codes[i] = index.symbolForIndex(i);
+    }
+    return codes;
+  }
+
+  /**
+   * Assigns byte codes to symbols. Atomic symbols get their AlphabetIndex
+   * index; other symbols are validated once and appended.
+   */
+  private static final class Encoder {
+    private final FiniteAlphabet alpha;
+    private Symbol[] codes;
+    private int count;
+    private int last;
+
+    Encoder(FiniteAlphabet alpha) throws IllegalAlphabetException {
+      this.alpha = alpha;
+      this.codes = atomicCodes(alpha);
+      this.count = codes.length;
+    }
+
+    byte encode(Symbol sym)
+    throws IllegalSymbolException, IllegalAlphabetException {
+      // runs of the same symbol are common, so try the last hit first
+      if (last < count && codes[last] == sym) {
+        return (byte) last;
+      }
+
+      for (int i = 0; i < count; i++) {
+        if (codes[i] == sym) {
+          last = i;
+          return (byte) i;
+        }
+      }
+
+      alpha.validate(sym);
+      if (count == MAX_CODES) {
+        throw new IllegalAlphabetException(
+          "More than " + MAX_CODES + " distinct symbols to byte-encode"
+        );
+      }
+      if (count == codes.length) {
+        Symbol[] nc = new Symbol[Math.min(MAX_CODES, count + 16)];
+        System.arraycopy(codes, 0, nc, 0, count);
+        codes = nc;
+      }
+      codes[count] = sym;
+      last = count;
+      return (byte) count++;
+    }
+
+    Symbol[] getCodes() {
+      if (codes.length == count) {
+        return codes;
+      }
+      Symbol[] trimmed = new Symbol[count];
+      System.arraycopy(codes, 0, trimmed, 0, count);
+      return trimmed;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+
+package org.biojava.bio.symbol;
+
+
+/**
+ * This class makes ByteSymbolLists.
+ * Use it with ChunkedSymbolListFactory to build large sequences at
+ * one byte per symbol.
+ *
+ * @since 1.9.8
+ */
+public class ByteSymbolListFactory
+
+    implements SymbolListFactory
+{
+ /**
+   * Makes a byte-encoded SymbolList out of a list of Symbols.
+   *
+   * @param symbolArray the symbols to be make in a byte-encoded SymbolList
+   * @param size the length of the symbolArray array.
+   * @param alfa the Alphabet over which the SymbolList should be
+   * @return a ByteSymbolList with the Symbols in symbolArray and the
+   * Alphabet in alfa
+   * @exception IllegalAlphabetException if alfa is not finite, or alfa and
+   * the Symbols in symbolArray disagree.
+   */
+    public SymbolList makeSymbolList(Symbol [] symbolArray, int size, Alphabet alfa)
+        throws IllegalAlphabetException
+    {
+        if (!(alfa instanceof FiniteAlphabet)) {
+            throw new IllegalAlphabetException(
+                "Can't byte-encode symbols from the non-finite alphabet " + alfa.getName());
+        }
+
+        return new ByteSymbolList(symbolArray, size, (FiniteAlphabet) alfa);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.symbol;
+
+import java.nio.ByteBuffer;
+
+import org.biojava.utils.AssertionFailure;
+
+/**
+ * <p>
+ * A read-only SymbolList that reads bit-packed symbols from a ByteBuffer.
+ * </p>
+ *
+ * <p>
+ * This is intended to be used over a <code>MappedByteBuffer</code> obtained
+ * from <code>FileChannel.map()</code>, so that a sequence stored on disk
+ * can be used without reading it into the heap. The operating system pages
+ * the data in on demand and shares it between all processes that map the
+ * same file. A 2-bit packing such as DNANoAmbPack stores four bases per
+ * byte, and a 4-bit packing such as DNAAmbPack stores two.
+ * </p>
+ *
+ * <p>
+ * Symbols are stored in the same bit order as PackedSymbolList: the first
+ * symbol occupies bits 0 through packing.wordSize()-1 of the first byte.
+ * The word size of the packing must divide 8.
+ * </p>
+ *
+ * <p>
+ * Only absolute reads are made on the buffer, so instances are safe for
+ * concurrent access. <code>subList()</code> returns a view over the same
+ * buffer without copying any data.
+ * </p>
+ *
+ * @see org.biojava.bio.seq.db.PackedSequenceDB
+ * @since 1.9.8
+ */
+public class MappedPackedSymbolList
+  extends
+    AbstractSymbolList
+{
+  private final Packing packing;
+  private final ByteBuffer buffer;
+  private final long offset;
+  private final int length;
+  private final int wordSize;
+  private final int symsPerByte;
+  private final int mask;
+  private final Symbol[] unpacked;
+
+  /**
+   * <p>
+   * Create a new MappedPackedSymbolList over a buffer.
+   * </p>
+   *
+   * <p>
+   * <em>Warning:</em> The buffer must have been written with the same
+   * packing, and must contain at least length symbols from index 0.
+   * </p>
+   *
+   * @param packing the Packing used to write the buffer
+   * @param buffer the buffer holding the packed symbols
+   * @param length the number of symbols in the buffer
+   * @throws IllegalArgumentException if the word size of the packing does
+   *   not divide 8, or the buffer is too small
+   */
+  public MappedPackedSymbolList(Packing packing, ByteBuffer buffer, int length)
+  throws IllegalArgumentException {
+    this.wordSize = packing.wordSize();
+    if (wordSize < 1 || wordSize > 8 || 8 % wordSize != 0) {
+      throw new IllegalArgumentException(
+        "Packing word size must divide 8: " + wordSize
+      );
+    }
+
+    this.packing = packing;
+    this.buffer = buffer;
+    this.offset = 0;
+    this.length = length;
+    this.symsPerByte = 8 / wordSize;
+    this.mask = (1 << wordSize) - 1;
+
+    if (packedSize(packing, length) > buffer.capacity()) {
+      throw new IllegalArgumentException(
+        "Buffer of " + buffer.capacity() + " bytes is too small to hold " +
+        length + " symbols"
+      );
+    }
+
+    // unpack every bit pattern once, so that symbolAt is a table lookup
+    this.unpacked = new Symbol[1 << wordSize];
+    for (int i = 0; i < unpacked.length; i++) {
+      try {
+        unpacked[i] = packing.unpack((byte) i);
+      } catch (IllegalSymbolException ise) {
+        // not a valid pattern for this packing - leave it empty
+      }
+    }
+  }
+
+  private MappedPackedSymbolList(MappedPackedSymbolList orig, int start, int end) {
+    this.packing = orig.packing;
+    this.buffer = orig.buffer;
+    this.offset = orig.offset + start - 1;
+    this.length = end - start + 1;
+    this.wordSize = orig.wordSize;
+    this.symsPerByte = orig.symsPerByte;
+    this.mask = orig.mask;
+    this.unpacked = orig.unpacked;
+  }
+
+  public Alphabet getAlphabet() {
+    return packing.getAlphabet();
+  }
+
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Get the packing used to decode symbols.
+   *
+   * @return the Packing
+   */
+  public Packing getPacking() {
+    return packing;
+  }
+
+  public Symbol symbolAt(int indx) {
+    if (indx < 1 || indx > length) {
+      throw new IndexOutOfBoundsException(
+        "Index must be within [1.." + length + "] : " + indx
+      );
+    }
+
+    long pos = offset + indx - 1;
+    int b = buffer.get((int) (pos / symsPerByte));
+    int p = (b >> ((int) (pos % symsPerByte) * wordSize)) & mask;
+
+    Symbol sym = unpacked[p];
+    if (sym == null) {
+      throw new AssertionFailure(
+        "Could not unpack " + p + " at " + indx
+      );
+    }
+    return sym;
+  }
+
+  public SymbolList subList(int start, int end) {
+    if (start < 1 || end > length) {
+      throw new IndexOutOfBoundsException(
+        "Sublist index out of bounds " + length + ":" + start + "," + end
+      );
+    }
+    if (end < start) {
+      throw new IllegalArgumentException(
+        "end must not be lower than start: start=" + start + ", end=" + end
+      );
+    }
+
+    return new MappedPackedSymbolList(this, start, end);
+  }
+
+  /**
+   * Calculate the number of bytes needed to pack a number of symbols.
+   *
+   * @param packing the Packing to use
+   * @param length the number of symbols
+   * @return the number of bytes needed to hold length symbols
+   */
+  public static long packedSize(Packing packing, int length) {
+    int symsPerByte = 8 / packing.wordSize();
+    return ((long) length + symsPerByte - 1) / symsPerByte;
+  }
+}
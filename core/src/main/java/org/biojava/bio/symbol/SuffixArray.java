@@ -0,0 +1,904 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.symbol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>
+ * A suffix array with a longest common prefix (LCP) array over one or more
+ * SymbolLists.
+ * </p>
+ *
+ * <p>
+ * This answers many of the questions that UkkonenSuffixTree is used for, but
+ * holds the index in three flat arrays rather than a tree of node objects:
+ * one byte per symbol for the text and four bytes per symbol each for the
+ * suffix and LCP arrays. The suffix array is built in linear time with the
+ * SA-IS algorithm and the LCP array with Kasai's algorithm.
+ * </p>
+ *
+ * <p>
+ * Each symbol is stored as its index in the alphabet. Every list is
+ * followed by a break, and ambiguity symbols and gaps are stored as breaks
+ * too, so matches and repeats never run across the end of a list or an
+ * ambiguous position. Positions are reported as the number of the list, in
+ * the order the lists were given, and a 1-based offset within it.
+ * </p>
+ *
+ * <p>
+ * An index can be written to a file with <code>write()</code> and mapped
+ * back into memory with <code>open()</code>, so that a large index is paged
+ * in by the operating system on demand instead of being read into the heap.
+ * Instances only make absolute reads, so they are safe for concurrent
+ * queries.
+ * </p>
+ *
+ * @see UkkonenSuffixTree
+ * @since 1.9.8
+ */
+public class SuffixArray {
+  private static final int MAGIC = 0x424a5341;
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  // code 0 is the sentinel used while sorting, 1 a break, symbols start at 2
+  private static final int BREAK = 1;
+  private static final int FIRST_SYMBOL = 2;
+
+  // left contexts during the repeat search
+  private static final int NO_LEFT = -1;
+  private static final int DIVERSE = -2;
+
+  private final FiniteAlphabet alpha;
+  private final AlphabetIndex index;
+  private final int [] starts;
+  private final ByteBuffer text;
+  private final IntBuffer sa;
+  private final IntBuffer lcp;
+  private final int length;
+
+  /**
+   * Builds a suffix array over some symbol lists.
+   *
+   * @param alpha  the alphabet of the lists, with at most 254 symbols
+   * @param lists  the lists to index
+   * @throws IllegalAlphabetException if the alphabet is too large
+   * @throws IllegalSymbolException if a list contains a symbol that is not
+   *         in the alphabet
+   */
+  public SuffixArray(FiniteAlphabet alpha, SymbolList [] lists)
+  throws IllegalAlphabetException, IllegalSymbolException {
+    if (alpha.size() > 255 - FIRST_SYMBOL + 1) {
+      throw new IllegalAlphabetException(
+        "Can't index alphabet " + alpha.getName() + " of " + alpha.size() +
+        " symbols, the limit is " + (255 - FIRST_SYMBOL + 1)
+      );
+    }
+
+    long total = 0;
+    for (int i = 0; i < lists.length; i++) {
+      total += lists[i].length() + 1;
+    }
+    if (total >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+        "Can't index " + total + " symbols, the limit is " + (Integer.MAX_VALUE - 1)
+      );
+    }
+
+    this.alpha = alpha;
+    this.index = AlphabetManager.getAlphabetIndex(alpha);
+    this.length = (int) total;
+    this.starts = new int[lists.length + 1];
+
+    // the text with a sentinel at the end, which SA-IS needs
+    int [] codes = new int[length + 1];
+    byte [] bytes = new byte[length];
+    int pos = 0;
+    for (int i = 0; i < lists.length; i++) {
+      starts[i] = pos;
+      for (Iterator s = lists[i].iterator(); s.hasNext(); ) {
+        codes[pos] = encode((Symbol) s.next());
+        bytes[pos] = (byte) codes[pos];
+        pos++;
+      }
+      codes[pos] = BREAK;
+      bytes[pos] = (byte) BREAK;
+      pos++;
+    }
+    starts[lists.length] = pos;
+
+    int [] suffixes = sortSuffixes(codes, alpha.size() + FIRST_SYMBOL);
+    codes = null;
+    // the sentinel suffix always sorts first
+    int [] sorted = new int[length];
+    System.arraycopy(suffixes, 1, sorted, 0, length);
+    suffixes = null;
+
+    this.text = ByteBuffer.wrap(bytes);
+    this.sa = IntBuffer.wrap(sorted);
+    this.lcp = IntBuffer.wrap(kasai(bytes, sorted));
+  }
+
+  private SuffixArray(
+    FiniteAlphabet alpha,
+    int [] starts,
+    ByteBuffer text,
+    IntBuffer sa,
+    IntBuffer lcp
+  ) {
+    this.alpha = alpha;
+    this.index = AlphabetManager.getAlphabetIndex(alpha);
+    this.starts = starts;
+    this.text = text;
+    this.sa = sa;
+    this.lcp = lcp;
+    this.length = starts[starts.length - 1];
+  }
+
+  /**
+   * Maps a suffix array written by <code>write()</code> back into memory.
+   * The file is not read into the heap, so an index too large for the heap
+   * can be searched, but each of its three arrays must fit in a single
+   * mapping of at most 2 gigabytes.
+   *
+   * @param file  the file to map
+   * @param alpha  the alphabet the index was built with
+   * @return the mapped SuffixArray
+   * @throws IOException if the file could not be read or is not a suffix
+   *         array file
+   * @throws IllegalAlphabetException if the file was written for another
+   *         alphabet
+   */
+  public static SuffixArray open(File file, FiniteAlphabet alpha)
+  throws IOException, IllegalAlphabetException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+      new FileInputStream(file)
+    ));
+    int [] starts;
+    long headerSize;
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(file + " is not a suffix array file");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported suffix array file version " + version);
+      }
+      String alphaName = in.readUTF();
+      int alphaSize = in.readInt();
+      if (!alphaName.equals(alpha.getName()) || alphaSize != alpha.size()) {
+        throw new IllegalAlphabetException(
+          file + " was written for alphabet " + alphaName + ", not " + alpha.getName()
+        );
+      }
+      starts = new int[in.readInt() + 1];
+      for (int i = 0; i < starts.length; i++) {
+        starts[i] = in.readInt();
+      }
+      headerSize = 4 + 4 + 2 + utfLength(alphaName) + 4 + 4 + 4 * starts.length;
+    } finally {
+      in.close();
+    }
+
+    int length = starts[starts.length - 1];
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long expected = headerSize + 9L * length;
+      if (channel.size() != expected) {
+        throw new IOException(
+          file + " should be " + expected + " bytes long, not " + channel.size()
+        );
+      }
+      // mappings stay valid after the channel is closed
+      ByteBuffer text = channel.map(
+        FileChannel.MapMode.READ_ONLY, headerSize, length
+      );
+      IntBuffer sa = channel.map(
+        FileChannel.MapMode.READ_ONLY, headerSize + length, 4L * length
+      ).asIntBuffer();
+      IntBuffer lcp = channel.map(
+        FileChannel.MapMode.READ_ONLY, headerSize + 5L * length, 4L * length
+      ).asIntBuffer();
+      return new SuffixArray(alpha, starts, text, sa, lcp);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Writes this suffix array to a file that can be mapped back with
+   * <code>open()</code>.
+   *
+   * @param file  the file to write
+   * @throws IOException if the file could not be written
+   */
+  public void write(File file)
+  throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+      new FileOutputStream(file), BUFFER_SIZE
+    ));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(alpha.getName());
+      out.writeInt(alpha.size());
+      out.writeInt(starts.length - 1);
+      for (int i = 0; i < starts.length; i++) {
+        out.writeInt(starts[i]);
+      }
+      for (int i = 0; i < length; i++) {
+        out.writeByte(text.get(i));
+      }
+      for (int i = 0; i < length; i++) {
+        out.writeInt(sa.get(i));
+      }
+      for (int i = 0; i < length; i++) {
+        out.writeInt(lcp.get(i));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  public FiniteAlphabet getAlphabet() {
+    return alpha;
+  }
+
+  /**
+   * Gets the number of symbol lists in the index.
+   *
+   * @return the number of lists
+   */
+  public int getListCount() {
+    return starts.length - 1;
+  }
+
+  /**
+   * Gets the length of one of the indexed lists.
+   *
+   * @param list  the number of the list, from 0
+   * @return its length
+   */
+  public int getListLength(int list) {
+    return starts[list + 1] - starts[list] - 1;
+  }
+
+  /**
+   * Gets the number of suffixes in the index, which is the total length of
+   * the lists plus one break after each of them.
+   *
+   * @return the number of suffixes
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Gets the text offset of the suffix with a given rank.
+   *
+   * @param rank  the rank of the suffix, from 0
+   * @return its offset in the text, from 0
+   */
+  public int getSuffix(int rank) {
+    return sa.get(rank);
+  }
+
+  /**
+   * Gets the length of the prefix shared by the suffix with a given rank
+   * and the one before it, which stops at the first break.
+   *
+   * @param rank  the rank of the suffix, from 0
+   * @return the common prefix length, 0 for rank 0
+   */
+  public int getLCP(int rank) {
+    return lcp.get(rank);
+  }
+
+  /**
+   * Sorts the suffixes of a text of integer codes in linear time with the
+   * SA-IS algorithm. This is the sort used to build a SuffixArray, made
+   * available to other indexes such as the FM-index.
+   *
+   * @param codes  the text, whose last code must be 0 and occur nowhere else
+   * @param alphabetSize  one more than the largest code in the text
+   * @return the start of each suffix, in sorted order, so that the first is
+   *         always the final 0
+   */
+  public static int [] sortSuffixes(int [] codes, int alphabetSize) {
+    int n = codes.length;
+    if (n == 0 || codes[n - 1] != 0) {
+      throw new IllegalArgumentException("The text must end with a single 0");
+    }
+    for (int i = 0; i < n - 1; i++) {
+      if (codes[i] <= 0 || codes[i] >= alphabetSize) {
+        throw new IllegalArgumentException(
+          "Code " + codes[i] + " at " + i + " is not between 1 and " + (alphabetSize - 1)
+        );
+      }
+    }
+    int [] sa = new int[n];
+    if (n == 1) {
+      sa[0] = 0;
+    } else {
+      sais(codes, sa, n, alphabetSize);
+    }
+    return sa;
+  }
+
+  /**
+   * Counts the occurrences of a pattern.
+   *
+   * @param pattern  the pattern, which may only contain atomic symbols
+   * @return the number of places it occurs
+   * @throws IllegalSymbolException if the pattern contains a symbol that is
+   *         not an atomic symbol of the alphabet
+   */
+  public int count(SymbolList pattern)
+  throws IllegalSymbolException {
+    int [] range = range(pattern);
+    return range[1] - range[0];
+  }
+
+  /**
+   * Finds every occurrence of a pattern.
+   *
+   * @param pattern  the pattern, which may only contain atomic symbols
+   * @return a List of Match objects, ordered by list and position
+   * @throws IllegalSymbolException if the pattern contains a symbol that is
+   *         not an atomic symbol of the alphabet
+   */
+  public List find(SymbolList pattern)
+  throws IllegalSymbolException {
+    int [] range = range(pattern);
+    List matches = new ArrayList(range[1] - range[0]);
+    for (int r = range[0]; r < range[1]; r++) {
+      matches.add(match(sa.get(r), pattern.length()));
+    }
+    Collections.sort(matches, Match.BY_POSITION);
+    return matches;
+  }
+
+  /**
+   * <p>
+   * Finds the maximal repeats of at least a given length.
+   * </p>
+   *
+   * <p>
+   * A maximal repeat is a run of symbols that occurs at least twice and
+   * can't be extended to the left or right in all of the places it occurs.
+   * The repeats are found in a single bottom-up pass over the LCP array.
+   * Short repeats can be very numerous, so choose minLength with care on
+   * large indexes.
+   * </p>
+   *
+   * @param minLength  the shortest repeat to report, at least 1
+   * @return a List of Repeat objects, ordered by decreasing length
+   */
+  public List maximalRepeats(int minLength) {
+    if (minLength < 1) {
+      throw new IllegalArgumentException(
+        "Minimum repeat length must be at least 1, not " + minLength
+      );
+    }
+
+    List repeats = new ArrayList();
+    // a stack of LCP intervals, each as (lcp, left bound, left context)
+    int [] stack = new int[3 * 16];
+    int top = 0;
+    stack[0] = 0;
+    stack[1] = 0;
+    stack[2] = NO_LEFT;
+
+    for (int i = 1; i <= length; i++) {
+      int cur = i < length ? lcp.get(i) : 0;
+      int leaf = leftContext(sa.get(i - 1));
+      if (cur > stack[top]) {
+        stack = grow(stack, top);
+        top = push(stack, top, cur, i - 1, leaf);
+        continue;
+      }
+
+      stack[top + 2] = combine(stack[top + 2], leaf);
+      int childLcp = -1;
+      int childLb = i - 1;
+      int childLeft = NO_LEFT;
+      while (cur < stack[top]) {
+        childLcp = stack[top];
+        childLb = stack[top + 1];
+        childLeft = stack[top + 2];
+        top -= 3;
+        if (childLcp >= minLength && childLeft == DIVERSE) {
+          repeats.add(repeat(childLcp, childLb, i - 1));
+        }
+        if (cur <= stack[top]) {
+          stack[top + 2] = combine(stack[top + 2], childLeft);
+          childLcp = -1;
+        }
+      }
+      if (childLcp >= 0) {
+        stack = grow(stack, top);
+        top = push(stack, top, cur, childLb, childLeft);
+      }
+    }
+
+    Collections.sort(repeats, new Comparator() {
+      public int compare(Object a, Object b) {
+        return ((Repeat) b).getLength() - ((Repeat) a).getLength();
+      }
+    });
+    return repeats;
+  }
+
+  /**
+   * Finds a longest run of symbols that occurs in two of the lists.
+   *
+   * @param first  the number of the first list
+   * @param second  the number of the second list
+   * @return an array holding the Match in the first list and the Match in
+   *         the second, or null if the lists have no symbol in common
+   */
+  public Match [] longestCommonSubstring(int first, int second) {
+    if (first < 0 || first >= getListCount() || second < 0 || second >= getListCount()) {
+      throw new IndexOutOfBoundsException(
+        "No lists " + first + " and " + second + " in an index of " + getListCount()
+      );
+    }
+
+    int best = 0;
+    int bestFirst = -1;
+    int bestSecond = -1;
+    int lastFirst = -1;
+    int lastSecond = -1;
+    // the smallest LCP since the last suffix from each list
+    int sinceFirst = Integer.MAX_VALUE;
+    int sinceSecond = Integer.MAX_VALUE;
+    for (int r = 0; r < length; r++) {
+      int h = lcp.get(r);
+      sinceFirst = Math.min(sinceFirst, h);
+      sinceSecond = Math.min(sinceSecond, h);
+
+      int pos = sa.get(r);
+      int list = listOf(pos);
+      if (list == first) {
+        if (lastSecond >= 0 && sinceSecond > best) {
+          best = sinceSecond;
+          bestFirst = pos;
+          bestSecond = lastSecond;
+        }
+        lastFirst = pos;
+        sinceFirst = Integer.MAX_VALUE;
+      }
+      if (list == second) {
+        if (lastFirst >= 0 && sinceFirst > best) {
+          best = sinceFirst;
+          bestFirst = lastFirst;
+          bestSecond = pos;
+        }
+        lastSecond = pos;
+        sinceSecond = Integer.MAX_VALUE;
+      }
+    }
+
+    if (best == 0) {
+      return null;
+    }
+    return new Match [] { match(bestFirst, best), match(bestSecond, best) };
+  }
+
+  private int [] range(SymbolList pattern)
+  throws IllegalSymbolException {
+    int m = pattern.length();
+    int [] codes = new int[m];
+    for (int i = 0; i < m; i++) {
+      Symbol sym = pattern.symbolAt(i + 1);
+      if (!(sym instanceof AtomicSymbol)) {
+        throw new IllegalSymbolException(
+          sym, "Can only search for atomic symbols, not " + sym.getName()
+        );
+      }
+      codes[i] = index.indexForSymbol(sym) + FIRST_SYMBOL;
+    }
+
+    // first suffix not less than the pattern
+    int lo = 0;
+    int hi = length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compare(sa.get(mid), codes) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    int from = lo;
+    // first suffix that the pattern is not a prefix of
+    hi = length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compare(sa.get(mid), codes) == 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return new int [] { from, lo };
+  }
+
+  // compares the suffix at pos with the pattern, returning 0 if the pattern
+  // is a prefix of it
+  private int compare(int pos, int [] codes) {
+    for (int i = 0; i < codes.length; i++) {
+      if (pos + i >= length) {
+        return -1;
+      }
+      int c = text.get(pos + i) & 0xff;
+      if (c != codes[i]) {
+        return c < codes[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private int encode(Symbol sym)
+  throws IllegalSymbolException {
+    if (sym instanceof AtomicSymbol) {
+      return index.indexForSymbol(sym) + FIRST_SYMBOL;
+    }
+    alpha.validate(sym);
+    return BREAK;
+  }
+
+  private int leftContext(int pos) {
+    if (pos == 0) {
+      return DIVERSE;
+    }
+    int c = text.get(pos - 1) & 0xff;
+    // a break differs from everything, itself included
+    return c == BREAK ? DIVERSE : c;
+  }
+
+  private static int combine(int left, int other) {
+    if (left == NO_LEFT) {
+      return other;
+    }
+    if (other == NO_LEFT || left == other) {
+      return left;
+    }
+    return DIVERSE;
+  }
+
+  private static int [] grow(int [] stack, int top) {
+    if (top + 6 > stack.length) {
+      int [] bigger = new int[stack.length * 2];
+      System.arraycopy(stack, 0, bigger, 0, stack.length);
+      return bigger;
+    }
+    return stack;
+  }
+
+  private static int push(int [] stack, int top, int lcp, int lb, int left) {
+    top += 3;
+    stack[top] = lcp;
+    stack[top + 1] = lb;
+    stack[top + 2] = left;
+    return top;
+  }
+
+  private Repeat repeat(int len, int lb, int rb) {
+    List occurrences = new ArrayList(rb - lb + 1);
+    for (int r = lb; r <= rb; r++) {
+      occurrences.add(match(sa.get(r), len));
+    }
+    Collections.sort(occurrences, Match.BY_POSITION);
+    return new Repeat(len, Collections.unmodifiableList(occurrences));
+  }
+
+  private Match match(int pos, int len) {
+    int list = listOf(pos);
+    return new Match(list, pos - starts[list] + 1, len);
+  }
+
+  private int listOf(int pos) {
+    int i = Arrays.binarySearch(starts, pos);
+    return i >= 0 ? i : -i - 2;
+  }
+
+  private static int utfLength(String s) {
+    int len = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007f) {
+        len += 1;
+      } else if (c > 0x07ff) {
+        len += 3;
+      } else {
+        len += 2;
+      }
+    }
+    return len;
+  }
+
+  private static int [] kasai(byte [] text, int [] sa) {
+    int n = sa.length;
+    int [] rank = new int[n];
+    for (int i = 0; i < n; i++) {
+      rank[sa[i]] = i;
+    }
+    int [] lcp = new int[n];
+    int h = 0;
+    for (int i = 0; i < n; i++) {
+      if (rank[i] > 0) {
+        int j = sa[rank[i] - 1];
+        // a common prefix never runs over a break
+        while (i + h < n && j + h < n &&
+               text[i + h] == text[j + h] && (text[i + h] & 0xff) != BREAK) {
+          h++;
+        }
+        lcp[rank[i]] = h;
+        if (h > 0) {
+          h--;
+        }
+      } else {
+        h = 0;
+      }
+    }
+    return lcp;
+  }
+
+  /**
+   * Sorts the suffixes of s with SA-IS (Nong, Zhang and Chan, 2009). The
+   * last code of s must be 0 and occur nowhere else, and all codes must be
+   * less than k.
+   */
+  private static void sais(int [] s, int [] sa, int n, int k) {
+    // true for S-type positions, false for L-type
+    boolean [] t = new boolean[n];
+    t[n - 1] = true;
+    for (int i = n - 2; i >= 0; i--) {
+      t[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && t[i + 1]);
+    }
+
+    // sort the LMS substrings by induction from their unsorted positions
+    int [] bkt = new int[k];
+    buckets(s, bkt, n, k, true);
+    Arrays.fill(sa, 0, n, -1);
+    for (int i = 1; i < n; i++) {
+      if (isLMS(t, i)) {
+        sa[--bkt[s[i]]] = i;
+      }
+    }
+    induceL(t, sa, s, bkt, n, k);
+    induceS(t, sa, s, bkt, n, k);
+
+    // name the sorted LMS substrings
+    int n1 = 0;
+    for (int i = 0; i < n; i++) {
+      if (isLMS(t, sa[i])) {
+        sa[n1++] = sa[i];
+      }
+    }
+    Arrays.fill(sa, n1, n, -1);
+    int name = 0;
+    int prev = -1;
+    for (int i = 0; i < n1; i++) {
+      int pos = sa[i];
+      boolean diff = false;
+      for (int d = 0; d < n; d++) {
+        if (prev == -1 || s[pos + d] != s[prev + d] || t[pos + d] != t[prev + d]) {
+          diff = true;
+          break;
+        } else if (d > 0 && (isLMS(t, pos + d) || isLMS(t, prev + d))) {
+          break;
+        }
+      }
+      if (diff) {
+        name++;
+        prev = pos;
+      }
+      sa[n1 + pos / 2] = name - 1;
+    }
+    for (int i = n - 1, j = n - 1; i >= n1; i--) {
+      if (sa[i] >= 0) {
+        sa[j--] = sa[i];
+      }
+    }
+
+    // sort the reduced problem, recursing if the names are not unique
+    int [] s1 = new int[n1];
+    System.arraycopy(sa, n - n1, s1, 0, n1);
+    int [] sa1 = new int[n1];
+    if (name < n1) {
+      sais(s1, sa1, n1, name);
+    } else {
+      for (int i = 0; i < n1; i++) {
+        sa1[s1[i]] = i;
+      }
+    }
+
+    // induce the full order from the sorted LMS suffixes
+    for (int i = 1, j = 0; i < n; i++) {
+      if (isLMS(t, i)) {
+        s1[j++] = i;
+      }
+    }
+    for (int i = 0; i < n1; i++) {
+      sa1[i] = s1[sa1[i]];
+    }
+    Arrays.fill(sa, 0, n, -1);
+    buckets(s, bkt, n, k, true);
+    for (int i = n1 - 1; i >= 0; i--) {
+      int j = sa1[i];
+      sa[--bkt[s[j]]] = j;
+    }
+    induceL(t, sa, s, bkt, n, k);
+    induceS(t, sa, s, bkt, n, k);
+  }
+
+  private static boolean isLMS(boolean [] t, int i) {
+    return i > 0 && t[i] && !t[i - 1];
+  }
+
+  private static void buckets(int [] s, int [] bkt, int n, int k, boolean end) {
+    Arrays.fill(bkt, 0);
+    for (int i = 0; i < n; i++) {
+      bkt[s[i]]++;
+    }
+    int sum = 0;
+    for (int c = 0; c < k; c++) {
+      sum += bkt[c];
+      bkt[c] = end ? sum : sum - bkt[c];
+    }
+  }
+
+  private static void induceL(boolean [] t, int [] sa, int [] s, int [] bkt, int n, int k) {
+    buckets(s, bkt, n, k, false);
+    for (int i = 0; i < n; i++) {
+      int j = sa[i] - 1;
+      if (j >= 0 && !t[j]) {
+        sa[bkt[s[j]]++] = j;
+      }
+    }
+  }
+
+  private static void induceS(boolean [] t, int [] sa, int [] s, int [] bkt, int n, int k) {
+    buckets(s, bkt, n, k, true);
+    for (int i = n - 1; i >= 0; i--) {
+      int j = sa[i] - 1;
+      if (j >= 0 && t[j]) {
+        sa[--bkt[s[j]]] = j;
+      }
+    }
+  }
+
+  /**
+   * A run of symbols at a position in one of the indexed lists.
+   */
+  public static final class Match {
+    static final Comparator BY_POSITION = new Comparator() {
+      public int compare(Object a, Object b) {
+        Match ma = (Match) a;
+        Match mb = (Match) b;
+        if (ma.list != mb.list) {
+          return ma.list < mb.list ? -1 : 1;
+        }
+        return ma.start < mb.start ? -1 : (ma.start == mb.start ? 0 : 1);
+      }
+    };
+
+    private final int list;
+    private final int start;
+    private final int length;
+
+    Match(int list, int start, int length) {
+      this.list = list;
+      this.start = start;
+      this.length = length;
+    }
+
+    /**
+     * Gets the number of the list, in the order the lists were indexed.
+     *
+     * @return the list number, from 0
+     */
+    public int getList() {
+      return list;
+    }
+
+    /**
+     * Gets the position of the first symbol.
+     *
+     * @return the start, from 1
+     */
+    public int getStart() {
+      return start;
+    }
+
+    public int getEnd() {
+      return start + length - 1;
+    }
+
+    public int getLength() {
+      return length;
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof Match)) {
+        return false;
+      }
+      Match m = (Match) o;
+      return m.list == list && m.start == start && m.length == length;
+    }
+
+    public int hashCode() {
+      return (list * 31 + start) * 31 + length;
+    }
+
+    public String toString() {
+      return list + ":" + start + ".." + getEnd();
+    }
+  }
+
+  /**
+   * A maximal repeat and all of the places it occurs.
+   */
+  public static final class Repeat {
+    private final int length;
+    private final List occurrences;
+
+    Repeat(int length, List occurrences) {
+      this.length = length;
+      this.occurrences = occurrences;
+    }
+
+    public int getLength() {
+      return length;
+    }
+
+    /**
+     * Gets the places the repeat occurs.
+     *
+     * @return an unmodifiable List of Match objects, ordered by list and
+     *         position
+     */
+    public List getOccurrences() {
+      return occurrences;
+    }
+  }
+}
@@ -47,7 +47,7 @@ public class JDBCPooledDataSource {
                                          final String pass)
     throws Exception {
     
-    BasicDataSource ds = new BasicDataSource();
+    BasicDataSource ds = new MyBasicDataSource(driver + "|" + url + "|" + user);
     ds.setUrl(url);
     ds.setDriverClassName(driver);
     ds.setUsername(user);
@@ -62,6 +62,27 @@ public class JDBCPooledDataSource {
   }
 
 
+  // Adds simple equals and hashcode methods so that we can compare if
+  // two connections are to the same database, as MyPoolingDataSource did.
+  // OntologySQL keeps one cache of terms for each database this way.
+  static class MyBasicDataSource extends BasicDataSource {
+    final String source;
+    public MyBasicDataSource(String source) {
+      this.source = source;
+    }
+    public boolean equals(Object o2) {
+      if ((o2 == null) || !(o2 instanceof MyBasicDataSource)) {
+        return false;
+      }
+      MyBasicDataSource b2 = (MyBasicDataSource) o2;
+      return source.equals(b2.source);
+    }
+    public int hashCode() {
+      return source.hashCode();
+    }
+  }
+
+
   // Adds simple equals and hashcode methods so that we can compare if
   // two connections are to the same database. This will fail if the
   // DataSource is redirected to another database etc (I doubt this is
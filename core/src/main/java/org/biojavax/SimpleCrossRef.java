@@ -84,6 +84,8 @@ public class SimpleCrossRef extends Unchangeable implements CrossRef {
 
     /**
      * {@inheritDoc}
+     * The set is a copy of the notes, so it can be iterated while
+     * other threads add or remove notes.
      */
     public Set getNoteSet() { return this.notes.getNoteSet(); }
     
@@ -92,6 +94,12 @@ public class SimpleCrossRef extends Unchangeable implements CrossRef {
      */
     public void setNoteSet(Set notes) { this.notes.setNoteSet(notes); }
     
+    // Hibernate requirement - not for public use.
+    Set getRawNoteSet() { return ((SimpleRichAnnotation)this.notes).getRawNoteSet(); } // original for Hibernate
+    
+    // Hibernate requirement - not for public use.
+    void setRawNoteSet(Set notes) { this.notes.setNoteSet(notes); } // original for Hibernate
+    
     /**
      * {@inheritDoc}
      */
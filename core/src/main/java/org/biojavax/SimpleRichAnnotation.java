@@ -61,7 +61,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
     /**
      * {@inheritDoc}
      */
-    public void clear() throws ChangeVetoException{ 
+    public synchronized void clear() throws ChangeVetoException{ 
     	// Use copy of list in order to prevent concurrent modifications.
     	// Fix for bug #2258.
         for(Iterator<Note> i = (new ArrayList(this.notes)).iterator(); i.hasNext(); ){
@@ -75,7 +75,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
      * <code>ComparableTerm</code>s to <code>String</code>s corresponding
      * to the Term and Value of the <code>Note</code>s in the annotation.
      */
-    public Map asMap() {
+    public synchronized Map asMap() {
         Map m = new TreeMap();
         for (Iterator<Note> i = this.notes.iterator(); i.hasNext(); ) {
             Note n = i.next();
@@ -89,7 +89,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
      * In case the note was already here, a call to ChangeEvent.getPrevious()
      * in the firePostChangeEvent method will return a copy of the original note.
      */
-    public void addNote(Note note) throws ChangeVetoException {
+    public synchronized void addNote(Note note) throws ChangeVetoException {
         if (note==null) throw new IllegalArgumentException("Note cannot be null");
         if(!this.hasListeners(Annotatable.ANNOTATION)) {
             this.notes.add(note);
@@ -129,13 +129,13 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
     /**
      * {@inheritDoc}
      */
-    public boolean contains(Note note) { return this.notes.contains(note); }
+    public synchronized boolean contains(Note note) { return this.notes.contains(note); }
     
     /**
      * {@inheritDoc}
      * @deprecated 
      */
-    public boolean containsProperty(Object key) { 
+    public synchronized boolean containsProperty(Object key) { 
         if (key instanceof Term) key = RichObjectFactory.getDefaultOntology().getOrImportTerm((Term)key);
         else key = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key.toString());
         for(Iterator<Note> i = notes.iterator(); i.hasNext();){
@@ -148,7 +148,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
     /**
      * {@inheritDoc}
      */
-    public Note getNote(Note note) throws NoSuchElementException {
+    public synchronized Note getNote(Note note) throws NoSuchElementException {
         if (note==null) throw new IllegalArgumentException("Note cannot be null");
         for (Iterator<Note> i = this.notes.iterator(); i.hasNext(); ) {
             Note n = i.next();
@@ -164,7 +164,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
      * @see #getProperties(Object key)
      * @deprecated 
      */
-    public Object getProperty(Object key) throws NoSuchElementException { 
+    public synchronized Object getProperty(Object key) throws NoSuchElementException { 
         if (key instanceof Term) key = RichObjectFactory.getDefaultOntology().getOrImportTerm((Term)key);
         else key = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key.toString());
         for(Iterator<Note> i = notes.iterator(); i.hasNext();){
@@ -180,7 +180,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
      * <code>key</code> (or a <code>Term</code> made with a <code>String</code> key)..
      * @deprecated 
      */
-    public Note[] getProperties(Object key){
+    public synchronized Note[] getProperties(Object key){
         if (key instanceof Term) key = RichObjectFactory.getDefaultOntology().getOrImportTerm((Term)key);
         else key = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key.toString());
         List l = new LinkedList();
@@ -196,15 +196,16 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
     
     /**
      * {@inheritDoc}
+     * The set is a copy of the keys of the notes in the annotation.
      */
-    public Set keys() { return this.asMap().keySet(); }
+    public synchronized Set keys() { return this.asMap().keySet(); }
     
     /**
      * {@inheritDoc}
      * In case the note is not found, a call to ChangeEvent.getPrevious()
      * in the firePostChangeEvent method will return null.
      */
-    public void removeNote(Note note) throws ChangeVetoException {
+    public synchronized void removeNote(Note note) throws ChangeVetoException {
         if (note==null) throw new IllegalArgumentException("Note cannot be null");
         if(!this.hasListeners(Annotatable.ANNOTATION)) {
             this.notes.remove(note);
@@ -237,7 +238,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
      * <code>key</code> (or a <code>Term</code> made with a <code>String</code> key)..
      * @deprecated 
      */
-    public void removeProperty(Object key) throws NoSuchElementException, ChangeVetoException { 
+    public synchronized void removeProperty(Object key) throws NoSuchElementException, ChangeVetoException { 
         if (key instanceof Term) key = RichObjectFactory.getDefaultOntology().getOrImportTerm((Term)key);
         else key = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key.toString());
         for(Iterator<Note> i = notes.iterator(); i.hasNext();){
@@ -254,7 +255,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
      * {@inheritDoc}
      * @deprecated 
      */
-    public void setProperty(Object key, Object value) throws IllegalArgumentException, ChangeVetoException {
+    public synchronized void setProperty(Object key, Object value) throws IllegalArgumentException, ChangeVetoException {
         if(key == null) throw new IllegalArgumentException("Property keys cannot be null");
         if (key instanceof Term) key = RichObjectFactory.getDefaultOntology().getOrImportTerm((Term)key);
         else key = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key.toString());
@@ -263,11 +264,13 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
     
     /**
      * {@inheritDoc}
-     * <b>Warning</b> this method gives access to the original 
-     * Collection not a copy. This is required by Hibernate. If you
-     * modify the object directly the behaviour may be unpredictable.
+     * The set is a copy of the notes, so it can be iterated while
+     * other threads add or remove notes.
      */
-    public Set<Note> getNoteSet() {  return this.notes; } // original for Hibernate
+    public synchronized Set<Note> getNoteSet() { return this.notes==null?null:new TreeSet<Note>(this.notes); }
+    
+    // Hibernate requirement - not for public use.
+    public Set<Note> getRawNoteSet() { return this.notes; } // original for Hibernate
     
     /**
      * {@inheritDoc}
@@ -281,7 +284,7 @@ public class SimpleRichAnnotation extends AbstractChangeable implements RichAnno
      * {@inheritDoc}
      * Form: list of "[note]" values separated by commas
      */
-    public String toString() {
+    public synchronized String toString() {
         StringBuffer sb = new StringBuffer();
         for (Iterator i = this.notes.iterator(); i.hasNext(); ) {
             sb.append("[");
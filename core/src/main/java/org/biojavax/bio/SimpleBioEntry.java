@@ -129,9 +129,8 @@ public class SimpleBioEntry extends AbstractChangeable implements BioEntry {
 
     /**
      * {@inheritDoc}
-     * <b>Warning</b> this method gives access to the original 
-     * Collection not a copy. This is required by Hibernate. If you
-     * modify the object directly the behaviour may be unpredictable.
+     * The set is a copy of the notes, so it can be iterated while
+     * other threads add or remove notes.
      */
     public Set<Note> getNoteSet() { return this.notes.getNoteSet(); }
     
@@ -143,6 +142,12 @@ public class SimpleBioEntry extends AbstractChangeable implements BioEntry {
      */
     public void setNoteSet(Set<Note> notes) throws ChangeVetoException { this.notes.setNoteSet(notes); }
     
+    // Hibernate requirement - not for public use.
+    Set<Note> getRawNoteSet() { return ((SimpleRichAnnotation)this.notes).getRawNoteSet(); } // original for Hibernate
+    
+    // Hibernate requirement - not for public use.
+    void setRawNoteSet(Set<Note> notes) throws ChangeVetoException { this.notes.setNoteSet(notes); } // original for Hibernate
+    
     /**
      * {@inheritDoc}
      * <b>Warning</b> this method gives access to the original 
@@ -202,9 +202,8 @@ public class SimpleRichLocation extends AbstractChangeable implements RichLocati
     
     /**
      * {@inheritDoc}
-     * <b>Warning</b> this method gives access to the original
-     * Collection not a copy. This is required by Hibernate. If you
-     * modify the object directly the behaviour may be unpredictable.
+     * The set is a copy of the notes, so it can be iterated while
+     * other threads add or remove notes.
      */
     public Set getNoteSet() { return this.notes.getNoteSet(); }
     
@@ -216,6 +215,12 @@ public class SimpleRichLocation extends AbstractChangeable implements RichLocati
      */
     public void setNoteSet(Set notes) throws ChangeVetoException { this.notes.setNoteSet(notes); }
     
+    // Hibernate requirement - not for public use.
+    Set getRawNoteSet() { return ((SimpleRichAnnotation)this.notes).getRawNoteSet(); } // original for Hibernate
+    
+    // Hibernate requirement - not for public use.
+    void setRawNoteSet(Set notes) throws ChangeVetoException { this.notes.setNoteSet(notes); } // original for Hibernate
+    
     /**
      * {@inheritDoc}
      */
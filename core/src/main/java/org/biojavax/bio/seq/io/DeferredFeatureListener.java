@@ -0,0 +1,44 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojavax.bio.seq.io;
+
+import org.biojava.bio.seq.io.ParseException;
+
+/**
+ * A RichSeqIOListener that can keep the feature table of a record for later
+ * instead of receiving its features as they are parsed. Formats reading with
+ * lazy features only hand over the table to listeners implementing this;
+ * every other listener is sent the features straight away.
+ * @see RichSequenceFormat.BasicFormat#setLazyFeatures(boolean)
+ * @since 1.9.8
+ */
+public interface DeferredFeatureListener extends RichSeqIOListener {
+
+    /**
+     * Call back method so a format reading with lazy features can hand over the
+     * feature table of the current record without parsing it.
+     * @param features the unparsed feature table.
+     * @throws org.biojava.bio.seq.io.ParseException If the Listener cannot understand the event, is unable
+     * to deal with the event or is not expecting the event.
+     */
+    public void setDeferredFeatures(DeferredFeatureTable features) throws ParseException;
+}
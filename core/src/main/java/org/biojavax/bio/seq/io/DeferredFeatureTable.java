@@ -0,0 +1,44 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojavax.bio.seq.io;
+
+import org.biojava.bio.seq.io.ParseException;
+
+/**
+ * The feature table of a record, held back by a format reading with lazy
+ * features so that it is only parsed when the features are first needed.
+ * A table keeps everything it needs to parse itself, so it stays valid
+ * after the format has moved on to other records.
+ * @see RichSequenceFormat.BasicFormat#setLazyFeatures(boolean)
+ * @see DeferredFeatureListener#setDeferredFeatures(DeferredFeatureTable)
+ * @since 1.9.8
+ */
+public interface DeferredFeatureTable {
+
+    /**
+     * Parses the feature table, sending each feature to the listener through
+     * startFeature, addFeatureProperty and endFeature as an eager read would.
+     * @param rlistener the listener to send the features to.
+     * @throws ParseException if the feature table could not be parsed.
+     */
+    public void readFeatures(RichSeqIOListener rlistener) throws ParseException;
+}
@@ -506,81 +506,14 @@ public class EMBLFormat extends RichSequenceFormat.HeaderlessFormat {
                 // Set up some comments
                 rlistener.setComment(((String[])section.get(0))[1]);
             } else if (sectionKey.equals(FEATURE_TAG) && !this.getElideFeatures()) {
-                // starting from second line of input, start a new feature whenever we come across
-                // a key that does not start with /
-                boolean seenAFeature = false;
-                int rcrossrefCount = 0;
-                for (int i = 1 ; i < section.size(); i++) {
-                    String key = ((String[])section.get(i))[0];
-                    String val = ((String[])section.get(i))[1];
-                    if (key.startsWith("/")) {
-                        key = key.substring(1); // strip leading slash
-                        val = val.replaceAll("\\s*[\\n\\r]+\\s*"," ").trim();
-                        if (val.startsWith("\"")) val = val.substring(1,val.length()-1); // strip quotes
-                        // parameter on old feature
-                        if (key.equalsIgnoreCase("db_xref")) {
-                            Matcher m = dbxp.matcher(val);
-                            if (m.matches()) {
-                                String dbname = m.group(1);
-                                String raccession = m.group(2);
-                                if (dbname.equalsIgnoreCase("taxon")) {
-                                    // Set the Taxon instead of a dbxref
-                                    tax = (NCBITaxon)RichObjectFactory.getObject(SimpleNCBITaxon.class, new Object[]{Integer.valueOf(raccession)});
-                                    rlistener.setTaxon(tax);
-                                    try {
-                                        if (organism!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism);
-                                    } catch (ChangeVetoException e) {
-                                        String message = ParseException.newMessage(this.getClass(),accession,"not set", "",sectionToString(section));
-                                        throw new ParseException(e, message);
-                                    }
-                                } else {
-                                    try {
-                                        CrossRef cr = (CrossRef)RichObjectFactory.getObject(SimpleCrossRef.class,new Object[]{dbname, raccession, new Integer(0)});
-                                        RankedCrossRef rcr = new SimpleRankedCrossRef(cr, ++rcrossrefCount);
-                                        rlistener.getCurrentFeature().addRankedCrossRef(rcr);
-                                    } catch (ChangeVetoException e) {
-                                        String message = ParseException.newMessage(this.getClass(),accession,"not set", "",sectionToString(section));
-                                        throw new ParseException(e, message);
-                                    }
-                                }
-                            } else {
-                                String message = ParseException.newMessage(this.getClass(),accession,"not set", "Bad dbxref found",sectionToString(section));
-                                throw new ParseException(message);
-                            }
-                        } else if (key.equalsIgnoreCase("organism")) {
-                            try {
-                                organism = val;
-                                if (tax!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism);
-                            } catch (ChangeVetoException e) {
-                                String message = ParseException.newMessage(this.getClass(),accession,"not set", "",sectionToString(section));
-                                throw new ParseException(message);
-                            }
-                        } else {
-                            if (key.equalsIgnoreCase("translation")) {
-                                // strip spaces from sequence
-                                val = val.replaceAll("\\s+","");
-                            }
-                            rlistener.addFeatureProperty(RichObjectFactory.getDefaultOntology().getOrCreateTerm(key),val);
-                        }
-                    } else {
-                        // new feature!
-                        // end previous feature
-                        if (seenAFeature) rlistener.endFeature();
-                        // start next one, with lots of lovely info in it
-                        RichFeature.Template templ = new RichFeature.Template();
-                        templ.annotation = new SimpleRichAnnotation();
-                        templ.sourceTerm = Terms.getEMBLTerm();
-                        templ.typeTerm = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key);
-                        templ.featureRelationshipSet = new TreeSet();
-                        templ.rankedCrossRefs = new TreeSet();
-                        String tidyLocStr = val.replaceAll("\\s+","");
-                        templ.location = GenbankLocationParser.parseLocation(ns, accession, tidyLocStr);
-                        rlistener.startFeature(templ);
-                        seenAFeature = true;
-                        rcrossrefCount = 0;
-                    }
+                if (this.getLazyFeatures() && rlistener instanceof DeferredFeatureListener) {
+                    // when reading lazily keep the feature table back unparsed
+                    // if the listener can keep it
+                    this.readSourceTaxon(section, rlistener, ns);
+                    ((DeferredFeatureListener)rlistener).setDeferredFeatures(new EMBLFeatureTable(section, ns, accession));
+                } else {
+                    this.readFeatures(section, rlistener, ns);
                 }
-                if (seenAFeature) rlistener.endFeature();
             } else if (sectionKey.equals(START_SEQUENCE_TAG) && !this.getElideSymbols()) {
                 StringBuffer seq = new StringBuffer();
                 for (int i = 0 ; i < section.size(); i++) seq.append(((String[])section.get(i))[1]);
@@ -622,6 +555,126 @@ public class EMBLFormat extends RichSequenceFormat.HeaderlessFormat {
     }
     
     // reads an indented section, combining split lines and creating a list of key->value tuples
+    /**
+     * Parses a feature table section, sending each feature to the listener.
+     */
+    private void readFeatures(List section, RichSeqIOListener rlistener, Namespace ns) throws ParseException {
+        // starting from second line of input, start a new feature whenever we come across
+        // a key that does not start with /
+        boolean seenAFeature = false;
+        int rcrossrefCount = 0;
+        for (int i = 1 ; i < section.size(); i++) {
+            String key = ((String[])section.get(i))[0];
+            String val = ((String[])section.get(i))[1];
+            if (key.startsWith("/")) {
+                key = key.substring(1); // strip leading slash
+                val = val.replaceAll("\\s*[\\n\\r]+\\s*"," ").trim();
+                if (val.startsWith("\"")) val = val.substring(1,val.length()-1); // strip quotes
+                // parameter on old feature
+                if (key.equalsIgnoreCase("db_xref")) {
+                    Matcher m = dbxp.matcher(val);
+                    if (m.matches()) {
+                        String dbname = m.group(1);
+                        String raccession = m.group(2);
+                        if (dbname.equalsIgnoreCase("taxon")) {
+                            // Set the Taxon instead of a dbxref
+                            tax = (NCBITaxon)RichObjectFactory.getObject(SimpleNCBITaxon.class, new Object[]{Integer.valueOf(raccession)});
+                            rlistener.setTaxon(tax);
+                            try {
+                                if (organism!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism);
+                            } catch (ChangeVetoException e) {
+                                String message = ParseException.newMessage(this.getClass(),accession,"not set", "",sectionToString(section));
+                                throw new ParseException(e, message);
+                            }
+                        } else {
+                            try {
+                                CrossRef cr = (CrossRef)RichObjectFactory.getObject(SimpleCrossRef.class,new Object[]{dbname, raccession, new Integer(0)});
+                                RankedCrossRef rcr = new SimpleRankedCrossRef(cr, ++rcrossrefCount);
+                                rlistener.getCurrentFeature().addRankedCrossRef(rcr);
+                            } catch (ChangeVetoException e) {
+                                String message = ParseException.newMessage(this.getClass(),accession,"not set", "",sectionToString(section));
+                                throw new ParseException(e, message);
+                            }
+                        }
+                    } else {
+                        String message = ParseException.newMessage(this.getClass(),accession,"not set", "Bad dbxref found",sectionToString(section));
+                        throw new ParseException(message);
+                    }
+                } else if (key.equalsIgnoreCase("organism")) {
+                    try {
+                        organism = val;
+                        if (tax!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism);
+                    } catch (ChangeVetoException e) {
+                        String message = ParseException.newMessage(this.getClass(),accession,"not set", "",sectionToString(section));
+                        throw new ParseException(message);
+                    }
+                } else {
+                    if (key.equalsIgnoreCase("translation")) {
+                        // strip spaces from sequence
+                        val = val.replaceAll("\\s+","");
+                    }
+                    rlistener.addFeatureProperty(RichObjectFactory.getDefaultOntology().getOrCreateTerm(key),val);
+                }
+            } else {
+                // new feature!
+                // end previous feature
+                if (seenAFeature) rlistener.endFeature();
+                // start next one, with lots of lovely info in it
+                RichFeature.Template templ = new RichFeature.Template();
+                templ.annotation = new SimpleRichAnnotation();
+                templ.sourceTerm = Terms.getEMBLTerm();
+                templ.typeTerm = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key);
+                templ.featureRelationshipSet = new TreeSet();
+                templ.rankedCrossRefs = new TreeSet();
+                String tidyLocStr = val.replaceAll("\\s+","");
+                templ.location = GenbankLocationParser.parseLocation(ns, accession, tidyLocStr);
+                rlistener.startFeature(templ);
+                seenAFeature = true;
+                rcrossrefCount = 0;
+            }
+        }
+        if (seenAFeature) rlistener.endFeature();
+    }
+    
+    /**
+     * The taxon comes from the source feature, so that feature is parsed
+     * straight away even when the rest of the table is deferred.
+     */
+    private void readSourceTaxon(List section, final RichSeqIOListener rlistener, Namespace ns) throws ParseException {
+        int next = 1;
+        while (next<section.size() && (next==1 || ((String[])section.get(next))[0].startsWith("/"))) next++;
+        this.readFeatures(section.subList(0, next), new RichSeqIOAdapter() {
+            public void setTaxon(NCBITaxon taxon) throws ParseException { rlistener.setTaxon(taxon); }
+        }, ns);
+    }
+    
+    /**
+     * A feature table kept back by a lazy read. It is parsed by a format of
+     * its own, as this one will have moved on to other records by then.
+     */
+    private static class EMBLFeatureTable implements DeferredFeatureTable {
+        private List section;
+        private Namespace ns;
+        private String accession;
+        
+        private EMBLFeatureTable(List section, Namespace ns, String accession) {
+            this.section = section;
+            this.ns = ns;
+            this.accession = accession;
+        }
+        
+        public void readFeatures(RichSeqIOListener rlistener) throws ParseException {
+            EMBLFormat format = new EMBLFormat();
+            format.accession = this.accession;
+            try {
+                format.readFeatures(this.section, rlistener, this.ns);
+            } catch (RuntimeException e) {
+                String message = ParseException.newMessage(EMBLFormat.class, this.accession, "not set", "Bad feature table", format.sectionToString(this.section));
+                throw new ParseException(e, message);
+            }
+        }
+    }
+    
     private List readSection(BufferedReader br) throws ParseException {
         List section = new ArrayList();
         String line;
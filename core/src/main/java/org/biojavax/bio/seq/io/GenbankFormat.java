@@ -28,6 +28,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -137,6 +138,7 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
     //  \s{0,8} word \s{0,7} value
     //  \s{21} /word = value
     //  \s{21} /word
+    //readSection finds these by column position in splitLine instead
     protected static final Pattern sectp = Pattern.compile("^(\\s{0,8}(\\S+)\\s{0,7}(.*)|\\s{21}(/\\S+?)=(.*)|\\s{21}(/\\S+))$");
     
     protected static final Pattern readableFiles = Pattern.compile(".*(g[bp]k*$|\\u002eg[bp].*)");
@@ -250,6 +252,9 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
     private String organism = null;
     private String accession = null;
     private String identifier = null;
+    // reads sections with sectp and sequences through SymbolTokenization as
+    // before splitLine and readSymbols, so GenbankFormatBenchmark can compare them
+    boolean regexParsing = false;
     /**
      * {@inheritDoc}
      */
@@ -276,6 +281,16 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
         List section = null;
         try{
             do {
+                // when reading lazily keep the feature table back unparsed
+                // if the listener can keep it
+                if (this.getLazyFeatures() && !this.getElideFeatures() && rlistener instanceof DeferredFeatureListener
+                        && this.atFeatureTable(reader)) {
+                    sectionKey = FEATURE_TAG;
+                    String table = this.readFeatureTable(reader);
+                    this.readSourceTaxon(table, rlistener, ns);
+                    ((DeferredFeatureListener)rlistener).setDeferredFeatures(new GenbankFeatureTable(table, ns, accession, identifier));
+                    continue;
+                }
                 section = this.readSection(reader);
                 sectionKey = ((String[])section.get(0))[0];
                 if(sectionKey == null){
@@ -427,97 +442,7 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
                     // Set up some comments
                     rlistener.setComment(((String[])section.get(0))[1]);
                 } else if (sectionKey.equals(FEATURE_TAG) && !this.getElideFeatures()) {
-                    // starting from second line of input, start a new feature whenever we come across
-                    // a key that does not start with /
-                    boolean seenAFeature = false;
-                    int rcrossrefCount = 0;
-                    boolean skippingBond = false;
-                    for (int i = 1 ; i < section.size(); i++) {
-                        String key = ((String[])section.get(i))[0];
-                        String val = ((String[])section.get(i))[1];
-                        if (key.startsWith("/")) {
-                        	  if(!skippingBond)
-                        	  {
-	                            key = key.substring(1); // strip leading slash
-	                            val = val.replaceAll("\\s*[\\n\\r]+\\s*"," ").trim();
-	                            if (val.endsWith("\"")) val = val.substring(1,val.length()-1); // strip quotes
-	                            // parameter on old feature
-	                            if (key.equals("db_xref")) {
-                                    val = val.replaceAll("\\s+","");
-	                                Matcher m = dbxp.matcher(val);
-	                                if (m.matches()) {
-	                                    String dbname = m.group(1);
-	                                    String raccession = m.group(2);
-	                                    if (dbname.equalsIgnoreCase("taxon")) {
-	                                        // Set the Taxon instead of a dbxref
-	                                        tax = (NCBITaxon)RichObjectFactory.getObject(SimpleNCBITaxon.class, new Object[]{Integer.valueOf(raccession)});
-	                                        rlistener.setTaxon(tax);
-	                                        try {
-	                                            if (organism!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism.replace('\n', ' '));// readSection can embed new lines
-	                                        } catch (ChangeVetoException e) {
-	                                            throw new ParseException(e+", accession:"+accession);
-	                                        }
-	                                    } else {
-	                                        try {
-	                                            CrossRef cr = (CrossRef)RichObjectFactory.getObject(SimpleCrossRef.class,new Object[]{dbname, raccession, new Integer(0)});
-	                                            RankedCrossRef rcr = new SimpleRankedCrossRef(cr, ++rcrossrefCount);
-	                                            rlistener.getCurrentFeature().addRankedCrossRef(rcr);
-	                                        } catch (ChangeVetoException e) {
-	                                            throw new ParseException(e+", accession:"+accession);
-	                                        }
-	                                    }
-	                                } else {
-	                                    String message = ParseException.newMessage(this.getClass(), accession, identifier, "Bad dbxref", sectionToString(section));
-	                                    throw new ParseException(message);
-	                                }
-	                            } else if (key.equalsIgnoreCase("organism")) {
-	                                try {
-	                                    organism = val;
-	                                    if (tax!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism.replace('\n', ' '));// readSection can embed new lines
-	                                } catch (ChangeVetoException e) {
-	                                    throw new ParseException(e+", accession:"+accession);
-	                                }
-	                            } else {
-	                                if (key.equalsIgnoreCase("translation")) {
-	                                    // strip spaces from sequence
-	                                    val = val.replaceAll("\\s+","");
-	                                }
-	                                rlistener.addFeatureProperty(RichObjectFactory.getDefaultOntology().getOrCreateTerm(key),val);
-	                            }
-                          	}
-                        } else {
-                            // new feature!
-                            // end previous feature
-                            if(key.equalsIgnoreCase("bond"))
-                            {
-                            	skippingBond = true;
-                            }
-                            else
-                            {
-                            	skippingBond = false;
-                            	if (seenAFeature) {
-                            		rlistener.endFeature();
-                            	}
-	                            // start next one, with lots of lovely info in it
-	                            RichFeature.Template templ = new RichFeature.Template();
-	                            templ.annotation = new SimpleRichAnnotation();
-	                            templ.sourceTerm = Terms.getGenBankTerm();
-	                            templ.typeTerm = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key);
-	                            templ.featureRelationshipSet = new TreeSet();
-	                            templ.rankedCrossRefs = new TreeSet();
-	                            String tidyLocStr = val.replaceAll("\\s+","");
-	                            templ.location = GenbankLocationParser.parseLocation(ns, accession, tidyLocStr);
-	                            rlistener.startFeature(templ);
-	                            seenAFeature = true;
-	                            rcrossrefCount = 0;
-                            }
-                            
-                        }
-                    }
-                    
-                    if (seenAFeature) {
-                    	rlistener.endFeature();
-                    }
+                    this.readFeatures(section, rlistener, ns);
                 } else if (sectionKey.equals(BASE_COUNT_TAG)) {
                     // ignore - can calculate from sequence content later if needed
                 } else if (sectionKey.equals(START_SEQUENCE_TAG) && !this.getElideSymbols()) {
@@ -526,14 +451,21 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
                     // the [0] tuple, and sequence string as [1] so all we have
                     // to do is concat the [1] parts and then strip out spaces,
                     // and replace '.' and '~' with '-' for our parser.
-                    StringBuffer seq = new StringBuffer();
-                    for (int i = 1 ; i < section.size(); i++) seq.append(((String[])section.get(i))[1]);
                     try {
-                        SymbolList sl = new SimpleSymbolList(symParser,
-                                seq.toString().replaceAll("\\s+","").replaceAll("[\\.|~]","-"));
-                        rlistener.addSymbols(symParser.getAlphabet(),
-                                (Symbol[])(sl.toList().toArray(new Symbol[0])),
-                                0, sl.length());
+                        if (symParser.getTokenType()==SymbolTokenization.CHARACTER && !this.regexParsing) {
+                            // single character symbols can be looked up as we go
+                            Symbol[] syms = new Symbol[this.countSymbols(section)];
+                            int length = this.readSymbols(section, symParser, syms);
+                            rlistener.addSymbols(symParser.getAlphabet(), syms, 0, length);
+                        } else {
+                            StringBuffer seq = new StringBuffer();
+                            for (int i = 1 ; i < section.size(); i++) seq.append(((String[])section.get(i))[1]);
+                            SymbolList sl = new SimpleSymbolList(symParser,
+                                    seq.toString().replaceAll("\\s+","").replaceAll("[\\.|~]","-"));
+                            rlistener.addSymbols(symParser.getAlphabet(),
+                                    (Symbol[])(sl.toList().toArray(new Symbol[0])),
+                                    0, sl.length());
+                        }
                     } catch (IllegalAlphabetException e) {
                         String message = ParseException.newMessage(this.getClass(), accession, identifier, "Bad sequence section", sectionToString(section));
                         throw new ParseException(e, message);
@@ -569,6 +501,194 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
         return hasAnotherSequence;
     }
     
+    /**
+     * Parses a feature table section, sending each feature to the listener.
+     */
+    private void readFeatures(List section, RichSeqIOListener rlistener, Namespace ns) throws ParseException {
+        // starting from second line of input, start a new feature whenever we come across
+        // a key that does not start with /
+        boolean seenAFeature = false;
+        int rcrossrefCount = 0;
+        boolean skippingBond = false;
+        for (int i = 1 ; i < section.size(); i++) {
+            String key = ((String[])section.get(i))[0];
+            String val = ((String[])section.get(i))[1];
+            if (key.startsWith("/")) {
+                if(!skippingBond)
+                {
+                    key = key.substring(1); // strip leading slash
+                    val = val.replaceAll("\\s*[\\n\\r]+\\s*"," ").trim();
+                    if (val.endsWith("\"")) val = val.substring(1,val.length()-1); // strip quotes
+                    // parameter on old feature
+                    if (key.equals("db_xref")) {
+                        val = val.replaceAll("\\s+","");
+                        Matcher m = dbxp.matcher(val);
+                        if (m.matches()) {
+                            String dbname = m.group(1);
+                            String raccession = m.group(2);
+                            if (dbname.equalsIgnoreCase("taxon")) {
+                                // Set the Taxon instead of a dbxref
+                                tax = (NCBITaxon)RichObjectFactory.getObject(SimpleNCBITaxon.class, new Object[]{Integer.valueOf(raccession)});
+                                rlistener.setTaxon(tax);
+                                try {
+                                    if (organism!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism.replace('\n', ' '));// readSection can embed new lines
+                                } catch (ChangeVetoException e) {
+                                    throw new ParseException(e+", accession:"+accession);
+                                }
+                            } else {
+                                try {
+                                    CrossRef cr = (CrossRef)RichObjectFactory.getObject(SimpleCrossRef.class,new Object[]{dbname, raccession, new Integer(0)});
+                                    RankedCrossRef rcr = new SimpleRankedCrossRef(cr, ++rcrossrefCount);
+                                    rlistener.getCurrentFeature().addRankedCrossRef(rcr);
+                                } catch (ChangeVetoException e) {
+                                    throw new ParseException(e+", accession:"+accession);
+                                }
+                            }
+                        } else {
+                            String message = ParseException.newMessage(this.getClass(), accession, identifier, "Bad dbxref", sectionToString(section));
+                            throw new ParseException(message);
+                        }
+                    } else if (key.equalsIgnoreCase("organism")) {
+                        try {
+                            organism = val;
+                            if (tax!=null) tax.addName(NCBITaxon.SCIENTIFIC,organism.replace('\n', ' '));// readSection can embed new lines
+                        } catch (ChangeVetoException e) {
+                            throw new ParseException(e+", accession:"+accession);
+                        }
+                    } else {
+                        if (key.equalsIgnoreCase("translation")) {
+                            // strip spaces from sequence
+                            val = val.replaceAll("\\s+","");
+                        }
+                        rlistener.addFeatureProperty(RichObjectFactory.getDefaultOntology().getOrCreateTerm(key),val);
+                    }
+                }
+            } else {
+                // new feature!
+                // end previous feature
+                if(key.equalsIgnoreCase("bond"))
+                {
+                    skippingBond = true;
+                }
+                else
+                {
+                    skippingBond = false;
+                    if (seenAFeature) {
+                        rlistener.endFeature();
+                    }
+                    // start next one, with lots of lovely info in it
+                    RichFeature.Template templ = new RichFeature.Template();
+                    templ.annotation = new SimpleRichAnnotation();
+                    templ.sourceTerm = Terms.getGenBankTerm();
+                    templ.typeTerm = RichObjectFactory.getDefaultOntology().getOrCreateTerm(key);
+                    templ.featureRelationshipSet = new TreeSet();
+                    templ.rankedCrossRefs = new TreeSet();
+                    String tidyLocStr = val.replaceAll("\\s+","");
+                    templ.location = GenbankLocationParser.parseLocation(ns, accession, tidyLocStr);
+                    rlistener.startFeature(templ);
+                    seenAFeature = true;
+                    rcrossrefCount = 0;
+                }
+
+            }
+        }
+
+        if (seenAFeature) {
+            rlistener.endFeature();
+        }
+    }
+    
+    private boolean atFeatureTable(BufferedReader br) throws ParseException {
+        try {
+            br.mark(320);
+            String line = br.readLine();
+            br.reset();
+            return line!=null && line.startsWith(FEATURE_TAG);
+        } catch (IOException e) {
+            String message = ParseException.newMessage(this.getClass(), accession, identifier, "", "");
+            throw new ParseException(e, message);
+        }
+    }
+    
+    /**
+     * Reads the lines of the feature table without parsing them, stopping
+     * where readSection would.
+     */
+    private String readFeatureTable(BufferedReader br) throws ParseException {
+        StringBuffer table = new StringBuffer();
+        try {
+            table.append(br.readLine()).append('\n');
+            while (true) {
+                br.mark(320);
+                String line = br.readLine();
+                if (line==null) break;
+                if (!line.startsWith(" ") && line.trim().length()>0) {
+                    br.reset();
+                    break;
+                }
+                table.append(line).append('\n');
+            }
+        } catch (IOException e) {
+            String message = ParseException.newMessage(this.getClass(), accession, identifier, "", table.toString());
+            throw new ParseException(e, message);
+        }
+        return table.toString();
+    }
+    
+    /**
+     * The taxon comes from the source feature, so that feature is parsed
+     * straight away even when the rest of the table is deferred.
+     */
+    private void readSourceTaxon(String table, final RichSeqIOListener rlistener, Namespace ns) throws ParseException {
+        int source = nextFeature(table, 0);
+        if (source<0) return;
+        int next = nextFeature(table, source);
+        List section = this.readSection(new BufferedReader(new StringReader(next<0 ? table : table.substring(0, next))));
+        this.readFeatures(section, new RichSeqIOAdapter() {
+            public void setTaxon(NCBITaxon taxon) throws ParseException { rlistener.setTaxon(taxon); }
+        }, ns);
+    }
+    
+    // the offset of the next feature key line after from, or -1
+    private static int nextFeature(String table, int from) {
+        for (int i = table.indexOf("\n     ", from); i>=0; i = table.indexOf("\n     ", i+1)) {
+            if (i+6<table.length() && table.charAt(i+6)!=' ') return i+1;
+        }
+        return -1;
+    }
+    
+    /**
+     * A feature table kept back by a lazy read. It is parsed by a format of
+     * its own, as this one will have moved on to other records by then.
+     */
+    private static class GenbankFeatureTable implements DeferredFeatureTable {
+        private String table;
+        private Namespace ns;
+        private String accession;
+        private String identifier;
+        
+        private GenbankFeatureTable(String table, Namespace ns, String accession, String identifier) {
+            this.table = table;
+            this.ns = ns;
+            this.accession = accession;
+            this.identifier = identifier;
+        }
+        
+        public void readFeatures(RichSeqIOListener rlistener) throws ParseException {
+            GenbankFormat format = new GenbankFormat();
+            format.accession = this.accession;
+            format.identifier = this.identifier;
+            List section = null;
+            try {
+                section = format.readSection(new BufferedReader(new StringReader(this.table)));
+                format.readFeatures(section, rlistener, this.ns);
+            } catch (RuntimeException e) {
+                String message = ParseException.newMessage(GenbankFormat.class, this.accession, this.identifier, "Bad feature table", section==null ? this.table : format.sectionToString(section));
+                throw new ParseException(e, message);
+            }
+        }
+    }
+    
     // reads an indented section, combining split lines and creating a list of key->value tuples
     private List readSection(BufferedReader br) throws ParseException {
         List section = new ArrayList();
@@ -583,11 +703,7 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
                 br.mark(320);
                 line = br.readLine();
                 String firstSecKey = section.isEmpty() ? "" : ((String[])section.get(0))[0];
-                if (line != null && line.matches("\\p{Space}*")) {
-		   // regular expression \p{Space}* will match line 
-                   // having only white space characters
-                   continue;
-                }
+                if (line != null && (this.regexParsing ? line.matches("\\p{Space}*") : isBlank(line))) continue;
                 if (line==null || (!line.startsWith(" ") && linecount++>0 && ( !firstSecKey.equals(START_SEQUENCE_TAG)  || line.startsWith(END_SEQUENCE_TAG)))) {
                     // dump out last part of section
                     section.add(new String[]{currKey,currVal.toString()});
@@ -597,15 +713,13 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
                     if (getElideSymbols() && firstSecKey.equals(START_SEQUENCE_TAG) && !line.startsWith(END_SEQUENCE_TAG)) {
                         continue;
                     }
-                    Matcher m = sectp.matcher(line);
-                    if (m.matches()) {
+                    String[] entry = this.regexParsing ? matchLine(line) : splitLine(line);
+                    if (entry!=null) {
                         // new key
                         if (currKey!=null) section.add(new String[]{currKey,currVal.toString()});
-                        // key = group(2) or group(4) or group(6) - whichever is not null
-                        currKey = m.group(2)==null?(m.group(4)==null?m.group(6):m.group(4)):m.group(2);
+                        currKey = entry[0];
                         currVal = new StringBuffer();
-                        // val = group(3) if group(2) not null, group(5) if group(4) not null, "" otherwise, trimmed
-                        currVal.append((m.group(2)==null?(m.group(4)==null?"":m.group(5)):m.group(3)).trim());
+                        currVal.append(entry[1]);
                     } else {
                         // concatted line or SEQ START/END line?
                         if (line.startsWith(START_SEQUENCE_TAG) || line.startsWith(END_SEQUENCE_TAG)) currKey = line;
@@ -626,6 +740,92 @@ public class GenbankFormat extends RichSequenceFormat.HeaderlessFormat {
         return section;
     }
     
+    /**
+     * Splits a line that starts a new entry of a section into its key and
+     * trimmed value, or returns null if the line continues the last entry.
+     * This reads the same line grammar as sectp, but by looking at where
+     * the first non-whitespace character falls: within the first nine
+     * columns it starts a key, and at column 22 a '/' starts a qualifier.
+     */
+    static String[] splitLine(String line) {
+        int length = line.length();
+        int start = 0;
+        while (start<length && isSpace(line.charAt(start))) start++;
+        if (start==length) return null;
+        if (start<=8) {
+            //  \s{0,8} word \s{0,7} value
+            int end = start;
+            while (end<length && !isSpace(line.charAt(end))) end++;
+            return new String[]{line.substring(start,end),line.substring(end).trim()};
+        }
+        if (start!=21 || line.charAt(21)!='/') return null;
+        // the qualifier name needs at least one character after the '/'
+        int end = 22;
+        while (end<length && !isSpace(line.charAt(end)) && (line.charAt(end)!='=' || end==22)) end++;
+        if (end==length) {
+            //  \s{21} /word
+            return end>22 ? new String[]{line.substring(21),""} : null;
+        }
+        //  \s{21} /word = value
+        if (line.charAt(end)=='=') return new String[]{line.substring(21,end),line.substring(end+1).trim()};
+        return null;
+    }
+
+    // splits a line with sectp, as readSection did before splitLine
+    private static String[] matchLine(String line) {
+        Matcher m = sectp.matcher(line);
+        if (!m.matches()) return null;
+        // key = group(2) or group(4) or group(6) - whichever is not null
+        String key = m.group(2)==null?(m.group(4)==null?m.group(6):m.group(4)):m.group(2);
+        // val = group(3) if group(2) not null, group(5) if group(4) not null, "" otherwise, trimmed
+        String val = (m.group(2)==null?(m.group(4)==null?"":m.group(5)):m.group(3)).trim();
+        return new String[]{key,val};
+    }
+
+    // whether the line is empty or only has whitespace characters
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) if (!isSpace(line.charAt(i))) return false;
+        return true;
+    }
+
+    // the characters matched by \s
+    private static boolean isSpace(char c) {
+        return c==' ' || c=='\t' || c=='\n' || c=='\u000B' || c=='\f' || c=='\r';
+    }
+
+    // an upper bound on the number of symbols in the sequence lines of an ORIGIN section
+    private int countSymbols(List section) {
+        int count = 0;
+        for (int i = 1; i < section.size(); i++) count += ((String[])section.get(i))[1].length();
+        return count;
+    }
+
+    /**
+     * Reads the symbols of the sequence lines of an ORIGIN section into the
+     * given array, skipping whitespace and reading '.', '|' and '~' as gaps.
+     * Each distinct character is only passed to the tokenization once.
+     * Returns the number of symbols read.
+     */
+    private int readSymbols(List section, SymbolTokenization symParser, Symbol[] syms) throws IllegalSymbolException {
+        Symbol[] ascii = new Symbol[128];
+        int length = 0;
+        for (int i = 1; i < section.size(); i++) {
+            String val = ((String[])section.get(i))[1];
+            for (int j = 0; j < val.length(); j++) {
+                char c = val.charAt(j);
+                if (isSpace(c)) continue;
+                if (c=='.' || c=='|' || c=='~') c = '-';
+                Symbol sym = c<128 ? ascii[c] : null;
+                if (sym==null) {
+                    sym = symParser.parseToken(String.valueOf(c));
+                    if (c<128) ascii[c] = sym;
+                }
+                syms[length++] = sym;
+            }
+        }
+        return length;
+    }
+
     private final List buildBaseRanges(final String theBaseRangeList) throws ParseException {
         if (theBaseRangeList == null) return null;
         final List baseRangeList = new ArrayList();
@@ -128,8 +128,12 @@ J00194:100..202           Points to bases 100 to 202, inclusive, in the entry
          
          */
         
-        rank = 0;
-        return parseLocString(featureNS, featureAccession, null, Strand.POSITIVE_STRAND, locationString);
+        rank.set(new int[1]);
+        try {
+            return parseLocString(featureNS, featureAccession, null, Strand.POSITIVE_STRAND, locationString);
+        } finally {
+            rank.remove();
+        }
     }
     
     // O beautiful regex, we worship you.
@@ -141,8 +145,13 @@ J00194:100..202           Points to bases 100 to 202, inclusive, in the entry
     private static Pattern xp = Pattern.compile("^(.*?)(\\.(\\d+))?:$");
     // this matches a single base position 
     private static Pattern pp = Pattern.compile("^\\(*(<|>)?(\\d+)(([\\.\\^])(\\d+))?(<|>)?\\)*$");
-    // used to assign an ascending rank to each location found
-    private static int rank;
+    // used to assign an ascending rank to each location found, kept per
+    // thread so that records can be parsed concurrently
+    private static final ThreadLocal rank = new ThreadLocal();
+
+    private static int nextRank() {
+        return ++((int[])rank.get())[0];
+    }
     
     // this function allows us to recursively parse bracketed groups
     private static RichLocation parseLocString(Namespace featureNS, String featureAccession, CrossRef parentXref, Strand parentStrand, String locStr) throws ParseException {
@@ -272,11 +281,11 @@ J00194:100..202           Points to bases 100 to 202, inclusive, in the entry
         Position startPos = parsePosition(start);
         if (end==null) {
             // A point location
-            return new SimpleRichLocation(startPos,startPos,++rank,strand,crossRef);
+            return new SimpleRichLocation(startPos,startPos,nextRank(),strand,crossRef);
         } else {
             // A range location
             Position endPos = parsePosition(end);
-            return new SimpleRichLocation(startPos,endPos,++rank,strand,crossRef);
+            return new SimpleRichLocation(startPos,endPos,nextRank(),strand,crossRef);
         }
     }
     
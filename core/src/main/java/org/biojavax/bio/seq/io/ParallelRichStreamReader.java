@@ -0,0 +1,308 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojavax.bio.seq.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojavax.Namespace;
+import org.biojavax.bio.BioEntry;
+import org.biojavax.bio.seq.RichSequence;
+import org.biojavax.bio.seq.RichSequenceIterator;
+
+/**
+ * Parses a stream of flat file records into sequences on several threads.
+ * Works like RichStreamReader for formats whose records end with a line
+ * starting with "//", such as GenBank, EMBL and UniProt. The stream itself
+ * is read on the calling thread and only cut into records at each "//"
+ * line, which is cheap; the records are then parsed on a pool of worker
+ * threads, each into a builder of its own.
+ * <p>
+ * The format given is used as a template only: formats keep the state of
+ * the record being read in their fields, so every record is parsed by a
+ * fresh instance of the same class with the same elide settings. The
+ * format class must therefore have a public no-argument constructor.
+ * <p>
+ * Sequences come back in the order of the stream when the reader is
+ * ordered, otherwise in the order in which they finish parsing. At most
+ * twice as many records as there are threads are held in memory at once.
+ * A record that can't be parsed fails only its own call to
+ * nextRichSequence; the records after it can still be read. Call close()
+ * to stop the workers if the stream is abandoned before it is exhausted.
+ * <p>
+ * Records are parsed ahead of the one last returned, in both modes, and
+ * the objects that RichObjectFactory caches are shared between records.
+ * Some formats change those objects while parsing: UniProt, for instance,
+ * adds the secondary accessions of each DR line as notes to a cached
+ * CrossRef, so two records naming the same cross reference each end up
+ * with the notes of both. Note sets are copied under a lock, so writing a
+ * sequence while the workers still add notes is safe, but a sequence
+ * returned by this reader may already show changes made by records later
+ * in the stream. Only once the whole stream has been read are the
+ * sequences the same as those read with RichStreamReader. Read every
+ * record before writing or comparing sequences that share such objects.
+ * @since 1.9.8
+ */
+
+public class ParallelRichStreamReader implements RichSequenceIterator {
+
+    private Namespace ns;
+
+    private SymbolTokenization symParser;
+
+    private RichSequenceFormat format;
+
+    private RichSequenceBuilderFactory sf;
+
+    private BufferedReader reader;
+
+    private boolean ordered;
+
+    private int maxPending;
+
+    private ExecutorService executor;
+
+    // results of records in stream order, when ordered
+    private LinkedList pending = new LinkedList();
+
+    // results of records in completion order, when unordered
+    private CompletionService completed;
+
+    private int inFlight = 0;
+
+    private boolean moreRecordsAvailable = true;
+
+    // a read failure, reported once the records before it have been returned
+    private IOException readFailure;
+
+    /**
+     * {@inheritDoc}
+     */
+    public Sequence nextSequence() throws NoSuchElementException, BioException {
+        return this.nextRichSequence();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BioEntry nextBioEntry() throws NoSuchElementException, BioException {
+        return this.nextRichSequence();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RichSequence nextRichSequence() throws NoSuchElementException, BioException {
+        this.fill();
+        if (this.inFlight==0) {
+            if (this.readFailure!=null) {
+                IOException e = this.readFailure;
+                this.readFailure = null;
+                throw new BioException("Could not read sequence",e);
+            }
+            throw new NoSuchElementException("Stream is empty");
+        }
+        try {
+            Future result = this.ordered ? (Future)this.pending.removeFirst() : this.completed.take();
+            this.inFlight--;
+            return (RichSequence)result.get();
+        } catch (ExecutionException e) {
+            throw new BioException("Could not read sequence",e.getCause());
+        } catch (InterruptedException e) {
+            throw new BioException("Interrupted while reading sequence",e);
+        } finally {
+            if (this.inFlight==0 && !this.moreRecordsAvailable) this.executor.shutdown();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasNext() {
+        this.fill();
+        return this.inFlight>0 || this.readFailure!=null;
+    }
+
+    /**
+     * Stops reading the stream and abandons any records being parsed. The
+     * underlying reader is not closed.
+     */
+    public void close() {
+        this.moreRecordsAvailable = false;
+        this.pending.clear();
+        this.inFlight = 0;
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Cuts records off the stream and hands them to the workers until
+     * enough are pending or the stream runs out.
+     */
+    private void fill() {
+        while (this.moreRecordsAvailable && this.inFlight<this.maxPending) {
+            String record;
+            try {
+                record = this.nextRecord();
+            } catch (IOException e) {
+                this.readFailure = e;
+                record = null;
+            }
+            if (record==null) {
+                this.moreRecordsAvailable = false;
+                if (this.inFlight==0) this.executor.shutdown();
+                return;
+            }
+            Callable task = new ParseTask(record);
+            if (this.ordered) this.pending.add(this.executor.submit(task));
+            else this.completed.submit(task);
+            this.inFlight++;
+        }
+    }
+
+    /**
+     * Reads the lines up to and including the next "//" line, or whatever
+     * is left at the end of the stream. Returns null once only blank lines
+     * remain.
+     */
+    private String nextRecord() throws IOException {
+        StringBuffer record = new StringBuffer();
+        boolean blank = true;
+        String line;
+        while ((line=this.reader.readLine())!=null) {
+            if (blank && line.trim().length()==0) continue;
+            blank = false;
+            record.append(line).append('\n');
+            if (line.startsWith("//")) break;
+        }
+        return blank ? null : record.toString();
+    }
+
+    private RichSequenceFormat copyFormat() throws InstantiationException, IllegalAccessException {
+        RichSequenceFormat copy = (RichSequenceFormat)this.format.getClass().newInstance();
+        copy.setElideSymbols(this.format.getElideSymbols());
+        copy.setElideFeatures(this.format.getElideFeatures());
+        copy.setElideReferences(this.format.getElideReferences());
+        copy.setElideComments(this.format.getElideComments());
+        if (copy instanceof RichSequenceFormat.BasicFormat) {
+            ((RichSequenceFormat.BasicFormat)copy).setLazyFeatures(((RichSequenceFormat.BasicFormat)this.format).getLazyFeatures());
+        }
+        return copy;
+    }
+
+    private class ParseTask implements Callable {
+        private String record;
+
+        private ParseTask(String record) {
+            this.record = record;
+        }
+
+        public Object call() throws Exception {
+            RichSequenceBuilder builder = (RichSequenceBuilder)sf.makeSequenceBuilder();
+            copyFormat().readRichSequence(new BufferedReader(new StringReader(this.record)), symParser, builder, ns);
+            return builder.makeRichSequence();
+        }
+    }
+
+    /**
+     * Creates a new parallel stream reader on the given input stream, which will
+     * attempt to read sequences in the given format, having symbols from the given
+     * tokenization, and pass them to the given factory to be transformed into
+     * RichSequence objects in the given namespace.
+     * @param is the input stream to read from
+     * @param format the input file format, copied for each record
+     * @param symParser the tokenizer that understands the sequence symbols in the file
+     * @param sf the factory that will build the sequences
+     * @param ns the namespace the sequences will be loaded into.
+     * @param threads the number of threads to parse records on
+     * @param ordered whether sequences are returned in the order of the stream
+     */
+    public ParallelRichStreamReader(InputStream is,
+            RichSequenceFormat format,
+            SymbolTokenization symParser,
+            RichSequenceBuilderFactory sf,
+            Namespace ns,
+            int threads,
+            boolean ordered)  {
+        this(new BufferedReader(new InputStreamReader(is)), format,symParser,sf,ns,threads,ordered);
+    }
+
+    /**
+     * Creates a new parallel stream reader on the given reader, which will attempt
+     * to read sequences in the given format, having symbols from the given
+     * tokenization, and pass them to the given factory to be transformed into
+     * RichSequence objects in the given namespace.
+     * @param reader the reader to read from
+     * @param format the input file format, copied for each record
+     * @param symParser the tokenizer that understands the sequence symbols in the file
+     * @param sf the factory that will build the sequences
+     * @param ns the namespace the sequences will be loaded into.
+     * @param threads the number of threads to parse records on
+     * @param ordered whether sequences are returned in the order of the stream
+     * @throws IllegalArgumentException if threads is less than one, or the
+     * format can't be instantiated through a public no-argument constructor.
+     */
+    public ParallelRichStreamReader(BufferedReader reader,
+            RichSequenceFormat format,
+            SymbolTokenization symParser,
+            RichSequenceBuilderFactory sf,
+            Namespace ns,
+            int threads,
+            boolean ordered)  {
+        if (threads<1) throw new IllegalArgumentException("Need at least one thread, not "+threads);
+        this.reader = reader;
+        this.format = format;
+        this.symParser = symParser;
+        this.sf = sf;
+        this.ns = ns;
+        this.ordered = ordered;
+        this.maxPending = threads*2;
+        try {
+            this.copyFormat();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Format "+format.getClass().getName()+" can't be copied for each record: "+e);
+        }
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ParallelRichStreamReader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.completed = new ExecutorCompletionService(this.executor);
+    }
+}
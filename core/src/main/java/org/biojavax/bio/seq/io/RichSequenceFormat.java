@@ -217,6 +217,7 @@ public interface RichSequenceFormat extends SequenceFormat {
         private boolean elideFeatures = false;
         private boolean elideComments = false;
         private boolean elideReferences = false;
+        private boolean lazyFeatures = false;
         private PrintStream os;
         
         /**
@@ -286,6 +287,25 @@ public interface RichSequenceFormat extends SequenceFormat {
          */
         public void setElideComments(boolean elideComments) { this.elideComments = elideComments; }
         
+        /**
+         * Is the format going to defer parsing of feature data?
+         * @return true if it is, otherwise false (false is default).
+         * @since 1.9.8
+         */
+        public boolean getLazyFeatures() { return this.lazyFeatures; }
+        
+        /**
+         * Use this method to toggle lazy reading of feature data. When set, formats
+         * that support it hand the feature table of each record to listeners that
+         * implement DeferredFeatureListener instead of parsing it, and sequences made
+         * by SimpleRichSequenceBuilder only parse it when their features are first
+         * accessed. Other listeners, and formats that don't support it, read
+         * features as usual.
+         * @param lazyFeatures set to true if you want feature data parsed on demand.
+         * @since 1.9.8
+         */
+        public void setLazyFeatures(boolean lazyFeatures) { this.lazyFeatures = lazyFeatures; }
+        
         /**
          * {@inheritDoc}
          */
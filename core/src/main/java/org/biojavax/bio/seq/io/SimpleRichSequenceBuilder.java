@@ -21,6 +21,7 @@
 
 package org.biojavax.bio.seq.io;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -29,6 +30,7 @@ import java.util.TreeSet;
 
 import org.biojava.bio.BioError;
 import org.biojava.bio.BioException;
+import org.biojava.bio.BioRuntimeException;
 import org.biojava.bio.seq.Feature;
 import org.biojava.bio.seq.FeatureHolder;
 import org.biojava.bio.seq.Sequence;
@@ -72,7 +74,7 @@ import org.biojavax.ontology.ComparableTerm;
  * @author George Waldon
  * @since 1.5
  */
-public class SimpleRichSequenceBuilder extends RichSeqIOAdapter implements RichSequenceBuilder {
+public class SimpleRichSequenceBuilder extends RichSeqIOAdapter implements RichSequenceBuilder, DeferredFeatureListener {
     
     private RichAnnotation notes = new SimpleRichAnnotation();
     
@@ -136,6 +138,7 @@ public class SimpleRichSequenceBuilder extends RichSeqIOAdapter implements RichS
             this.rootFeatures.clear();
             this.featureStack.clear();
             this.allFeatures.clear();
+            this.deferredFeatures = null;
             this.notes.clear();
         }catch(ChangeVetoException ex){
             throw new BioError("A ChangeListener should not have been applied", ex);
@@ -311,6 +314,17 @@ public class SimpleRichSequenceBuilder extends RichSeqIOAdapter implements RichS
     private List featureStack = new ArrayList();
     private int featureRank = 1;
     
+    /**
+     * {@inheritDoc}
+     * The table is kept, and parsed by the sequence made by this builder the
+     * first time its features are used.
+     */
+    public void setDeferredFeatures(DeferredFeatureTable features) throws ParseException {
+        if (this.deferredFeatures!=null) throw new ParseException("Current BioEntry already has a feature table");
+        this.deferredFeatures = features;
+    }
+    private DeferredFeatureTable deferredFeatures;
+    
     /**
      * {@inheritDoc}
      */ 
@@ -427,36 +441,25 @@ public class SimpleRichSequenceBuilder extends RichSeqIOAdapter implements RichS
         // make our basic object
         SymbolList syms = this.symbols==null?SymbolList.EMPTY_LIST:this.symbols.makeSymbolList();
         RichSequence rs = new SimpleRichSequence(this.namespace,this.name,this.accession,this.version,syms,new Double(this.seqVersion));
+        int circularLength = this.circular && this.symbols!=null ? syms.length() : -1;
         // set misc stuff
         try {
             // set features
-            for (Iterator i = this.allFeatures.iterator(); i.hasNext(); ){
-                RichFeature f = (RichFeature)i.next();
-                f.setParent(rs);
-                if (f.getName()==null || f.getName().length()==0) f.setName(rs.getAccession()+"#"+f.getRank()); // dummy feature name for use in GBrowse
-            }
+            if (this.deferredFeatures==null) attachFeatures(rs,this.allFeatures,this.rootFeatures,circularLength);
             rs.setDescription(this.description);
             rs.setDivision(this.division);
             rs.setIdentifier(this.identifier);
             rs.setTaxon(this.taxon);
             rs.setCircular(this.circular);
-            if(this.circular && this.symbols!=null) {
-                int circularlength = syms.length();
-                for(Object obj:rootFeatures) {
-                    Feature rf = (Feature)obj;
-                    RichLocation rlc = RichLocation.Tools.enrich(rf.getLocation());
-                    rlc.setCircularLength(circularlength);
-                }
-            }
-            rs.setFeatureSet(this.rootFeatures);
+            if (this.deferredFeatures==null) rs.setFeatureSet(this.rootFeatures);
+            else rs.setFeatureSet(new DeferredFeatureSet(rs,this.deferredFeatures,circularLength));
             for (Iterator<RankedCrossRef> i = this.crossRefs.iterator(); i.hasNext(); ) rs.addRankedCrossRef(i.next());
             for (Iterator<BioEntryRelationship> i = this.relations.iterator(); i.hasNext(); ) rs.addRelationship(i.next());
-            if(this.circular && this.symbols!=null) {
-                int circularlength = syms.length();
+            if(circularLength>=0) {
                 for(RankedDocRef rdf:references) {
                     RichLocation rlc = RichLocation.Tools.enrich(rdf.getLocation());
                     if(!(rlc instanceof EmptyRichLocation)) // Can be empty
-                        rlc.setCircularLength(circularlength);
+                        rlc.setCircularLength(circularLength);
                 }
             }
             for (Iterator<RankedDocRef> i = this.references.iterator(); i.hasNext(); ) rs.addRankedDocRef(i.next());
@@ -470,6 +473,60 @@ public class SimpleRichSequenceBuilder extends RichSeqIOAdapter implements RichS
         return rs;
     }
     
+    // gives parsed features their sequence, and circular locations its length
+    private static void attachFeatures(RichSequence rs, List allFeatures, Set rootFeatures, int circularLength) throws ChangeVetoException {
+        for (Iterator i = allFeatures.iterator(); i.hasNext(); ){
+            RichFeature f = (RichFeature)i.next();
+            f.setParent(rs);
+            if (f.getName()==null || f.getName().length()==0) f.setName(rs.getAccession()+"#"+f.getRank()); // dummy feature name for use in GBrowse
+        }
+        if(circularLength>=0) {
+            for(Object obj:rootFeatures) {
+                Feature rf = (Feature)obj;
+                RichLocation rlc = RichLocation.Tools.enrich(rf.getLocation());
+                rlc.setCircularLength(circularLength);
+            }
+        }
+    }
+    
+    /**
+     * The feature set of a sequence read with lazy features. The deferred
+     * feature table is parsed the first time the set is used.
+     */
+    private static class DeferredFeatureSet extends AbstractSet {
+        private RichSequence rs;
+        private DeferredFeatureTable table;
+        private int circularLength;
+        private Set features;
+        
+        private DeferredFeatureSet(RichSequence rs, DeferredFeatureTable table, int circularLength) {
+            this.rs = rs;
+            this.table = table;
+            this.circularLength = circularLength;
+        }
+        
+        private synchronized Set features() {
+            if (this.features==null) {
+                SimpleRichSequenceBuilder builder = new SimpleRichSequenceBuilder();
+                try {
+                    this.table.readFeatures(builder);
+                    attachFeatures(this.rs,builder.allFeatures,builder.rootFeatures,this.circularLength);
+                } catch (Exception e) {
+                    throw new BioRuntimeException("Unable to read features of "+this.rs.getAccession(),e);
+                }
+                this.features = builder.rootFeatures;
+                this.table = null;
+            }
+            return this.features;
+        }
+        
+        public Iterator iterator() { return this.features().iterator(); }
+        public int size() { return this.features().size(); }
+        public boolean contains(Object o) { return this.features().contains(o); }
+        public boolean add(Object o) { return this.features().add(o); }
+        public boolean remove(Object o) { return this.features().remove(o); }
+    }
+    
     /**
      * {@inheritDoc}
      */
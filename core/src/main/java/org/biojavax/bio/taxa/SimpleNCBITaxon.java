@@ -111,7 +111,7 @@ public class SimpleNCBITaxon extends AbstractChangeable implements NCBITaxon {
     /**
      * {@inheritDoc}
      */
-    public Set getNames(String nameClass) throws IllegalArgumentException {
+    public synchronized Set getNames(String nameClass) throws IllegalArgumentException {
         if (nameClass==null) throw new IllegalArgumentException("Name class cannot be null");
         Set items = (Set)this.namesMap.get(nameClass);
         Set n = new TreeSet();
@@ -143,7 +143,7 @@ public class SimpleNCBITaxon extends AbstractChangeable implements NCBITaxon {
     /**
      * {@inheritDoc}
      */
-    public void addName(String nameClass, String name) throws IllegalArgumentException,ChangeVetoException {
+    public synchronized void addName(String nameClass, String name) throws IllegalArgumentException,ChangeVetoException {
         if (name==null) throw new IllegalArgumentException("Name cannot be null");
         if (nameClass==null) throw new IllegalArgumentException("Name class cannot be null");
         SimpleNCBITaxonName n = new SimpleNCBITaxonName(nameClass, name);
@@ -172,7 +172,7 @@ public class SimpleNCBITaxon extends AbstractChangeable implements NCBITaxon {
     /**
      * {@inheritDoc}
      */
-    public boolean removeName(String nameClass, String name) throws IllegalArgumentException,ChangeVetoException {
+    public synchronized boolean removeName(String nameClass, String name) throws IllegalArgumentException,ChangeVetoException {
         if (name==null) throw new IllegalArgumentException("Name cannot be null");
         if (nameClass==null) throw new IllegalArgumentException("Name class cannot be null");
         SimpleNCBITaxonName n = new SimpleNCBITaxonName(nameClass, name);
@@ -202,7 +202,7 @@ public class SimpleNCBITaxon extends AbstractChangeable implements NCBITaxon {
     /**
      * {@inheritDoc}
      */
-    public boolean containsName(String nameClass, String name) throws IllegalArgumentException {
+    public synchronized boolean containsName(String nameClass, String name) throws IllegalArgumentException {
         if (name==null) throw new IllegalArgumentException("Name cannot be null");
         if (nameClass==null) throw new IllegalArgumentException("Name class cannot be null");
         if (!this.namesMap.containsKey(nameClass)) return false;
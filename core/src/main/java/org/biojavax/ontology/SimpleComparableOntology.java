@@ -124,12 +124,12 @@ public class SimpleComparableOntology extends AbstractChangeable implements Comp
     /**
      * {@inheritDoc}
      */
-    public boolean containsTerm(String name) { return this.termsMap.containsKey(name); }
+    public synchronized boolean containsTerm(String name) { return this.termsMap.containsKey(name); }
     
     /**
      * {@inheritDoc}
      */
-    public Term getTerm(String s) throws NoSuchElementException {
+    public synchronized Term getTerm(String s) throws NoSuchElementException {
         if (!this.termsMap.containsKey(s)) throw new NoSuchElementException("Ontology does not have term with name "+s);
         return (ComparableTerm)this.termsMap.get(s);
     }
@@ -138,7 +138,7 @@ public class SimpleComparableOntology extends AbstractChangeable implements Comp
      * {@inheritDoc}
      * If the term has to be created, it is added with the description "auto-generated by biojavax".
      */
-    public ComparableTerm getOrCreateTerm(String name) {
+    public synchronized ComparableTerm getOrCreateTerm(String name) {
         try {
             if (!this.termsMap.containsKey(name)) return (ComparableTerm)this.createTerm(name,"auto-generated by biojavax",null);
             else return (ComparableTerm)this.getTerm(name);
@@ -171,7 +171,7 @@ public class SimpleComparableOntology extends AbstractChangeable implements Comp
     /**
      * {@inheritDoc}
      */
-    public ComparableTerm getOrImportTerm(Term term) {
+    public synchronized ComparableTerm getOrImportTerm(Term term) {
         //if (term instanceof ComparableTerm) return (ComparableTerm)term;
         try {
             if (!this.termsMap.containsKey(term.getName())) return (ComparableTerm)this.importTerm(term,term.getName());
@@ -184,7 +184,7 @@ public class SimpleComparableOntology extends AbstractChangeable implements Comp
     /**
      * {@inheritDoc}
      */
-    public Term createTerm(String name, String description, Object[] synonyms) throws AlreadyExistsException, ChangeVetoException, IllegalArgumentException {
+    public synchronized Term createTerm(String name, String description, Object[] synonyms) throws AlreadyExistsException, ChangeVetoException, IllegalArgumentException {
         if (name==null) throw new IllegalArgumentException("Name cannot be null");
         if (this.termsMap.containsKey(name)) throw new AlreadyExistsException("Ontology already has term with this name");
         ComparableTerm ct = new SimpleComparableTerm(this,name,synonyms);
@@ -217,7 +217,7 @@ public class SimpleComparableOntology extends AbstractChangeable implements Comp
      * becomes a part of this ontology instead of a pointer to another ontology.
      * @see ComparableTerm
      */
-    public Term importTerm(Term t, String localName) throws ChangeVetoException, IllegalArgumentException {
+    public synchronized Term importTerm(Term t, String localName) throws ChangeVetoException, IllegalArgumentException {
         if (localName==null) localName=t.getName();
         if (localName==null) throw new IllegalArgumentException("Name cannot be null");
         if (this.termsMap.containsKey(localName)) return (ComparableTerm)this.termsMap.get(localName);
@@ -381,7 +381,7 @@ public class SimpleComparableOntology extends AbstractChangeable implements Comp
      * set so you are safe to modify it.
      * @see ComparableTerm
      */
-    public Set getTerms() { return new TreeSet(this.termsMap.values()); }
+    public synchronized Set getTerms() { return new TreeSet(this.termsMap.values()); }
     
     /**
      * {@inheritDoc}
@@ -77,6 +77,33 @@ public class DistributionTest extends TestCase {
     }
   }
   
+  // check that weights can be read and written by index
+  public void testIndexedWeights() throws Exception {
+    SimpleDistribution sd = (SimpleDistribution) dist;
+    for (int i = 0; i < 4; i++) {
+      Symbol s = sd.getIndexer().symbolForIndex(i);
+      assertEquals(s.getName(), dist.getWeight(s), sd.getWeight(i), 0.0);
+    }
+
+    double[] w = new double[] { 0.4, 0.3, 0.2, 0.1 };
+    sd.setWeights(w);
+    w[0] = 0.0;
+    for (int i = 0; i < 4; i++) {
+      assertEquals(sd.getIndexer().symbolForIndex(i).getName(),
+                   0.4 - 0.1 * i, dist.getWeight(sd.getIndexer().symbolForIndex(i)), delta);
+    }
+    try {
+      sd.setWeights(new double[] { 0.5, 0.5 });
+      fail("Should not accept the wrong number of weights");
+    } catch (IllegalArgumentException iae) {
+    }
+
+    SimpleDistribution copy = new SimpleDistribution(dist);
+    for (int i = 0; i < 4; i++) {
+      assertEquals(sd.getWeight(i), copy.getWeight(i), 0.0);
+    }
+  }
+
   // check that the ambiguity stuff works
   public void testAmbiguities() {
     try {
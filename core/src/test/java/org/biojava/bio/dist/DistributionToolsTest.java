@@ -1,8 +1,11 @@
 package org.biojava.bio.dist;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -11,6 +14,8 @@ import org.biojava.bio.alignment.SimpleAlignment;
 import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.seq.Sequence;
 import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.AtomicSymbol;
+import org.biojava.bio.symbol.FiniteAlphabet;
 import org.biojava.bio.symbol.Symbol;
 import org.biojava.bio.symbol.SymbolList;
 
@@ -92,6 +97,97 @@ public class DistributionToolsTest extends TestCase {
     }
   }
 
+  public void testCountOverAlignment() throws Exception {
+    Map<String,SymbolList> rows = new HashMap<String, SymbolList>();
+    rows.put("0", DNATools.createDNA("acgn"));
+    rows.put("1", DNATools.createDNA("a-gr"));
+    rows.put("2", DNATools.createDNA("atga"));
+    IndexedCount[] counts = DistributionTools.countOverAlignment(new SimpleAlignment(rows));
+    assertEquals(4, counts.length);
+    assertEquals(3.0, counts[0].getCount(DNATools.a()), 0.0);
+    assertEquals(0.0, counts[0].getCount(DNATools.c()), 0.0);
+    assertEquals(1.0, counts[1].getCount(DNATools.c()), 0.0);
+    assertEquals(1.0, counts[1].getCount(DNATools.t()), 0.0);
+    assertEquals(0.0, counts[1].getCount(DNATools.a()), 0.0);
+    assertEquals(3.0, counts[2].getCount(DNATools.g()), 0.0);
+    // n matches everything, r matches a and g
+    assertEquals(3.0, counts[3].getCount(DNATools.a()), 0.0);
+    assertEquals(1.0, counts[3].getCount(DNATools.c()), 0.0);
+    assertEquals(2.0, counts[3].getCount(DNATools.g()), 0.0);
+    assertEquals(1.0, counts[3].getCount(DNATools.t()), 0.0);
+    for (int k = 0; k < 4; k++) {
+      Symbol s = counts[3].getIndexer().symbolForIndex(k);
+      assertEquals(counts[3].getCount((AtomicSymbol) s), counts[3].getCount(k), 0.0);
+    }
+  }
+
+  /**
+   * Checks distOverAlignment against counts added one symbol at a time to a
+   * trainer, for an alignment with gaps and ambiguity symbols.
+   */
+  public void testDistOverAlignmentMatchesTrainer() throws Exception {
+    Random r = new Random(3L);
+    Map<String,SymbolList> rows = new HashMap<String, SymbolList>();
+    for (int i = 0; i < 40; i++) {
+      StringBuffer sb = new StringBuffer();
+      for (int j = 0; j < 25; j++) {
+        sb.append("acgtacgtacgt-nry".charAt(r.nextInt(16)));
+      }
+      rows.put("s" + i, DNATools.createDNA(sb.toString()));
+    }
+    Alignment big = new SimpleAlignment(rows);
+
+    for (int g = 0; g < 2; g++) {
+      boolean countGaps = g == 1;
+      double nullWeight = countGaps ? 0.0 : 2.5;
+      Distribution[] d = DistributionTools.distOverAlignment(big, countGaps, nullWeight);
+      assertEquals(25, d.length);
+      for (int i = 0; i < d.length; i++) {
+        Distribution expected = DistributionFactory.DEFAULT.createDistribution(DNATools.getDNA());
+        DistributionTrainerContext dtc = new SimpleDistributionTrainerContext();
+        dtc.setNullModelWeight(nullWeight);
+        dtc.registerDistribution(expected);
+        double gaps = 0.0;
+        for (Iterator<String> j = big.getLabels().iterator(); j.hasNext(); ) {
+          Symbol s = big.symbolAt(j.next(), i + 1);
+          if (s.equals(DNATools.getDNA().getGapSymbol())) {
+            gaps++;
+          }
+          if (!countGaps || !s.equals(DNATools.getDNA().getGapSymbol())) {
+            dtc.addCount(expected, s, 1.0);
+          }
+        }
+        dtc.train();
+        for (Iterator j = DNATools.getDNA().iterator(); j.hasNext(); ) {
+          Symbol s = (Symbol) j.next();
+          double w = expected.getWeight(s);
+          if (countGaps) {
+            w = w * (1.0 - gaps / 40);
+          }
+          assertEquals(w, d[i].getWeight(s), 0.0);
+        }
+      }
+    }
+  }
+
+  public void testJointDistOverAlignment() throws Exception {
+    // rows with a gap in column 3 are left out
+    Distribution joint = DistributionTools.jointDistOverAlignment(a, false, 0.0, new int[] { 3, 2 });
+    assertEquals(1.0, joint.getWeight(pair(joint, DNATools.a(), DNATools.t())), 0.000001);
+
+    joint = DistributionTools.jointDistOverAlignment(a, false, 0.0, new int[] { 1, 2 });
+    assertEquals(0.9, joint.getWeight(pair(joint, DNATools.a(), DNATools.a())), 0.000001);
+    assertEquals(0.1, joint.getWeight(pair(joint, DNATools.c(), DNATools.a())), 0.000001);
+    assertEquals(0.0, joint.getWeight(pair(joint, DNATools.a(), DNATools.c())), 0.000001);
+  }
+
+  private static Symbol pair(Distribution joint, Symbol first, Symbol second) throws Exception {
+    List<Symbol> syms = new ArrayList<Symbol>();
+    syms.add(first);
+    syms.add(second);
+    return ((FiniteAlphabet) joint.getAlphabet()).getSymbol(syms);
+  }
+
   /**
    * This method tests DistributionTools.shannonEntropy(), DistributionTools.totalEntropy()
    * and DistributionTools.bitsOfInformation().
@@ -0,0 +1,96 @@
+package org.biojava.bio.dp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.dist.DistributionFactory;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.Symbol;
+
+/**
+ * Builds pseudo-random models and sequences for the dynamic programming
+ * tests.
+ *
+ * @since 1.9.8
+ */
+public class ModelUtils {
+
+    private ModelUtils() {}
+
+    /**
+     * Returns a DNA profile HMM named "test" whose parameters are drawn
+     * from <code>random</code>.
+     */
+    public static ProfileHMM profile(int columns, Random random) throws Exception {
+        ProfileHMM model = new ProfileHMM(
+            DNATools.getDNA(), columns, DistributionFactory.DEFAULT, DistributionFactory.DEFAULT, "test"
+        );
+        randomize(model, random);
+        return model;
+    }
+
+    /**
+     * Gives every transition and emission distribution of a model random
+     * weights, visiting states and symbols in name order so that two models
+     * built the same way are randomized the same way.
+     */
+    public static void randomize(MarkovModel model, Random random) throws Exception {
+        for (Iterator i = byName(model.stateAlphabet()).iterator(); i.hasNext(); ) {
+            State state = (State) i.next();
+            randomize(model.getWeights(state), random);
+            if (state instanceof EmissionState && !(state instanceof MagicalState)) {
+                randomize(((EmissionState) state).getDistribution(), random);
+            }
+        }
+    }
+
+    /**
+     * Gives every symbol of a distribution a random weight of at least a
+     * small minimum.
+     */
+    public static void randomize(Distribution dist, Random random) throws Exception {
+        List symbols = byName((FiniteAlphabet) dist.getAlphabet());
+        double[] weights = new double[symbols.size()];
+        double sum = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 0.1 + random.nextDouble();
+            sum += weights[i];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            dist.setWeight((Symbol) symbols.get(i), weights[i] / sum);
+        }
+    }
+
+    /**
+     * Returns the symbols of an alphabet sorted by name.
+     */
+    public static List byName(FiniteAlphabet alpha) {
+        List symbols = new ArrayList();
+        for (Iterator i = alpha.iterator(); i.hasNext(); ) {
+            symbols.add(i.next());
+        }
+        Collections.sort(symbols, new Comparator() {
+            public int compare(Object a, Object b) {
+                return ((Symbol) a).getName().compareTo(((Symbol) b).getName());
+            }
+        });
+        return symbols;
+    }
+
+    /**
+     * Returns a random string of <code>length</code> DNA characters.
+     */
+    public static String dna(int length, Random random) {
+        StringBuffer dna = new StringBuffer();
+        for (int i = 0; i < length; i++) {
+            dna.append("acgt".charAt(random.nextInt(4)));
+        }
+        return dna.toString();
+    }
+}
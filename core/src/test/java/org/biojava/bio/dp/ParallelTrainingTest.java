@@ -0,0 +1,132 @@
+package org.biojava.bio.dp;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.dp.onehead.SingleDP;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.db.HashSequenceDB;
+import org.biojava.bio.seq.db.SequenceDB;
+import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Tests that training on several threads gives the same model as training on
+ * one.
+ *
+ * @since 1.9.8
+ */
+public class ParallelTrainingTest extends TestCase {
+
+    private static final int CYCLES = 3;
+
+    private static final StoppingCriteria STOPPER = new StoppingCriteria() {
+        public boolean isTrainingComplete(TrainingAlgorithm ta) {
+            return ta.getCycle() >= CYCLES;
+        }
+    };
+
+    public void testParallelMatchesSerial() throws Exception {
+        SequenceDB db = sequences(100);
+
+        ProfileHMM serial = model();
+        new BaumWelchTrainer(new SingleDP(serial)).train(db, 1.0, STOPPER);
+
+        ProfileHMM parallel = model();
+        BaumWelchTrainer trainer = new BaumWelchTrainer(new SingleDP(parallel));
+        trainer.train(db, 1.0, STOPPER, 4);
+        assertEquals(CYCLES, trainer.getCycle());
+
+        for (Iterator i = serial.stateAlphabet().iterator(); i.hasNext(); ) {
+            State state = (State) i.next();
+            State other = (State) named(parallel.stateAlphabet(), state.getName());
+            assertSameWeights(serial.getWeights(state), parallel.getWeights(other), parallel);
+            if (state instanceof EmissionState && !(state instanceof MagicalState)) {
+                assertSameWeights(
+                    ((EmissionState) state).getDistribution(),
+                    ((EmissionState) other).getDistribution(),
+                    null
+                );
+            }
+        }
+    }
+
+    public void testSingleThread() throws Exception {
+        SequenceDB db = sequences(10);
+        BaumWelchTrainer trainer = new BaumWelchTrainer(new SingleDP(model()));
+        trainer.train(db, 1.0, STOPPER, 1);
+        assertEquals(CYCLES, trainer.getCycle());
+    }
+
+    public void testExceptions() throws Exception {
+        SequenceDB db = sequences(40);
+        final IllegalSymbolException thrown = new IllegalSymbolException("test");
+        BaumWelchTrainer failing = new BaumWelchTrainer(new SingleDP(model())) {
+            protected double singleSequenceIteration(ModelTrainer trainer, SymbolList symList)
+                throws IllegalSymbolException {
+                throw thrown;
+            }
+        };
+        for (int threads = 1; threads <= 4; threads += 3) {
+            try {
+                failing.train(db, 1.0, STOPPER, threads);
+                fail("Expected an IllegalSymbolException");
+            } catch (IllegalSymbolException ise) {
+                assertSame(thrown, ise);
+            }
+        }
+
+        BaumWelchTrainer trainer = new BaumWelchTrainer(new SingleDP(model()));
+        Thread.currentThread().interrupt();
+        try {
+            trainer.train(db, 1.0, STOPPER, 4);
+            fail("Expected a BioException");
+        } catch (BioException be) {
+            assertTrue(be.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    private static void assertSameWeights(Distribution expected, Distribution actual, ProfileHMM model)
+        throws Exception {
+        FiniteAlphabet alpha = (FiniteAlphabet) expected.getAlphabet();
+        for (Iterator i = alpha.iterator(); i.hasNext(); ) {
+            Symbol sym = (Symbol) i.next();
+            Symbol otherSym = (model == null) ? sym : named(model.stateAlphabet(), sym.getName());
+            assertEquals(sym.getName(), expected.getWeight(sym), actual.getWeight(otherSym), 1e-9);
+        }
+    }
+
+    private static Symbol named(FiniteAlphabet alpha, String name) {
+        for (Iterator i = alpha.iterator(); i.hasNext(); ) {
+            Symbol sym = (Symbol) i.next();
+            if (sym.getName().equals(name)) {
+                return sym;
+            }
+        }
+        throw new AssertionError("no symbol named " + name);
+    }
+
+    /**
+     * Returns a profile HMM with the same pseudo-random parameters each time.
+     */
+    private static ProfileHMM model() throws Exception {
+        return ModelUtils.profile(4, new Random(42L));
+    }
+
+    private static SequenceDB sequences(int count) throws Exception {
+        Random random = new Random(7L);
+        HashSequenceDB db = new HashSequenceDB();
+        for (int i = 0; i < count; i++) {
+            String dna = ModelUtils.dna(3 + random.nextInt(6), random);
+            db.addSequence(DNATools.createDNASequence(dna, "seq" + i));
+        }
+        return db;
+    }
+}
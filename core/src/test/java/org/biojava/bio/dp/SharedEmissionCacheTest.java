@@ -0,0 +1,172 @@
+package org.biojava.bio.dp;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.dist.DistributionFactory;
+import org.biojava.bio.dp.onehead.SingleDP;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.symbol.AlphabetManager;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Tests for SharedEmissionCache.
+ *
+ * @since 1.9.8
+ */
+public class SharedEmissionCacheTest extends TestCase {
+
+    private static final ScoreType HALF = new ScoreType() {
+        public double calculateScore(Distribution dist, Symbol sym) throws IllegalSymbolException {
+            return dist.getWeight(sym) * 0.5;
+        }
+    };
+
+    private Random random;
+    private ProfileHMM model;
+
+    protected void setUp() throws Exception {
+        random = new Random(11L);
+        model = ModelUtils.profile(5, random);
+    }
+
+    public void testScores() throws Exception {
+        SharedEmissionCache cache = new SharedEmissionCache(model, 100);
+        ScoreType[] types = { ScoreType.PROBABILITY, ScoreType.ODDS, ScoreType.NULL_MODEL, HALF };
+        for (int t = 0; t < types.length; t++) {
+            for (Iterator i = DNATools.getDNA().iterator(); i.hasNext(); ) {
+                Symbol sym = (Symbol) i.next();
+                for (int k = 1; k <= model.columns(); k++) {
+                    EmissionState match = model.getMatch(k);
+                    assertEquals(Math.log(types[t].calculateScore(match.getDistribution(), sym)),
+                        cache.getEmission(match, sym, types[t]), 0.0);
+                }
+                assertEquals(Double.NEGATIVE_INFINITY,
+                    cache.getEmission(model.magicalState(), sym, types[t]), 0.0);
+            }
+        }
+        assertEquals(0.0, cache.getEmission(
+            model.magicalState(), AlphabetManager.getGapSymbol(), ScoreType.PROBABILITY), 0.0);
+        try {
+            cache.getEmission(model.getDelete(1), DNATools.a(), ScoreType.PROBABILITY);
+            fail("Dot states have no emissions");
+        } catch (IllegalSymbolException ise) {
+        }
+    }
+
+    public void testStatistics() throws Exception {
+        SharedEmissionCache cache = new SharedEmissionCache(model, 2);
+        EmissionState m1 = model.getMatch(1);
+        cache.getEmission(m1, DNATools.a(), ScoreType.PROBABILITY);
+        cache.getEmission(model.getMatch(2), DNATools.a(), ScoreType.PROBABILITY);
+        cache.getEmission(m1, DNATools.a(), ScoreType.ODDS);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1.0 / 3.0, cache.getHitRate(), 1e-12);
+
+        // a third row pushes out the least recently used one, (PROBABILITY, a)
+        cache.getEmission(m1, DNATools.c(), ScoreType.PROBABILITY);
+        cache.getEmission(m1, DNATools.a(), ScoreType.ODDS);
+        cache.getEmission(m1, DNATools.a(), ScoreType.PROBABILITY);
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(0.0, cache.getHitRate(), 0.0);
+    }
+
+    public void testModelChange() throws Exception {
+        SharedEmissionCache cache = new SharedEmissionCache(model, 10);
+        EmissionState m3 = model.getMatch(3);
+        long version = cache.getVersion();
+        cache.getEmission(m3, DNATools.g(), ScoreType.PROBABILITY);
+
+        Distribution dist = m3.getDistribution();
+        dist.setWeight(DNATools.g(), 0.7);
+        dist.setWeight(DNATools.a(), 0.1);
+        dist.setWeight(DNATools.c(), 0.1);
+        dist.setWeight(DNATools.t(), 0.1);
+        assertTrue(cache.getVersion() > version);
+        assertEquals(Math.log(0.7), cache.getEmission(m3, DNATools.g(), ScoreType.PROBABILITY), 1e-12);
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testSharedByDP() throws Exception {
+        SharedEmissionCache cache = new SharedEmissionCache(model, 100);
+        SingleDP reference = new SingleDP(model);
+        final SingleDP[] dps = new SingleDP[4];
+        for (int i = 0; i < dps.length; i++) {
+            dps[i] = (SingleDP) DPFactory.COMPILED.createDP(model);
+            dps[i].setEmissionCache(cache);
+            assertSame(cache, dps[i].getEmissionCache());
+        }
+
+        final SymbolList[][] seqs = new SymbolList[20][];
+        double[] expected = new double[seqs.length];
+        for (int i = 0; i < seqs.length; i++) {
+            seqs[i] = new SymbolList[] { sequence(5 + random.nextInt(20)) };
+            expected[i] = reference.forward(seqs[i], ScoreType.ODDS);
+        }
+
+        final double[][] results = new double[dps.length][seqs.length];
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[dps.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < seqs.length; i++) {
+                            results[id][i] = dps[id].forward(seqs[i], ScoreType.ODDS);
+                        }
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        for (int t = 0; t < dps.length; t++) {
+            for (int i = 0; i < seqs.length; i++) {
+                assertEquals(expected[i], results[t][i], 0.0);
+            }
+        }
+        // every DP needs each symbol once, but at most one miss per DP and symbol
+        assertTrue(cache.getHits() > 0);
+        assertTrue(cache.getMisses() <= dps.length * (DNATools.getDNA().size() + 1));
+
+        try {
+            new SingleDP(model).setEmissionCache(new SharedEmissionCache(
+                new ProfileHMM(DNATools.getDNA(), 5, DistributionFactory.DEFAULT, DistributionFactory.DEFAULT, "other"), 10));
+            fail("Should not accept a cache for another model");
+        } catch (IllegalArgumentException iae) {
+        }
+    }
+
+    public void testOtherScoreTypes() throws Exception {
+        SingleDP dp = new SingleDP(model);
+        double[] em = dp.getEmission(DNATools.t(), HALF);
+        State[] states = dp.getStates();
+        for (int i = 1; i < em.length; i++) {
+            assertEquals(Math.log(HALF.calculateScore(((EmissionState) states[i]).getDistribution(), DNATools.t())),
+                em[i], 0.0);
+        }
+    }
+
+    private SymbolList sequence(int length) throws Exception {
+        return DNATools.createDNA(ModelUtils.dna(length, random));
+    }
+}
@@ -0,0 +1,154 @@
+package org.biojava.bio.dp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.dist.DistributionFactory;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.StrandedFeature;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Tests that WeightMatrixScanner finds the same windows as scoring every
+ * window with DP.scoreWeightMatrix.
+ *
+ * @since 1.9.8
+ */
+public class WeightMatrixScannerTest extends TestCase {
+
+    private Random random;
+    private SymbolList seq;
+
+    protected void setUp() throws Exception {
+        random = new Random(11L);
+        StringBuffer dna = new StringBuffer();
+        for (int i = 0; i < 2000; i++) {
+            dna.append((random.nextInt(100) == 0) ? 'n' : "acgt".charAt(random.nextInt(4)));
+        }
+        seq = DNATools.createDNA(dna.toString());
+    }
+
+    public void testBothStrands() throws Exception {
+        WeightMatrix matrix = matrix(8);
+        WeightMatrixScanner scanner = new WeightMatrixScanner(matrix, ScoreType.PROBABILITY);
+        assertTrue(scanner.canScanReverseStrand());
+        double threshold = scanner.getMaxScore() - 5.0;
+
+        List expected = bruteForce(matrix, threshold);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, scan(scanner, threshold, 1000000));
+        assertEquals(expected, scan(scanner, threshold, 7));
+    }
+
+    public void testManyMatrices() throws Exception {
+        WeightMatrixScanner[] scanners = new WeightMatrixScanner[3];
+        double[] thresholds = new double[scanners.length];
+        List expected = new ArrayList();
+        for (int i = 0; i < scanners.length; i++) {
+            scanners[i] = new WeightMatrixScanner(matrix(6 + i * 3), ScoreType.PROBABILITY);
+            thresholds[i] = scanners[i].getMaxScore() - 4.0;
+        }
+        for (int chunkSize = 100; chunkSize <= 3000; chunkSize *= 30) {
+            final List actual = new ArrayList();
+            WeightMatrixScanner.scan(scanners, thresholds, seq, true, 3, new Collector(actual, scanners), chunkSize);
+            // hits come in chunk order, then scanner order
+            int s = 0;
+            for (int chunk = 0; chunk * chunkSize < seq.length(); chunk++) {
+                for (int i = 0; i < scanners.length; i++) {
+                    for (Iterator h = bruteForce(scanners[i].getMatrix(), thresholds[i]).iterator(); h.hasNext(); ) {
+                        String hit = (String) h.next();
+                        int start = Integer.parseInt(hit.substring(0, hit.indexOf(' ')));
+                        if (start > chunk * chunkSize && start <= (chunk + 1) * chunkSize) {
+                            assertEquals(i + ": " + hit, actual.get(s++));
+                        }
+                    }
+                }
+            }
+            assertEquals(s, actual.size());
+        }
+    }
+
+    public void testAnnotator() throws Exception {
+        WeightMatrix matrix = matrix(6);
+        WeightMatrixScanner scanner = new WeightMatrixScanner(matrix, ScoreType.PROBABILITY);
+        double threshold = Math.exp(scanner.getMaxScore() - 3.0);
+        int expected = 0;
+        for (int offset = 1; offset <= seq.length() - matrix.columns() + 1; offset++) {
+            if (Math.exp(DP.scoreWeightMatrix(matrix, seq, ScoreType.PROBABILITY, offset)) >= threshold) {
+                expected++;
+            }
+        }
+        Sequence annotated = new WeightMatrixAnnotator(matrix, threshold)
+            .annotate(DNATools.createDNASequence(seq.seqString(), "test"));
+        assertEquals(expected, annotated.countFeatures());
+    }
+
+    private List scan(WeightMatrixScanner scanner, double threshold, int chunkSize) throws Exception {
+        List hits = new ArrayList();
+        scanner.scan(seq, threshold, true, new Collector(hits, new WeightMatrixScanner[] { scanner }), chunkSize);
+        return hits;
+    }
+
+    private List bruteForce(WeightMatrix matrix, double threshold) throws Exception {
+        List hits = new ArrayList();
+        int cols = matrix.columns();
+        for (int start = 1; start <= seq.length() - cols + 1; start++) {
+            double score = DP.scoreWeightMatrix(matrix, seq, ScoreType.PROBABILITY, start);
+            if (score >= threshold) {
+                hits.add(start + " + " + round(score));
+            }
+            SymbolList window = DNATools.reverseComplement(seq.subList(start, start + cols - 1));
+            score = DP.scoreWeightMatrix(matrix, window, ScoreType.PROBABILITY, 1);
+            if (score >= threshold) {
+                hits.add(start + " - " + round(score));
+            }
+        }
+        return hits;
+    }
+
+    private static String round(double score) {
+        return String.valueOf(Math.round(score * 1e6) / 1e6);
+    }
+
+    private WeightMatrix matrix(int columns) throws Exception {
+        WeightMatrix matrix = new SimpleWeightMatrix(DNATools.getDNA(), columns, DistributionFactory.DEFAULT);
+        for (int c = 0; c < columns; c++) {
+            Distribution dist = matrix.getColumn(c);
+            double[] weights = new double[4];
+            double sum = 0.0;
+            for (int i = 0; i < 4; i++) {
+                weights[i] = Math.pow(random.nextDouble(), 3.0) + 0.01;
+                sum += weights[i];
+            }
+            for (int i = 0; i < 4; i++) {
+                dist.setWeight(DNATools.forIndex(i), weights[i] / sum);
+            }
+        }
+        return matrix;
+    }
+
+    private static class Collector implements WeightMatrixScanner.HitListener {
+        private final List hits;
+        private final WeightMatrixScanner[] scanners;
+
+        Collector(List hits, WeightMatrixScanner[] scanners) {
+            this.hits = hits;
+            this.scanners = scanners;
+        }
+
+        public void hit(WeightMatrixScanner scanner, int start, StrandedFeature.Strand strand, double score) {
+            String hit = start + " " + strand.getToken() + " " + round(score);
+            if (scanners.length > 1) {
+                hit = Arrays.asList(scanners).indexOf(scanner) + ": " + hit;
+            }
+            hits.add(hit);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.biojava.bio.dp.onehead;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.dp.DP;
+import org.biojava.bio.dp.DPFactory;
+import org.biojava.bio.dp.MagicalState;
+import org.biojava.bio.dp.ModelUtils;
+import org.biojava.bio.dp.ProfileHMM;
+import org.biojava.bio.dp.ScoreType;
+import org.biojava.bio.dp.State;
+import org.biojava.bio.dp.StatePath;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.symbol.Alphabet;
+import org.biojava.bio.symbol.DoubleAlphabet;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Tests that CompiledSingleDP gives the same results as SingleDP.
+ *
+ * @since 1.9.8
+ */
+public class CompiledSingleDPTest extends TestCase {
+
+    private ProfileHMM model;
+    private SingleDP reference;
+    private CompiledSingleDP compiled;
+    private Random random;
+
+    protected void setUp() throws Exception {
+        random = new Random(42L);
+        model = ModelUtils.profile(6, random);
+        reference = new SingleDP(model);
+        compiled = new CompiledSingleDP(model);
+    }
+
+    public void testForwardAndBackward() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            SymbolList[] seq = { sequence(1 + random.nextInt(12)) };
+            assertEquals(reference.forward(seq, ScoreType.PROBABILITY),
+                compiled.forward(seq, ScoreType.PROBABILITY), 1e-12);
+            assertEquals(reference.backward(seq, ScoreType.PROBABILITY),
+                compiled.backward(seq, ScoreType.PROBABILITY), 1e-12);
+        }
+    }
+
+    public void testMatrices() throws Exception {
+        SymbolList[] seq = { sequence(9) };
+        assertSameMatrix(
+            (SingleDPMatrix) reference.forwardMatrix(seq, ScoreType.PROBABILITY),
+            (SingleDPMatrix) compiled.forwardMatrix(seq, ScoreType.PROBABILITY)
+        );
+        assertSameMatrix(
+            (SingleDPMatrix) reference.backwardMatrix(seq, ScoreType.PROBABILITY),
+            (SingleDPMatrix) compiled.backwardMatrix(seq, ScoreType.PROBABILITY)
+        );
+    }
+
+    public void testViterbi() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            SymbolList[] seq = { sequence(1 + random.nextInt(12)) };
+            assertSamePath(
+                reference.viterbi(seq, ScoreType.PROBABILITY),
+                compiled.viterbi(seq, ScoreType.PROBABILITY)
+            );
+        }
+    }
+
+    public void testCheckpointedViterbi() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            SymbolList seq = sequence(1 + random.nextInt(30));
+            StatePath expected = compiled.viterbi(new SymbolList[] { seq }, ScoreType.PROBABILITY);
+            assertSamePath(expected, compiled.checkpointedViterbi(new SymbolList[] { seq }, ScoreType.PROBABILITY));
+            for (int interval = 1; interval <= 4; interval++) {
+                assertSamePath(expected, compiled.viterbi(seq, ScoreType.PROBABILITY, interval));
+            }
+        }
+    }
+
+    public void testStreamedViterbi() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            SymbolList seq = sequence(1 + random.nextInt(30));
+            StatePath expected = compiled.viterbi(new SymbolList[] { seq }, ScoreType.PROBABILITY);
+            for (int interval = 1; interval <= 4; interval++) {
+                final List segments = new ArrayList();
+                double score = compiled.viterbi(seq, ScoreType.PROBABILITY, interval, new CompiledSingleDP.SegmentListener() {
+                    public void segment(int start, StatePath segment) {
+                        segments.add(new Object[] { new Integer(start), segment });
+                    }
+                });
+                assertEquals(expected.getScore(), score, 1e-12);
+
+                int column = 1;
+                int position = 1;
+                double sum = 0.0;
+                for (Iterator s = segments.iterator(); s.hasNext(); ) {
+                    Object[] entry = (Object[]) s.next();
+                    assertEquals(position, ((Integer) entry[0]).intValue());
+                    StatePath segment = (StatePath) entry[1];
+                    sum += segment.getScore();
+                    for (int j = 1; j <= segment.length(); j++, column++) {
+                        Symbol sym = segment.symbolAt((String) StatePath.SEQUENCE, j);
+                        assertEquals(expected.symbolAt((String) StatePath.STATES, column), segment.symbolAt((String) StatePath.STATES, j));
+                        // a gap at the end of a segment may be internal to the whole path
+                        Symbol expectedSym = expected.symbolAt((String) StatePath.SEQUENCE, column);
+                        if (isGap(expectedSym, seq)) {
+                            assertTrue(isGap(sym, seq));
+                        } else {
+                            assertEquals(expectedSym, sym);
+                            position++;
+                        }
+                        assertEquals(score(expected, column), score(segment, j), 1e-12);
+                    }
+                }
+                assertEquals(expected.length() + 1, column);
+                assertEquals(seq.length() + 1, position);
+                assertEquals(expected.getScore(), sum, 1e-9);
+            }
+        }
+    }
+
+    public void testStreamedViterbiMemory() throws Exception {
+        final int length = 1000000;
+        SymbolList seq = sequence(length);
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        final long before = runtime.totalMemory() - runtime.freeMemory();
+        final long[] during = new long[1];
+        final int[] decoded = new int[1];
+        compiled.checkpointedViterbi(new SymbolList[] { seq }, ScoreType.PROBABILITY, new CompiledSingleDP.SegmentListener() {
+            public void segment(int start, StatePath segment) {
+                if (during[0] == 0 && start > length / 2) {
+                    System.gc();
+                    during[0] = runtime.totalMemory() - runtime.freeMemory();
+                }
+                decoded[0] = start + segment.length();
+            }
+        });
+        assertTrue(decoded[0] > length);
+        // a whole path would hold a state and a score object per position
+        assertTrue("used " + (during[0] - before) + " bytes", during[0] - before < 10L * 1024 * 1024);
+    }
+
+    public void testPosteriorDecode() throws Exception {
+        for (int interval = 1; interval <= 7; interval += 3) {
+            SymbolList seq = sequence(20);
+            SingleDPMatrix fm = (SingleDPMatrix) reference.forwardMatrix(new SymbolList[] { seq }, ScoreType.PROBABILITY);
+            SingleDPMatrix bm = (SingleDPMatrix) reference.backwardMatrix(new SymbolList[] { seq }, ScoreType.PROBABILITY);
+            final List segments = new ArrayList();
+            compiled.posteriorDecode(seq, ScoreType.PROBABILITY, interval, new CompiledSingleDP.SegmentListener() {
+                public void segment(int start, StatePath segment) {
+                    segments.add(new Object[] { new Integer(start), segment });
+                }
+            });
+            assertEquals((20 + interval - 1) / interval, segments.size());
+
+            State[] states = compiled.getStates();
+            int position = 1;
+            for (Iterator i = segments.iterator(); i.hasNext(); ) {
+                Object[] entry = (Object[]) i.next();
+                assertEquals(position, ((Integer) entry[0]).intValue());
+                StatePath segment = (StatePath) entry[1];
+                for (int j = 1; j <= segment.length(); j++, position++) {
+                    int best = -1;
+                    double bestScore = Double.NEGATIVE_INFINITY;
+                    for (int l = 0; l < compiled.getDotStatesIndex(); l++) {
+                        double p = fm.scores[position][l] + bm.scores[position][l];
+                        if (!(states[l] instanceof MagicalState) && p > bestScore) {
+                            best = l;
+                            bestScore = p;
+                        }
+                    }
+                    assertEquals(states[best], segment.symbolAt((String) StatePath.STATES, j));
+                    assertEquals(seq.symbolAt(position), segment.symbolAt((String) StatePath.SEQUENCE, j));
+                    assertEquals(bestScore - fm.getScore(), score(segment, j), 1e-9);
+                }
+            }
+            assertEquals(21, position);
+        }
+    }
+
+    public void testModelChange() throws Exception {
+        SymbolList[] seq = { sequence(8) };
+        compiled.forward(seq, ScoreType.PROBABILITY);
+        ModelUtils.randomize(model, random);
+        assertEquals(reference.forward(seq, ScoreType.PROBABILITY),
+            compiled.forward(seq, ScoreType.PROBABILITY), 1e-12);
+    }
+
+    public void testFactory() throws Exception {
+        DP dp = DPFactory.COMPILED.createDP(model);
+        assertTrue(dp instanceof CompiledSingleDP);
+        assertFalse(DPFactory.DEFAULT.createDP(model) instanceof CompiledSingleDP);
+    }
+
+    private static double score(StatePath path, int column) {
+        return ((DoubleAlphabet.DoubleSymbol) path.symbolAt((String) StatePath.SCORES, column)).doubleValue();
+    }
+
+    private static boolean isGap(Symbol sym, SymbolList seq) {
+        return sym == seq.getAlphabet().getGapSymbol() || sym == Alphabet.EMPTY_ALPHABET.getGapSymbol();
+    }
+
+    private static void assertSamePath(StatePath expected, StatePath actual) {
+        assertEquals(expected.getScore(), actual.getScore(), 1e-12);
+        assertEquals(expected.length(), actual.length());
+        for (int j = 1; j <= expected.length(); j++) {
+            assertEquals(expected.symbolAt((String) StatePath.STATES, j), actual.symbolAt((String) StatePath.STATES, j));
+            assertEquals(expected.symbolAt((String) StatePath.SEQUENCE, j), actual.symbolAt((String) StatePath.SEQUENCE, j));
+            assertEquals(score(expected, j), score(actual, j), 1e-12);
+        }
+    }
+
+    private void assertSameMatrix(SingleDPMatrix expected, SingleDPMatrix actual) {
+        assertEquals(expected.getScore(), actual.getScore(), 1e-12);
+        for (int i = 0; i < expected.scores.length; i++) {
+            for (int j = 0; j < expected.scores[i].length; j++) {
+                assertEquals(expected.scores[i][j], actual.scores[i][j], 1e-12);
+            }
+        }
+    }
+
+    private SymbolList sequence(int length) throws Exception {
+        return DNATools.createDNA(ModelUtils.dna(length, random));
+    }
+}
@@ -0,0 +1,156 @@
+package org.biojava.bio.program.hmmer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.dist.Distribution;
+import org.biojava.bio.dist.DistributionFactory;
+import org.biojava.bio.dp.DP;
+import org.biojava.bio.dp.DPFactory;
+import org.biojava.bio.dp.MarkovModel;
+import org.biojava.bio.dp.ModelUtils;
+import org.biojava.bio.dp.ScoreType;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.seq.SequenceIterator;
+import org.biojava.bio.seq.db.HashSequenceDB;
+import org.biojava.bio.symbol.Symbol;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Tests for HmmerProfileSearch.
+ *
+ * @since 1.9.8
+ */
+public class HmmerProfileSearchTest extends TestCase {
+
+    private static final String MOTIF = "gattaca";
+
+    private Random random;
+    private HmmerProfileHMM profile;
+    private HashSequenceDB db;
+
+    protected void setUp() throws Exception {
+        random = new Random(7L);
+        profile = new HmmerProfileHMM(
+            DNATools.getDNA(), MOTIF.length(), DistributionFactory.DEFAULT, DistributionFactory.DEFAULT, "test"
+        );
+        ModelUtils.randomize(profile, random);
+        for (int k = 1; k <= MOTIF.length(); k++) {
+            Distribution dist = profile.getMatch(k).getDistribution();
+            Symbol motif = DNATools.forSymbol(MOTIF.charAt(k - 1));
+            for (Iterator i = DNATools.getDNA().iterator(); i.hasNext(); ) {
+                Symbol sym = (Symbol) i.next();
+                dist.setWeight(sym, sym == motif ? 0.85 : 0.05);
+            }
+        }
+
+        db = new HashSequenceDB();
+        for (int i = 0; i < 60; i++) {
+            String dna = ModelUtils.dna(5 + random.nextInt(20), random);
+            if (i % 3 == 0) {
+                dna = dna.substring(0, dna.length() / 2) + MOTIF + dna.substring(dna.length() / 2);
+            }
+            db.addSequence(DNATools.createDNASequence(dna, "seq" + i));
+        }
+    }
+
+    public void testPrefilterScore() throws Exception {
+        HmmerProfileSearch search = new HmmerProfileSearch(profile);
+        for (int i = 0; i < 30; i++) {
+            SymbolList seq = DNATools.createDNA(ModelUtils.dna(1 + random.nextInt(20), random));
+            assertEquals(naivePrefilterScore(seq), search.prefilterScore(seq), 1e-9);
+        }
+        assertEquals(Double.NEGATIVE_INFINITY,
+            search.prefilterScore(DNATools.createDNA("")), 0.0);
+        assertEquals(naivePrefilterScore(DNATools.createDNA("gatnaca")),
+            search.prefilterScore(DNATools.createDNA("gatnaca")), 1e-9);
+    }
+
+    public void testSearch() throws Exception {
+        HmmerProfileSearch search = new HmmerProfileSearch(profile);
+        assertSearch(search, profile, 2.0, Double.NEGATIVE_INFINITY);
+        assertSearch(search, profile, 5.0, 0.0);
+    }
+
+    public void testFullModel() throws Exception {
+        FullHmmerProfileHMM full = new FullHmmerProfileHMM(profile);
+        ModelUtils.randomize(full, random);
+        HmmerProfileSearch search = new HmmerProfileSearch(full);
+        assertSame(profile, search.getProfile());
+
+        MarkovModel local = search.getModel();
+        assertEquals(full.getWeights(full.nState()).getWeight(full.hmm()) *
+            profile.getWeights(profile.magicalState()).getWeight(profile.getMatch(3)),
+            local.getWeights(full.nState()).getWeight(profile.getMatch(3)), 1e-12);
+        assertEquals(profile.getWeights(profile.getMatch(5)).getWeight(profile.magicalState()) *
+            full.getWeights(full.hmm()).getWeight(full.jState()),
+            local.getWeights(profile.getMatch(5)).getWeight(full.jState()), 1e-12);
+        assertEquals(full.getWeights(full.cState()).getWeight(full.magicalState()),
+            local.getWeights(full.cState()).getWeight(local.magicalState()), 1e-12);
+
+        List hits = assertSearch(search, local, 5.0, Double.NEGATIVE_INFINITY);
+        assertTrue(hits.size() >= 5);
+        for (Iterator i = hits.subList(0, 5).iterator(); i.hasNext(); ) {
+            String seq = ((HmmerProfileSearch.Hit) i.next()).getSequence().seqString();
+            assertTrue(seq, seq.indexOf(MOTIF) >= 0);
+        }
+    }
+
+    private List assertSearch(HmmerProfileSearch search, MarkovModel model,
+                              double prefilterThreshold, double threshold) throws Exception {
+        DP reference = DPFactory.DEFAULT.createDP(model);
+        List expected = new ArrayList();
+        for (SequenceIterator i = db.sequenceIterator(); i.hasNext(); ) {
+            Sequence seq = i.nextSequence();
+            if (search.prefilterScore(seq) >= prefilterThreshold) {
+                double score = reference.viterbi(new SymbolList[] { seq }, ScoreType.ODDS).getScore();
+                if (score >= threshold) {
+                    expected.add(new Object[] { seq.getName(), new Double(score) });
+                }
+            }
+        }
+        Collections.sort(expected, new Comparator() {
+            public int compare(Object a, Object b) {
+                return ((Double) ((Object[]) b)[1]).compareTo((Double) ((Object[]) a)[1]);
+            }
+        });
+
+        List serial = search.search(db.sequenceIterator(), prefilterThreshold, threshold, 1);
+        List parallel = search.search(db.sequenceIterator(), prefilterThreshold, threshold, 4);
+        assertEquals(expected.size(), serial.size());
+        assertEquals(expected.size(), parallel.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Object[] entry = (Object[]) expected.get(i);
+            HmmerProfileSearch.Hit hit = (HmmerProfileSearch.Hit) serial.get(i);
+            assertEquals(entry[0], hit.getSequence().getName());
+            assertEquals(((Double) entry[1]).doubleValue(), hit.getScore(), 1e-9);
+            assertEquals(search.prefilterScore(hit.getSequence()), hit.getPrefilterScore(), 0.0);
+            assertNotNull(hit.getStatePath());
+            assertSame(hit.getSequence(), ((HmmerProfileSearch.Hit) parallel.get(i)).getSequence());
+            assertEquals(hit.getScore(), ((HmmerProfileSearch.Hit) parallel.get(i)).getScore(), 0.0);
+        }
+        return serial;
+    }
+
+    private double naivePrefilterScore(SymbolList seq) throws Exception {
+        double best = Double.NEGATIVE_INFINITY;
+        for (int start = 1; start <= seq.length(); start++) {
+            for (int k = 1; k <= profile.columns(); k++) {
+                double score = 0.0;
+                for (int j = 0; start + j <= seq.length() && k + j <= profile.columns(); j++) {
+                    Distribution dist = profile.getMatch(k + j).getDistribution();
+                    score += Math.log(ScoreType.ODDS.calculateScore(dist, seq.symbolAt(start + j)));
+                    best = Math.max(best, score);
+                }
+            }
+        }
+        return best;
+    }
+}
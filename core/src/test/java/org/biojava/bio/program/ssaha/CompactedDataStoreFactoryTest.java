@@ -0,0 +1,95 @@
+package org.biojava.bio.program.ssaha;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.db.HashSequenceDB;
+import org.biojava.bio.symbol.Packing;
+import org.biojava.bio.symbol.PackingFactory;
+
+/**
+ * Tests for CompactedDataStoreFactory.
+ *
+ * @since 1.9.8
+ */
+public class CompactedDataStoreFactoryTest extends TestCase {
+
+    private HashSequenceDB db;
+    private Packing packing;
+
+    protected void setUp() throws Exception {
+        Random random = new Random(17L);
+        db = new HashSequenceDB();
+        for (int i = 0; i < 30; i++) {
+            StringBuffer dna = new StringBuffer();
+            int length = 50 + random.nextInt(2000);
+            for (int j = 0; j < length; j++) {
+                dna.append(random.nextInt(100) == 0 ? 'n' : "acgt".charAt(random.nextInt(4)));
+            }
+            if (i % 5 == 0) {
+                // a low complexity stretch, to exercise the threshold
+                for (int j = 0; j < 300; j++) {
+                    dna.append('a');
+                }
+            }
+            db.addSequence(DNATools.createDNASequence(dna.toString(), "seq" + i));
+        }
+        packing = PackingFactory.getPacking(DNATools.getDNA(), false);
+    }
+
+    public void testPartitionedBuild() throws Exception {
+        File serial = tempFile();
+        CompactedDataStoreFactory factory = new CompactedDataStoreFactory();
+        factory.buildDataStore(serial, db, packing, 8, 100);
+
+        int[][] configs = { { 1, 1 << 20 }, { 4, 5000 }, { 3, 700 } };
+        for (int c = 0; c < configs.length; c++) {
+            File partitioned = tempFile();
+            factory = new CompactedDataStoreFactory();
+            factory.setThreads(configs[c][0]);
+            factory.setMaxHitsInMemory(configs[c][1]);
+            DataStore store = factory.buildDataStore(partitioned, db, packing, 8, 100);
+            assertTrue(Arrays.equals(read(serial), read(partitioned)));
+            assertTrue(store.seqNameForID(0).startsWith("seq"));
+        }
+    }
+
+    public void testSmallWords() throws Exception {
+        // fewer words than partitions
+        File serial = tempFile();
+        new CompactedDataStoreFactory().buildDataStore(serial, db, packing, 2, 100000);
+        File partitioned = tempFile();
+        CompactedDataStoreFactory factory = new CompactedDataStoreFactory();
+        factory.setThreads(2);
+        factory.setMaxHitsInMemory(2000);
+        factory.buildDataStore(partitioned, db, packing, 2, 100000);
+        assertTrue(Arrays.equals(read(serial), read(partitioned)));
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("ssaha", ".store");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                read += in.read(bytes, read, bytes.length - read);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,231 @@
+package org.biojava.bio.search;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.ProteinTools;
+import org.biojava.bio.seq.SequenceIterator;
+import org.biojava.bio.seq.db.HashSequenceDB;
+import org.biojava.bio.seq.io.SeqIOTools;
+import org.biojava.bio.symbol.IllegalAlphabetException;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Tests for FMIndex.
+ *
+ * @since 1.9.8
+ */
+public class FMIndexTest extends TestCase {
+
+    private Random random;
+    private String[] dna;
+    private HashSequenceDB db;
+
+    protected void setUp() throws Exception {
+        random = new Random(5L);
+        dna = new String[] {
+            randomDNA(500),
+            randomDNA(200) + "gattaca" + randomDNA(100) + "gattaca",
+            "gattacannnngattaca",
+            randomDNA(1000),
+            ""
+        };
+        db = new HashSequenceDB();
+        for (int i = 0; i < dna.length; i++) {
+            db.addSequence(DNATools.createDNASequence(dna[i], "seq" + i));
+        }
+    }
+
+    public void testExact() throws Exception {
+        FMIndex index = new FMIndex(db.sequenceIterator(), DNATools.getDNA(), 8);
+        assertEquals(dna.length, index.getSequenceCount());
+        for (int i = 0; i < 200; i++) {
+            String pattern = randomDNA(1 + random.nextInt(7));
+            assertMatches(index, pattern, 0);
+            assertEquals(naive(index, pattern, 0).size(), index.count(DNATools.createDNA(pattern)));
+        }
+        assertMatches(index, "gattaca", 0);
+        assertEquals(0, index.count(DNATools.createDNA("acaaaagat")));
+    }
+
+    public void testMismatches() throws Exception {
+        FMIndex index = new FMIndex(db.sequenceIterator(), DNATools.getDNA());
+        for (int i = 0; i < 50; i++) {
+            assertMatches(index, randomDNA(6 + random.nextInt(10)), 1 + random.nextInt(2));
+        }
+        assertMatches(index, "gattaca", 2);
+        assertMatches(index, "gtnnaca", 1);
+
+        FMIndex.Matcher m = index.matcher(new MaxMismatchPattern(DNATools.createDNA("gatgaca"), 1));
+        int found = 0;
+        while (m.find()) {
+            String group = m.group().seqString();
+            assertEquals(dna(m.getSequenceName()).substring(m.start() - 1, m.end()), group);
+            assertEquals(index.getSequenceName(m.getSequenceIndex()), m.getSequenceName());
+            assertEquals(mismatches("gatgaca", group), m.mismatchCount());
+            found++;
+        }
+        assertTrue(found >= 4);
+        assertFalse(m.find());
+        try {
+            m.start();
+            fail("There should be no current match");
+        } catch (IllegalStateException ise) {
+        }
+    }
+
+    public void testFasta() throws Exception {
+        StringBuffer fasta = new StringBuffer();
+        for (int i = 0; i < dna.length; i++) {
+            fasta.append(">seq").append(i).append('\n').append(dna[i]).append('\n');
+        }
+        SequenceIterator seqs = SeqIOTools.readFastaDNA(new BufferedReader(new StringReader(fasta.toString())));
+        FMIndex index = new FMIndex(seqs, DNATools.getDNA(), 1);
+        for (int i = 0; i < dna.length; i++) {
+            assertEquals("seq" + i, index.getSequenceName(i));
+            assertEquals(dna[i].length(), index.getSequenceLength(i));
+        }
+        assertMatches(index, "gattaca", 1);
+
+        try {
+            index.matcher(ProteinTools.createProtein("GATTACA"));
+            fail("Should not search with a protein pattern");
+        } catch (IllegalAlphabetException iae) {
+        }
+    }
+
+    public void testPartitions() throws Exception {
+        FMIndex whole = new FMIndex(db.sequenceIterator(), DNATools.getDNA(), 4);
+        FMIndex split = new FMIndex(db.sequenceIterator(), DNATools.getDNA(), 4, 400);
+        assertEquals(1, whole.getPartitionCount());
+        // seq1 and seq2 share a partition, and the longer sequences get their own
+        assertEquals(4, split.getPartitionCount());
+        assertEquals(whole.length(), split.length());
+        for (int i = 0; i < dna.length; i++) {
+            assertEquals("seq" + i, split.getSequenceName(i));
+            assertEquals(dna[i].length(), split.getSequenceLength(i));
+        }
+        for (int i = 0; i < 50; i++) {
+            String pattern = randomDNA(1 + random.nextInt(8));
+            assertMatches(split, pattern, random.nextInt(2));
+            assertEquals(whole.count(DNATools.createDNA(pattern)), split.count(DNATools.createDNA(pattern)));
+        }
+        assertMatches(split, "gattaca", 2);
+    }
+
+    public void testUnpacked() throws Exception {
+        String[] protein = { "MKVLAAGIVGHHKKLLMMA", "GIVGAAGIVGNNX", "" };
+        HashSequenceDB proteins = new HashSequenceDB();
+        for (int i = 0; i < protein.length; i++) {
+            proteins.addSequence(ProteinTools.createProteinSequence(protein[i], "p" + i));
+        }
+        FMIndex index = new FMIndex(proteins.sequenceIterator(), ProteinTools.getTAlphabet(), 2, 20);
+        assertEquals(2, index.getPartitionCount());
+        assertEquals(3, index.count(ProteinTools.createProteinSequence("GIVG", "q")));
+        FMIndex.Matcher m = index.matcher(new MaxMismatchPattern(ProteinTools.createProteinSequence("AAGIVG", "q"), 1));
+        List found = new ArrayList();
+        while (m.find()) {
+            found.add(m.getSequenceName() + ":" + m.start() + "-" + m.end());
+        }
+        List expected = new ArrayList();
+        expected.add("p0:5-10");
+        expected.add("p1:5-10");
+        assertEquals(expected, found);
+    }
+
+    public void testMapped() throws Exception {
+        FMIndex index = new FMIndex(db.sequenceIterator(), DNATools.getDNA(), 8, 600);
+        File file = File.createTempFile("fmindex", ".fm");
+        file.deleteOnExit();
+        index.write(file);
+        assertMapped(index, FMIndex.open(file, DNATools.getDNA()));
+
+        File built = File.createTempFile("fmindex", ".fm");
+        built.deleteOnExit();
+        FMIndex.build(db.sequenceIterator(), DNATools.getDNA(), 8, 600, built);
+        assertEquals(file.length(), built.length());
+        assertMapped(index, FMIndex.open(built, DNATools.getDNA()));
+
+        try {
+            FMIndex.open(file, ProteinTools.getAlphabet());
+            fail("Should not open an index for another alphabet");
+        } catch (IllegalAlphabetException iae) {
+        }
+    }
+
+    private void assertMapped(FMIndex index, FMIndex mapped) throws Exception {
+        assertEquals(index.getPartitionCount(), mapped.getPartitionCount());
+        assertEquals(index.getSequenceCount(), mapped.getSequenceCount());
+        assertEquals(index.getSampleRate(), mapped.getSampleRate());
+        assertEquals(index.length(), mapped.length());
+        for (int i = 0; i < dna.length; i++) {
+            assertEquals(index.getSequenceName(i), mapped.getSequenceName(i));
+            assertEquals(index.getSequenceLength(i), mapped.getSequenceLength(i));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertMatches(mapped, randomDNA(4 + random.nextInt(6)), random.nextInt(2));
+        }
+        assertMatches(mapped, "gattaca", 1);
+    }
+
+    private void assertMatches(FMIndex index, String pattern, int mismatches) throws Exception {
+        SymbolList symbols = DNATools.createDNA(pattern);
+        FMIndex.Matcher m = mismatches == 0
+            ? index.matcher(symbols)
+            : index.matcher(new MaxMismatchPattern(symbols, mismatches));
+        List found = new ArrayList();
+        while (m.find()) {
+            found.add(index.getSequenceName(m.getSequenceIndex()) + ":" + m.start() + "-" + m.end());
+        }
+        assertEquals(pattern, naive(index, pattern, mismatches), found);
+    }
+
+    // matches in indexed sequence then start order; n in a sequence never matches
+    private List naive(FMIndex index, String pattern, int mismatches) {
+        List found = new ArrayList();
+        for (int i = 0; i < index.getSequenceCount(); i++) {
+            String name = index.getSequenceName(i);
+            String seq = dna(name);
+            for (int s = 0; s + pattern.length() <= seq.length(); s++) {
+                if (mismatches(pattern, seq.substring(s, s + pattern.length())) <= mismatches) {
+                    found.add(name + ":" + (s + 1) + "-" + (s + pattern.length()));
+                }
+            }
+        }
+        return found;
+    }
+
+    private String dna(String name) {
+        return dna[Integer.parseInt(name.substring("seq".length()))];
+    }
+
+    private static int mismatches(String pattern, String text) {
+        int count = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char p = pattern.charAt(i);
+            char t = text.charAt(i);
+            if (t == 'n') {
+                return Integer.MAX_VALUE;
+            }
+            if (p != 'n' && p != t) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String randomDNA(int length) {
+        StringBuffer dna = new StringBuffer();
+        for (int i = 0; i < length; i++) {
+            dna.append("acgt".charAt(random.nextInt(4)));
+        }
+        return dna.toString();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+
+package org.biojava.bio.seq.db;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.Sequence;
+import org.biojava.bio.symbol.MappedPackedSymbolList;
+import org.biojava.bio.symbol.PackingFactory;
+import org.biojava.bio.symbol.SymbolList;
+
+/**
+ * Tests that sequences written with <code>PackedSequenceDB.write()</code>
+ * read back unchanged.
+ *
+ * @since 1.9.8
+ */
+public class PackedSequenceDBTest extends TestCase {
+    private File dbFile;
+
+    public PackedSequenceDBTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        dbFile = File.createTempFile("packed", ".bjp");
+        dbFile.deleteOnExit();
+    }
+
+    protected void tearDown() throws Exception {
+        dbFile.delete();
+    }
+
+    private HashSequenceDB makeSequences(String[] seqs) throws Exception {
+        HashSequenceDB source = new HashSequenceDB();
+        for (int i = 0; i < seqs.length; i++) {
+            source.addSequence(DNATools.createDNASequence(seqs[i], "seq" + i));
+        }
+        return source;
+    }
+
+    public void testRoundTripWithAmbiguity() throws Exception {
+        String[] seqs = {
+            "acgtnrykmswbdhvacgt",
+            "gattaca",
+            "",
+            "aaaaaaaacccccccccgggggggggtttttttttn"
+        };
+        HashSequenceDB source = makeSequences(seqs);
+        PackedSequenceDB.write(
+            dbFile,
+            PackingFactory.getPacking(DNATools.getDNA(), true),
+            source.sequenceIterator()
+        );
+
+        PackedSequenceDB db = new PackedSequenceDB(dbFile);
+        assertEquals(source.ids(), db.ids());
+        for (int i = 0; i < seqs.length; i++) {
+            Sequence seq = db.getSequence("seq" + i);
+            assertEquals("seq" + i, seq.getName());
+            assertEquals(seqs[i], seq.seqString());
+        }
+        db.close();
+    }
+
+    public void testTwoBitSubList() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        String bases = "acgt";
+        for (int i = 0; i < 1001; i++) {
+            sb.append(bases.charAt((i * 7 + i / 3) % 4));
+        }
+        String seqString = sb.toString();
+        HashSequenceDB source = makeSequences(new String[] { seqString });
+        PackedSequenceDB.write(
+            dbFile,
+            PackingFactory.getPacking(DNATools.getDNA(), false),
+            source.sequenceIterator()
+        );
+
+        PackedSequenceDB db = new PackedSequenceDB(dbFile);
+        SymbolList symList = db.getSymbolList("seq0");
+        assertTrue(symList instanceof MappedPackedSymbolList);
+        assertEquals(seqString, symList.seqString());
+
+        SymbolList sub = symList.subList(3, 998);
+        assertTrue(sub instanceof MappedPackedSymbolList);
+        assertEquals(seqString.substring(2, 998), sub.seqString());
+        assertEquals(seqString.substring(6, 17), sub.subList(5, 15).seqString());
+        db.close();
+    }
+
+    public void testUnknownID() throws Exception {
+        PackedSequenceDB.write(
+            dbFile,
+            PackingFactory.getPacking(DNATools.getDNA(), false),
+            makeSequences(new String[] { "acgt" }).sequenceIterator()
+        );
+
+        PackedSequenceDB db = new PackedSequenceDB(dbFile);
+        try {
+            db.getSequence("nope");
+            fail("Expected IllegalIDException");
+        } catch (IllegalIDException iie) {
+            // expected
+        }
+        db.close();
+    }
+}
@@ -0,0 +1,259 @@
+package org.biojava.bio.symbol;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.seq.ProteinTools;
+
+/**
+ * Tests for SuffixArray.
+ *
+ * @since 1.9.8
+ */
+public class SuffixArrayTest extends TestCase {
+
+    private Random random;
+
+    protected void setUp() throws Exception {
+        random = new Random(3L);
+    }
+
+    public void testSorted() throws Exception {
+        String[] dna = { "gattacagattaca", "aaaaaaaa", "acgtnacgt", "", randomDNA(500), randomDNA(37) };
+        SuffixArray index = index(dna);
+        String text = text(dna);
+        assertEquals(text.length(), index.length());
+        assertEquals(dna.length, index.getListCount());
+        for (int i = 0; i < dna.length; i++) {
+            assertEquals(dna[i].length(), index.getListLength(i));
+        }
+
+        boolean[] seen = new boolean[text.length()];
+        for (int r = 0; r < index.length(); r++) {
+            int pos = index.getSuffix(r);
+            assertFalse(seen[pos]);
+            seen[pos] = true;
+            if (r > 0) {
+                int prev = index.getSuffix(r - 1);
+                assertTrue(text.substring(prev).compareTo(text.substring(pos)) < 0);
+                assertEquals(commonPrefix(text, prev, pos), index.getLCP(r));
+            }
+        }
+        assertEquals(0, index.getLCP(0));
+    }
+
+    public void testFind() throws Exception {
+        String[] dna = { randomDNA(300), randomDNA(200) + "gattaca" + randomDNA(50), "gattacannnngattaca" };
+        SuffixArray index = index(dna);
+        for (int i = 0; i < 200; i++) {
+            String pattern = randomDNA(1 + random.nextInt(6));
+            List expected = naiveFind(dna, pattern);
+            assertEquals(pattern, expected, index.find(DNATools.createDNA(pattern)));
+            assertEquals(expected.size(), index.count(DNATools.createDNA(pattern)));
+        }
+        assertEquals(3, index.count(DNATools.createDNA("gattaca")));
+        // matches never run over an ambiguous position
+        assertEquals(0, index.count(DNATools.createDNA("acaaaagat")));
+        try {
+            index.find(DNATools.createDNA("gan"));
+            fail("Ambiguity symbols can't be searched for");
+        } catch (IllegalSymbolException ise) {
+        }
+    }
+
+    public void testMaximalRepeats() throws Exception {
+        String[] dna = { randomDNA(120), randomDNA(80), "acgtacgtacgt" };
+        SuffixArray index = index(dna);
+        List repeats = index.maximalRepeats(4);
+        List naive = naiveRepeats(dna, 4);
+        assertEquals(naive.size(), repeats.size());
+
+        int last = Integer.MAX_VALUE;
+        for (Iterator i = repeats.iterator(); i.hasNext(); ) {
+            SuffixArray.Repeat repeat = (SuffixArray.Repeat) i.next();
+            assertTrue(repeat.getLength() <= last);
+            last = repeat.getLength();
+
+            SuffixArray.Match first = (SuffixArray.Match) repeat.getOccurrences().get(0);
+            String motif = dna[first.getList()].substring(first.getStart() - 1, first.getEnd());
+            assertTrue(motif, naive.contains(code(motif)));
+            assertEquals(naiveFind(dna, motif), repeat.getOccurrences());
+        }
+    }
+
+    public void testLongestCommonSubstring() throws Exception {
+        String shared = "ttgacgatcgatcgg";
+        String[] dna = {
+            randomDNA(100) + shared + randomDNA(20),
+            randomDNA(150),
+            randomDNA(60) + shared + randomDNA(60),
+            "nnnn"
+        };
+        SuffixArray index = index(dna);
+        SuffixArray.Match[] lcs = index.longestCommonSubstring(0, 2);
+        assertEquals(naiveCommon(dna[0], dna[2]), lcs[0].getLength());
+        assertEquals(0, lcs[0].getList());
+        assertEquals(2, lcs[1].getList());
+        assertEquals(dna[0].substring(lcs[0].getStart() - 1, lcs[0].getEnd()),
+            dna[2].substring(lcs[1].getStart() - 1, lcs[1].getEnd()));
+
+        lcs = index.longestCommonSubstring(1, 0);
+        assertEquals(naiveCommon(dna[1], dna[0]), lcs[0].getLength());
+        assertEquals(1, lcs[0].getList());
+        assertNull(index.longestCommonSubstring(0, 3));
+    }
+
+    public void testMapped() throws Exception {
+        String[] dna = { randomDNA(400), "gattacannnnngattaca", randomDNA(100) };
+        SuffixArray index = index(dna);
+        File file = File.createTempFile("suffixarray", ".sa");
+        file.deleteOnExit();
+        index.write(file);
+
+        SuffixArray mapped = SuffixArray.open(file, DNATools.getDNA());
+        assertEquals(index.length(), mapped.length());
+        assertEquals(index.getListCount(), mapped.getListCount());
+        for (int r = 0; r < index.length(); r++) {
+            assertEquals(index.getSuffix(r), mapped.getSuffix(r));
+            assertEquals(index.getLCP(r), mapped.getLCP(r));
+        }
+        assertEquals(index.find(DNATools.createDNA("gattaca")), mapped.find(DNATools.createDNA("gattaca")));
+        assertEquals(index.maximalRepeats(5).size(), mapped.maximalRepeats(5).size());
+
+        try {
+            SuffixArray.open(file, ProteinTools.getAlphabet());
+            fail("Should not open an index for another alphabet");
+        } catch (IllegalAlphabetException iae) {
+        }
+    }
+
+    public void testMatchesSuffixTree() throws Exception {
+        String dna = randomDNA(200);
+        SuffixArray index = index(new String[] { dna });
+        UkkonenSuffixTree tree = new UkkonenSuffixTree();
+        tree.addSequence(dna, "test", false);
+        for (int i = 0; i < 100; i++) {
+            String pattern = randomDNA(1 + random.nextInt(8));
+            assertEquals(tree.subStringExists(pattern), index.count(DNATools.createDNA(pattern)) > 0);
+        }
+    }
+
+    private SuffixArray index(String[] dna) throws Exception {
+        SymbolList[] lists = new SymbolList[dna.length];
+        for (int i = 0; i < dna.length; i++) {
+            lists[i] = DNATools.createDNA(dna[i]);
+        }
+        return new SuffixArray(DNATools.getDNA(), lists);
+    }
+
+    // the text as the index sees it, with bases in alphabet index order and
+    // breaks sorting before every base
+    private static String text(String[] dna) throws Exception {
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < dna.length; i++) {
+            text.append(code(dna[i])).append('$');
+        }
+        return text.toString();
+    }
+
+    private static String code(String dna) throws Exception {
+        AlphabetIndex index = AlphabetManager.getAlphabetIndex(DNATools.getDNA());
+        StringBuffer code = new StringBuffer();
+        for (int i = 0; i < dna.length(); i++) {
+            Symbol sym = DNATools.forSymbol(dna.charAt(i));
+            code.append(sym instanceof AtomicSymbol ? (char) ('A' + index.indexForSymbol(sym)) : '$');
+        }
+        return code.toString();
+    }
+
+    private static int commonPrefix(String text, int a, int b) {
+        int h = 0;
+        while (a + h < text.length() && b + h < text.length()
+               && text.charAt(a + h) == text.charAt(b + h) && text.charAt(a + h) != '$') {
+            h++;
+        }
+        return h;
+    }
+
+    private static List naiveFind(String[] dna, String pattern) {
+        List matches = new ArrayList();
+        for (int i = 0; i < dna.length; i++) {
+            for (int p = dna[i].indexOf(pattern); p >= 0; p = dna[i].indexOf(pattern, p + 1)) {
+                matches.add(new SuffixArray.Match(i, p + 1, pattern.length()));
+            }
+        }
+        return matches;
+    }
+
+    // repeats that occur twice and can't all be extended left or right
+    private static List naiveRepeats(String[] dna, int minLength) throws Exception {
+        List repeats = new ArrayList();
+        String text = text(dna);
+        for (int start = 0; start < text.length(); start++) {
+            for (int end = start + minLength; end <= text.length(); end++) {
+                String motif = text.substring(start, end);
+                if (motif.indexOf('$') >= 0) {
+                    break;
+                }
+                if (repeats.contains(motif)) {
+                    continue;
+                }
+                List occurrences = new ArrayList();
+                for (int p = text.indexOf(motif); p >= 0; p = text.indexOf(motif, p + 1)) {
+                    occurrences.add(new Integer(p));
+                }
+                if (occurrences.size() < 2) {
+                    break;
+                }
+                if (diverse(text, occurrences, -1) && diverse(text, occurrences, motif.length())) {
+                    repeats.add(motif);
+                }
+            }
+        }
+        return repeats;
+    }
+
+    private static boolean diverse(String text, List occurrences, int offset) {
+        char c = 0;
+        for (Iterator i = occurrences.iterator(); i.hasNext(); ) {
+            int p = ((Integer) i.next()).intValue() + offset;
+            if (p < 0 || p >= text.length() || text.charAt(p) == '$') {
+                return true;
+            }
+            if (c != 0 && text.charAt(p) != c) {
+                return true;
+            }
+            c = text.charAt(p);
+        }
+        return false;
+    }
+
+    private static int naiveCommon(String a, String b) {
+        int best = 0;
+        for (int i = 0; i < a.length(); i++) {
+            for (int j = 0; j < b.length(); j++) {
+                int h = 0;
+                while (i + h < a.length() && j + h < b.length()
+                       && a.charAt(i + h) == b.charAt(j + h) && a.charAt(i + h) != 'n') {
+                    h++;
+                }
+                best = Math.max(best, h);
+            }
+        }
+        return best;
+    }
+
+    private String randomDNA(int length) {
+        StringBuffer dna = new StringBuffer();
+        for (int i = 0; i < length; i++) {
+            dna.append("acgt".charAt(random.nextInt(4)));
+        }
+        return dna.toString();
+    }
+}
@@ -321,6 +321,84 @@ public class SymbolListTest extends TestCase
         assertTrue(runRepeatedSymbolListTests(symListAlpha, symListAlpha, factory));
     }
     
+    /**
+     * test for ByteSymbolList that implements ambiguity symbols.
+     */
+    public void testByteSymbolListWithAmbiguitySymbols()
+        throws Exception
+    {
+        // create an alphabet with ambiguity symbols
+        FiniteAlphabet symListAlpha = (FiniteAlphabet) DNATools.getDNA();
+        FiniteAlphabet arrayAlpha = generateAmbiguousDNA();
+        assertNotNull(arrayAlpha);
+        assertNotNull(symListAlpha);
+
+        // create a ByteSymbolList that supports ambiguity symbols
+        SymListFactory factory = new SymListFactory () {
+                public SymbolList createSymbolList(Symbol [] array, FiniteAlphabet alpha, int length)
+                {
+                    try {
+                        return new ByteSymbolList(array, length, alpha);
+                    }
+                    catch (IllegalAlphabetException iae) {
+                        iae.printStackTrace();
+                        return null;
+                    }
+                }
+            };
+
+        // exercise the ByteSymbolList implementation
+        assertTrue(runRepeatedSymbolListTests(arrayAlpha, symListAlpha, factory));
+    }
+
+    /**
+     * test for ByteSymbolList chunks made through ChunkedSymbolListFactory.
+     */
+    public void testChunkedByteSymbolList()
+        throws Exception
+    {
+        FiniteAlphabet symListAlpha = (FiniteAlphabet) DNATools.getDNA();
+        FiniteAlphabet arrayAlpha = generateAmbiguousDNA();
+
+        SymListFactory factory = new SymListFactory () {
+                public SymbolList createSymbolList(Symbol [] array, FiniteAlphabet alpha, int length)
+                {
+                    try {
+                        ChunkedSymbolListFactory chunker = new ChunkedSymbolListFactory(new ByteSymbolListFactory());
+                        chunker.addSymbols(alpha, array, 0, length);
+                        return chunker.makeSymbolList();
+                    }
+                    catch (IllegalAlphabetException iae) {
+                        return null;
+                    }
+                }
+            };
+
+        assertTrue(runRepeatedSymbolListTests(arrayAlpha, symListAlpha, factory));
+    }
+
+    /**
+     * test that ByteSymbolList sublists are views that agree with the parent.
+     */
+    public void testByteSymbolListSubList()
+        throws Exception
+    {
+        SymbolList dna = DNATools.createDNA("acgtnnacgtrygatc");
+        ByteSymbolList bytes = new ByteSymbolList(dna);
+        assertEquals(dna.seqString(), bytes.seqString());
+        assertEquals(dna, bytes);
+
+        SymbolList sub = bytes.subList(5, 12);
+        assertTrue(sub instanceof ByteSymbolList);
+        assertEquals(dna.subStr(5, 12), sub.seqString());
+        assertEquals(dna.subStr(6, 7), sub.subList(2, 3).seqString());
+
+        AlphabetIndex index = AlphabetManager.getAlphabetIndex(DNATools.getDNA());
+        assertEquals(index.indexForSymbol(DNATools.g()), bytes.codeAt(3));
+        assertTrue(bytes.codeAt(5) >= DNATools.getDNA().size());
+        assertSame(DNATools.n(), bytes.symbolForCode(bytes.codeAt(5)));
+    }
+
     public void testSymbolListsEqual() throws Exception {
         SymbolList dna = DNATools.createDNA("");
         SymbolList rna = RNATools.createRNA("");
@@ -325,6 +325,37 @@ public class SimpleRichAnnotationTest extends TestCase {
         assertTrue(anno1.getNoteSet().size() == 0);
     }
 
+    /**
+     * Test that the note set can be iterated while another thread adds notes.
+     */
+    public void testGetNoteSetConcurrently() throws Exception {
+        System.out.println("testGetNoteSetConcurrently");
+        
+        final ComparableTerm term = RichObjectFactory.getDefaultOntology().getOrCreateTerm("test");
+        final Exception[] failure = new Exception[1];
+        Thread writer = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < 20000; i++) anno1.addNote(new SimpleNote(term, "value"+i, i));
+                } catch (Exception ex) {
+                    failure[0] = ex;
+                }
+            }
+        };
+        writer.start();
+        while (writer.isAlive()) {
+            for (Iterator i = anno1.getNoteSet().iterator(); i.hasNext(); ) i.next();
+            for (Iterator i = anno1.keys().iterator(); i.hasNext(); ) i.next();
+        }
+        writer.join();
+        assertNull(failure[0]);
+        assertEquals(20001, anno1.getNoteSet().size());
+        
+        //changing the copy leaves the annotation alone
+        anno1.getNoteSet().clear();
+        assertEquals(20001, anno1.getNoteSet().size());
+    }
+
     /**
      * Test of setNoteSet method, of class org.biojavax.SimpleRichAnnotation.
      */
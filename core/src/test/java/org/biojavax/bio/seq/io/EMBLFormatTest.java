@@ -1,6 +1,7 @@
 package org.biojavax.bio.seq.io;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import junit.framework.TestCase;
@@ -45,6 +46,26 @@ public class EMBLFormatTest extends TestCase {
         RichSequence sequence = readProteinFile("/A00060.emblp");
     }
 
+    public void testLazyFeatures() throws Exception {
+        String[] files = { "/AY069118.em", "/X56734.embl", "/empty_embl.embl" };
+        for (int i = 0; i < files.length; i++) {
+            this.emblFormat = new EMBLFormat();
+            RichSequence eager = readDNAFile(files[i]);
+            this.emblFormat.setLazyFeatures(true);
+            RichSequence lazy = readDNAFile(files[i]);
+            assertEquals(eager.getTaxon(), lazy.getTaxon());
+            assertEquals(write(eager), write(lazy));
+            assertEquals(eager.countFeatures(), lazy.countFeatures());
+        }
+    }
+
+    private static String write(RichSequence sequence) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new RichStreamWriter(output, new EMBLFormat()).writeStream(
+            new RichSequence.IOTools.SingleRichSeqIterator(sequence), null);
+        return output.toString();
+    }
+
     /**
      * Read a DNA file, return a RichSequence
      * @param filename name of file to read
@@ -0,0 +1,71 @@
+package org.biojavax.bio.seq.io;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojavax.RichObjectFactory;
+import org.biojavax.bio.seq.RichSequence;
+
+/**
+ * Compares the time GenbankFormat takes to read a file when sections are
+ * split with the sectp regex and sequences are parsed through
+ * SymbolTokenization, as before, and when they are split by column in
+ * splitLine and decoded by readSymbols. Usage:
+ * <code>GenbankFormatBenchmark [file [rounds]]</code>. Without a file the
+ * NC_004432.gb test resource, a 1.36 Mbp bacterial chromosome, is read.
+ * The file is held in memory so that only parsing is timed.
+ *
+ * @since 1.9.8
+ */
+public class GenbankFormatBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Reader in = (args.length > 0) ? new FileReader(args[0])
+            : new InputStreamReader(GenbankFormatBenchmark.class.getResourceAsStream("/NC_004432.gb"));
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+        StringBuffer text = new StringBuffer();
+        char[] buf = new char[8192];
+        for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+            text.append(buf, 0, n);
+        }
+        in.close();
+        String file = text.toString();
+
+        run("sectp/SymbolTokenization", file, rounds, true);
+        run("splitLine/readSymbols", file, rounds, false);
+    }
+
+    private static void run(String name, String file, int rounds, boolean regex) throws Exception {
+        // warm up
+        for (int i = 0; i < rounds; i++) {
+            read(file, regex);
+        }
+        long time = System.nanoTime();
+        int records = 0;
+        for (int i = 0; i < rounds; i++) {
+            records += read(file, regex);
+        }
+        time = System.nanoTime() - time;
+        System.out.printf("%-26s %6d records  %8.1f ms/record  %8.2f records/s\n", name, records,
+            time / 1e6 / records, records / (time / 1e9));
+    }
+
+    private static int read(String file, boolean regex) throws Exception {
+        GenbankFormat format = new GenbankFormat();
+        format.regexParsing = regex;
+        SymbolTokenization dna = RichSequence.IOTools.getDNAParser();
+        RichStreamReader reader = new RichStreamReader(new BufferedReader(new StringReader(file)), format, dna,
+            RichSequenceBuilderFactory.FACTORY, RichObjectFactory.getDefaultNamespace());
+        int records = 0;
+        while (reader.hasNext()) {
+            reader.nextRichSequence();
+            records++;
+        }
+        return records;
+    }
+}
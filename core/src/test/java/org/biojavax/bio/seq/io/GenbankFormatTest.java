@@ -8,11 +8,15 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.util.Iterator;
+import java.util.regex.Matcher;
 
 import junit.framework.TestCase;
 
+import org.biojava.bio.BioRuntimeException;
+import org.biojava.bio.seq.Feature;
 import org.biojava.bio.seq.SequenceIterator;
 import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojava.bio.symbol.IllegalSymbolException;
 import org.biojavax.Namespace;
 import org.biojavax.Note;
 import org.biojavax.RichObjectFactory;
@@ -182,6 +186,125 @@ public class GenbankFormatTest extends TestCase {
         assertEquals("15-OCT-2018", header2.getAnnotation().getProperty(Terms.getDateUpdatedTerm()));
     }
 
+    public void testLazyFeatures() throws Exception {
+        String[] files = { "/AY069118.gb", "/AL121964.gb", "/NoAccession.gb", "/empty_genbank.gb" };
+        for (int i = 0; i < files.length; i++) {
+            this.gbFormat = new GenbankFormat();
+            RichSequence eager = readDNAFile(files[i]);
+            this.gbFormat.setLazyFeatures(true);
+            RichSequence lazy = readDNAFile(files[i]);
+            assertEquals(eager.getTaxon(), lazy.getTaxon());
+            assertEquals(write(eager), write(lazy));
+            assertEquals(eager.countFeatures(), lazy.countFeatures());
+        }
+        assertNotNull(readDNAFile("/AY069118.gb").getTaxon());
+
+        // a bad feature table only fails once the features are needed
+        String broken = "LOCUS       broken                     4 bp    DNA     linear   UNA 01-JAN-2000\n"
+            + "FEATURES             Location/Qualifiers\n"
+            + "     source          1..4\n"
+            + "                     /db_xref=\"taxon:7227\"\n"
+            + "     gene            junk(1..\n"
+            + "ORIGIN\n        1 acgt\n//\n";
+        SimpleRichSequenceBuilder builder = new SimpleRichSequenceBuilder();
+        this.gbFormat.readRichSequence(new BufferedReader(new StringReader(broken)),
+            RichSequence.IOTools.getDNAParser(), builder, RichObjectFactory.getDefaultNamespace());
+        RichSequence sequence = builder.makeRichSequence();
+        assertEquals("acgt", sequence.seqString());
+        assertEquals(7227, sequence.getTaxon().getNCBITaxID());
+        try {
+            sequence.getFeatureSet().size();
+            fail("The feature table can't be parsed");
+        } catch (BioRuntimeException bre) {
+        }
+
+        // listeners that can't keep the table are sent the features at once
+        final int[] features = new int[1];
+        this.gbFormat.readRichSequence(
+            new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream("/AY069118.gb"))),
+            RichSequence.IOTools.getDNAParser(), new RichSeqIOAdapter() {
+                public void startFeature(Feature.Template templ) {
+                    features[0]++;
+                }
+            }, RichObjectFactory.getDefaultNamespace());
+        assertEquals(readDNAFile("/AY069118.gb").countFeatures(), features[0]);
+    }
+
+    public void testSplitLine() throws Exception {
+        String[] files = { "/AY069118.gb", "/AL121964.gb", "/NC_004432.gb", "/BondFeature.gb", "/NoAccession.gb" };
+        for (int i = 0; i < files.length; i++) {
+            BufferedReader br = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(files[i])));
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                assertSplitLikeSectp(line);
+            }
+            br.close();
+        }
+        String[] lines = {
+            "", "   ", "KEYWORDS    .", "  ORGANISM  Escherichia coli", "        1 acgt acgt",
+            "         9 too far in", "\tTAB  value", "                     /pseudo",
+            "                     /note=\"a = b\"", "                     /=x", "                     /=x=y",
+            "                     /", "                     /note =x", "                     /pseudo  ",
+            "                      /note=\"one column too far\"", "                     note=\"no slash\"",
+            "                     \"continued text\""
+        };
+        for (int i = 0; i < lines.length; i++) assertSplitLikeSectp(lines[i]);
+    }
+
+    private static void assertSplitLikeSectp(String line) {
+        String[] entry = GenbankFormat.splitLine(line);
+        Matcher m = GenbankFormat.sectp.matcher(line);
+        if (!m.matches()) {
+            assertNull(line, entry);
+            return;
+        }
+        assertNotNull(line, entry);
+        String key = m.group(2)==null?(m.group(4)==null?m.group(6):m.group(4)):m.group(2);
+        String val = (m.group(2)==null?(m.group(4)==null?"":m.group(5)):m.group(3)).trim();
+        assertEquals(line, key, entry[0]);
+        assertEquals(line, val, entry[1]);
+    }
+
+    public void testReadSymbols() throws Exception {
+        String record = "LOCUS       gaps                      12 bp    DNA     linear   UNA 01-JAN-2000\n"
+            + "ORIGIN\n        1 acgt.. ~~nN\n       11 |A\n//\n";
+        SimpleRichSequenceBuilder builder = new SimpleRichSequenceBuilder();
+        this.gbFormat.readRichSequence(new BufferedReader(new StringReader(record)),
+            RichSequence.IOTools.getDNAParser(), builder, RichObjectFactory.getDefaultNamespace());
+        assertEquals("acgt----nn-a", builder.makeRichSequence().seqString());
+
+        record = record.replaceAll("~~nN", "~~nJ");
+        try {
+            this.gbFormat.readRichSequence(new BufferedReader(new StringReader(record)),
+                RichSequence.IOTools.getDNAParser(), new SimpleRichSequenceBuilder(), RichObjectFactory.getDefaultNamespace());
+            fail("J is not a nucleotide");
+        } catch (IllegalSymbolException ise) {
+        }
+    }
+
+    public void testRegexParsing() throws Exception {
+        String[] files = { "/AY069118.gb", "/AL121964.gb" };
+        for (int i = 0; i < files.length; i++) {
+            String[] written = new String[2];
+            for (int j = 0; j < written.length; j++) {
+                GenbankFormat format = new GenbankFormat();
+                format.regexParsing = j == 0;
+                BufferedReader br = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(files[i])));
+                SimpleRichSequenceBuilder builder = new SimpleRichSequenceBuilder();
+                format.readRichSequence(br, RichSequence.IOTools.getDNAParser(), builder, RichObjectFactory.getDefaultNamespace());
+                br.close();
+                written[j] = write(builder.makeRichSequence());
+            }
+            assertEquals(files[i], written[0], written[1]);
+        }
+    }
+
+    private static String write(RichSequence sequence) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new RichStreamWriter(output, new GenbankFormat()).writeStream(
+            new RichSequence.IOTools.SingleRichSeqIterator(sequence), null);
+        return output.toString();
+    }
+
     /**
      * Read a genbank file, return a RichSequence
      * @param filename name of file to read
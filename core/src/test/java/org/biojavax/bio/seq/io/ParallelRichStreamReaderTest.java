@@ -0,0 +1,167 @@
+package org.biojavax.bio.seq.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojavax.Namespace;
+import org.biojavax.RichObjectFactory;
+import org.biojavax.bio.seq.RichSequence;
+import org.biojavax.bio.seq.RichSequenceIterator;
+
+/**
+ * Tests for ParallelRichStreamReader.
+ *
+ * @since 1.9.8
+ */
+public class ParallelRichStreamReaderTest extends TestCase {
+
+    private static final String[] GENBANK = { "/AY069118.gb", "/AL121964.gb", "/empty_genbank.gb" };
+    private static final String[] EMBL = { "/AY069118.em", "/X56734.embl" };
+    private static final String[] UNIPROT = { "/P05814.pro", "/IPI00010849.pro", "/empty_uniprot.pro" };
+
+    public void testGenbank() throws Exception {
+        String input = concatenate(GENBANK, 4);
+        SymbolTokenization dna = RichSequence.IOTools.getDNAParser();
+        List expected = write(new RichStreamReader(
+            new BufferedReader(new StringReader(input)), new GenbankFormat(), dna, factory(), namespace()
+        ), new GenbankFormat());
+        assertEquals(12, expected.size());
+
+        assertEquals(expected, write(parallel(input, new GenbankFormat(), dna, 3, true), new GenbankFormat()));
+        assertEquals(expected, write(parallel(input, new GenbankFormat(), dna, 1, true), new GenbankFormat()));
+
+        List unordered = write(parallel(input, new GenbankFormat(), dna, 4, false), new GenbankFormat());
+        Collections.sort(expected);
+        Collections.sort(unordered);
+        assertEquals(expected, unordered);
+    }
+
+    public void testEMBLAndUniProt() throws Exception {
+        String input = concatenate(EMBL, 3);
+        SymbolTokenization dna = RichSequence.IOTools.getDNAParser();
+        List expected = write(new RichStreamReader(
+            new BufferedReader(new StringReader(input)), new EMBLFormat(), dna, factory(), namespace()
+        ), new EMBLFormat());
+        assertEquals(6, expected.size());
+        assertEquals(expected, write(parallel(input, new EMBLFormat(), dna, 2, true), new EMBLFormat()));
+
+        // P05814 and IPI00010849 share cached cross references, which
+        // collect the notes of both records, so the records are only
+        // written once the whole stream has been read
+        input = concatenate(UNIPROT, 1);
+        SymbolTokenization protein = RichSequence.IOTools.getProteinParser();
+        expected = write(readAll(new RichStreamReader(
+            new BufferedReader(new StringReader(input)), new UniProtFormat(), protein, factory(), namespace()
+        )), new UniProtFormat());
+        assertEquals(3, expected.size());
+        assertEquals(expected, write(readAll(parallel(input, new UniProtFormat(), protein, 2, true)), new UniProtFormat()));
+        assertEquals(expected, write(readAll(parallel(input, new UniProtFormat(), protein, 1, true)), new UniProtFormat()));
+    }
+
+    public void testElideSettings() throws Exception {
+        GenbankFormat format = new GenbankFormat();
+        format.setElideSymbols(true);
+        RichSequenceIterator seqs = parallel(concatenate(GENBANK, 1), format, RichSequence.IOTools.getDNAParser(), 2, true);
+        while (seqs.hasNext()) {
+            assertEquals(0, seqs.nextRichSequence().length());
+        }
+    }
+
+    public void testBadRecord() throws Exception {
+        String input = concatenate(new String[] { "/AY069118.gb" }, 1)
+            + "LOCUS       broken\nFEATURES             Location/Qualifiers\n     gene            junk(1..\n//\n\n\n"
+            + concatenate(new String[] { "/AY069118.gb" }, 1);
+        ParallelRichStreamReader seqs = parallel(input, new GenbankFormat(), RichSequence.IOTools.getDNAParser(), 2, true);
+        assertEquals("AY069118", seqs.nextRichSequence().getName());
+        try {
+            seqs.nextRichSequence();
+            fail("The second record can't be parsed");
+        } catch (BioException be) {
+        }
+        assertTrue(seqs.hasNext());
+        assertEquals("AY069118", seqs.nextRichSequence().getName());
+        assertFalse(seqs.hasNext());
+        try {
+            seqs.nextRichSequence();
+            fail("The stream is empty");
+        } catch (NoSuchElementException nse) {
+        }
+
+        try {
+            parallel(input, new GenbankFormat(), RichSequence.IOTools.getDNAParser(), 0, true);
+            fail("Needs a thread");
+        } catch (IllegalArgumentException iae) {
+        }
+    }
+
+    private ParallelRichStreamReader parallel(String input, RichSequenceFormat format,
+                                              SymbolTokenization symParser, int threads, boolean ordered) {
+        return new ParallelRichStreamReader(new BufferedReader(new StringReader(input)), format, symParser,
+            factory(), namespace(), threads, ordered);
+    }
+
+    private static RichSequenceBuilderFactory factory() {
+        return RichSequenceBuilderFactory.THRESHOLD;
+    }
+
+    private static Namespace namespace() {
+        return RichObjectFactory.getDefaultNamespace();
+    }
+
+    private static List readAll(RichSequenceIterator seqs) throws Exception {
+        List all = new ArrayList();
+        while (seqs.hasNext()) {
+            all.add(seqs.nextRichSequence());
+        }
+        return all;
+    }
+
+    private static List write(RichSequenceIterator seqs, RichSequenceFormat format) throws Exception {
+        List records = new ArrayList();
+        while (seqs.hasNext()) {
+            records.add(write(seqs.nextRichSequence(), format));
+        }
+        return records;
+    }
+
+    private static List write(List seqs, RichSequenceFormat format) throws Exception {
+        List records = new ArrayList();
+        for (Iterator i = seqs.iterator(); i.hasNext(); ) {
+            records.add(write((RichSequence) i.next(), format));
+        }
+        return records;
+    }
+
+    private static String write(RichSequence seq, RichSequenceFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RichStreamWriter(out, format).writeStream(new RichSequence.IOTools.SingleRichSeqIterator(seq), null);
+        return out.toString();
+    }
+
+    private String concatenate(String[] resources, int copies) throws Exception {
+        StringBuffer text = new StringBuffer();
+        for (int c = 0; c < copies; c++) {
+            for (int i = 0; i < resources.length; i++) {
+                InputStream is = getClass().getResourceAsStream(resources[i]);
+                BufferedReader br = new BufferedReader(new InputStreamReader(is));
+                for (String line = br.readLine(); line != null; line = br.readLine()) {
+                    text.append(line).append('\n');
+                }
+                br.close();
+            }
+        }
+        return text.toString();
+    }
+}
@@ -22,14 +22,14 @@ package org.biojava.bio.program.fastq;
 
 import java.net.URL;
 
-import java.io.BufferedReader;
-import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
 
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
 import java.nio.charset.Charset;
 
 import java.util.List;
@@ -37,9 +37,6 @@ import java.util.List;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
-import com.google.common.io.Files;
-import com.google.common.io.Resources;
-
 /**
  * Abstract reader implementation for FASTQ formatted sequences.
  *
@@ -77,26 +74,7 @@ abstract class AbstractFastqReader
         {
             throw new IllegalArgumentException("file must not be null");
         }
-
-        BufferedReader reader = null;
-        Collect collect = new Collect();
-        try
-        {
-            reader = new BufferedReader(new FileReader(file));
-            stream(reader, collect);
-        }
-        finally
-        {
-            try
-            {
-                reader.close();
-            }
-            catch (Exception e)
-            {
-                // ignore
-            }
-        }
-        return collect.getResult();
+        return read(new FileInputStream(file).getChannel(), Charset.defaultCharset());
     }
 
     @Override
@@ -106,26 +84,7 @@ abstract class AbstractFastqReader
         {
             throw new IllegalArgumentException("url must not be null");
         }
-
-        BufferedReader reader = null;
-        Collect collect = new Collect();
-        try
-        {
-            reader = Resources.asCharSource(url, Charset.forName("UTF-8")).openBufferedStream();
-            stream(reader, collect);
-        }
-        finally
-        {
-            try
-            {
-                reader.close();
-            }
-            catch (Exception e)
-            {
-                // ignore
-            }
-        }
-        return collect.getResult();
+        return read(Channels.newChannel(url.openStream()), Charset.forName("UTF-8"));
     }
 
     @Override
@@ -135,13 +94,25 @@ abstract class AbstractFastqReader
         {
             throw new IllegalArgumentException("inputStream must not be null");
         }
+        return read(Channels.newChannel(inputStream), Charset.defaultCharset());
+    }
 
-        BufferedReader reader = null;
+    /**
+     * Read zero or more FASTQ formatted sequences from the specified channel with a
+     * {@link FastqRecordReader}, closing the channel when done.
+     *
+     * @param channel channel to read from
+     * @param charset character set to decode the records with
+     * @return zero or more FASTQ formatted sequences read from the specified channel
+     * @throws IOException if an I/O error occurs
+     */
+    private Iterable<Fastq> read(final ReadableByteChannel channel, final Charset charset) throws IOException
+    {
+        FastqRecordReader reader = new FastqRecordReader(channel, getVariant());
         Collect collect = new Collect();
         try
         {
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-            stream(reader, collect);
+            reader.stream(collect, charset);
         }
         finally
         {
@@ -0,0 +1,712 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.WritableByteChannel;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer for FASTQ formatted sequences in BGZF compressed format.
+ *
+ * <p>
+ * Records are formatted as by {@link FastqWriter}, one byte per char, converted to the
+ * variant of this writer if necessary, and collected into batches.  Each batch is
+ * compressed on a pool of worker threads into a series of BGZF blocks, gzip members of
+ * at most 64 KB that carry their own size, so the output can be read by any gzip reader
+ * and indexed by BGZF aware tools.
+ * Compressed batches are written to the channel in order by the calling thread, and the
+ * BGZF end of file marker is written on {@link #close()}.  At most
+ * <code>queueCapacity</code> batches are compressed or waiting at a time, which bounds
+ * memory use.
+ * </p>
+ *
+ * <pre>
+ * BgzfFastqWriter writer = BgzfFastqWriter.open(new File("out.fastq.gz"), FastqVariant.FASTQ_SANGER, 4);
+ * for (Fastq fastq : ...)
+ * {
+ *   writer.write(fastq);
+ * }
+ * writer.close();
+ * </pre>
+ *
+ * <p>
+ * Instances of this class are not thread safe.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public final class BgzfFastqWriter
+    implements Closeable, Flushable
+{
+    /** Maximum number of uncompressed bytes in a BGZF block, as used by bgzip. */
+    static final int BLOCK_DATA_SIZE = 0xff00;
+
+    /** Maximum size of a BGZF block, in bytes. */
+    static final int MAXIMUM_BLOCK_SIZE = 0x10000;
+
+    /** Size of the BGZF block header, in bytes. */
+    private static final int HEADER_SIZE = 18;
+
+    /** Size of the BGZF block footer, in bytes. */
+    private static final int FOOTER_SIZE = 8;
+
+    /** Empty BGZF block marking the end of file. */
+    private static final byte[] EOF_MARKER = new byte[]
+        {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00,
+            0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+            0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00,
+            0x00, 0x00, 0x00, 0x00
+        };
+
+    /** Default number of BGZF blocks per batch. */
+    public static final int DEFAULT_BLOCKS_PER_BATCH = 16;
+
+    /** Channel. */
+    private final WritableByteChannel channel;
+
+    /** FASTQ sequence format variant. */
+    private final FastqVariant variant;
+
+    /** Compression level. */
+    private final int level;
+
+    /** Maximum number of batches compressed or waiting at a time. */
+    private final int queueCapacity;
+
+    /** Executor. */
+    private final ExecutorService executor;
+
+    /** Pending compressed batches, in order. */
+    private final Deque<Future<ByteBuffer>> pending;
+
+    /** Current batch. */
+    private byte[] batch;
+
+    /** Number of bytes in the current batch. */
+    private int batchLength;
+
+    /** Record buffer, for qualities converted from another variant. */
+    private byte[] quality = new byte[256];
+
+    /** True if closed. */
+    private boolean closed;
+
+    /** Number of records written. */
+    private long records;
+
+    /** Number of uncompressed bytes submitted for compression. */
+    private long uncompressedBytes;
+
+    /** Number of compressed bytes written. */
+    private long compressedBytes;
+
+    /** Time the calling thread spent waiting for compression, in nanoseconds. */
+    private long waitTime;
+
+    /** Number of BGZF blocks, updated by the workers. */
+    private final AtomicLong blocks = new AtomicLong();
+
+    /** Time spent compressing, summed over the workers, in nanoseconds. */
+    private final AtomicLong compressionTime = new AtomicLong();
+
+
+    /**
+     * Create a new BGZF FASTQ writer with the default compression level, batch size and a
+     * queue capacity of two batches per worker thread.
+     *
+     * @param channel channel to write to, must not be null
+     * @param variant FASTQ sequence format variant to write, must not be null
+     * @param threads number of worker threads, must be at least one
+     */
+    public BgzfFastqWriter(final WritableByteChannel channel, final FastqVariant variant, final int threads)
+    {
+        this(channel, variant, threads, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCKS_PER_BATCH, 2 * threads);
+    }
+
+    /**
+     * Create a new BGZF FASTQ writer.
+     *
+     * @param channel channel to write to, must not be null
+     * @param variant FASTQ sequence format variant to write, must not be null
+     * @param threads number of worker threads, must be at least one
+     * @param level compression level, between <code>-1</code> (default) and <code>9</code>
+     * @param blocksPerBatch number of BGZF blocks per batch, must be at least one
+     * @param queueCapacity maximum number of batches compressed or waiting at a time, must be at least one
+     */
+    public BgzfFastqWriter(final WritableByteChannel channel, final FastqVariant variant, final int threads,
+                           final int level, final int blocksPerBatch, final int queueCapacity)
+    {
+        if (channel == null)
+        {
+            throw new IllegalArgumentException("channel must not be null");
+        }
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("threads must be at least one");
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+        {
+            throw new IllegalArgumentException("level must be between -1 and 9, was " + level);
+        }
+        if (blocksPerBatch < 1)
+        {
+            throw new IllegalArgumentException("blocksPerBatch must be at least one");
+        }
+        if (queueCapacity < 1)
+        {
+            throw new IllegalArgumentException("queueCapacity must be at least one");
+        }
+        this.channel = channel;
+        this.variant = variant;
+        this.level = level;
+        this.queueCapacity = queueCapacity;
+        this.batch = new byte[blocksPerBatch * BLOCK_DATA_SIZE];
+        this.pending = new ArrayDeque<Future<ByteBuffer>>(queueCapacity);
+        this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+    }
+
+
+    /**
+     * Create and return a new BGZF FASTQ writer for the specified file.
+     *
+     * @param file file to write to, must not be null
+     * @param variant FASTQ sequence format variant to write, must not be null
+     * @param threads number of worker threads, must be at least one
+     * @return a new BGZF FASTQ writer for the specified file
+     * @throws IOException if an I/O error occurs
+     */
+    public static BgzfFastqWriter open(final File file, final FastqVariant variant, final int threads) throws IOException
+    {
+        if (file == null)
+        {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        return new BgzfFastqWriter(new FileOutputStream(file).getChannel(), variant, threads);
+    }
+
+    /**
+     * Return the FASTQ sequence format variant for this writer.
+     *
+     * @return the FASTQ sequence format variant for this writer
+     */
+    public FastqVariant getVariant()
+    {
+        return variant;
+    }
+
+    /**
+     * Write the specified FASTQ formatted sequence.
+     *
+     * @param fastq FASTQ formatted sequence to write, must not be null
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(final Fastq fastq) throws IOException
+    {
+        if (fastq == null)
+        {
+            throw new IllegalArgumentException("fastq must not be null");
+        }
+        checkOpen();
+        Fastq converted = FastqTools.convert(fastq, variant);
+        put((byte) '@');
+        put(converted.getDescription());
+        put((byte) '\n');
+        put(converted.getSequence());
+        put((byte) '\n');
+        put((byte) '+');
+        put((byte) '\n');
+        put(converted.getQuality());
+        put((byte) '\n');
+        records++;
+    }
+
+    /**
+     * Write the specified FASTQ formatted sequences.
+     *
+     * @param fastq zero or more FASTQ formatted sequences to write, must not be null
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(final Iterable<Fastq> fastq) throws IOException
+    {
+        if (fastq == null)
+        {
+            throw new IllegalArgumentException("fastq must not be null");
+        }
+        for (Fastq f : fastq)
+        {
+            if (f != null)
+            {
+                write(f);
+            }
+        }
+    }
+
+    /**
+     * Write the specified FASTQ record.  The record is not modified.
+     *
+     * @param record FASTQ record to write, must not be null
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(final FastqRecord record) throws IOException
+    {
+        if (record == null)
+        {
+            throw new IllegalArgumentException("record must not be null");
+        }
+        checkOpen();
+        put((byte) '@');
+        put(record.getDescriptionBytes(), 0, record.getDescriptionLength());
+        put((byte) '\n');
+        put(record.getSequenceBytes(), 0, record.getSequenceLength());
+        put((byte) '\n');
+        put((byte) '+');
+        put((byte) '\n');
+        if (record.getVariant() == variant)
+        {
+            put(record.getQualityBytes(), 0, record.getQualityLength());
+        }
+        else
+        {
+            quality = FastqRecord.ensureCapacity(quality, record.getQualityLength());
+            FastqTools.convertQualities(record.getQualityBytes(), 0, quality, 0, record.getQualityLength(), record.getVariant(), variant);
+            put(quality, 0, record.getQualityLength());
+        }
+        put((byte) '\n');
+        records++;
+    }
+
+    /**
+     * Compress the records written so far and write them to the channel.  This ends the
+     * current BGZF block early, so calling it often reduces compression.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        checkOpen();
+        submit();
+        while (!pending.isEmpty())
+        {
+            writeNext();
+        }
+    }
+
+    /**
+     * Flush, write the BGZF end of file marker, and close the channel.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        try
+        {
+            flush();
+            writeFully(ByteBuffer.wrap(EOF_MARKER));
+            compressedBytes += EOF_MARKER.length;
+        }
+        finally
+        {
+            closed = true;
+            executor.shutdownNow();
+            channel.close();
+        }
+    }
+
+    /**
+     * Return the number of records written.
+     *
+     * @return the number of records written
+     */
+    public long getRecordCount()
+    {
+        return records;
+    }
+
+    /**
+     * Return the number of uncompressed bytes submitted for compression so far.
+     *
+     * @return the number of uncompressed bytes submitted for compression
+     */
+    public long getUncompressedBytes()
+    {
+        return uncompressedBytes;
+    }
+
+    /**
+     * Return the number of compressed bytes written to the channel so far.
+     *
+     * @return the number of compressed bytes written
+     */
+    public long getCompressedBytes()
+    {
+        return compressedBytes;
+    }
+
+    /**
+     * Return the number of BGZF blocks compressed so far, not counting the end of file marker.
+     *
+     * @return the number of BGZF blocks compressed so far
+     */
+    public long getBlockCount()
+    {
+        return blocks.get();
+    }
+
+    /**
+     * Return the time spent compressing so far, summed over the worker threads, in nanoseconds.
+     *
+     * @return the time spent compressing so far, in nanoseconds
+     */
+    public long getCompressionTime()
+    {
+        return compressionTime.get();
+    }
+
+    /**
+     * Return the time the writing thread has spent waiting for compressed batches, in nanoseconds.
+     * A large value relative to the elapsed time means more worker threads would help.
+     *
+     * @return the time spent waiting for compressed batches, in nanoseconds
+     */
+    public long getWaitTime()
+    {
+        return waitTime;
+    }
+
+    /**
+     * Check that this writer is open.
+     *
+     * @throws IOException if this writer is closed
+     */
+    private void checkOpen() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("writer is closed");
+        }
+    }
+
+    /**
+     * Append the specified byte to the current batch.
+     *
+     * @param b byte
+     * @throws IOException if an I/O error occurs
+     */
+    private void put(final byte b) throws IOException
+    {
+        if (batchLength == batch.length)
+        {
+            submit();
+        }
+        batch[batchLength++] = b;
+    }
+
+    /**
+     * Append the specified bytes to the current batch.
+     *
+     * @param src source bytes
+     * @param offset offset in <code>src</code>
+     * @param length number of bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private void put(final byte[] src, final int offset, final int length) throws IOException
+    {
+        int off = offset;
+        int remaining = length;
+        while (remaining > 0)
+        {
+            if (batchLength == batch.length)
+            {
+                submit();
+            }
+            int n = Math.min(remaining, batch.length - batchLength);
+            System.arraycopy(src, off, batch, batchLength, n);
+            batchLength += n;
+            off += n;
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Append the specified characters to the current batch, one byte per char.
+     *
+     * @param s characters
+     * @throws IOException if an I/O error occurs
+     */
+    private void put(final String s) throws IOException
+    {
+        int off = 0;
+        int remaining = s.length();
+        while (remaining > 0)
+        {
+            if (batchLength == batch.length)
+            {
+                submit();
+            }
+            int n = Math.min(remaining, batch.length - batchLength);
+            for (int i = 0; i < n; i++)
+            {
+                batch[batchLength + i] = (byte) s.charAt(off + i);
+            }
+            batchLength += n;
+            off += n;
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Submit the current batch for compression, first writing the oldest pending batch if the
+     * queue is full.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void submit() throws IOException
+    {
+        if (batchLength == 0)
+        {
+            return;
+        }
+        if (pending.size() >= queueCapacity)
+        {
+            writeNext();
+        }
+        pending.addLast(executor.submit(new Compress(batch, batchLength)));
+        uncompressedBytes += batchLength;
+        batch = new byte[batch.length];
+        batchLength = 0;
+    }
+
+    /**
+     * Wait for the oldest pending batch and write it to the channel.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeNext() throws IOException
+    {
+        long start = System.nanoTime();
+        ByteBuffer compressed;
+        try
+        {
+            compressed = pending.removeFirst().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a batch");
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("caught an exception compressing a batch", e.getCause());
+        }
+        waitTime += System.nanoTime() - start;
+        compressedBytes += compressed.remaining();
+        writeFully(compressed);
+    }
+
+    /**
+     * Write all of the specified buffer to the channel.
+     *
+     * @param buffer buffer
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeFully(final ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Compress a batch into BGZF blocks.
+     */
+    private final class Compress implements Callable<ByteBuffer>
+    {
+        /** Batch. */
+        private final byte[] data;
+
+        /** Number of bytes in the batch. */
+        private final int length;
+
+
+        /**
+         * Create a new compress task.
+         *
+         * @param data batch
+         * @param length number of bytes in the batch
+         */
+        private Compress(final byte[] data, final int length)
+        {
+            this.data = data;
+            this.length = length;
+        }
+
+
+        @Override
+        public ByteBuffer call()
+        {
+            long start = System.nanoTime();
+            int count = (length + BLOCK_DATA_SIZE - 1) / BLOCK_DATA_SIZE;
+            byte[] out = new byte[count * MAXIMUM_BLOCK_SIZE];
+            int outLength = 0;
+            Deflater deflater = new Deflater(level, true);
+            CRC32 crc = new CRC32();
+            try
+            {
+                for (int offset = 0; offset < length; offset += BLOCK_DATA_SIZE)
+                {
+                    int blockLength = Math.min(BLOCK_DATA_SIZE, length - offset);
+                    outLength += block(deflater, crc, offset, blockLength, out, outLength);
+                }
+            }
+            finally
+            {
+                deflater.end();
+            }
+            blocks.addAndGet(count);
+            compressionTime.addAndGet(System.nanoTime() - start);
+            return ByteBuffer.wrap(Arrays.copyOf(out, outLength));
+        }
+
+        /**
+         * Compress the specified range of the batch into one BGZF block.
+         *
+         * @param deflater deflater
+         * @param crc checksum
+         * @param offset offset in the batch
+         * @param blockLength number of bytes to compress
+         * @param out output buffer
+         * @param outOffset offset in the output buffer
+         * @return the size of the block
+         */
+        private int block(final Deflater deflater, final CRC32 crc, final int offset, final int blockLength,
+                          final byte[] out, final int outOffset)
+        {
+            int limit = MAXIMUM_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+            deflater.reset();
+            deflater.setLevel(level);
+            deflater.setInput(data, offset, blockLength);
+            deflater.finish();
+            int compressedLength = deflate(deflater, out, outOffset + HEADER_SIZE, limit);
+            if (!deflater.finished())
+            {
+                // incompressible data, store it instead
+                deflater.reset();
+                deflater.setLevel(Deflater.NO_COMPRESSION);
+                deflater.setInput(data, offset, blockLength);
+                deflater.finish();
+                compressedLength = deflate(deflater, out, outOffset + HEADER_SIZE, limit);
+            }
+            int blockSize = HEADER_SIZE + compressedLength + FOOTER_SIZE;
+
+            System.arraycopy(EOF_MARKER, 0, out, outOffset, HEADER_SIZE);
+            writeShort(out, outOffset + 16, blockSize - 1);
+
+            crc.reset();
+            crc.update(data, offset, blockLength);
+            int footer = outOffset + HEADER_SIZE + compressedLength;
+            writeInt(out, footer, (int) crc.getValue());
+            writeInt(out, footer + 4, blockLength);
+            return blockSize;
+        }
+
+        /**
+         * Deflate the current input into the specified range of the output buffer.
+         *
+         * @param deflater deflater
+         * @param out output buffer
+         * @param offset offset in the output buffer
+         * @param limit maximum number of bytes to write
+         * @return the number of bytes written
+         */
+        private int deflate(final Deflater deflater, final byte[] out, final int offset, final int limit)
+        {
+            int written = 0;
+            while (!deflater.finished() && written < limit)
+            {
+                written += deflater.deflate(out, offset + written, limit - written);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Write the specified value as a little endian unsigned short.
+     *
+     * @param out output buffer
+     * @param offset offset in the output buffer
+     * @param value value
+     */
+    private static void writeShort(final byte[] out, final int offset, final int value)
+    {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+    }
+
+    /**
+     * Write the specified value as a little endian int.
+     *
+     * @param out output buffer
+     * @param offset offset in the output buffer
+     * @param value value
+     */
+    private static void writeInt(final byte[] out, final int offset, final int value)
+    {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factory for daemon worker threads.
+ *
+ * @since 1.9.8
+ */
+final class DaemonThreadFactory
+    implements ThreadFactory
+{
+    /** Default thread factory. */
+    private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+    @Override
+    public Thread newThread(final Runnable runnable)
+    {
+        Thread thread = threadFactory.newThread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.nio.charset.Charset;
+
+import java.util.Arrays;
+
+/**
+ * Mutable, reusable view of a FASTQ formatted sequence.
+ *
+ * <p>
+ * The description, sequence and quality are held as bytes in buffers that
+ * grow as needed and are reused from one record to the next, so reading into
+ * the same record does not allocate once the buffers are large enough.
+ * The byte arrays returned by the <code>get...Bytes()</code> methods are
+ * the backing buffers themselves; only the first <code>get...Length()</code>
+ * bytes are valid, and their contents change when the record is reused.
+ * The <code>CharSequence</code> views map each byte to one char.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public final class FastqRecord
+{
+    /** Character set mapping each byte to one char. */
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /** Description bytes. */
+    private byte[] description = new byte[64];
+
+    /** Sequence bytes. */
+    private byte[] sequence = new byte[256];
+
+    /** Quality bytes. */
+    private byte[] quality = new byte[256];
+
+    /** Description length. */
+    private int descriptionLength;
+
+    /** Sequence length. */
+    private int sequenceLength;
+
+    /** Quality length. */
+    private int qualityLength;
+
+    /** FASTQ sequence format variant. */
+    private FastqVariant variant = FastqBuilder.DEFAULT_VARIANT;
+
+    /** Description view. */
+    private final CharSequence descriptionView = new View()
+        {
+            @Override
+            byte[] bytes()
+            {
+                return description;
+            }
+
+            @Override
+            public int length()
+            {
+                return descriptionLength;
+            }
+        };
+
+    /** Sequence view. */
+    private final CharSequence sequenceView = new View()
+        {
+            @Override
+            byte[] bytes()
+            {
+                return sequence;
+            }
+
+            @Override
+            public int length()
+            {
+                return sequenceLength;
+            }
+        };
+
+    /** Quality view. */
+    private final CharSequence qualityView = new View()
+        {
+            @Override
+            byte[] bytes()
+            {
+                return quality;
+            }
+
+            @Override
+            public int length()
+            {
+                return qualityLength;
+            }
+        };
+
+
+    /**
+     * Create a new empty FASTQ record.
+     */
+    public FastqRecord()
+    {
+        // empty
+    }
+
+
+    /**
+     * Return a view of the description of this record.  The view reflects later changes to this record.
+     *
+     * @return a view of the description of this record
+     */
+    public CharSequence getDescription()
+    {
+        return descriptionView;
+    }
+
+    /**
+     * Return a view of the sequence of this record.  The view reflects later changes to this record.
+     *
+     * @return a view of the sequence of this record
+     */
+    public CharSequence getSequence()
+    {
+        return sequenceView;
+    }
+
+    /**
+     * Return a view of the quality scores of this record.  The view reflects later changes to this record.
+     *
+     * @return a view of the quality scores of this record
+     */
+    public CharSequence getQuality()
+    {
+        return qualityView;
+    }
+
+    /**
+     * Return the buffer holding the description of this record.
+     *
+     * @return the buffer holding the description of this record
+     */
+    public byte[] getDescriptionBytes()
+    {
+        return description;
+    }
+
+    /**
+     * Return the length of the description of this record.
+     *
+     * @return the length of the description of this record
+     */
+    public int getDescriptionLength()
+    {
+        return descriptionLength;
+    }
+
+    /**
+     * Return the buffer holding the sequence of this record.
+     *
+     * @return the buffer holding the sequence of this record
+     */
+    public byte[] getSequenceBytes()
+    {
+        return sequence;
+    }
+
+    /**
+     * Return the length of the sequence of this record.
+     *
+     * @return the length of the sequence of this record
+     */
+    public int getSequenceLength()
+    {
+        return sequenceLength;
+    }
+
+    /**
+     * Return the buffer holding the quality scores of this record.
+     *
+     * @return the buffer holding the quality scores of this record
+     */
+    public byte[] getQualityBytes()
+    {
+        return quality;
+    }
+
+    /**
+     * Return the length of the quality scores of this record.
+     *
+     * @return the length of the quality scores of this record
+     */
+    public int getQualityLength()
+    {
+        return qualityLength;
+    }
+
+    /**
+     * Return the FASTQ sequence format variant of this record.
+     *
+     * @return the FASTQ sequence format variant of this record
+     */
+    public FastqVariant getVariant()
+    {
+        return variant;
+    }
+
+    /**
+     * Return the quality score at the specified position, as defined by the variant of this record.
+     *
+     * @param index position in the quality scores, must be between <code>0</code> and
+     *    <code>getQualityLength() - 1</code>
+     * @return the quality score at the specified position
+     */
+    public int qualityScore(final int index)
+    {
+        if (index < 0 || index >= qualityLength)
+        {
+            throw new IndexOutOfBoundsException("index must be between 0 and " + (qualityLength - 1) + ", was " + index);
+        }
+        return variant.qualityScore((char) (quality[index] & 0xff));
+    }
+
+    /**
+     * Copy the contents of the specified record into this record.
+     *
+     * @param record record to copy, must not be null
+     * @return this record
+     */
+    public FastqRecord copyFrom(final FastqRecord record)
+    {
+        if (record == null)
+        {
+            throw new IllegalArgumentException("record must not be null");
+        }
+        clear(record.variant);
+        appendDescription(record.description, 0, record.descriptionLength);
+        appendSequence(record.sequence, 0, record.sequenceLength);
+        appendQuality(record.quality, 0, record.qualityLength);
+        return this;
+    }
+
+    /**
+     * Create and return a new immutable FASTQ formatted sequence from the contents of this record,
+     * mapping each byte to one char.
+     *
+     * @return a new immutable FASTQ formatted sequence from the contents of this record
+     */
+    public Fastq toFastq()
+    {
+        return toFastq(ISO_8859_1);
+    }
+
+    /**
+     * Create and return a new immutable FASTQ formatted sequence from the contents of this record,
+     * decoding the bytes with the specified character set.
+     *
+     * @param charset character set to decode the bytes with, must not be null
+     * @return a new immutable FASTQ formatted sequence from the contents of this record
+     */
+    public Fastq toFastq(final Charset charset)
+    {
+        if (charset == null)
+        {
+            throw new IllegalArgumentException("charset must not be null");
+        }
+        return new Fastq(new String(description, 0, descriptionLength, charset),
+                         new String(sequence, 0, sequenceLength, charset),
+                         new String(quality, 0, qualityLength, charset), variant);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "@" + descriptionView + "\n" + sequenceView + "\n+\n" + qualityView;
+    }
+
+    /**
+     * Empty this record and set its variant.
+     *
+     * @param variant FASTQ sequence format variant
+     */
+    void clear(final FastqVariant variant)
+    {
+        this.variant = variant;
+        descriptionLength = 0;
+        sequenceLength = 0;
+        qualityLength = 0;
+    }
+
+    /**
+     * Set the variant of this record.
+     *
+     * @param variant FASTQ sequence format variant
+     */
+    void setVariant(final FastqVariant variant)
+    {
+        this.variant = variant;
+    }
+
+    /**
+     * Append the specified bytes to the description of this record.
+     *
+     * @param src source bytes
+     * @param offset offset in <code>src</code>
+     * @param length number of bytes to append
+     */
+    void appendDescription(final byte[] src, final int offset, final int length)
+    {
+        description = ensureCapacity(description, descriptionLength + length);
+        System.arraycopy(src, offset, description, descriptionLength, length);
+        descriptionLength += length;
+    }
+
+    /**
+     * Append the specified bytes to the sequence of this record.
+     *
+     * @param src source bytes
+     * @param offset offset in <code>src</code>
+     * @param length number of bytes to append
+     */
+    void appendSequence(final byte[] src, final int offset, final int length)
+    {
+        sequence = ensureCapacity(sequence, sequenceLength + length);
+        System.arraycopy(src, offset, sequence, sequenceLength, length);
+        sequenceLength += length;
+    }
+
+    /**
+     * Append the specified bytes to the quality scores of this record.
+     *
+     * @param src source bytes
+     * @param offset offset in <code>src</code>
+     * @param length number of bytes to append
+     */
+    void appendQuality(final byte[] src, final int offset, final int length)
+    {
+        quality = ensureCapacity(quality, qualityLength + length);
+        System.arraycopy(src, offset, quality, qualityLength, length);
+        qualityLength += length;
+    }
+
+    /**
+     * Return <code>true</code> if the description of this record equals the specified bytes.
+     *
+     * @param src source bytes
+     * @param offset offset in <code>src</code>
+     * @param length number of bytes to compare
+     * @return <code>true</code> if the description of this record equals the specified bytes
+     */
+    boolean descriptionEquals(final byte[] src, final int offset, final int length)
+    {
+        if (length != descriptionLength)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (description[i] != src[offset + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the specified buffer, or a larger copy of it if it cannot hold <code>capacity</code> bytes.
+     *
+     * @param buffer buffer
+     * @param capacity required capacity
+     * @return the specified buffer, or a larger copy of it
+     */
+    static byte[] ensureCapacity(final byte[] buffer, final int capacity)
+    {
+        if (capacity <= buffer.length)
+        {
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+
+    /**
+     * Character sequence view of a byte buffer, one char per byte.
+     */
+    private abstract static class View implements CharSequence
+    {
+        /**
+         * Return the current backing buffer.
+         *
+         * @return the current backing buffer
+         */
+        abstract byte[] bytes();
+
+        @Override
+        public final char charAt(final int index)
+        {
+            if (index < 0 || index >= length())
+            {
+                throw new IndexOutOfBoundsException("index must be between 0 and " + (length() - 1) + ", was " + index);
+            }
+            return (char) (bytes()[index] & 0xff);
+        }
+
+        @Override
+        public final CharSequence subSequence(final int start, final int end)
+        {
+            if (start < 0 || end > length() || start > end)
+            {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+            }
+            return new String(bytes(), start, end - start, ISO_8859_1);
+        }
+
+        @Override
+        public final String toString()
+        {
+            return new String(bytes(), 0, length(), ISO_8859_1);
+        }
+    }
+}
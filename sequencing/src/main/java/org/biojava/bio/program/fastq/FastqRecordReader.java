@@ -0,0 +1,539 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import java.nio.charset.Charset;
+
+/**
+ * Byte oriented reader for FASTQ formatted sequences.
+ *
+ * <p>
+ * Records are read from a <code>ReadableByteChannel</code> or from a
+ * <code>ByteBuffer</code>, such as a mapped file, into caller supplied
+ * {@link FastqRecord}s.  No strings are created while reading; quality
+ * scores are validated against the range of the FASTQ sequence format
+ * variant with a lookup table.  Wrapped sequence and quality lines are
+ * accepted, as they are by {@link FastqReader}.
+ * </p>
+ *
+ * <pre>
+ * FastqRecordReader reader = FastqRecordReader.map(new File("sanger.fastq"), FastqVariant.FASTQ_SANGER);
+ * FastqRecord record = new FastqRecord();
+ * while (reader.next(record))
+ * {
+ *   // ...
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * <p>
+ * Instances of this class are not thread safe.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public final class FastqRecordReader
+    implements Closeable
+{
+    /** Default size of the read buffer, in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /** Character set mapping each byte to one char. */
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /** Channel, or null if reading from a buffer only. */
+    private final ReadableByteChannel channel;
+
+    /** Read buffer. */
+    private final ByteBuffer buffer;
+
+    /** FASTQ sequence format variant. */
+    private final FastqVariant variant;
+
+    /** Valid quality characters, indexed by byte value. */
+    private final boolean[] validQuality;
+
+    /** Current line. */
+    private byte[] line = new byte[256];
+
+    /** Current line length. */
+    private int lineLength;
+
+    /** True if a linefeed following a carriage return should be skipped. */
+    private boolean skipLinefeed;
+
+    /** Line number. */
+    private long lineNumber;
+
+    /** Parser state. */
+    private State state = State.DESCRIPTION;
+
+
+    /**
+     * Create a new FASTQ record reader for the specified channel.
+     *
+     * @param channel channel to read from, must not be null
+     * @param variant FASTQ sequence format variant, must not be null
+     */
+    public FastqRecordReader(final ReadableByteChannel channel, final FastqVariant variant)
+    {
+        this(channel, variant, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new FASTQ record reader for the specified channel.
+     *
+     * @param channel channel to read from, must not be null
+     * @param variant FASTQ sequence format variant, must not be null
+     * @param bufferSize size of the read buffer, in bytes, must be at least one
+     */
+    public FastqRecordReader(final ReadableByteChannel channel, final FastqVariant variant, final int bufferSize)
+    {
+        if (channel == null)
+        {
+            throw new IllegalArgumentException("channel must not be null");
+        }
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("bufferSize must be at least one");
+        }
+        this.channel = channel;
+        this.variant = variant;
+        this.validQuality = validQuality(variant);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+    }
+
+    /**
+     * Create a new FASTQ record reader for the remaining bytes of the specified buffer.
+     * The position of the buffer is advanced as records are read.
+     *
+     * @param buffer buffer to read from, such as a mapped file, must not be null
+     * @param variant FASTQ sequence format variant, must not be null
+     */
+    public FastqRecordReader(final ByteBuffer buffer, final FastqVariant variant)
+    {
+        if (buffer == null)
+        {
+            throw new IllegalArgumentException("buffer must not be null");
+        }
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        this.channel = null;
+        this.variant = variant;
+        this.validQuality = validQuality(variant);
+        this.buffer = buffer;
+    }
+
+
+    /**
+     * Create and return a new FASTQ record reader for the specified file.  Files that fit in
+     * a single mapping are mapped into memory, larger files are read through a file channel.
+     *
+     * @param file file to read from, must not be null
+     * @param variant FASTQ sequence format variant, must not be null
+     * @return a new FASTQ record reader for the specified file
+     * @throws IOException if an I/O error occurs
+     */
+    public static FastqRecordReader map(final File file, final FastqVariant variant) throws IOException
+    {
+        if (file == null)
+        {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        FileChannel fileChannel = new FileInputStream(file).getChannel();
+        long size = fileChannel.size();
+        if (size > Integer.MAX_VALUE)
+        {
+            return new FastqRecordReader(fileChannel, variant);
+        }
+        try
+        {
+            return new FastqRecordReader(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, size), variant);
+        }
+        finally
+        {
+            fileChannel.close();
+        }
+    }
+
+    /**
+     * Return the FASTQ sequence format variant for this reader.
+     *
+     * @return the FASTQ sequence format variant for this reader
+     */
+    public FastqVariant getVariant()
+    {
+        return variant;
+    }
+
+    /**
+     * Return the number of lines read so far.
+     *
+     * @return the number of lines read so far
+     */
+    public long getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * Set the number of lines read so far, for readers that start part way into a file.
+     *
+     * @param lineNumber number of lines read so far
+     */
+    void setLineNumber(final long lineNumber)
+    {
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Read the next FASTQ formatted sequence into the specified record.  After an
+     * <code>IOException</code> the contents of the record and the position of this
+     * reader are undefined.
+     *
+     * @param record record to read into, must not be null
+     * @return <code>true</code> if a record was read, <code>false</code> at the end of input
+     * @throws IOException if an I/O error occurs or the input is not valid FASTQ
+     */
+    public boolean next(final FastqRecord record) throws IOException
+    {
+        if (record == null)
+        {
+            throw new IllegalArgumentException("record must not be null");
+        }
+        state = State.DESCRIPTION;
+        try
+        {
+            if (!readLine())
+            {
+                return false;
+            }
+            if (lineLength == 0 || line[0] != '@')
+            {
+                throw new IOException("description must begin with a '@' character");
+            }
+            record.clear(variant);
+            int start = trimStart(1);
+            record.appendDescription(line, start, trimEnd(start) - start);
+
+            state = State.SEQUENCE;
+            requireLine();
+            start = trimStart(0);
+            record.appendSequence(line, start, trimEnd(start) - start);
+
+            state = State.REPEAT_DESCRIPTION;
+            while (true)
+            {
+                requireLine();
+                if (lineLength > 0 && line[0] == '+')
+                {
+                    start = trimStart(1);
+                    int length = trimEnd(start) - start;
+                    if (record.getDescriptionLength() > 0 && length > 0 && !record.descriptionEquals(line, start, length))
+                    {
+                        throw new IOException("repeat description must match description");
+                    }
+                    break;
+                }
+                start = trimStart(0);
+                record.appendSequence(line, start, trimEnd(start) - start);
+            }
+
+            state = State.QUALITY;
+            do
+            {
+                requireLine();
+                start = trimStart(0);
+                int end = trimEnd(start);
+                validateQuality(start, end);
+                record.appendQuality(line, start, end - start);
+            }
+            while (record.getQualityLength() < record.getSequenceLength());
+
+            if (record.getQualityLength() != record.getSequenceLength())
+            {
+                throw new IOException("sequence and quality scores must be the same length");
+            }
+            state = State.DESCRIPTION;
+            return true;
+        }
+        catch (EOFException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            throw new IOException("parse error at line " + lineNumber + ", state " + state, e);
+        }
+    }
+
+    /**
+     * Stream the remaining FASTQ formatted sequences to the specified listener as immutable
+     * <code>Fastq</code> objects, mapping each byte to one char.
+     *
+     * @param listener event based reader callback, must not be null
+     * @throws IOException if an I/O error occurs
+     */
+    public void stream(final StreamListener listener) throws IOException
+    {
+        stream(listener, ISO_8859_1);
+    }
+
+    /**
+     * Stream the remaining FASTQ formatted sequences to the specified listener as immutable
+     * <code>Fastq</code> objects, decoding the bytes with the specified character set.  Lines are
+     * split on bytes, so the character set must encode line breaks as ASCII does, as UTF-8 and
+     * the ISO-8859 character sets do.
+     *
+     * @param listener event based reader callback, must not be null
+     * @param charset character set to decode the bytes with, must not be null
+     * @throws IOException if an I/O error occurs
+     */
+    public void stream(final StreamListener listener, final Charset charset) throws IOException
+    {
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        if (charset == null)
+        {
+            throw new IllegalArgumentException("charset must not be null");
+        }
+        FastqRecord record = new FastqRecord();
+        while (next(record))
+        {
+            listener.fastq(record.toFastq(charset));
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read the next line, throwing an exception at the end of input.
+     *
+     * @throws IOException if an I/O error occurs or at the end of input
+     */
+    private void requireLine() throws IOException
+    {
+        if (!readLine())
+        {
+            throw new EOFException("truncated sequence at line " + lineNumber);
+        }
+    }
+
+    /**
+     * Read the next line, without its terminator, into the line buffer.  Lines may be
+     * terminated by a linefeed, a carriage return, or both.
+     *
+     * @return <code>true</code> if a line was read, <code>false</code> at the end of input
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean readLine() throws IOException
+    {
+        lineLength = 0;
+        boolean read = false;
+        while (true)
+        {
+            if (!buffer.hasRemaining() && !fill())
+            {
+                if (read)
+                {
+                    lineNumber++;
+                }
+                return read;
+            }
+            if (skipLinefeed)
+            {
+                skipLinefeed = false;
+                if (buffer.get(buffer.position()) == '\n')
+                {
+                    buffer.position(buffer.position() + 1);
+                    continue;
+                }
+            }
+            read = true;
+            int position = buffer.position();
+            int limit = buffer.limit();
+            int end = position;
+            byte b = 0;
+            while (end < limit)
+            {
+                b = buffer.get(end);
+                if (b == '\n' || b == '\r')
+                {
+                    break;
+                }
+                end++;
+            }
+            int length = end - position;
+            line = FastqRecord.ensureCapacity(line, lineLength + length);
+            buffer.get(line, lineLength, length);
+            lineLength += length;
+            if (end < limit)
+            {
+                buffer.position(end + 1);
+                skipLinefeed = (b == '\r');
+                lineNumber++;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Refill the read buffer from the channel.
+     *
+     * @return <code>true</code> if any bytes were read, <code>false</code> at the end of input
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean fill() throws IOException
+    {
+        if (channel == null)
+        {
+            return false;
+        }
+        buffer.clear();
+        int read = 0;
+        while (read == 0)
+        {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Return the index of the first byte of the current line at or after <code>start</code>
+     * that is not whitespace, as for <code>String.trim()</code>.
+     *
+     * @param start start index
+     * @return the index of the first byte that is not whitespace
+     */
+    private int trimStart(final int start)
+    {
+        int i = start;
+        while (i < lineLength && (line[i] & 0xff) <= ' ')
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Return one past the index of the last byte of the current line at or after <code>start</code>
+     * that is not whitespace, as for <code>String.trim()</code>.
+     *
+     * @param start start index
+     * @return one past the index of the last byte that is not whitespace
+     */
+    private int trimEnd(final int start)
+    {
+        int i = lineLength;
+        while (i > start && (line[i - 1] & 0xff) <= ' ')
+        {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Validate the quality scores in the specified range of the current line.
+     *
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @throws IOException if a quality score is out of range for the variant
+     */
+    private void validateQuality(final int start, final int end) throws IOException
+    {
+        for (int i = start; i < end; i++)
+        {
+            if (!validQuality[line[i] & 0xff])
+            {
+                char c = (char) (line[i] & 0xff);
+                int qualityScore = variant.qualityScore(c);
+                throw new IOException("quality score must be between " + variant.minimumQualityScore() +
+                                      " and " + variant.maximumQualityScore() + ", was " + qualityScore +
+                                      " for ASCII char '" + c + "'");
+            }
+        }
+    }
+
+    /**
+     * Create and return a table of the valid quality characters for the specified variant, indexed by byte value.
+     *
+     * @param variant FASTQ sequence format variant
+     * @return a table of the valid quality characters for the specified variant
+     */
+    private static boolean[] validQuality(final FastqVariant variant)
+    {
+        boolean[] valid = new boolean[256];
+        for (int i = 0; i < valid.length; i++)
+        {
+            int qualityScore = variant.qualityScore((char) i);
+            valid[i] = qualityScore >= variant.minimumQualityScore() && qualityScore <= variant.maximumQualityScore();
+        }
+        return valid;
+    }
+
+    /** Parser state. */
+    private static enum State
+    {
+        /** Description parser state. */
+        DESCRIPTION,
+
+        /** Sequence parser state. */
+        SEQUENCE,
+
+        /** Repeat description parser state. */
+        REPEAT_DESCRIPTION,
+
+        /** Quality score parser state. */
+        QUALITY;
+    };
+}
@@ -0,0 +1,399 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.util.Arrays;
+
+/**
+ * Per-position quality score and base composition summary of FASTQ formatted sequences.
+ *
+ * <p>
+ * Records are added one at a time and summarised with primitive counters only: a histogram
+ * of quality scores and a count of each base at every position.  Means and quantiles are
+ * computed from the histograms on request, so a whole run can be summarised in one pass
+ * without keeping the records.  Statistics gathered on separate threads can be combined
+ * with {@link #merge(FastqStatistics)}.
+ * </p>
+ *
+ * <p>
+ * Instances of this class are not thread safe.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public final class FastqStatistics
+{
+    /** Lowest quality score of any variant. */
+    private static final int MINIMUM_QUALITY_SCORE = -5;
+
+    /** Highest quality score of any variant. */
+    private static final int MAXIMUM_QUALITY_SCORE = 93;
+
+    /** Number of histogram bins per position. */
+    private static final int BINS = MAXIMUM_QUALITY_SCORE - MINIMUM_QUALITY_SCORE + 1;
+
+    /** Number of base counters per position: A, C, G, T, N and other. */
+    private static final int BASES = 6;
+
+    /** Base counter index, indexed by base in ASCII format. */
+    private static final byte[] BASE_INDEX = new byte[256];
+
+    static
+    {
+        Arrays.fill(BASE_INDEX, (byte) 5);
+        String bases = "ACGTN";
+        for (int i = 0; i < bases.length(); i++)
+        {
+            BASE_INDEX[bases.charAt(i)] = (byte) i;
+            BASE_INDEX[Character.toLowerCase(bases.charAt(i))] = (byte) i;
+        }
+    }
+
+    /** Number of records. */
+    private long records;
+
+    /** Number of positions. */
+    private int length;
+
+    /** Quality score histograms, <code>BINS</code> per position. */
+    private long[] histograms = new long[0];
+
+    /** Sums of quality scores per position. */
+    private long[] sums = new long[0];
+
+    /** Number of quality scores per position. */
+    private long[] counts = new long[0];
+
+    /** Base counts, <code>BASES</code> per position. */
+    private long[] bases = new long[0];
+
+
+    /**
+     * Create a new empty FASTQ statistics.
+     */
+    public FastqStatistics()
+    {
+        // empty
+    }
+
+
+    /**
+     * Add the specified FASTQ record to these statistics.
+     *
+     * @param record FASTQ record, must not be null
+     * @return these statistics
+     */
+    public FastqStatistics add(final FastqRecord record)
+    {
+        if (record == null)
+        {
+            throw new IllegalArgumentException("record must not be null");
+        }
+        int qualityLength = record.getQualityLength();
+        int sequenceLength = record.getSequenceLength();
+        ensureLength(Math.max(qualityLength, sequenceLength));
+
+        int[] qualityScores = FastqTools.qualityScoreTable(record.getVariant());
+        byte[] quality = record.getQualityBytes();
+        for (int i = 0; i < qualityLength; i++)
+        {
+            addQualityScore(i, qualityScores[quality[i] & 0xff]);
+        }
+        byte[] sequence = record.getSequenceBytes();
+        for (int i = 0; i < sequenceLength; i++)
+        {
+            bases[i * BASES + BASE_INDEX[sequence[i] & 0xff]]++;
+        }
+        records++;
+        return this;
+    }
+
+    /**
+     * Add the specified FASTQ formatted sequence to these statistics.
+     *
+     * @param fastq FASTQ formatted sequence, must not be null
+     * @return these statistics
+     */
+    public FastqStatistics add(final Fastq fastq)
+    {
+        if (fastq == null)
+        {
+            throw new IllegalArgumentException("fastq must not be null");
+        }
+        String quality = fastq.getQuality();
+        String sequence = fastq.getSequence();
+        ensureLength(Math.max(quality.length(), sequence.length()));
+
+        int[] qualityScores = FastqTools.qualityScoreTable(fastq.getVariant());
+        for (int i = 0, size = quality.length(); i < size; i++)
+        {
+            char c = quality.charAt(i);
+            addQualityScore(i, (c < 256) ? qualityScores[c] : fastq.getVariant().qualityScore(c));
+        }
+        for (int i = 0, size = sequence.length(); i < size; i++)
+        {
+            char c = sequence.charAt(i);
+            bases[i * BASES + ((c < 256) ? BASE_INDEX[c] : BASES - 1)]++;
+        }
+        records++;
+        return this;
+    }
+
+    /**
+     * Add the counts in the specified statistics to these statistics.
+     *
+     * @param statistics statistics to merge, must not be null
+     * @return these statistics
+     */
+    public FastqStatistics merge(final FastqStatistics statistics)
+    {
+        if (statistics == null)
+        {
+            throw new IllegalArgumentException("statistics must not be null");
+        }
+        ensureLength(statistics.length);
+        for (int i = 0, size = statistics.length * BINS; i < size; i++)
+        {
+            histograms[i] += statistics.histograms[i];
+        }
+        for (int i = 0; i < statistics.length; i++)
+        {
+            sums[i] += statistics.sums[i];
+            counts[i] += statistics.counts[i];
+        }
+        for (int i = 0, size = statistics.length * BASES; i < size; i++)
+        {
+            bases[i] += statistics.bases[i];
+        }
+        records += statistics.records;
+        return this;
+    }
+
+    /**
+     * Return the number of records added to these statistics.
+     *
+     * @return the number of records added to these statistics
+     */
+    public long getRecordCount()
+    {
+        return records;
+    }
+
+    /**
+     * Return the number of positions, that is the length of the longest record added to these statistics.
+     *
+     * @return the number of positions
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Return the number of quality scores at the specified position.
+     *
+     * @param position position, starting from zero
+     * @return the number of quality scores at the specified position
+     */
+    public long getCount(final int position)
+    {
+        checkPosition(position);
+        return counts[position];
+    }
+
+    /**
+     * Return the number of times the specified quality score occurs at the specified position.
+     *
+     * @param position position, starting from zero
+     * @param qualityScore quality score
+     * @return the number of times the specified quality score occurs at the specified position
+     */
+    public long getCount(final int position, final int qualityScore)
+    {
+        checkPosition(position);
+        if (qualityScore < MINIMUM_QUALITY_SCORE || qualityScore > MAXIMUM_QUALITY_SCORE)
+        {
+            return 0L;
+        }
+        return histograms[position * BINS + qualityScore - MINIMUM_QUALITY_SCORE];
+    }
+
+    /**
+     * Return the mean quality score at the specified position, or <code>NaN</code> if there are none.
+     *
+     * @param position position, starting from zero
+     * @return the mean quality score at the specified position
+     */
+    public double getMean(final int position)
+    {
+        checkPosition(position);
+        return (counts[position] == 0L) ? Double.NaN : ((double) sums[position]) / counts[position];
+    }
+
+    /**
+     * Return the specified quantile of the quality scores at the specified position, that is the
+     * lowest quality score such that at least <code>quantile * getCount(position)</code> quality
+     * scores at that position are less than or equal to it.
+     *
+     * @param position position, starting from zero
+     * @param quantile quantile, must be between <code>0.0</code> and <code>1.0</code>
+     * @return the specified quantile of the quality scores at the specified position
+     * @throws IllegalStateException if there are no quality scores at the specified position
+     */
+    public int getQuantile(final int position, final double quantile)
+    {
+        checkPosition(position);
+        if (quantile < 0.0d || quantile > 1.0d)
+        {
+            throw new IllegalArgumentException("quantile must be between 0.0 and 1.0, was " + quantile);
+        }
+        if (counts[position] == 0L)
+        {
+            throw new IllegalStateException("no quality scores at position " + position);
+        }
+        double rank = Math.max(1.0d, Math.ceil(quantile * counts[position]));
+        long cumulative = 0L;
+        int offset = position * BINS;
+        for (int bin = 0; bin < BINS; bin++)
+        {
+            cumulative += histograms[offset + bin];
+            if (cumulative >= rank)
+            {
+                return bin + MINIMUM_QUALITY_SCORE;
+            }
+        }
+        return MAXIMUM_QUALITY_SCORE;
+    }
+
+    /**
+     * Return the lower quartile of the quality scores at the specified position.
+     *
+     * @param position position, starting from zero
+     * @return the lower quartile of the quality scores at the specified position
+     */
+    public int getLowerQuartile(final int position)
+    {
+        return getQuantile(position, 0.25d);
+    }
+
+    /**
+     * Return the median of the quality scores at the specified position.
+     *
+     * @param position position, starting from zero
+     * @return the median of the quality scores at the specified position
+     */
+    public int getMedian(final int position)
+    {
+        return getQuantile(position, 0.5d);
+    }
+
+    /**
+     * Return the upper quartile of the quality scores at the specified position.
+     *
+     * @param position position, starting from zero
+     * @return the upper quartile of the quality scores at the specified position
+     */
+    public int getUpperQuartile(final int position)
+    {
+        return getQuantile(position, 0.75d);
+    }
+
+    /**
+     * Return the number of times the specified base occurs at the specified position.  Bases
+     * are case insensitive.
+     *
+     * @param position position, starting from zero
+     * @param base base, one of <code>A</code>, <code>C</code>, <code>G</code>, <code>T</code>
+     *    or <code>N</code>
+     * @return the number of times the specified base occurs at the specified position
+     */
+    public long getBaseCount(final int position, final char base)
+    {
+        checkPosition(position);
+        if (base >= 256 || BASE_INDEX[base] == BASES - 1)
+        {
+            throw new IllegalArgumentException("base must be one of A, C, G, T or N, was " + base);
+        }
+        return bases[position * BASES + BASE_INDEX[base]];
+    }
+
+    /**
+     * Return the number of bases other than <code>A</code>, <code>C</code>, <code>G</code>,
+     * <code>T</code> and <code>N</code> at the specified position.
+     *
+     * @param position position, starting from zero
+     * @return the number of other bases at the specified position
+     */
+    public long getOtherBaseCount(final int position)
+    {
+        checkPosition(position);
+        return bases[position * BASES + BASES - 1];
+    }
+
+    /**
+     * Add the specified quality score at the specified position.
+     *
+     * @param position position
+     * @param qualityScore quality score
+     */
+    private void addQualityScore(final int position, final int qualityScore)
+    {
+        int bin = Math.min(BINS - 1, Math.max(0, qualityScore - MINIMUM_QUALITY_SCORE));
+        histograms[position * BINS + bin]++;
+        sums[position] += qualityScore;
+        counts[position]++;
+    }
+
+    /**
+     * Grow the counters to hold at least the specified number of positions.
+     *
+     * @param length number of positions
+     */
+    private void ensureLength(final int length)
+    {
+        if (length <= this.length)
+        {
+            return;
+        }
+        if (length > counts.length)
+        {
+            int capacity = Math.max(length, counts.length * 2);
+            histograms = Arrays.copyOf(histograms, capacity * BINS);
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            bases = Arrays.copyOf(bases, capacity * BASES);
+        }
+        this.length = length;
+    }
+
+    /**
+     * Check the specified position.
+     *
+     * @param position position
+     */
+    private void checkPosition(final int position)
+    {
+        if (position < 0 || position >= length)
+        {
+            throw new IndexOutOfBoundsException("position must be between 0 and " + (length - 1) + ", was " + position);
+        }
+    }
+}
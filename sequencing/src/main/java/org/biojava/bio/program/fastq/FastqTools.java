@@ -49,6 +49,39 @@ import org.biojava.bio.symbol.SimpleSymbolList;
  */
 public final class FastqTools
 {
+    /** Quality scores indexed by variant ordinal and quality in ASCII format. */
+    private static final int[][] QUALITY_SCORES;
+
+    /** Error probabilities indexed by variant ordinal and quality in ASCII format. */
+    private static final double[][] ERROR_PROBABILITIES;
+
+    /** Qualities in ASCII format indexed by source variant ordinal, target variant ordinal and source quality. */
+    private static final byte[][][] CONVERSIONS;
+
+    static
+    {
+        FastqVariant[] variants = FastqVariant.values();
+        QUALITY_SCORES = new int[variants.length][256];
+        ERROR_PROBABILITIES = new double[variants.length][256];
+        CONVERSIONS = new byte[variants.length][variants.length][256];
+        for (FastqVariant from : variants)
+        {
+            for (int c = 0; c < 256; c++)
+            {
+                QUALITY_SCORES[from.ordinal()][c] = from.qualityScore((char) c);
+                ERROR_PROBABILITIES[from.ordinal()][c] = from.errorProbability((char) c);
+            }
+            for (FastqVariant to : variants)
+            {
+                byte[] conversion = CONVERSIONS[from.ordinal()][to.ordinal()];
+                for (int c = 0; c < 256; c++)
+                {
+                    conversion[c] = (from == to) ? (byte) c : (byte) to.quality(to.qualityScore(ERROR_PROBABILITIES[from.ordinal()][c]));
+                }
+            }
+        }
+    }
+
 
     /**
      * Private no-arg constructor.
@@ -182,7 +215,7 @@ public final class FastqTools
         for (int i = 0; i < size; i++)
         {
             char c = fastq.getQuality().charAt(i);
-            qualityScores.add(variant.qualityScore(c));
+            qualityScores.add(qualityScore(variant, c));
         }
         return ImmutableList.copyOf(qualityScores);
     }
@@ -214,7 +247,7 @@ public final class FastqTools
         for (int i = 0; i < size; i++)
         {
             char c = fastq.getQuality().charAt(i);
-            qualityScores[i] = variant.qualityScore(c);
+            qualityScores[i] = qualityScore(variant, c);
         }
         return qualityScores;
     }
@@ -237,7 +270,7 @@ public final class FastqTools
         for (int i = 0; i < size; i++)
         {
             char c = fastq.getQuality().charAt(i);
-            errorProbabilities.add(variant.errorProbability(c));
+            errorProbabilities.add(errorProbability(variant, c));
         }
         return ImmutableList.copyOf(errorProbabilities);
     }
@@ -269,7 +302,7 @@ public final class FastqTools
         for (int i = 0; i < size; i++)
         {
             char c = fastq.getQuality().charAt(i);
-            errorProbabilities[i] = variant.errorProbability(c);
+            errorProbabilities[i] = errorProbability(variant, c);
         }
         return errorProbabilities;
     }
@@ -325,13 +358,218 @@ public final class FastqTools
         {
             return fastq.getQuality();
         }
-        int size = fastq.getQuality().length();
-        double[] errorProbabilities = errorProbabilities(fastq, new double[size]);
-        StringBuilder sb = new StringBuilder(size);
+        String quality = fastq.getQuality();
+        int size = quality.length();
+        byte[] conversion = CONVERSIONS[fastq.getVariant().ordinal()][variant.ordinal()];
+        char[] converted = new char[size];
         for (int i = 0; i < size; i++)
         {
-            sb.append(variant.quality(variant.qualityScore(errorProbabilities[i])));
+            char c = quality.charAt(i);
+            if (c < 256)
+            {
+                converted[i] = (char) (conversion[c] & 0xff);
+            }
+            else
+            {
+                converted[i] = variant.quality(variant.qualityScore(fastq.getVariant().errorProbability(c)));
+            }
+        }
+        return new String(converted);
+    }
+
+    /**
+     * Convert the qualities in ASCII format in the specified range of <code>src</code> from one
+     * FASTQ sequence format variant to another, writing them to <code>dest</code>.  Conversion is
+     * by table lookup, with the same result as {@link #convert(Fastq, FastqVariant)}.  The source
+     * and destination ranges may be the same.
+     *
+     * @since 1.9.8
+     * @param src qualities in ASCII format, must not be null
+     * @param srcOffset offset in <code>src</code>
+     * @param dest destination for the converted qualities, must not be null
+     * @param destOffset offset in <code>dest</code>
+     * @param length number of qualities to convert
+     * @param from FASTQ sequence format variant of the source qualities, must not be null
+     * @param to FASTQ sequence format variant of the destination qualities, must not be null
+     * @return the specified destination
+     */
+    public static byte[] convertQualities(final byte[] src, final int srcOffset, final byte[] dest, final int destOffset,
+                                          final int length, final FastqVariant from, final FastqVariant to)
+    {
+        if (src == null)
+        {
+            throw new IllegalArgumentException("src must not be null");
+        }
+        if (dest == null)
+        {
+            throw new IllegalArgumentException("dest must not be null");
+        }
+        if (from == null)
+        {
+            throw new IllegalArgumentException("from must not be null");
+        }
+        if (to == null)
+        {
+            throw new IllegalArgumentException("to must not be null");
+        }
+        checkRange(src.length, srcOffset, length);
+        checkRange(dest.length, destOffset, length);
+        byte[] conversion = CONVERSIONS[from.ordinal()][to.ordinal()];
+        for (int i = 0; i < length; i++)
+        {
+            dest[destOffset + i] = conversion[src[srcOffset + i] & 0xff];
+        }
+        return dest;
+    }
+
+    /**
+     * Convert the specified FASTQ record in place to the specified FASTQ sequence format variant.
+     *
+     * @since 1.9.8
+     * @param record FASTQ record, must not be null
+     * @param variant FASTQ sequence format variant, must not be null
+     * @return the specified FASTQ record
+     */
+    public static FastqRecord convertInPlace(final FastqRecord record, final FastqVariant variant)
+    {
+        if (record == null)
+        {
+            throw new IllegalArgumentException("record must not be null");
+        }
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        byte[] quality = record.getQualityBytes();
+        convertQualities(quality, 0, quality, 0, record.getQualityLength(), record.getVariant(), variant);
+        record.setVariant(variant);
+        return record;
+    }
+
+    /**
+     * Copy the quality scores for the qualities in ASCII format in the specified range of
+     * <code>quality</code> into the specified int array.
+     *
+     * @since 1.9.8
+     * @param quality qualities in ASCII format, must not be null
+     * @param offset offset in <code>quality</code>
+     * @param length number of qualities
+     * @param variant FASTQ sequence format variant, must not be null
+     * @param qualityScores int array of quality scores, must not be null and must be at least
+     *    <code>length</code> in length
+     * @return the specified int array of quality scores
+     */
+    public static int[] qualityScores(final byte[] quality, final int offset, final int length,
+                                      final FastqVariant variant, final int[] qualityScores)
+    {
+        if (quality == null)
+        {
+            throw new IllegalArgumentException("quality must not be null");
+        }
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        if (qualityScores == null)
+        {
+            throw new IllegalArgumentException("qualityScores must not be null");
+        }
+        checkRange(quality.length, offset, length);
+        checkRange(qualityScores.length, 0, length);
+        int[] table = QUALITY_SCORES[variant.ordinal()];
+        for (int i = 0; i < length; i++)
+        {
+            qualityScores[i] = table[quality[offset + i] & 0xff];
+        }
+        return qualityScores;
+    }
+
+    /**
+     * Copy the error probabilities for the qualities in ASCII format in the specified range of
+     * <code>quality</code> into the specified double array.
+     *
+     * @since 1.9.8
+     * @param quality qualities in ASCII format, must not be null
+     * @param offset offset in <code>quality</code>
+     * @param length number of qualities
+     * @param variant FASTQ sequence format variant, must not be null
+     * @param errorProbabilities double array of error probabilities, must not be null and must be
+     *    at least <code>length</code> in length
+     * @return the specified double array of error probabilities
+     */
+    public static double[] errorProbabilities(final byte[] quality, final int offset, final int length,
+                                              final FastqVariant variant, final double[] errorProbabilities)
+    {
+        if (quality == null)
+        {
+            throw new IllegalArgumentException("quality must not be null");
+        }
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        if (errorProbabilities == null)
+        {
+            throw new IllegalArgumentException("errorProbabilities must not be null");
+        }
+        checkRange(quality.length, offset, length);
+        checkRange(errorProbabilities.length, 0, length);
+        double[] table = ERROR_PROBABILITIES[variant.ordinal()];
+        for (int i = 0; i < length; i++)
+        {
+            errorProbabilities[i] = table[quality[offset + i] & 0xff];
+        }
+        return errorProbabilities;
+    }
+
+    /**
+     * Return the quality scores indexed by quality in ASCII format for the specified variant.
+     * The returned array is shared and must not be modified.
+     *
+     * @param variant FASTQ sequence format variant
+     * @return the quality scores indexed by quality in ASCII format for the specified variant
+     */
+    static int[] qualityScoreTable(final FastqVariant variant)
+    {
+        return QUALITY_SCORES[variant.ordinal()];
+    }
+
+    /**
+     * Return the quality score for the specified quality in ASCII format.
+     *
+     * @param variant FASTQ sequence format variant
+     * @param c quality in ASCII format
+     * @return the quality score for the specified quality in ASCII format
+     */
+    private static int qualityScore(final FastqVariant variant, final char c)
+    {
+        return (c < 256) ? QUALITY_SCORES[variant.ordinal()][c] : variant.qualityScore(c);
+    }
+
+    /**
+     * Return the error probability for the specified quality in ASCII format.
+     *
+     * @param variant FASTQ sequence format variant
+     * @param c quality in ASCII format
+     * @return the error probability for the specified quality in ASCII format
+     */
+    private static double errorProbability(final FastqVariant variant, final char c)
+    {
+        return (c < 256) ? ERROR_PROBABILITIES[variant.ordinal()][c] : variant.errorProbability(c);
+    }
+
+    /**
+     * Check that the specified range lies within an array of the specified size.
+     *
+     * @param size array size
+     * @param offset offset of the range
+     * @param length length of the range
+     */
+    private static void checkRange(final int size, final int offset, final int length)
+    {
+        if (offset < 0 || length < 0 || offset > size - length)
+        {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + size);
         }
-        return sb.toString();
     }
 }
@@ -0,0 +1,999 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Parallel reader for FASTQ formatted sequences.
+ *
+ * <p>
+ * The input is read on the calling thread and cut into blocks that end on
+ * record boundaries; the blocks are decoded and validated by a pool of
+ * worker threads with {@link FastqRecordReader}.  Finding the record
+ * boundaries only requires a scan for line ends, so most of the work is
+ * done by the workers.  Gzip compressed input is recognised by its magic
+ * number.  BGZF input, a series of gzip members that carry their own size,
+ * is cut into batches of whole BGZF blocks on the calling thread and the
+ * batches are inflated by the workers; other gzip input is inflated on the
+ * calling thread.
+ * </p>
+ *
+ * <p>
+ * Records are passed to the <code>StreamListener</code> on the calling
+ * thread, either in their original order or, if unordered, as soon as
+ * their block has been decoded.  At most <code>queueCapacity</code> blocks
+ * are read ahead of the listener, which bounds memory use to about
+ * <code>queueCapacity * blockSize</code> bytes of input and the records
+ * decoded from it.
+ * </p>
+ *
+ * @since 1.9.8
+ */
+public final class ParallelFastqReader
+{
+    /** Default block size, in bytes. */
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    /** FASTQ sequence format variant. */
+    private final FastqVariant variant;
+
+    /** Number of worker threads. */
+    private final int threads;
+
+    /** Block size, in bytes. */
+    private final int blockSize;
+
+    /** Maximum number of blocks read ahead of the listener. */
+    private final int queueCapacity;
+
+    /** True if records are passed to the listener in their original order. */
+    private final boolean ordered;
+
+
+    /**
+     * Create a new parallel FASTQ reader that uses one worker thread per available processor
+     * and passes records to the listener in their original order.
+     *
+     * @param variant FASTQ sequence format variant, must not be null
+     */
+    public ParallelFastqReader(final FastqVariant variant)
+    {
+        this(variant, Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Create a new parallel FASTQ reader with the default block size and a queue capacity
+     * of two blocks per worker thread.
+     *
+     * @param variant FASTQ sequence format variant, must not be null
+     * @param threads number of worker threads, must be at least one
+     * @param ordered true to pass records to the listener in their original order
+     */
+    public ParallelFastqReader(final FastqVariant variant, final int threads, final boolean ordered)
+    {
+        this(variant, threads, DEFAULT_BLOCK_SIZE, 2 * threads, ordered);
+    }
+
+    /**
+     * Create a new parallel FASTQ reader.
+     *
+     * @param variant FASTQ sequence format variant, must not be null
+     * @param threads number of worker threads, must be at least one
+     * @param blockSize preferred block size, in bytes, must be at least one; blocks are
+     *    larger if a single record does not fit
+     * @param queueCapacity maximum number of blocks read ahead of the listener, must be at least one
+     * @param ordered true to pass records to the listener in their original order
+     */
+    public ParallelFastqReader(final FastqVariant variant, final int threads, final int blockSize,
+                               final int queueCapacity, final boolean ordered)
+    {
+        if (variant == null)
+        {
+            throw new IllegalArgumentException("variant must not be null");
+        }
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("threads must be at least one");
+        }
+        if (blockSize < 1)
+        {
+            throw new IllegalArgumentException("blockSize must be at least one");
+        }
+        if (queueCapacity < 1)
+        {
+            throw new IllegalArgumentException("queueCapacity must be at least one");
+        }
+        this.variant = variant;
+        this.threads = threads;
+        this.blockSize = blockSize;
+        this.queueCapacity = queueCapacity;
+        this.ordered = ordered;
+    }
+
+
+    /**
+     * Return the FASTQ sequence format variant for this reader.
+     *
+     * @return the FASTQ sequence format variant for this reader
+     */
+    public FastqVariant getVariant()
+    {
+        return variant;
+    }
+
+    /**
+     * Stream the specified file, plain or gzip compressed.
+     *
+     * @param file file to read from, must not be null
+     * @param listener event based reader callback, must not be null
+     * @throws IOException if an I/O error occurs
+     */
+    public void stream(final File file, final StreamListener listener) throws IOException
+    {
+        if (file == null)
+        {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        InputStream inputStream = new FileInputStream(file);
+        try
+        {
+            stream(inputStream, listener);
+        }
+        finally
+        {
+            try
+            {
+                inputStream.close();
+            }
+            catch (Exception e)
+            {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Stream the specified input stream, plain or gzip compressed.  The input stream is not closed.
+     *
+     * @param inputStream input stream to read from, must not be null
+     * @param listener event based reader callback, must not be null
+     * @throws IOException if an I/O error occurs
+     */
+    public void stream(final InputStream inputStream, final StreamListener listener) throws IOException
+    {
+        if (inputStream == null)
+        {
+            throw new IllegalArgumentException("inputStream must not be null");
+        }
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        try
+        {
+            if (ordered)
+            {
+                streamOrdered(new Splitter(decompress(inputStream, executor)), executor, listener);
+            }
+            else
+            {
+                streamUnordered(new Splitter(decompress(inputStream, executor)), executor, listener);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Decode blocks in parallel, passing records to the listener in their original order.
+     *
+     * @param splitter block splitter
+     * @param executor executor
+     * @param listener event based reader callback
+     * @throws IOException if an I/O error occurs
+     */
+    private void streamOrdered(final Splitter splitter, final ExecutorService executor, final StreamListener listener)
+        throws IOException
+    {
+        Deque<Future<List<Fastq>>> pending = new ArrayDeque<Future<List<Fastq>>>(queueCapacity);
+        Block block;
+        while ((block = splitter.next()) != null)
+        {
+            if (pending.size() >= queueCapacity)
+            {
+                notify(get(pending.removeFirst()), listener);
+            }
+            pending.addLast(executor.submit(new Decode(block)));
+        }
+        while (!pending.isEmpty())
+        {
+            notify(get(pending.removeFirst()), listener);
+        }
+    }
+
+    /**
+     * Decode blocks in parallel, passing records to the listener as soon as their block is decoded.
+     *
+     * @param splitter block splitter
+     * @param executor executor
+     * @param listener event based reader callback
+     * @throws IOException if an I/O error occurs
+     */
+    private void streamUnordered(final Splitter splitter, final ExecutorService executor, final StreamListener listener)
+        throws IOException
+    {
+        CompletionService<List<Fastq>> completionService = new ExecutorCompletionService<List<Fastq>>(executor);
+        int pending = 0;
+        Block block;
+        while ((block = splitter.next()) != null)
+        {
+            if (pending >= queueCapacity)
+            {
+                notify(get(take(completionService)), listener);
+                pending--;
+            }
+            completionService.submit(new Decode(block));
+            pending++;
+        }
+        for (; pending > 0; pending--)
+        {
+            notify(get(take(completionService)), listener);
+        }
+    }
+
+    /**
+     * Pass the specified records to the specified listener.
+     *
+     * @param fastq records
+     * @param listener event based reader callback
+     */
+    private static void notify(final List<Fastq> fastq, final StreamListener listener)
+    {
+        for (Fastq f : fastq)
+        {
+            listener.fastq(f);
+        }
+    }
+
+    /**
+     * Take the next completed future from the specified completion service.
+     *
+     * @param completionService completion service
+     * @return the next completed future
+     * @throws IOException if interrupted
+     */
+    private static Future<List<Fastq>> take(final CompletionService<List<Fastq>> completionService)
+        throws IOException
+    {
+        try
+        {
+            return completionService.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a block");
+        }
+    }
+
+    /**
+     * Wait for and return the result of the specified future, rethrowing any exception thrown by the worker.
+     *
+     * @param <T> result type
+     * @param future future
+     * @return the result of the specified future
+     * @throws IOException if the worker threw an IOException or if interrupted
+     */
+    private static <T> T get(final Future<T> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a block");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException("caught an exception decoding a block", cause);
+        }
+    }
+
+    /**
+     * Return the specified input stream, inflated if it starts with the gzip magic number.
+     * BGZF input is inflated by the specified executor.
+     *
+     * @param inputStream input stream
+     * @param executor executor
+     * @return the specified input stream, inflated if it is gzip compressed
+     * @throws IOException if an I/O error occurs
+     */
+    private InputStream decompress(final InputStream inputStream, final ExecutorService executor) throws IOException
+    {
+        InputStream buffered = new BufferedInputStream(inputStream, 65536);
+        byte[] header = new byte[BGZF_HEADER_SIZE];
+        buffered.mark(header.length);
+        int n = 0;
+        int read;
+        while (n < header.length && (read = buffered.read(header, n, header.length - n)) > 0)
+        {
+            n += read;
+        }
+        buffered.reset();
+        if (n >= 2 && header[0] == (byte) 0x1f && header[1] == (byte) 0x8b)
+        {
+            if (n == header.length && GZIP_HEADER_SIZE + readShort(header, 10) <= header.length
+                && bgzfBlockSize(header, 0) > 0)
+            {
+                return new BgzfInputStream(buffered, executor);
+            }
+            return new GZIPInputStream(buffered, 65536);
+        }
+        return buffered;
+    }
+
+    /** Size of the header of a BGZF block as written by bgzip, in bytes. */
+    private static final int BGZF_HEADER_SIZE = 18;
+
+    /** Size of the fixed part of a gzip member header, in bytes. */
+    private static final int GZIP_HEADER_SIZE = 12;
+
+    /** Size of a gzip member footer, in bytes. */
+    private static final int GZIP_FOOTER_SIZE = 8;
+
+    /**
+     * Return the size of the BGZF block whose header starts at the specified offset, from the
+     * BSIZE field of its extra subfield, or <code>-1</code> if the header is not a BGZF block header.
+     * The header and its extra field must be complete in the specified buffer.
+     *
+     * @param buffer buffer
+     * @param offset offset of the header
+     * @return the size of the BGZF block, in bytes, or <code>-1</code> if the header is not a
+     *    BGZF block header
+     */
+    private static int bgzfBlockSize(final byte[] buffer, final int offset)
+    {
+        if (buffer[offset] != (byte) 0x1f || buffer[offset + 1] != (byte) 0x8b || buffer[offset + 2] != 8
+            || (buffer[offset + 3] & 4) == 0)
+        {
+            return -1;
+        }
+        int end = offset + GZIP_HEADER_SIZE + readShort(buffer, offset + 10);
+        for (int i = offset + GZIP_HEADER_SIZE; i + 4 <= end; i += 4 + readShort(buffer, i + 2))
+        {
+            if (buffer[i] == 'B' && buffer[i + 1] == 'C' && readShort(buffer, i + 2) == 2 && i + 6 <= end)
+            {
+                return readShort(buffer, i + 4) + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read a little endian unsigned short.
+     *
+     * @param buffer buffer
+     * @param offset offset in the buffer
+     * @return the value
+     */
+    private static int readShort(final byte[] buffer, final int offset)
+    {
+        return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+    }
+
+    /**
+     * Read a little endian int.
+     *
+     * @param buffer buffer
+     * @param offset offset in the buffer
+     * @return the value
+     */
+    private static int readInt(final byte[] buffer, final int offset)
+    {
+        return readShort(buffer, offset) | (readShort(buffer, offset + 2) << 16);
+    }
+
+    /**
+     * Input stream over BGZF compressed input.  Whole BGZF blocks are read on the calling
+     * thread, split using the BSIZE field of each block header, and collected into batches
+     * that are inflated in parallel by the workers.  At most <code>queueCapacity</code>
+     * batches are read ahead.
+     */
+    private final class BgzfInputStream extends InputStream
+    {
+        /** Compressed input stream. */
+        private final InputStream inputStream;
+
+        /** Executor. */
+        private final ExecutorService executor;
+
+        /** Pending inflated batches, in order. */
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>(queueCapacity);
+
+        /** Current inflated batch. */
+        private byte[] current = new byte[0];
+
+        /** Buffer for single byte reads. */
+        private final byte[] single = new byte[1];
+
+        /** Position in the current inflated batch. */
+        private int position;
+
+        /** True at the end of the compressed input. */
+        private boolean done;
+
+
+        /**
+         * Create a new BGZF input stream.
+         *
+         * @param inputStream compressed input stream
+         * @param executor executor
+         */
+        private BgzfInputStream(final InputStream inputStream, final ExecutorService executor)
+        {
+            this.inputStream = inputStream;
+            this.executor = executor;
+        }
+
+
+        @Override
+        public int read() throws IOException
+        {
+            return (read(single, 0, 1) < 0) ? -1 : (single[0] & 0xff);
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            while (position == current.length)
+            {
+                while (!done && pending.size() < queueCapacity)
+                {
+                    byte[] batch = readBatch();
+                    if (batch != null)
+                    {
+                        pending.addLast(executor.submit(new Inflate(batch)));
+                    }
+                }
+                if (pending.isEmpty())
+                {
+                    return -1;
+                }
+                current = get(pending.removeFirst());
+                position = 0;
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        /**
+         * Read the next batch of whole BGZF blocks.
+         *
+         * @return the next batch, or null at the end of input
+         * @throws IOException if an I/O error occurs or the input is not BGZF compressed
+         */
+        private byte[] readBatch() throws IOException
+        {
+            byte[] batch = new byte[BgzfFastqWriter.DEFAULT_BLOCKS_PER_BATCH * BgzfFastqWriter.MAXIMUM_BLOCK_SIZE];
+            int length = 0;
+            for (int i = 0; i < BgzfFastqWriter.DEFAULT_BLOCKS_PER_BATCH; i++)
+            {
+                int n = readFully(batch, length, GZIP_HEADER_SIZE);
+                if (n == 0)
+                {
+                    done = true;
+                    break;
+                }
+                if (n < GZIP_HEADER_SIZE)
+                {
+                    throw new EOFException("truncated BGZF block header");
+                }
+                int extraLength = readShort(batch, length + 10);
+                if (GZIP_HEADER_SIZE + extraLength > BgzfFastqWriter.MAXIMUM_BLOCK_SIZE)
+                {
+                    throw new IOException("not a BGZF block, extra field too long");
+                }
+                if (readFully(batch, length + GZIP_HEADER_SIZE, extraLength) < extraLength)
+                {
+                    throw new EOFException("truncated BGZF block header");
+                }
+                int blockSize = bgzfBlockSize(batch, length);
+                if (blockSize < GZIP_HEADER_SIZE + extraLength + GZIP_FOOTER_SIZE)
+                {
+                    throw new IOException("not a BGZF block");
+                }
+                int rest = blockSize - GZIP_HEADER_SIZE - extraLength;
+                if (readFully(batch, length + GZIP_HEADER_SIZE + extraLength, rest) < rest)
+                {
+                    throw new EOFException("truncated BGZF block");
+                }
+                length += blockSize;
+            }
+            return (length == 0) ? null : Arrays.copyOf(batch, length);
+        }
+
+        /**
+         * Read up to the specified number of bytes, stopping early only at the end of input.
+         *
+         * @param b buffer
+         * @param off offset in the buffer
+         * @param len number of bytes to read
+         * @return the number of bytes read
+         * @throws IOException if an I/O error occurs
+         */
+        private int readFully(final byte[] b, final int off, final int len) throws IOException
+        {
+            int n = 0;
+            while (n < len)
+            {
+                int read = inputStream.read(b, off + n, len - n);
+                if (read < 0)
+                {
+                    break;
+                }
+                n += read;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Inflate a batch of whole BGZF blocks.
+     */
+    private static final class Inflate implements Callable<byte[]>
+    {
+        /** Batch of BGZF blocks. */
+        private final byte[] batch;
+
+
+        /**
+         * Create a new inflate task.
+         *
+         * @param batch batch of BGZF blocks
+         */
+        private Inflate(final byte[] batch)
+        {
+            this.batch = batch;
+        }
+
+
+        @Override
+        public byte[] call() throws IOException
+        {
+            int size = 0;
+            for (int offset = 0; offset < batch.length; offset += bgzfBlockSize(batch, offset))
+            {
+                int inflatedSize = readInt(batch, offset + bgzfBlockSize(batch, offset) - 4);
+                if (inflatedSize < 0 || inflatedSize > BgzfFastqWriter.MAXIMUM_BLOCK_SIZE)
+                {
+                    throw new IOException("BGZF block inflated size out of range, " + inflatedSize);
+                }
+                size += inflatedSize;
+            }
+            byte[] result = new byte[size];
+            byte[] scratch = new byte[1];
+            int length = 0;
+            Inflater inflater = new Inflater(true);
+            CRC32 crc = new CRC32();
+            try
+            {
+                for (int offset = 0; offset < batch.length; )
+                {
+                    int blockSize = bgzfBlockSize(batch, offset);
+                    int dataOffset = offset + GZIP_HEADER_SIZE + readShort(batch, offset + 10);
+                    int footer = offset + blockSize - GZIP_FOOTER_SIZE;
+                    int inflatedSize = readInt(batch, footer + 4);
+                    inflater.reset();
+                    inflater.setInput(batch, dataOffset, footer - dataOffset);
+                    int n = 0;
+                    while (!inflater.finished())
+                    {
+                        // once the block is full, inflate into scratch to detect overlong blocks
+                        int inflated = (n < inflatedSize) ? inflater.inflate(result, length + n, inflatedSize - n)
+                            : inflater.inflate(scratch);
+                        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        {
+                            break;
+                        }
+                        n += inflated;
+                        if (n > inflatedSize)
+                        {
+                            break;
+                        }
+                    }
+                    if (n != inflatedSize || !inflater.finished())
+                    {
+                        throw new IOException("BGZF block size does not match its inflated size");
+                    }
+                    crc.reset();
+                    crc.update(result, length, n);
+                    if ((int) crc.getValue() != readInt(batch, footer))
+                    {
+                        throw new IOException("BGZF block CRC32 does not match");
+                    }
+                    length += n;
+                    offset += blockSize;
+                }
+            }
+            catch (DataFormatException e)
+            {
+                throw new IOException("could not inflate BGZF block", e);
+            }
+            finally
+            {
+                inflater.end();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Block of input ending on a record boundary.
+     */
+    private static final class Block
+    {
+        /** Bytes. */
+        private final byte[] bytes;
+
+        /** Number of valid bytes. */
+        private final int length;
+
+        /** Number of lines before this block. */
+        private final long lineNumber;
+
+
+        /**
+         * Create a new block.
+         *
+         * @param bytes bytes
+         * @param length number of valid bytes
+         * @param lineNumber number of lines before this block
+         */
+        private Block(final byte[] bytes, final int length, final long lineNumber)
+        {
+            this.bytes = bytes;
+            this.length = length;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    /**
+     * Decode a block into records.
+     */
+    private final class Decode implements Callable<List<Fastq>>
+    {
+        /** Block to decode. */
+        private final Block block;
+
+
+        /**
+         * Create a new decode task.
+         *
+         * @param block block to decode
+         */
+        private Decode(final Block block)
+        {
+            this.block = block;
+        }
+
+
+        @Override
+        public List<Fastq> call() throws IOException
+        {
+            List<Fastq> result = Lists.newArrayList();
+            FastqRecordReader reader = new FastqRecordReader(ByteBuffer.wrap(block.bytes, 0, block.length), variant);
+            reader.setLineNumber(block.lineNumber);
+            FastqRecord record = new FastqRecord();
+            while (reader.next(record))
+            {
+                result.add(record.toFastq());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Cuts an input stream into blocks that end on record boundaries.  The record structure
+     * is followed with the same rules as {@link FastqRecordReader}, counting trimmed sequence
+     * and quality lengths without copying or validating them, so that wrapped records are
+     * never split.  Malformed input ends the current block early; the worker decoding it
+     * reports the error.
+     */
+    private final class Splitter
+    {
+        /** Input stream. */
+        private final InputStream inputStream;
+
+        /** Buffer holding the current block and the start of the next. */
+        private byte[] buffer = new byte[blockSize + 65536];
+
+        /** Number of valid bytes in the buffer. */
+        private int length;
+
+        /** Start of the first line not yet scanned. */
+        private int scanned;
+
+        /** Start of the last description line scanned, or zero. */
+        private int boundary;
+
+        /** Number of lines before the last description line scanned. */
+        private long boundaryLineNumber;
+
+        /** Number of lines before the buffer. */
+        private long lineNumber;
+
+        /** Number of lines scanned in the buffer. */
+        private long scannedLines;
+
+        /** Terminator of the previous line. */
+        private byte previousTerminator;
+
+        /** Scanner state. */
+        private int state = DESCRIPTION;
+
+        /** Sequence length of the current record. */
+        private int sequenceLength;
+
+        /** Quality length of the current record. */
+        private int qualityLength;
+
+        /** True at the end of input or after malformed input. */
+        private boolean done;
+
+        /** Description scanner state. */
+        private static final int DESCRIPTION = 0;
+
+        /** Sequence scanner state. */
+        private static final int SEQUENCE = 1;
+
+        /** Repeat description scanner state. */
+        private static final int REPEAT_DESCRIPTION = 2;
+
+        /** Quality score scanner state. */
+        private static final int QUALITY = 3;
+
+
+        /**
+         * Create a new splitter for the specified input stream.
+         *
+         * @param inputStream input stream
+         */
+        private Splitter(final InputStream inputStream)
+        {
+            this.inputStream = inputStream;
+        }
+
+
+        /**
+         * Return the next block, or null at the end of input.
+         *
+         * @return the next block, or null at the end of input
+         * @throws IOException if an I/O error occurs
+         */
+        private Block next() throws IOException
+        {
+            while (!done)
+            {
+                if (boundary >= blockSize)
+                {
+                    return cut(boundary, boundaryLineNumber);
+                }
+                if (length == buffer.length)
+                {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = inputStream.read(buffer, length, buffer.length - length);
+                if (read < 0)
+                {
+                    done = true;
+                    break;
+                }
+                length += read;
+                scan();
+            }
+            if (length == 0)
+            {
+                return null;
+            }
+            return cut(length, scannedLines);
+        }
+
+        /**
+         * Cut a block from the start of the buffer, moving the remaining bytes to a new buffer.
+         *
+         * @param end end of the block
+         * @param lines number of lines in the block
+         * @return the block
+         */
+        private Block cut(final int end, final long lines)
+        {
+            Block block = new Block(buffer, end, lineNumber);
+            byte[] remaining = new byte[Math.max(blockSize + 65536, length - end)];
+            System.arraycopy(buffer, end, remaining, 0, length - end);
+            buffer = remaining;
+            length -= end;
+            scanned -= end;
+            boundary = 0;
+            lineNumber += lines;
+            scannedLines -= lines;
+            return block;
+        }
+
+        /**
+         * Scan the complete lines in the buffer, following the record structure.
+         */
+        private void scan()
+        {
+            while (!done)
+            {
+                int end = scanned;
+                while (end < length && buffer[end] != '\n' && buffer[end] != '\r')
+                {
+                    end++;
+                }
+                if (end == length)
+                {
+                    return;
+                }
+                byte terminator = buffer[end];
+                int start = scanned;
+                scanned = end + 1;
+                if (end == start && terminator == '\n' && previousTerminator == '\r')
+                {
+                    previousTerminator = 0;
+                    continue;
+                }
+                previousTerminator = terminator;
+                line(start, end);
+                scannedLines++;
+            }
+        }
+
+        /**
+         * Advance the scanner state over the specified line.
+         *
+         * @param start start of the line
+         * @param end end of the line, exclusive
+         */
+        private void line(final int start, final int end)
+        {
+            switch (state)
+            {
+            case DESCRIPTION:
+                if (end > start && buffer[start] == '@')
+                {
+                    boundary = start;
+                    boundaryLineNumber = scannedLines;
+                    state = SEQUENCE;
+                }
+                else
+                {
+                    done = true;
+                }
+                break;
+            case SEQUENCE:
+                sequenceLength = trimmedLength(start, end);
+                state = REPEAT_DESCRIPTION;
+                break;
+            case REPEAT_DESCRIPTION:
+                if (end > start && buffer[start] == '+')
+                {
+                    qualityLength = 0;
+                    state = QUALITY;
+                }
+                else
+                {
+                    sequenceLength += trimmedLength(start, end);
+                }
+                break;
+            case QUALITY:
+                qualityLength += trimmedLength(start, end);
+                if (qualityLength >= sequenceLength)
+                {
+                    state = DESCRIPTION;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        /**
+         * Return the length of the specified range of the buffer with whitespace trimmed, as for
+         * <code>String.trim()</code>.
+         *
+         * @param start start of the range
+         * @param end end of the range, exclusive
+         * @return the length of the specified range with whitespace trimmed
+         */
+        private int trimmedLength(final int start, final int end)
+        {
+            int s = start;
+            int e = end;
+            while (s < e && (buffer[s] & 0xff) <= ' ')
+            {
+                s++;
+            }
+            while (e > s && (buffer[e - 1] & 0xff) <= ' ')
+            {
+                e--;
+            }
+            return e - s;
+        }
+    }
+}
@@ -34,6 +34,19 @@
  * </p>
  *
  * <p>
+ * To read large files without creating a <code>Fastq</code> per record:
+ * <pre>
+ * FastqRecordReader reader = FastqRecordReader.map(new File("sanger.fastq"), FastqVariant.FASTQ_SANGER);
+ * FastqRecord record = new FastqRecord();
+ * while (reader.next(record))
+ * {
+ *   // record is reused, copy anything kept beyond this iteration
+ * }
+ * reader.close();
+ * </pre>
+ * </p>
+ *
+ * <p>
  * To write to an Sanger variant FASTQ sequence file:
  * <pre>
  * Collection&lt;Fastq&gt; fastq = ...;
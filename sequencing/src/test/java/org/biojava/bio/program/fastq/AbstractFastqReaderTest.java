@@ -20,12 +20,16 @@
  */
 package org.biojava.bio.program.fastq;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 
 import java.net.URL;
 
+import java.nio.charset.Charset;
+
 import junit.framework.TestCase;
 
 /**
@@ -246,6 +250,34 @@ public abstract class AbstractFastqReaderTest
         empty.close();
     }
   
+    public void testNonAsciiDescription() throws Exception
+    {
+        FastqReader reader = createFastqReader();
+        String description = "r\u00e9sum\u00e9 \u00b5m";
+        String fastq = "@" + description + "\nACTG\n+\nIIII\n";
+
+        // URLs are decoded as UTF-8
+        File file = File.createTempFile("abstractFastqReaderTest", null);
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(fastq.getBytes("UTF-8"));
+        out.close();
+        Fastq f = reader.read(file.toURI().toURL()).iterator().next();
+        assertEquals(description, f.getDescription());
+        assertEquals("ACTG", f.getSequence());
+
+        // files and input streams are decoded with the platform character set
+        Charset charset = Charset.defaultCharset();
+        String expected = new String(description.getBytes(charset), charset);
+        InputStream in = new ByteArrayInputStream(fastq.getBytes(charset));
+        assertEquals(expected, reader.read(in).iterator().next().getDescription());
+        out = new FileOutputStream(file);
+        out.write(fastq.getBytes(charset));
+        out.close();
+        assertEquals(expected, reader.read(file).iterator().next().getDescription());
+        file.delete();
+    }
+
     public void testWrappedSequence() throws Exception
     {
         FastqReader reader = createFastqReader();
@@ -0,0 +1,211 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.Channels;
+
+import java.util.List;
+import java.util.Random;
+
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for BgzfFastqWriter.
+ */
+public final class BgzfFastqWriterTest extends TestCase
+{
+
+    public void testConstructor()
+    {
+        try
+        {
+            new BgzfFastqWriter(null, FastqVariant.FASTQ_SANGER, 1);
+            fail("ctr(null,,) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        try
+        {
+            new BgzfFastqWriter(Channels.newChannel(new ByteArrayOutputStream()), FastqVariant.FASTQ_SANGER, 1, 10, 1, 1);
+            fail("ctr(,,,10,,) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testEmpty() throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BgzfFastqWriter writer = new BgzfFastqWriter(Channels.newChannel(outputStream), FastqVariant.FASTQ_SANGER, 2);
+        writer.close();
+        byte[] bytes = outputStream.toByteArray();
+        assertEquals(28, bytes.length);
+        assertEquals(0, gunzip(bytes).length);
+    }
+
+    public void testSameAsFastqWriter() throws Exception
+    {
+        List<Fastq> fastq = randomFastq(2000);
+        StringBuilder expected = new SangerFastqWriter().append(new StringBuilder(), fastq);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BgzfFastqWriter writer = new BgzfFastqWriter(Channels.newChannel(outputStream), FastqVariant.FASTQ_SANGER, 3, 6, 2, 2);
+        writer.write(fastq);
+        writer.close();
+        byte[] bytes = outputStream.toByteArray();
+
+        assertEquals(expected.toString(), new String(gunzip(bytes), "US-ASCII"));
+        assertEquals(2000L, writer.getRecordCount());
+        assertEquals(expected.length(), writer.getUncompressedBytes());
+        assertEquals(bytes.length, writer.getCompressedBytes());
+        assertEquals(checkBlocks(bytes) - 1, writer.getBlockCount());
+        assertTrue(writer.getBlockCount() > 2);
+        assertTrue(writer.getCompressionTime() > 0L);
+    }
+
+    public void testRecordsAndConversion() throws Exception
+    {
+        List<Fastq> fastq = randomFastq(300);
+        ByteArrayOutputStream expectedStream = new ByteArrayOutputStream();
+        BgzfFastqWriter writer = new BgzfFastqWriter(Channels.newChannel(expectedStream), FastqVariant.FASTQ_ILLUMINA, 1);
+        writer.write(fastq);
+        writer.close();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer = new BgzfFastqWriter(Channels.newChannel(outputStream), FastqVariant.FASTQ_ILLUMINA, 2, 1, 1, 1);
+        FastqRecord record = new FastqRecord();
+        FastqRecordReader reader = new FastqRecordReader(ByteBuffer.wrap(new SangerFastqWriter().append(new StringBuilder(), fastq).toString().getBytes("US-ASCII")), FastqVariant.FASTQ_SANGER);
+        while (reader.next(record))
+        {
+            writer.write(record);
+            writer.flush();
+        }
+        writer.close();
+
+        assertEquals(new String(gunzip(expectedStream.toByteArray()), "US-ASCII"), new String(gunzip(outputStream.toByteArray()), "US-ASCII"));
+        checkBlocks(outputStream.toByteArray());
+    }
+
+    public void testIncompressible() throws Exception
+    {
+        Random random = new Random(42L);
+        StringBuilder sequence = new StringBuilder();
+        StringBuilder quality = new StringBuilder();
+        for (int i = 0; i < 200000; i++)
+        {
+            sequence.append((char) ('!' + random.nextInt(94)));
+            quality.append((char) ('!' + random.nextInt(94)));
+        }
+        Fastq fastq = new FastqBuilder().withDescription("x").withSequence(sequence.toString()).withQuality(quality.toString()).build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BgzfFastqWriter writer = new BgzfFastqWriter(Channels.newChannel(outputStream), FastqVariant.FASTQ_SANGER, 2);
+        writer.write(fastq);
+        writer.close();
+        assertEquals(new SangerFastqWriter().append(new StringBuilder(), fastq).toString(), new String(gunzip(outputStream.toByteArray()), "US-ASCII"));
+        checkBlocks(outputStream.toByteArray());
+    }
+
+    public void testWriteAfterClose() throws Exception
+    {
+        BgzfFastqWriter writer = new BgzfFastqWriter(Channels.newChannel(new ByteArrayOutputStream()), FastqVariant.FASTQ_SANGER, 1);
+        writer.close();
+        try
+        {
+            writer.write(new FastqRecord());
+            fail("write after close expected IOException");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Check the BGZF block structure and return the number of blocks, including the end of file marker.
+     */
+    private static int checkBlocks(final byte[] bytes)
+    {
+        int count = 0;
+        int offset = 0;
+        while (offset < bytes.length)
+        {
+            assertEquals(0x1f, bytes[offset] & 0xff);
+            assertEquals(0x8b, bytes[offset + 1] & 0xff);
+            assertEquals(4, bytes[offset + 3] & 0xff);
+            assertEquals('B', bytes[offset + 12]);
+            assertEquals('C', bytes[offset + 13]);
+            int blockSize = ((bytes[offset + 16] & 0xff) | ((bytes[offset + 17] & 0xff) << 8)) + 1;
+            assertTrue(blockSize <= 65536);
+            offset += blockSize;
+            count++;
+        }
+        assertEquals(bytes.length, offset);
+        assertEquals(28, (bytes[bytes.length - 12] & 0xff) + 1);
+        return count;
+    }
+
+    private static byte[] gunzip(final byte[] bytes) throws IOException
+    {
+        GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        try
+        {
+            return ByteStreams.toByteArray(inputStream);
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    private static List<Fastq> randomFastq(final int count)
+    {
+        Random random = new Random(count);
+        List<Fastq> fastq = Lists.newArrayList();
+        for (int i = 0; i < count; i++)
+        {
+            int length = 50 + random.nextInt(100);
+            StringBuilder sequence = new StringBuilder(length);
+            StringBuilder quality = new StringBuilder(length);
+            for (int j = 0; j < length; j++)
+            {
+                sequence.append("ACGT".charAt(random.nextInt(4)));
+                quality.append((char) ('!' + random.nextInt(41)));
+            }
+            fastq.add(new FastqBuilder().withDescription("read" + i).withSequence(sequence.toString()).withQuality(quality.toString()).build());
+        }
+        return fastq;
+    }
+}
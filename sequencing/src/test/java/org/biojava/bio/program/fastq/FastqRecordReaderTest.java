@@ -0,0 +1,323 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for FastqRecordReader.
+ */
+public final class FastqRecordReaderTest extends TestCase
+{
+    private static final String[] SANGER = new String[]
+        {
+            "example.fastq",
+            "longreads_original_sanger.fastq",
+            "misc_dna_original_sanger.fastq",
+            "multiple-wrapped-quality.fastq",
+            "sanger_full_range_original_sanger.fastq",
+            "tricky.fastq",
+            "wrapped-quality.fastq",
+            "wrapped-sequence.fastq",
+            "wrapping_original_sanger.fastq"
+        };
+
+    private static final String[] ERRORS = new String[]
+        {
+            "error_diff_ids.fastq",
+            "error_double_qual.fastq",
+            "error_double_seq.fastq",
+            "error_long_qual.fastq",
+            "error_no_qual.fastq",
+            "error_qual_del.fastq",
+            "error_qual_escape.fastq",
+            "error_qual_null.fastq",
+            "error_qual_space.fastq",
+            "error_qual_tab.fastq",
+            "error_qual_unit_sep.fastq",
+            "error_qual_vtab.fastq",
+            "error_short_qual.fastq",
+            "error_spaces.fastq",
+            "error_tabs.fastq",
+            "error_trunc_at_plus.fastq",
+            "error_trunc_at_qual.fastq",
+            "error_trunc_at_seq.fastq",
+            "error_trunc_in_plus.fastq",
+            "error_trunc_in_qual.fastq",
+            "error_trunc_in_seq.fastq",
+            "error_trunc_in_title.fastq"
+        };
+
+    public void testConstructorNullChannel()
+    {
+        try
+        {
+            new FastqRecordReader((ReadableByteChannel) null, FastqVariant.FASTQ_SANGER);
+            fail("ctr(null,) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testConstructorNullVariant()
+    {
+        try
+        {
+            new FastqRecordReader(ByteBuffer.allocate(0), null);
+            fail("ctr(,null) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testNextNullRecord() throws Exception
+    {
+        try
+        {
+            new FastqRecordReader(ByteBuffer.allocate(0), FastqVariant.FASTQ_SANGER).next(null);
+            fail("next(null) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testEmpty() throws Exception
+    {
+        FastqRecordReader reader = new FastqRecordReader(ByteBuffer.allocate(0), FastqVariant.FASTQ_SANGER);
+        assertFalse(reader.next(new FastqRecord()));
+    }
+
+    public void testSameAsStreamingParser() throws Exception
+    {
+        for (String name : SANGER)
+        {
+            byte[] bytes = resource(name);
+            List<String> expected = streamingParser(bytes);
+            assertEquals(name, expected, readChannel(bytes, FastqRecordReader.DEFAULT_BUFFER_SIZE));
+            assertEquals(name, expected, readChannel(bytes, 1));
+            assertEquals(name, expected, readChannel(bytes, 7));
+            assertEquals(name, expected, readBuffer(ByteBuffer.wrap(bytes)));
+        }
+    }
+
+    public void testErrors() throws Exception
+    {
+        for (String name : ERRORS)
+        {
+            try
+            {
+                readChannel(resource(name), 7);
+                fail(name + " expected IOException");
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    public void testInvalidDescription() throws Exception
+    {
+        try
+        {
+            readChannel(resource("sanger-invalid-description.fastq"), 64);
+            fail("expected IOException");
+        }
+        catch (IOException e)
+        {
+            assertTrue(e.getCause().getMessage().contains("description must begin with a '@' character"));
+        }
+    }
+
+    public void testQualityRange() throws Exception
+    {
+        byte[] bytes = "@foo\nACGT\n+\n;;;;\n".getBytes("US-ASCII");
+        assertEquals(1, readBuffer(ByteBuffer.wrap(bytes)).size());
+        try
+        {
+            new FastqRecordReader(ByteBuffer.wrap(bytes), FastqVariant.FASTQ_ILLUMINA).next(new FastqRecord());
+            fail("expected IOException");
+        }
+        catch (IOException e)
+        {
+            assertTrue(e.getCause().getMessage().contains("quality score must be between 0 and 62"));
+        }
+    }
+
+    public void testLineTerminators() throws Exception
+    {
+        List<String> expected = readBuffer(ByteBuffer.wrap("@a b\nAC\nGT\n+\n!!\n##\n@c\nA\n+c\n!\n".getBytes("US-ASCII")));
+        assertEquals(2, expected.size());
+        assertEquals("a b\nACGT\n!!##\nFASTQ_SANGER", expected.get(0));
+        assertEquals(expected, readChannel("@a b\r\nAC\r\nGT\r\n+\r\n!!\r\n##\r\n@c\r\nA\r\n+c\r\n!\r\n".getBytes("US-ASCII"), 1));
+        assertEquals(expected, readChannel("@a b\rAC\rGT\r+\r!!\r##\r@c\rA\r+c\r!\r".getBytes("US-ASCII"), 1));
+        assertEquals(expected, readChannel("@a b\nAC\nGT\n+\n!!\n##\n@c\nA\n+c\n!".getBytes("US-ASCII"), 3));
+    }
+
+    public void testRecordReuse() throws Exception
+    {
+        byte[] bytes = "@first\nACGTACGT\n+\nIIIIIIII\n@second\nAC\n+second\n!5\n".getBytes("US-ASCII");
+        FastqRecordReader reader = new FastqRecordReader(ByteBuffer.wrap(bytes), FastqVariant.FASTQ_SANGER);
+        FastqRecord record = new FastqRecord();
+        CharSequence sequence = record.getSequence();
+
+        assertTrue(reader.next(record));
+        assertEquals("first", record.getDescription().toString());
+        assertEquals("ACGTACGT", sequence.toString());
+        assertEquals(8, record.getQualityLength());
+        assertEquals(40, record.qualityScore(0));
+
+        assertTrue(reader.next(record));
+        assertSame(sequence, record.getSequence());
+        assertEquals("AC", sequence.toString());
+        assertEquals('C', sequence.charAt(1));
+        assertEquals("C", sequence.subSequence(1, 2).toString());
+        assertEquals(0, record.qualityScore(0));
+        assertEquals(20, record.qualityScore(1));
+        assertEquals((byte) 'A', record.getSequenceBytes()[0]);
+
+        Fastq fastq = record.toFastq();
+        assertEquals("second", fastq.getDescription());
+        assertEquals("AC", fastq.getSequence());
+        assertEquals("!5", fastq.getQuality());
+        assertEquals(FastqVariant.FASTQ_SANGER, fastq.getVariant());
+
+        FastqRecord copy = new FastqRecord().copyFrom(record);
+        assertEquals(format(fastq), format(copy.toFastq()));
+
+        assertFalse(reader.next(record));
+        assertEquals(8, reader.getLineNumber());
+    }
+
+    public void testMap() throws Exception
+    {
+        byte[] bytes = resource("wrapping_original_sanger.fastq");
+        File file = File.createTempFile("fastqRecordReaderTest", ".fastq");
+        file.deleteOnExit();
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try
+        {
+            outputStream.write(bytes);
+        }
+        finally
+        {
+            outputStream.close();
+        }
+
+        List<String> result = Lists.newArrayList();
+        FastqRecordReader reader = FastqRecordReader.map(file, FastqVariant.FASTQ_SANGER);
+        try
+        {
+            FastqRecord record = new FastqRecord();
+            while (reader.next(record))
+            {
+                result.add(format(record.toFastq()));
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        assertEquals(streamingParser(bytes), result);
+    }
+
+    private byte[] resource(final String name) throws IOException
+    {
+        InputStream inputStream = getClass().getResourceAsStream(name);
+        try
+        {
+            return ByteStreams.toByteArray(inputStream);
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    private static List<String> streamingParser(final byte[] bytes) throws IOException
+    {
+        final List<String> result = Lists.newArrayList();
+        StreamingFastqParser.stream(new InputStreamReader(new ByteArrayInputStream(bytes), "US-ASCII"),
+                                    FastqVariant.FASTQ_SANGER, new StreamListener()
+            {
+                @Override
+                public void fastq(final Fastq fastq)
+                {
+                    result.add(format(fastq));
+                }
+            });
+        return result;
+    }
+
+    private static List<String> readChannel(final byte[] bytes, final int bufferSize) throws IOException
+    {
+        List<String> result = Lists.newArrayList();
+        FastqRecordReader reader = new FastqRecordReader(Channels.newChannel(new ByteArrayInputStream(bytes)),
+                                                         FastqVariant.FASTQ_SANGER, bufferSize);
+        FastqRecord record = new FastqRecord();
+        while (reader.next(record))
+        {
+            result.add(format(record.toFastq()));
+        }
+        reader.close();
+        return result;
+    }
+
+    private static List<String> readBuffer(final ByteBuffer buffer) throws IOException
+    {
+        List<String> result = Lists.newArrayList();
+        FastqRecordReader reader = new FastqRecordReader(buffer, FastqVariant.FASTQ_SANGER);
+        FastqRecord record = new FastqRecord();
+        while (reader.next(record))
+        {
+            result.add(format(record.toFastq()));
+        }
+        return result;
+    }
+
+    private static String format(final Fastq fastq)
+    {
+        return fastq.getDescription() + "\n" + fastq.getSequence() + "\n" + fastq.getQuality() + "\n" + fastq.getVariant().name();
+    }
+}
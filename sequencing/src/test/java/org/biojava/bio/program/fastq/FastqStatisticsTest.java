@@ -0,0 +1,127 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.io.ByteArrayInputStream;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for FastqStatistics.
+ */
+public final class FastqStatisticsTest extends TestCase
+{
+    private static final String INPUT = "@a\nACGT\n+\n!+5?\n@b\nACGN\n+\n+++\n+\n@c\nAC\n+\n55\n";
+
+    public void testEmpty()
+    {
+        FastqStatistics statistics = new FastqStatistics();
+        assertEquals(0L, statistics.getRecordCount());
+        assertEquals(0, statistics.getLength());
+    }
+
+    public void testAddRecord() throws Exception
+    {
+        FastqStatistics statistics = new FastqStatistics();
+        FastqRecordReader reader = new FastqRecordReader(ByteBuffer.wrap(INPUT.getBytes("US-ASCII")), FastqVariant.FASTQ_SANGER);
+        FastqRecord record = new FastqRecord();
+        while (reader.next(record))
+        {
+            statistics.add(record);
+        }
+        check(statistics);
+    }
+
+    public void testAddFastq() throws Exception
+    {
+        FastqStatistics statistics = new FastqStatistics();
+        for (Fastq fastq : new SangerFastqReader().read(new ByteArrayInputStream(INPUT.getBytes("US-ASCII"))))
+        {
+            statistics.add(fastq);
+        }
+        check(statistics);
+    }
+
+    public void testMerge() throws Exception
+    {
+        FastqStatistics first = new FastqStatistics();
+        FastqStatistics second = new FastqStatistics();
+        int i = 0;
+        for (Fastq fastq : new SangerFastqReader().read(new ByteArrayInputStream(INPUT.getBytes("US-ASCII"))))
+        {
+            (i++ == 1 ? first : second).add(fastq);
+        }
+        check(new FastqStatistics().merge(first).merge(second));
+    }
+
+    public void testAddNull()
+    {
+        try
+        {
+            new FastqStatistics().add((Fastq) null);
+            fail("add(null) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testOutOfRange()
+    {
+        try
+        {
+            new FastqStatistics().getMean(0);
+            fail("getMean(0) expected IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            // expected
+        }
+    }
+
+    private static void check(final FastqStatistics statistics)
+    {
+        assertEquals(3L, statistics.getRecordCount());
+        assertEquals(4, statistics.getLength());
+
+        // position 0: 0, 10, 20
+        assertEquals(3L, statistics.getCount(0));
+        assertEquals(10.0d, statistics.getMean(0), 1.0e-9);
+        assertEquals(0, statistics.getLowerQuartile(0));
+        assertEquals(10, statistics.getMedian(0));
+        assertEquals(20, statistics.getUpperQuartile(0));
+        assertEquals(0, statistics.getQuantile(0, 0.0d));
+        assertEquals(20, statistics.getQuantile(0, 1.0d));
+        assertEquals(1L, statistics.getCount(0, 10));
+        assertEquals(3L, statistics.getBaseCount(0, 'a'));
+
+        // position 3: 30, 10
+        assertEquals(2L, statistics.getCount(3));
+        assertEquals(20.0d, statistics.getMean(3), 1.0e-9);
+        assertEquals(10, statistics.getMedian(3));
+        assertEquals(1L, statistics.getBaseCount(3, 'T'));
+        assertEquals(1L, statistics.getBaseCount(3, 'N'));
+        assertEquals(0L, statistics.getOtherBaseCount(3));
+    }
+}
@@ -438,4 +438,67 @@ public final class FastqToolsTest extends TestCase
         Fastq fastq = builder.withVariant(FastqVariant.FASTQ_ILLUMINA).build();
         assertEquals("ZZZZ", FastqTools.convertQualities(fastq, FastqVariant.FASTQ_SOLEXA));
     }
+
+    public void testConvertQualityBytes() throws Exception
+    {
+        for (FastqVariant from : FastqVariant.values())
+        {
+            byte[] quality = new byte[from.maximumQualityScore() - from.minimumQualityScore() + 1];
+            for (int i = 0; i < quality.length; i++)
+            {
+                quality[i] = (byte) from.quality(from.minimumQualityScore() + i);
+            }
+            for (FastqVariant to : FastqVariant.values())
+            {
+                byte[] converted = FastqTools.convertQualities(quality, 0, new byte[quality.length + 1], 1, quality.length, from, to);
+                for (int i = 0; i < quality.length; i++)
+                {
+                    char expected = to.quality(to.qualityScore(from.errorProbability((char) quality[i])));
+                    assertEquals(from + " to " + to, expected, (char) converted[i + 1]);
+                }
+            }
+        }
+    }
+
+    public void testConvertQualityBytesRange() throws Exception
+    {
+        try
+        {
+            FastqTools.convertQualities(new byte[4], 1, new byte[4], 0, 4, FastqVariant.FASTQ_SANGER, FastqVariant.FASTQ_SOLEXA);
+            fail("convertQualities out of range expected IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            // expected
+        }
+    }
+
+    public void testConvertRecord() throws Exception
+    {
+        FastqRecord record = new FastqRecord();
+        record.clear(FastqVariant.FASTQ_SANGER);
+        record.appendSequence("ACTG".getBytes("US-ASCII"), 0, 4);
+        record.appendQuality("ZZZZ".getBytes("US-ASCII"), 0, 4);
+        assertSame(record, FastqTools.convertInPlace(record, FastqVariant.FASTQ_SOLEXA));
+        assertEquals(FastqVariant.FASTQ_SOLEXA, record.getVariant());
+        assertEquals("yyyy", record.getQuality().toString());
+    }
+
+    public void testQualityScoresBytes() throws Exception
+    {
+        int[] qualityScores = FastqTools.qualityScores("!ZZ~".getBytes("US-ASCII"), 1, 2, FastqVariant.FASTQ_SANGER, new int[2]);
+        assertEquals(57, qualityScores[0]);
+        assertEquals(57, qualityScores[1]);
+    }
+
+    public void testErrorProbabilitiesBytes() throws Exception
+    {
+        byte[] quality = "ZZZZ".getBytes("US-ASCII");
+        double[] expected = FastqTools.errorProbabilities(builder.build(), new double[4]);
+        double[] errorProbabilities = FastqTools.errorProbabilities(quality, 0, 4, FastqVariant.FASTQ_SANGER, new double[4]);
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(expected[i], errorProbabilities[i], 0.0d);
+        }
+    }
 }
@@ -0,0 +1,269 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.bio.program.fastq;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.Channels;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for ParallelFastqReader.
+ */
+public final class ParallelFastqReaderTest extends TestCase
+{
+    private static final String[] SANGER = new String[]
+        {
+            "example.fastq",
+            "longreads_original_sanger.fastq",
+            "misc_dna_original_sanger.fastq",
+            "multiple-wrapped-quality.fastq",
+            "sanger_full_range_original_sanger.fastq",
+            "tricky.fastq",
+            "wrapped-quality.fastq",
+            "wrapped-sequence.fastq",
+            "wrapping_original_sanger.fastq"
+        };
+
+    public void testConstructor()
+    {
+        try
+        {
+            new ParallelFastqReader(null);
+            fail("ctr(null) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        try
+        {
+            new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 0, true);
+            fail("ctr(,0,) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        try
+        {
+            new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 2, 1024, 0, true);
+            fail("ctr(,,,0,) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testStreamNullListener() throws Exception
+    {
+        try
+        {
+            new ParallelFastqReader(FastqVariant.FASTQ_SANGER).stream(new ByteArrayInputStream(new byte[0]), null);
+            fail("stream(,null) expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testEmpty() throws Exception
+    {
+        assertTrue(stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER), new byte[0]).isEmpty());
+    }
+
+    public void testOrdered() throws Exception
+    {
+        for (String name : SANGER)
+        {
+            byte[] bytes = resource(name);
+            List<String> expected = sequential(bytes);
+            assertEquals(name, expected, stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 3, 1, 2, true), bytes));
+            assertEquals(name, expected, stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 2, 100, 1, true), bytes));
+            assertEquals(name, expected, stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER), bytes));
+        }
+    }
+
+    public void testUnordered() throws Exception
+    {
+        for (String name : SANGER)
+        {
+            byte[] bytes = resource(name);
+            List<String> expected = sequential(bytes);
+            List<String> observed = stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 4, 1, 3, false), bytes);
+            Collections.sort(expected);
+            Collections.sort(observed);
+            assertEquals(name, expected, observed);
+        }
+    }
+
+    public void testGzip() throws Exception
+    {
+        byte[] bytes = resource("wrapping_original_sanger.fastq");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int i = 0; i < 2; i++)
+        {
+            // two gzip members, as in BGZF
+            GZIPOutputStream outputStream = new GZIPOutputStream(compressed);
+            outputStream.write(bytes);
+            outputStream.finish();
+        }
+        List<String> expected = sequential(bytes);
+        expected.addAll(sequential(bytes));
+        assertEquals(expected, stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 2, 64, 2, true), compressed.toByteArray()));
+    }
+
+    public void testBgzf() throws Exception
+    {
+        byte[] bytes = resource("longreads_original_sanger.fastq");
+        List<String> expected = Lists.newArrayList();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        BgzfFastqWriter writer = new BgzfFastqWriter(Channels.newChannel(compressed), FastqVariant.FASTQ_SANGER, 2);
+        // enough for several batches of BGZF blocks
+        for (int i = 0; i < 400; i++)
+        {
+            FastqRecordReader reader = new FastqRecordReader(ByteBuffer.wrap(bytes), FastqVariant.FASTQ_SANGER);
+            FastqRecord record = new FastqRecord();
+            while (reader.next(record))
+            {
+                writer.write(record);
+            }
+            expected.addAll(sequential(bytes));
+        }
+        writer.close();
+        assertTrue(writer.getBlockCount() > 3 * BgzfFastqWriter.DEFAULT_BLOCKS_PER_BATCH);
+        assertEquals(expected, stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 3, 65536, 2, true), compressed.toByteArray()));
+        assertEquals(expected, stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 1, 1000, 1, true), compressed.toByteArray()));
+    }
+
+    public void testBgzfCorrupt() throws Exception
+    {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        BgzfFastqWriter writer = new BgzfFastqWriter(Channels.newChannel(compressed), FastqVariant.FASTQ_SANGER, 1);
+        writer.write(new FastqBuilder().withDescription("a").withSequence("ACGT").withQuality("!!!!").build());
+        writer.close();
+        byte[] bytes = compressed.toByteArray();
+        byte[] corrupt = bytes.clone();
+        // the CRC32 of the first block, which is followed by the footer and the end of file marker
+        corrupt[corrupt.length - 28 - 8] ^= 1;
+        try
+        {
+            stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 2, 64, 2, true), corrupt);
+            fail("expected IOException");
+        }
+        catch (IOException e)
+        {
+            assertTrue(e.getMessage().contains("CRC32"));
+        }
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 28 - 1);
+        try
+        {
+            stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 2, 64, 2, true), truncated);
+            fail("expected IOException");
+        }
+        catch (IOException e)
+        {
+            assertTrue(e.getMessage().contains("truncated"));
+        }
+    }
+
+    public void testLineTerminators() throws Exception
+    {
+        byte[] bytes = "@a\r\nAC\r\nGT\r\n+\r\n!!\r\n##\r\n@b\r\nA\r\n+b\r\n!\r\n@c\r\nT\r\n+\r\n#\r\n".getBytes("US-ASCII");
+        assertEquals(sequential(bytes), stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 2, 1, 2, true), bytes));
+    }
+
+    public void testError() throws Exception
+    {
+        byte[] bytes = "@a\nACGT\n+\n!!!!\n@b\nACGT\n+\n!!!!\nb\nACGT\n+\n!!!!\n".getBytes("US-ASCII");
+        try
+        {
+            stream(new ParallelFastqReader(FastqVariant.FASTQ_SANGER, 2, 1, 2, true), bytes);
+            fail("expected IOException");
+        }
+        catch (IOException e)
+        {
+            assertTrue(e.getMessage().contains("line 9"));
+            assertTrue(e.getCause().getMessage().contains("description must begin with a '@' character"));
+        }
+    }
+
+    private byte[] resource(final String name) throws IOException
+    {
+        InputStream inputStream = getClass().getResourceAsStream(name);
+        try
+        {
+            return ByteStreams.toByteArray(inputStream);
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    private static List<String> sequential(final byte[] bytes) throws IOException
+    {
+        List<String> result = Lists.newArrayList();
+        FastqRecordReader reader = new FastqRecordReader(ByteBuffer.wrap(bytes), FastqVariant.FASTQ_SANGER);
+        FastqRecord record = new FastqRecord();
+        while (reader.next(record))
+        {
+            result.add(format(record.toFastq()));
+        }
+        return result;
+    }
+
+    private static List<String> stream(final ParallelFastqReader reader, final byte[] bytes) throws IOException
+    {
+        final List<String> result = Lists.newArrayList();
+        reader.stream(new ByteArrayInputStream(bytes), new StreamListener()
+            {
+                @Override
+                public void fastq(final Fastq fastq)
+                {
+                    result.add(format(fastq));
+                }
+            });
+        return result;
+    }
+
+    private static String format(final Fastq fastq)
+    {
+        return fastq.getDescription() + "\n" + fastq.getSequence() + "\n" + fastq.getQuality() + "\n" + fastq.getVariant().name();
+    }
+}